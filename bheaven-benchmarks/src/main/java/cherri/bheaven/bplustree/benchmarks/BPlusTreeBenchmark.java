@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+/**
+ * Measures {@link BPlusTree#get}, {@link BPlusTree#put} and
+ * {@link BPlusTree#remove} for the different node sizes of a
+ * {@link MemoryNodeFactory}.
+ * <p>
+ * The tree is loaded with <code>size</code> keys in random order before each
+ * iteration and the keys of the measured operations are drawn from
+ * <code>distribution</code> over the same range. Run it through
+ * {@link BenchmarkMain} to get the allocation rate per operation as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class BPlusTreeBenchmark {
+
+	private static final int KEYS = 1 << 16;
+	private static final long SEED = 42;
+
+	@Param({ "8", "32", "128" })
+	private int order;
+
+	@Param({ "8", "32", "128" })
+	private int records;
+
+	@Param({ "UNIFORM", "ZIPFIAN", "SEQUENTIAL" })
+	private KeyDistribution distribution;
+
+	@Param({ "100000" })
+	private int size;
+
+	private BPlusTree<Integer, Integer> tree;
+	private Integer keys[];
+	private int cursor;
+
+	@Setup(Level.Trial)
+	public void generateKeys() {
+		int generated[] = distribution.generate(KEYS, size, new Random(SEED));
+		keys = new Integer[KEYS];
+		
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = Integer.valueOf(generated[i]);
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void fillTree() {
+		tree = new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(order, records));
+		
+		int shuffled[] = new int[size];
+		
+		for (int i = 0; i < size; i++) {
+			shuffled[i] = i;
+		}
+		
+		Random random = new Random(SEED);
+		
+		for (int i = size - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = shuffled[i];
+			shuffled[i] = shuffled[j];
+			shuffled[j] = swap;
+		}
+		
+		for (int i = 0; i < size; i++) {
+			tree.put(Integer.valueOf(shuffled[i]), Integer.valueOf(shuffled[i]));
+		}
+		
+		cursor = 0;
+	}
+
+	private Integer nextKey() {
+		Integer key = keys[cursor];
+		cursor = (cursor + 1) & (KEYS - 1);
+		return key;
+	}
+
+	@Benchmark
+	public Integer get() {
+		return tree.get(nextKey());
+	}
+
+	@Benchmark
+	public void put() {
+		Integer key = nextKey();
+		tree.put(key, key);
+	}
+
+	/**
+	 * The removed key is put back right away so that the tree keeps the same
+	 * size for the whole iteration; the score therefore includes one
+	 * {@link BPlusTree#put} of a key that is known to be absent.
+	 */
+	@Benchmark
+	public void remove() {
+		Integer key = nextKey();
+		tree.remove(key);
+		tree.put(key, key);
+	}
+}
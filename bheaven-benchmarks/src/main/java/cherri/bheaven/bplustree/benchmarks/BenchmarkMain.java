@@ -0,0 +1,51 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. It accepts the usual JMH command line
+ * options and always enables the GC profiler so that the allocation rate
+ * per operation (<code>gc.alloc.rate.norm</code>) is reported next to the
+ * throughput and the average latency.
+ */
+public final class BenchmarkMain {
+
+	private BenchmarkMain() {
+		throw new AssertionError();
+	}
+
+	public static void main(String[] args) throws RunnerException,
+			CommandLineOptionException {
+		Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build();
+		
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.benchmarks;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.BulkLoader;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+/**
+ * Measures how {@link BulkLoader} scales with the number of threads loading
+ * <code>size</code> sorted entries. One thread uses the sequential load, the
+ * others the parallel one with as many partitions as threads.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class BulkLoadBenchmark {
+
+	@Param({ "32" })
+	private int order;
+
+	@Param({ "32" })
+	private int records;
+
+	@Param({ "1", "2", "4", "8", "16", "32" })
+	private int threads;
+
+	@Param({ "4194304" })
+	private int size;
+
+	private List<Map.Entry<Integer, Integer>> entries;
+	private ExecutorService executor;
+
+	@Setup(Level.Trial)
+	public void generateEntries() {
+		entries = new ArrayList<Map.Entry<Integer, Integer>>(size);
+		
+		for (int i = 0; i < size; i++) {
+			Integer key = Integer.valueOf(i);
+			entries.add(new AbstractMap.SimpleImmutableEntry<Integer, Integer>(
+					key, key));
+		}
+		
+		executor = Executors.newFixedThreadPool(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public BPlusTree<Integer, Integer> load() {
+		BulkLoader<Integer, Integer> loader = new BulkLoader<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(order, records));
+		
+		if (threads == 1) {
+			return loader.load(entries.iterator());
+		} else {
+			return loader.load(entries, executor, threads);
+		}
+	}
+}
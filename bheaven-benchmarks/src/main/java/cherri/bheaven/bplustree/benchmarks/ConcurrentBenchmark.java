@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.ConcurrentBPlusTree;
+import cherri.bheaven.bplustree.memory.ConcurrentMemoryNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+/**
+ * Compares a {@link BPlusTree} behind a global lock with a
+ * {@link ConcurrentBPlusTree} when several threads use the same tree. Run
+ * with <code>-t</code> to change the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConcurrentBenchmark {
+
+	private static final int KEYS = 1 << 16;
+
+	@Param({ "LOCKED", "LATCHED" })
+	private String mode;
+
+	@Param({ "32" })
+	private int order;
+
+	@Param({ "1000000" })
+	private int size;
+
+	private BPlusTree<Integer, Integer> tree;
+	private boolean locked;
+
+	@State(Scope.Thread)
+	public static class Keys {
+		
+		private final int keys[] = new int[KEYS];
+		private int cursor;
+		
+		@Setup(Level.Trial)
+		public void generateKeys(ConcurrentBenchmark benchmark) {
+			Random random = new Random(Thread.currentThread().getId());
+			
+			for (int i = 0; i < KEYS; i++) {
+				keys[i] = random.nextInt(benchmark.size);
+			}
+		}
+		
+		int next() {
+			int key = keys[cursor];
+			cursor = (cursor + 1) & (KEYS - 1);
+			return key;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void fillTree() {
+		MemoryNodeFactory<Integer, Integer> factory =
+			new ConcurrentMemoryNodeFactory<Integer, Integer>(order, order);
+		
+		locked = mode.equals("LOCKED");
+		tree = locked ? new BPlusTree<Integer, Integer>(factory) :
+			new ConcurrentBPlusTree<Integer, Integer>(factory);
+		
+		for (int i = 0; i < size; i++) {
+			tree.put(i, i);
+		}
+	}
+
+	@Benchmark
+	public Integer get(Keys keys) {
+		Integer key = keys.next();
+		
+		if (locked) {
+			synchronized (tree) {
+				return tree.get(key);
+			}
+		} else {
+			return tree.get(key);
+		}
+	}
+
+	/*
+	 * Removes a key and puts it back, which seldom splits or merges.
+	 */
+	@Benchmark
+	public void removePut(Keys keys) {
+		Integer key = keys.next();
+		
+		if (locked) {
+			synchronized (tree) {
+				tree.remove(key);
+				tree.put(key, key);
+			}
+		} else {
+			tree.remove(key);
+			tree.put(key, key);
+		}
+	}
+}
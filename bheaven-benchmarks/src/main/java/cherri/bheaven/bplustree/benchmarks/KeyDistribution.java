@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Key distributions used to drive the benchmarks. Every distribution draws
+ * keys in the range <code>[0, range)</code>.
+ */
+public enum KeyDistribution {
+
+	/**
+	 * Every key of the range is equally likely.
+	 */
+	UNIFORM {
+		@Override
+		public int[] generate(int count, int range, Random random) {
+			int keys[] = new int[count];
+			
+			for (int i = 0; i < count; i++) {
+				keys[i] = random.nextInt(range);
+			}
+			
+			return keys;
+		}
+	},
+
+	/**
+	 * Zipfian distribution with a skew of 0.99 (the YCSB default), the
+	 * smallest keys being the most popular ones.
+	 */
+	ZIPFIAN {
+		@Override
+		public int[] generate(int count, int range, Random random) {
+			double zetan = zeta(range, THETA);
+			double zeta2 = zeta(2, THETA);
+			double alpha = 1.0 / (1.0 - THETA);
+			double eta = (1 - Math.pow(2.0 / range, 1 - THETA)) /
+					(1 - zeta2 / zetan);
+			int keys[] = new int[count];
+			
+			for (int i = 0; i < count; i++) {
+				double u = random.nextDouble();
+				double uz = u * zetan;
+				
+				if (uz < 1.0) {
+					keys[i] = 0;
+				} else if (uz < 1.0 + Math.pow(0.5, THETA)) {
+					keys[i] = 1;
+				} else {
+					keys[i] = (int) (range * Math.pow(eta * u - eta + 1, alpha));
+				}
+				
+				if (keys[i] >= range) {
+					keys[i] = range - 1;
+				}
+			}
+			
+			return keys;
+		}
+	},
+
+	/**
+	 * Keys are visited in ascending order, wrapping around at the end of the
+	 * range.
+	 */
+	SEQUENTIAL {
+		@Override
+		public int[] generate(int count, int range, Random random) {
+			int keys[] = new int[count];
+			
+			for (int i = 0; i < count; i++) {
+				keys[i] = i % range;
+			}
+			
+			return keys;
+		}
+	};
+
+	private static final double THETA = 0.99;
+
+	/**
+	 * @param count the number of keys to generate
+	 * @param range the exclusive upper bound of the generated keys
+	 * @param random the source of randomness
+	 * @return the generated keys
+	 */
+	public abstract int[] generate(int count, int range, Random random);
+	
+	private static double zeta(int n, double theta) {
+		double sum = 0;
+		
+		for (int i = 1; i <= n; i++) {
+			sum += 1 / Math.pow(i, theta);
+		}
+		
+		return sum;
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cherri.bheaven.bplustree.KeySearch;
+
+/**
+ * Compares the searches of a node for every node size, to find the sizes
+ * below which {@link KeySearch#LINEAR} is the fastest. The keys are
+ * uniformly distributed, half of the keys looked up are in the node. The
+ * {@link String} keys are the same numbers after a shared prefix, as paths
+ * would be.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeySearchBenchmark {
+
+	private static final int KEYS = 1 << 12;
+	private static final long SEED = 42;
+
+	@Param({ "BINARY", "BRANCHLESS", "LINEAR", "INTERPOLATION" })
+	private KeySearch search;
+
+	@Param({ "4", "8", "16", "32", "64", "128", "256" })
+	private int slots;
+
+	private Long boxedKeys[];
+	private long longKeys[];
+	private Long boxedLookups[];
+	private long longLookups[];
+	private String stringKeys[];
+	private String stringLookups[];
+	private int cursor;
+
+	@Setup(Level.Trial)
+	public void generateKeys() {
+		Random random = new Random(SEED);
+		
+		longKeys = new long[slots];
+		for (int i = 0; i < slots; i++) {
+			longKeys[i] = random.nextInt() & ~1;
+		}
+		Arrays.sort(longKeys);
+		
+		boxedKeys = new Long[slots];
+		for (int i = 0; i < slots; i++) {
+			boxedKeys[i] = Long.valueOf(longKeys[i]);
+		}
+		
+		// Even keys are in the node, odd ones are not.
+		longLookups = new long[KEYS];
+		boxedLookups = new Long[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			long key = longKeys[random.nextInt(slots)];
+			longLookups[i] = random.nextBoolean() ? key : key + 1;
+			boxedLookups[i] = Long.valueOf(longLookups[i]);
+		}
+		
+		stringKeys = new String[slots];
+		for (int i = 0; i < slots; i++) {
+			stringKeys[i] = toString(longKeys[i]);
+		}
+		
+		stringLookups = new String[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			stringLookups[i] = toString(longLookups[i]);
+		}
+	}
+	
+	/*
+	 * Keeps the order of the numbers, negative ones included.
+	 */
+	private static String toString(long key) {
+		return String.format("tenant/namespace/%011d", key - Integer.MIN_VALUE);
+	}
+
+	private int next() {
+		int next = cursor;
+		cursor = (cursor + 1) & (KEYS - 1);
+		return next;
+	}
+
+	@Benchmark
+	public int boxedSearch() {
+		return search.search(boxedKeys, slots, boxedLookups[next()]);
+	}
+
+	@Benchmark
+	public int stringSearch() {
+		return search.search(stringKeys, slots, stringLookups[next()]);
+	}
+
+	@Benchmark
+	public int longSearch() {
+		return search.search(longKeys, slots, longLookups[next()]);
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.LongBPlusTree;
+import cherri.bheaven.bplustree.memory.MemoryLongNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+/**
+ * Compares lookups of <code>long</code> keys in a generic tree of boxed
+ * {@link Long}s with lookups in a {@link LongBPlusTree}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongKeyBenchmark {
+
+	private static final int KEYS = 1 << 16;
+	private static final long SEED = 42;
+
+	@Param({ "32", "128" })
+	private int order;
+
+	@Param({ "1000000" })
+	private int size;
+
+	private BPlusTree<Long, Long> boxedTree;
+	private LongBPlusTree<Long> longTree;
+	private long keys[];
+	private int cursor;
+
+	@Setup(Level.Trial)
+	public void fillTrees() {
+		boxedTree = new BPlusTree<Long, Long>(
+				new MemoryNodeFactory<Long, Long>(order, order));
+		longTree = new LongBPlusTree<Long>(
+				new MemoryLongNodeFactory<Long>(order, order));
+		
+		Random random = new Random(SEED);
+		
+		for (int i = 0; i < size; i++) {
+			long key = random.nextLong();
+			Long value = Long.valueOf(i);
+			boxedTree.put(Long.valueOf(key), value);
+			longTree.put(key, value);
+		}
+		
+		// Look up the same keys, present ones, in both trees.
+		random = new Random(SEED);
+		keys = new long[KEYS];
+		
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = random.nextLong();
+		}
+	}
+
+	private long nextKey() {
+		long key = keys[cursor];
+		cursor = (cursor + 1) & (KEYS - 1);
+		return key;
+	}
+
+	@Benchmark
+	public Long boxedGet() {
+		return boxedTree.get(Long.valueOf(nextKey()));
+	}
+
+	@Benchmark
+	public Long longGet() {
+		return longTree.get(nextKey());
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.benchmarks;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.Cursor;
+import cherri.bheaven.bplustree.EntryVisitor;
+import cherri.bheaven.bplustree.TreeSpliterator;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+/**
+ * Compares a full scan of a tree of <code>size</code> entries read with a
+ * {@link Cursor} to one read by a parallel stream of <code>threads</code>
+ * threads over a {@link TreeSpliterator}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class ParallelScanBenchmark {
+
+	@Param({ "32" })
+	private int order;
+
+	@Param({ "32" })
+	private int records;
+
+	@Param({ "1", "2", "4", "8" })
+	private int threads;
+
+	@Param({ "4194304" })
+	private int size;
+
+	private BPlusTree<Integer, Integer> tree;
+	private ForkJoinPool pool;
+
+	/**
+	 * Adapts a {@link TreeSpliterator} to a {@link Spliterator} of the keys,
+	 * which the library cannot implement itself as it is built for Java 6.
+	 */
+	private static class KeySpliterator implements Spliterator<Integer> {
+		
+		private final TreeSpliterator<Integer, Integer> spliterator;
+		
+		KeySpliterator(TreeSpliterator<Integer, Integer> spliterator) {
+			this.spliterator = spliterator;
+		}
+		
+		private static EntryVisitor<Integer, Integer> visitor(
+				Consumer<? super Integer> action) {
+			return (key, value) -> action.accept(key);
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super Integer> action) {
+			return spliterator.tryAdvance(visitor(action));
+		}
+		
+		@Override
+		public void forEachRemaining(Consumer<? super Integer> action) {
+			spliterator.forEachRemaining(visitor(action));
+		}
+		
+		@Override
+		public Spliterator<Integer> trySplit() {
+			TreeSpliterator<Integer, Integer> prefix = spliterator.trySplit();
+			
+			return prefix == null ? null : new KeySpliterator(prefix);
+		}
+		
+		@Override
+		public long estimateSize() {
+			return spliterator.estimateSize();
+		}
+		
+		@Override
+		public int characteristics() {
+			return spliterator.characteristics();
+		}
+		
+		@Override
+		public Comparator<? super Integer> getComparator() {
+			return null;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void fillTree() {
+		tree = new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(order, records));
+		
+		for (int i = 0; i < size; i++) {
+			Integer key = Integer.valueOf(i);
+			tree.put(key, key);
+		}
+		
+		pool = new ForkJoinPool(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public long cursor() {
+		Cursor<Integer, Integer> cursor = tree.range(null, null);
+		long sum = 0;
+		
+		while (cursor.hasNext()) {
+			sum += cursor.next().getKey();
+		}
+		
+		return sum;
+	}
+
+	@Benchmark
+	public long parallelStream() throws Exception {
+		return pool.submit(() -> StreamSupport.stream(
+				new KeySpliterator(tree.spliterator()), true)
+				.mapToLong(Integer::longValue).sum()).get();
+	}
+}
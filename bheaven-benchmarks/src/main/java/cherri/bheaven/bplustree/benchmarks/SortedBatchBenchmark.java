@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+/**
+ * Compares putting sorted micro-batches of <code>batch</code> keys one by one
+ * with {@link BPlusTree#put} and at once with {@link BPlusTree#putAll}, then
+ * looking them up with {@link BPlusTree#get} and {@link BPlusTree#getAll}.
+ * Each put invocation fills a new tree with <code>size</code> keys, the
+ * batches interleaving with the keys already in the tree. Each get
+ * invocation looks the next batch up in a tree holding all the keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class SortedBatchBenchmark {
+
+	@Param({ "32" })
+	private int order;
+
+	@Param({ "32" })
+	private int records;
+
+	@Param({ "16", "256", "4096" })
+	private int batch;
+
+	@Param({ "65536" })
+	private int size;
+
+	private Integer keys[][];
+	private Integer values[][];
+	private BPlusTree<Integer, Integer> tree;
+	private Integer results[];
+	private int next;
+
+	/*
+	 * Batch b holds the keys equal to b modulo the number of batches, so
+	 * that every batch spreads over the whole tree.
+	 */
+	@Setup(Level.Trial)
+	public void generateBatches() {
+		int batches = size / batch;
+		keys = new Integer[batches][batch];
+		values = keys;
+		
+		for (int b = 0; b < batches; b++) {
+			for (int i = 0; i < batch; i++) {
+				keys[b][i] = Integer.valueOf(i * batches + b);
+			}
+		}
+		
+		tree = putAll();
+		results = new Integer[batch];
+	}
+
+	private BPlusTree<Integer, Integer> getTree() {
+		return new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(order, records));
+	}
+
+	@Benchmark
+	public BPlusTree<Integer, Integer> put() {
+		BPlusTree<Integer, Integer> tree = getTree();
+		
+		for (int b = 0; b < keys.length; b++) {
+			for (int i = 0; i < batch; i++) {
+				tree.put(keys[b][i], values[b][i]);
+			}
+		}
+		
+		return tree;
+	}
+
+	@Benchmark
+	public BPlusTree<Integer, Integer> putAll() {
+		BPlusTree<Integer, Integer> tree = getTree();
+		
+		for (int b = 0; b < keys.length; b++) {
+			tree.putAll(keys[b], values[b]);
+		}
+		
+		return tree;
+	}
+
+	private Integer[] nextBatch() {
+		Integer batchKeys[] = keys[next];
+		next = (next + 1) % keys.length;
+		return batchKeys;
+	}
+
+	@Benchmark
+	public Integer[] get() {
+		Integer batchKeys[] = nextBatch();
+		
+		for (int i = 0; i < batch; i++) {
+			results[i] = tree.get(batchKeys[i]);
+		}
+		
+		return results;
+	}
+
+	@Benchmark
+	public Integer[] getAll() {
+		tree.getAll(nextBatch(), results);
+		return results;
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryStringNodeFactory;
+
+/**
+ * Compares lookups of path-like {@link String} keys, sharing their tenant
+ * and namespace levels, in a generic tree and in a tree of prefix
+ * compressed nodes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringKeyBenchmark {
+
+	private static final int KEYS = 1 << 16;
+	private static final long SEED = 42;
+
+	@Param({ "32", "128" })
+	private int order;
+
+	@Param({ "1000000" })
+	private int size;
+
+	private BPlusTree<String, Long> genericTree;
+	private BPlusTree<String, Long> prefixTree;
+	private String keys[];
+	private int cursor;
+
+	private static String getKey(Random random) {
+		return "tenant-" + random.nextInt(4) + "/namespace-" +
+				random.nextInt(16) + "/" + Math.abs(random.nextLong());
+	}
+
+	@Setup(Level.Trial)
+	public void fillTrees() {
+		genericTree = new BPlusTree<String, Long>(
+				new MemoryNodeFactory<String, Long>(order, order));
+		prefixTree = new BPlusTree<String, Long>(
+				new MemoryStringNodeFactory<Long>(order, order));
+		
+		Random random = new Random(SEED);
+		
+		for (int i = 0; i < size; i++) {
+			String key = getKey(random);
+			Long value = Long.valueOf(i);
+			genericTree.put(key, value);
+			prefixTree.put(key, value);
+		}
+		
+		// Look up copies of the same keys, present ones, in both trees.
+		random = new Random(SEED);
+		keys = new String[KEYS];
+		
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = new String(getKey(random));
+		}
+	}
+
+	private String nextKey() {
+		String key = keys[cursor];
+		cursor = (cursor + 1) & (KEYS - 1);
+		return key;
+	}
+
+	@Benchmark
+	public Long genericGet() {
+		return genericTree.get(nextKey());
+	}
+
+	@Benchmark
+	public Long prefixGet() {
+		return prefixTree.get(nextKey());
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+
+/**
+ * Same as {@link AbstractNode} but the keys are kept in a <code>long</code>
+ * array, so they are searched without boxing nor following a reference per
+ * key.
+ */
+public abstract class AbstractLongNode<V> implements LongNode<V> {
+
+	private final long keys[];
+	private final KeySearch search;
+	private int slots;
+
+	/**
+	 * @param maxSlots
+	 */
+	public AbstractLongNode(int maxSlots) {
+		this(maxSlots, KeySearch.forLongSlots(maxSlots));
+	}
+
+	/**
+	 * @param maxSlots
+	 * @param search the search of the keys of the node
+	 */
+	public AbstractLongNode(int maxSlots, KeySearch search) {
+		keys = new long[maxSlots];
+		slots = 0;
+		this.search = search;
+	}
+	
+	/**
+	 * @return the search of the keys of the node
+	 */
+	public KeySearch getSearch() {
+		return search;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LongNode#getLongKey(int)
+	 */
+	public long getLongKey(int index) {
+		return keys[index];
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LongNode#setLongKey(long, int)
+	 */
+	public void setLongKey(long key, int index) {
+		keys[index] = key;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getKey(int)
+	 */
+	public Long getKey(int index) {
+		return Long.valueOf(keys[index]);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setKey(K, int)
+	 */
+	public void setKey(Long key, int index) {
+		keys[index] = key.longValue();
+	}
+	
+	public int getKeyIndex(Long key) {
+		return getKeyIndex(key.longValue());
+	}
+
+	public int getKeyIndex(long key) {
+		return search.search(keys, slots, key);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#compareKey(int, java.lang.Comparable)
+	 */
+	public int compareKey(int index, Long key) {
+		long other = key.longValue();
+		
+		return keys[index] < other ? -1 : (keys[index] == other ? 0 : 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getSlots()
+	 */
+	public int getSlots() {
+		return slots;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setSlots(int)
+	 */
+	public void setSlots(int slots) {
+		this.slots = slots;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getMaxSlots()
+	 */
+	public int getMaxSlots() {
+		return keys.length;
+	}
+
+	public boolean isEmpty() {
+		return getSlots() == 0;
+	}
+	
+	public boolean isFull() {
+		return getSlots() == keys.length;
+	}
+	
+	protected void checkIsFull() {
+		if (!isFull()) {
+			throw new IllegalStateException("Cannot split a non full node.");
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return toString(0);
+	}
+
+	public String toString(int level) {
+		StringBuffer buffer = new StringBuffer();
+		StringBuffer indent = getIndent(level);
+		buffer.append(indent);
+		buffer.append(getClass().getName());
+		buffer.append('@');
+		buffer.append(hashCode());
+		
+		if (slots > 0) {
+			buffer.append('\n');
+			buffer.append(indent);
+			buffer.append(" keys: \n");
+		}
+
+		for (int i = 0; i < slots; i++) {
+			if(i > 0) {
+				buffer.append('\n');
+			}
+			buffer.append("  ");
+			buffer.append(indent);
+			buffer.append(keys[i]);
+		}
+		
+		return buffer.toString();
+	}
+
+	protected StringBuffer getIndent(int level) {
+		StringBuffer indent = new StringBuffer();
+		for (int i = 0; i < level; i++) {
+			indent.append("  ");
+		}
+		return indent;
+	}
+	
+}
@@ -19,24 +19,39 @@
  */
 package cherri.bheaven.bplustree;
 
-import java.util.Arrays;
-
 
 /**
  *
  */
 public abstract class AbstractNode<K extends Comparable<K>, V> implements Node<K, V> /*implements Comparable<Node<K, V>>*/ {
 
-	private K keys[];
+	private final K keys[];
+	private final KeySearch search;
 	private int slots;
 
 	/**
 	 * @param maxSlots
 	 */
-	@SuppressWarnings("unchecked")
 	public AbstractNode(int maxSlots) {
+		this(maxSlots, KeySearch.forSlots(maxSlots));
+	}
+
+	/**
+	 * @param maxSlots
+	 * @param search the search of the keys of the node
+	 */
+	@SuppressWarnings("unchecked")
+	public AbstractNode(int maxSlots, KeySearch search) {
 		keys = (K[]) new Comparable[maxSlots];
 		slots = 0;
+		this.search = search;
+	}
+	
+	/**
+	 * @return the search of the keys of the node
+	 */
+	public KeySearch getSearch() {
+		return search;
 	}
 
 	/* (non-Javadoc)
@@ -54,7 +69,14 @@ public abstract class AbstractNode<K extends Comparable<K>, V> implements Node<K
 	}
 	
 	public int getKeyIndex(K key) {
-		return Arrays.binarySearch(keys, 0, slots, key, null);
+		return search.search(keys, slots, key);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#compareKey(int, java.lang.Comparable)
+	 */
+	public int compareKey(int index, K key) {
+		return keys[index].compareTo(key);
 	}
 
 	/* (non-Javadoc)
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+
+/**
+ * Same as {@link AbstractNode} for {@link String} keys, but the prefix shared
+ * by the keys of the node is stored once and only the suffixes are kept per
+ * slot. Long keys sharing their first levels, like paths, take less memory
+ * and {@link #getKeyIndex(String)} compares the suffixes only.
+ * <p>
+ * The prefix shrinks when a key not starting with it is set, and leaves
+ * compute it again when they are split. Inner nodes do not, since the tree
+ * reads the key past their last slot after a split.
+ * <p>
+ * {@link #getKey(int)} concatenates the prefix and the suffix, so the nodes
+ * move suffixes between their own slots rather than keys, and
+ * {@link #compareKey(int, String)} compares a key to a slot without
+ * building the key of the slot.
+ */
+public abstract class AbstractStringNode<V> implements Node<String, V> {
+
+	private final String suffixes[];
+	private String prefix;
+	private int slots;
+
+	/**
+	 * @param maxSlots
+	 */
+	public AbstractStringNode(int maxSlots) {
+		suffixes = new String[maxSlots];
+		slots = 0;
+	}
+	
+	/**
+	 * @return the prefix shared by the keys of the node, <code>null</code>
+	 *         before a key is set
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getKey(int)
+	 */
+	public String getKey(int index) {
+		String suffix = suffixes[index];
+		
+		if (suffix.length() == 0) {
+			return prefix;
+		} else if (prefix.length() == 0) {
+			return suffix;
+		}
+		
+		return prefix.concat(suffix);
+	}
+	
+	/*
+	 * Compares the prefix, then the suffix of the slot, so that no key is
+	 * built.
+	 */
+	public int compareKey(int index, String key) {
+		int length = prefix.length();
+		int common = getCommonLength(prefix, key);
+		
+		if (common < length) {
+			return common == key.length() ? 1 :
+				prefix.charAt(common) - key.charAt(common);
+		}
+		
+		return -compare(key, length, suffixes[index]);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setKey(K, int)
+	 */
+	public void setKey(String key, int index) {
+		if (prefix == null) {
+			prefix = key;
+		} else if (!key.startsWith(prefix)) {
+			setPrefix(getCommonLength(prefix, key));
+		}
+		
+		suffixes[index] = key.substring(prefix.length());
+	}
+	
+	/**
+	 * Moves the key of slot <code>from</code> to slot <code>to</code> of the
+	 * same node without rebuilding it.
+	 */
+	protected void moveKey(int from, int to) {
+		suffixes[to] = suffixes[from];
+	}
+	
+	/**
+	 * Grows the prefix to the one of the first and the last keys, which the
+	 * sorted keys in between share, and clears the slots past the last one.
+	 */
+	protected void compact() {
+		for (int i = slots; i < suffixes.length; i++) {
+			suffixes[i] = null;
+		}
+		
+		if (slots > 0) {
+			int grown = getCommonLength(suffixes[0], suffixes[slots - 1]);
+			
+			if (grown > 0) {
+				prefix = prefix.concat(suffixes[0].substring(0, grown));
+				
+				for (int i = 0; i < slots; i++) {
+					suffixes[i] = suffixes[i].substring(grown);
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Shortens the prefix to length, moving the rest of it to the suffixes
+	 * of every slot, the ones past the slots included since the nodes set
+	 * keys there before updating the slots.
+	 */
+	private void setPrefix(int length) {
+		String moved = prefix.substring(length);
+		
+		for (int i = 0; i < suffixes.length; i++) {
+			if (suffixes[i] != null) {
+				suffixes[i] = moved.concat(suffixes[i]);
+			}
+		}
+		
+		prefix = prefix.substring(0, length);
+	}
+	
+	private static int getCommonLength(String first, String second) {
+		int length = Math.min(first.length(), second.length());
+		int i = 0;
+		
+		while (i < length && first.charAt(i) == second.charAt(i)) {
+			i++;
+		}
+		
+		return i;
+	}
+	
+	/*
+	 * Compares the part of key starting at offset to suffix as
+	 * String.compareTo would compare the whole keys.
+	 */
+	private static int compare(String key, int offset, String suffix) {
+		int keyLength = key.length() - offset;
+		int length = Math.min(keyLength, suffix.length());
+		
+		for (int i = 0; i < length; i++) {
+			int result = key.charAt(offset + i) - suffix.charAt(i);
+			
+			if (result != 0) {
+				return result;
+			}
+		}
+		
+		return keyLength - suffix.length();
+	}
+	
+	/*
+	 * A key that does not start with the prefix goes before or after every
+	 * key of the node, otherwise the suffixes are searched from the end of
+	 * the prefix on.
+	 */
+	public int getKeyIndex(String key) {
+		if (slots == 0) {
+			return -1;
+		}
+		
+		int length = prefix.length();
+		int common = getCommonLength(prefix, key);
+		
+		if (common < length) {
+			if (common == key.length() ||
+					key.charAt(common) < prefix.charAt(common)) {
+				return -1;
+			} else {
+				return -slots - 1;
+			}
+		}
+		
+		int low = 0;
+		int high = slots - 1;
+		
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int result = compare(key, length, suffixes[middle]);
+			
+			if (result > 0) {
+				low = middle + 1;
+			} else if (result < 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		
+		return -(low + 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getSlots()
+	 */
+	public int getSlots() {
+		return slots;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setSlots(int)
+	 */
+	public void setSlots(int slots) {
+		this.slots = slots;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getMaxSlots()
+	 */
+	public int getMaxSlots() {
+		return suffixes.length;
+	}
+
+	public boolean isEmpty() {
+		return getSlots() == 0;
+	}
+	
+	public boolean isFull() {
+		return getSlots() == suffixes.length;
+	}
+	
+	protected void checkIsFull() {
+		if (!isFull()) {
+			throw new IllegalStateException("Cannot split a non full node.");
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return toString(0);
+	}
+
+	public String toString(int level) {
+		StringBuffer buffer = new StringBuffer();
+		StringBuffer indent = getIndent(level);
+		buffer.append(indent);
+		buffer.append(getClass().getName());
+		buffer.append('@');
+		buffer.append(hashCode());
+		
+		if (slots > 0) {
+			buffer.append('\n');
+			buffer.append(indent);
+			buffer.append(" prefix: ");
+			buffer.append(prefix);
+			buffer.append('\n');
+			buffer.append(indent);
+			buffer.append(" keys: \n");
+		}
+
+		for (int i = 0; i < slots; i++) {
+			if(i > 0) {
+				buffer.append('\n');
+			}
+			buffer.append("  ");
+			buffer.append(indent);
+			buffer.append(suffixes[i]);
+		}
+		
+		return buffer.toString();
+	}
+
+	protected StringBuffer getIndent(int level) {
+		StringBuffer indent = new StringBuffer();
+		for (int i = 0; i < level; i++) {
+			indent.append("  ");
+		}
+		return indent;
+	}
+	
+}
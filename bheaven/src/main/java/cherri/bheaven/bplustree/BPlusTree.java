@@ -19,9 +19,9 @@
  */
 package cherri.bheaven.bplustree;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * @param <K>
@@ -29,30 +29,215 @@ import java.util.List;
  */
 public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map<K, V>*/ {
 	
+	private static final int BATCH_SIZE = 1024;
+	
+	private static final int PUT_IF_ABSENT = 0;
+	private static final int REPLACE = 1;
+	private static final int COMPUTE = 2;
+	private static final int MERGE = 3;
+	
 	private Node<K, V> root;
 	private NodeFactory<K, V> factory;
+	private final Separator<K> separator;
+	private final Path<K, V> path = new Path<K, V>();
+	private final StripedCounter leafSplits = new StripedCounter();
+	private final StripedCounter innerSplits = new StripedCounter();
+	private final StripedCounter borrows = new StripedCounter();
+	private final StripedCounter merges = new StripedCounter();
+	private volatile OperationStatistics operationStatistics;
 
 	/**
 	 * @param order the order of the B+ Tree
 	 * @param records TODO
 	 */
 	public BPlusTree(NodeFactory<K, V> factory) {
+		this(factory, (Separator<K>) null);
+	}
+	
+	/**
+	 * @param factory the factory of the nodes
+	 * @param separator chooses the keys the inner nodes keep between two
+	 *        leaves, <code>null</code> to keep the last key of the left leaf
+	 */
+	public BPlusTree(NodeFactory<K, V> factory, Separator<K> separator) {
 		this.factory = factory;
+		this.separator = separator;
+		
+		if (factory instanceof PersistentNodeFactory<?, ?>) {
+			root = ((PersistentNodeFactory<K, V>) factory).getRoot();
+		}
+	}
+	
+	/*
+	 * Used by BulkLoader to hand over the tree it has built, and by
+	 * CopyOnWriteBPlusTree for its snapshots.
+	 */
+	BPlusTree(NodeFactory<K, V> factory, Node<K, V> root) {
+		this.factory = factory;
+		this.separator = null;
+		setRoot(root);
+	}
+	
+	private void setRoot(Node<K, V> root) {
+		this.root = root;
+		
+		if (factory instanceof PersistentNodeFactory<?, ?>) {
+			((PersistentNodeFactory<K, V>) factory).setRoot(root);
+		}
+	}
+	
+	/*
+	 * Hooks called on the nodes an operation goes through, overridden by
+	 * ConcurrentBPlusTree to latch them. An operation calls enterRoot before
+	 * reading the root, enter on each node of the path from the root to the
+	 * leaf, enterSibling on any other node it reaches and exit when it is
+	 * done.
+	 */
+	static final int READ = 0;
+	static final int INSERT = 1;
+	static final int DELETE = 2;
+	
+	void enterRoot(int operation) {
+	}
+	
+	void enter(Node<K, V> node, int index, int operation) {
+	}
+	
+	void enterSibling(Node<K, V> node) {
+	}
+	
+	void exit() {
+	}
+	
+	/*
+	 * Hooks called on structure changes, overridden by ConcurrentBPlusTree
+	 * to maintain the high keys and right links of the nodes. split is
+	 * called once newNode holds the upper part of node, separate when the
+	 * key between node and its right sibling changes, merge when right was
+	 * emptied into its left sibling and drop when a node leaves the tree,
+	 * with its left sibling if there is one under the same parent.
+	 */
+	void split(Node<K, V> node, Node<K, V> newNode, K key) {
+	}
+	
+	void separate(Node<K, V> node, K key) {
+	}
+	
+	void merge(Node<K, V> left, Node<K, V> right) {
+	}
+	
+	void drop(Node<K, V> node, Node<K, V> previous) {
+	}
+	
+	/*
+	 * Called once a dropped node is no longer read by the operation, to
+	 * hand it back to a recycling factory. Overridden by ConcurrentBPlusTree
+	 * whose readers may still be on the node.
+	 */
+	void release(Node<K, V> node) {
+		if (factory instanceof RecyclingNodeFactory<?, ?>) {
+			((RecyclingNodeFactory<K, V>) factory).release(node);
+		}
+	}
+	
+	/*
+	 * The path put and remove record their descent in. A single one is
+	 * reused by the tree, ConcurrentBPlusTree gives one to each thread.
+	 * Reads, which may run in several threads while no thread writes, use
+	 * paths of their own.
+	 */
+	Path<K, V> getPath() {
+		return path;
+	}
+	
+	/*
+	 * Whether putAll may go on from the ancestors of the last leaf it
+	 * filled, which ConcurrentBPlusTree does not allow since it releases
+	 * them between two leaves.
+	 */
+	boolean canResumeDescent() {
+		return true;
+	}
+	
+	/*
+	 * Whether the next links of the leaves are kept, which
+	 * CopyOnWriteBPlusTree does not do since a leaf shared with a snapshot
+	 * cannot be linked to a copy of its neighbour. Cursors then walk the
+	 * leaves from their parents instead.
+	 */
+	boolean hasLeafLinks() {
+		return true;
+	}
+	
+	/*
+	 * Called on each node of a write operation before it may change it,
+	 * from the root down, and on the siblings it reaches. Returns the node
+	 * to change, which CopyOnWriteBPlusTree replaces with a copy when the
+	 * node is shared with a snapshot.
+	 */
+	Node<K, V> copyOnWrite(Node<K, V> node) {
+		return node;
+	}
+	
+	/*
+	 * Puts the node returned by copyOnWrite in place of node, under parent at
+	 * index or as the root if parent is null.
+	 */
+	private Node<K, V> getWritableNode(Node<K, V> node,
+			InnerNode<K, V> parent, int index) {
+		Node<K, V> writable = copyOnWrite(node);
+		
+		if (writable != node) {
+			if (parent == null) {
+				setRoot(writable);
+			} else {
+				parent.setChild(writable, index);
+			}
+		}
+		
+		return writable;
+	}
+	
+	/*
+	 * The key above which keys no longer belong to the leaf at the end of
+	 * the path, or null if it is the last leaf.
+	 */
+	K getHighKey(Path<K, V> path) {
+		for (int position = path.size() - 1; position > 0; position--) {
+			InnerNode<K, V> parent =
+				(InnerNode<K, V>) path.getNode(position - 1);
+			int index = path.getIndex(position);
+			
+			if (index < parent.getSlots()) {
+				return parent.getKey(index);
+			}
+		}
+		
+		return null;
 	}
 	
 	private LeafNode<K, V> findLeafNode(K key) {
-		return findLeafNode(key, null);
+		return findLeafNode(key, null, READ);
 	}
 	
 	private LeafNode<K, V> findLeafNode(K key,
-			List<Breadcrumb<K, V>> breadcrumbList) {
+			Path<K, V> path, int operation) {
 		if (root == null) {
 			return null;
 		}
 		
 		Node<K, V> node = root;
-		breadcrumbAdd(breadcrumbList, node, -1);
+		if (operation != READ) {
+			node = getWritableNode(node, null, -1);
+		}
+		enter(node, -1, operation);
+		breadcrumbAdd(path, node, -1);
 		
+		return findLeafNode(key, node, path, operation);
+	}
+	
+	private LeafNode<K, V> findLeafNode(K key, Node<K, V> node,
+			Path<K, V> path, int operation) {
 		while (!(node instanceof LeafNode<?, ?>)) {
 		
 			int index = node.getKeyIndex(key);
@@ -62,40 +247,90 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 			}
 			
 			
-			node = ((InnerNode<K, V>) node).getChild(index);
-			breadcrumbAdd(breadcrumbList, node, index);
-
+			InnerNode<K, V> parent = (InnerNode<K, V>) node;
+			node = parent.getChild(index);
+			if (operation != READ) {
+				node = getWritableNode(node, parent, index);
+			}
+			enter(node, index, operation);
+			breadcrumbAdd(path, node, index);
+
 		}
 		
 		return (LeafNode<K, V>) node;
 	}
+	
+	/*
+	 * Finds the leaf of key from the deepest node of the path whose range
+	 * holds it, key being greater than the keys the path was followed for.
+	 */
+	private LeafNode<K, V> resumeLeafNode(K key, Path<K, V> path,
+			int operation) {
+		int position = path.size() - 1;
+		
+		while (position > 0) {
+			InnerNode<K, V> parent =
+				(InnerNode<K, V>) path.getNode(position - 1);
+			int index = path.getIndex(position);
+			
+			if (index < parent.getSlots() &&
+					parent.compareKey(index, key) >= 0) {
+				break;
+			}
+			
+			position--;
+		}
+		
+		path.truncate(position + 1);
+		
+		return findLeafNode(key, path.getNode(position), path, operation);
+	}
 
-	private void breadcrumbAdd(List<Breadcrumb<K, V>> breadcrumbList,
+	private void breadcrumbAdd(Path<K, V> path,
 			Node<K, V> node, int index) {
-		if(breadcrumbList != null) {
-			breadcrumbList.add(new Breadcrumb<K, V>(node, index));
+		if(path != null) {
+			path.add(node, index);
 		}
 	}
 	
-	private Node<K, V> getParent(List<Breadcrumb<K, V>> breadcrumbList,
+	private Node<K, V> getParent(Path<K, V> path,
 			int position) {
 		if (position <= 0) {
 			return null;
 		} else {
-			return breadcrumbList.get(position - 1).getNode();
+			return path.getNode(position - 1);
 		}
 	}
 
-	private int getIndex(List<Breadcrumb<K, V>> breadcrumbList,
+	private int getIndex(Path<K, V> path,
 			int position) {
 		if (position < 0) {
 			return -1;
 		} else {
-			return breadcrumbList.get(position).getIndex();
+			return path.getIndex(position);
 		}
 	}
 
 	public V get(K key) {
+		OperationStatistics statistics = operationStatistics;
+		
+		if (statistics == null) {
+			return read(key);
+		}
+		
+		long start = System.nanoTime();
+		try {
+			return read(key);
+		} finally {
+			statistics.getGetLatencies().record(System.nanoTime() - start);
+		}
+	}
+	
+	/*
+	 * The lookup behind get, overridden by ConcurrentBPlusTree to read
+	 * without latches.
+	 */
+	V read(K key) {
 		/*
 		   1. Perform a binary search on the search key values in the current
 		      node -- recall that the search key values in a node are sorted
@@ -105,8 +340,15 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 		      associated with the key Ki by loading the disk page corresponding
 		      to the node and repeat the search process at that node.
 		*/
-		LeafNode<K, V> node = findLeafNode(key);
-		
+		enterRoot(READ);
+		try {
+			return get(findLeafNode(key), key);
+		} finally {
+			exit();
+		}
+	}
+	
+	private V get(LeafNode<K, V> node, K key) {
 		/*
 		   3. If the current node is a leaf, then:
 		         1. If K = Ki, then the record exists in the table and we can
@@ -129,9 +371,309 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 		}
 	}
 	
-	public void put(K key, V value) {
+	/**
+	 * Looks sorted keys up in a single walk of the tree. A key found in the
+	 * leaf of the previous key or in the next leaf costs no descent, the
+	 * others are found from the lowest ancestor common with the previous
+	 * leaf. Each leaf is therefore read once, in key order, which lets a
+	 * disk based factory fetch the pages it misses in order.
+	 * 
+	 * @param keys the keys, sorted in non-decreasing order
+	 * @param values the array receiving the value of each key, or
+	 *        <code>null</code> for a missing key
+	 * @throws IllegalArgumentException if the arrays are not the same length
+	 *         or the keys are not sorted
+	 */
+	public void getAll(K keys[], V values[]) {
+		checkBatch(keys, values);
+		
+		Path<K, V> path = new Path<K, V>();
+		boolean resume = false;
+		int i = 0;
+		
+		try {
+			while (i < keys.length) {
+				enterRoot(READ);
+				try {
+					LeafNode<K, V> leafNode = resume ?
+							resumeLeafNode(keys[i], path, READ) :
+							findLeafNode(keys[i], path, READ);
+					
+					if (leafNode == null) {
+						for (; i < keys.length; i++) {
+							values[i] = null;
+						}
+						break;
+					}
+					
+					K highKey = getHighKey(path);
+					resume = canResumeDescent();
+					
+					while (true) {
+						while (i < keys.length && (highKey == null ||
+								keys[i].compareTo(highKey) <= 0)) {
+							values[i] = get(leafNode, keys[i]);
+							i++;
+						}
+						
+						LeafNode<K, V> next = hasLeafLinks() ?
+								(LeafNode<K, V>) leafNode.getNext() : null;
+						
+						if (i == keys.length || next == null ||
+								next.getSlots() == 0 || next.compareKey(
+										next.getSlots() - 1, keys[i]) < 0) {
+							break;
+						}
+						
+						// The path does not lead to the next leaf.
+						leafNode = next;
+						highKey = next.getKey(next.getSlots() - 1);
+						resume = false;
+					}
+					
+					if (!resume) {
+						path.clear();
+					}
+				} finally {
+					exit();
+				}
+			}
+		} finally {
+			path.clear();
+		}
+	}
+	
+	private LeafNode<K, V> findFirstLeafNode(Path<K, V> path) {
+		if (root == null) {
+			return null;
+		}
+
+		Node<K, V> node = root;
+		breadcrumbAdd(path, node, -1);
+
+		while (!(node instanceof LeafNode<?, ?>)) {
+			node = ((InnerNode<K, V>) node).getChild(0);
+			breadcrumbAdd(path, node, 0);
+		}
+
+		return (LeafNode<K, V>) node;
+	}
+
+	/**
+	 * Returns a cursor over the entries whose keys are between
+	 * <code>from</code> (inclusive) and <code>to</code> (exclusive).
+	 *
+	 * @see #range(Comparable, boolean, Comparable, boolean)
+	 */
+	public Cursor<K, V> range(K from, K to) {
+		return range(from, true, to, false);
+	}
+
+	/**
+	 * Returns a cursor over the entries whose keys are between
+	 * <code>from</code> and <code>to</code>. The tree is descended only once
+	 * to find the first entry, the following ones are read along the leaf
+	 * nodes chain, or from the parents of the leaves of a
+	 * {@link CopyOnWriteBPlusTree} and its snapshots.
+	 *
+	 * @param from the lower bound, or <code>null</code> to start at the
+	 *        smallest key
+	 * @param fromInclusive whether an entry equal to <code>from</code> is
+	 *        returned
+	 * @param to the upper bound, or <code>null</code> to stop after the
+	 *        largest key
+	 * @param toInclusive whether an entry equal to <code>to</code> is
+	 *        returned
+	 */
+	public Cursor<K, V> range(K from, boolean fromInclusive, K to,
+			boolean toInclusive) {
+		enterRoot(READ);
+		try {
+			return createCursor(from, fromInclusive, to, toInclusive);
+		} finally {
+			exit();
+		}
+	}
+	
+	private Cursor<K, V> createCursor(K from, boolean fromInclusive, K to,
+			boolean toInclusive) {
+		Path<K, V> path = hasLeafLinks() ? null : new Path<K, V>();
+		
+		if (from == null) {
+			return new Cursor<K, V>(findFirstLeafNode(path), 0, to,
+					toInclusive, path);
+		}
+
+		LeafNode<K, V> node = findLeafNode(from, path, READ);
+
+		if (node == null) {
+			return new Cursor<K, V>(null, 0, to, toInclusive, null);
+		}
+
+		int index = node.getKeyIndex(from);
+
+		if (index < 0) {
+			index = -index - 1;
+		} else {
+			// The binary search may land on any of several equal keys.
+			while (index > 0 && node.compareKey(index - 1, from) == 0) {
+				index--;
+			}
+		}
+
+		Cursor<K, V> cursor = new Cursor<K, V>(node, index, to, toInclusive,
+				path);
+
+		if (!fromInclusive) {
+			cursor.skip(from);
+		}
+
+		return cursor;
+	}
+
+	/*
+	 * Used by BPlusTreeMap, since the leaves are only linked forward. Returns
+	 * the entry of the greatest key lower than key, or equal to it if
+	 * inclusive is set, or of the greatest key of the tree if key is null.
+	 * The descent remembers the separator at the left of the path; when the
+	 * leaf holds no lower key, the entry is the last one of the leaf ending
+	 * at that separator, which a second descent reaches.
+	 */
+	Map.Entry<K, V> lowerEntry(K key, boolean inclusive) {
+		while (true) {
+			K bound = null;
+			
+			enterRoot(READ);
+			try {
+				Node<K, V> node = root;
+				
+				if (node == null) {
+					return null;
+				}
+				
+				enter(node, -1, READ);
+				
+				while (!(node instanceof LeafNode<?, ?>)) {
+					int index = key == null ?
+							node.getSlots() : node.getKeyIndex(key);
+					
+					if (index < 0) {
+						index = -index - 1;
+					}
+					
+					if (index > 0) {
+						bound = node.getKey(index - 1);
+					}
+					
+					node = ((InnerNode<K, V>) node).getChild(index);
+					enter(node, index, READ);
+				}
+				
+				LeafNode<K, V> leafNode = (LeafNode<K, V>) node;
+				int index = key == null ?
+						leafNode.getSlots() : leafNode.getKeyIndex(key);
+				
+				if (index < 0) {
+					index = -index - 1;
+				} else if (inclusive) {
+					index++;
+				}
+				
+				if (index > 0) {
+					return new AbstractMap.SimpleImmutableEntry<K, V>(
+							leafNode.getKey(index - 1),
+							leafNode.getValue(index - 1));
+				}
+			} finally {
+				exit();
+			}
+			
+			if (bound == null) {
+				return null;
+			}
+			
+			key = bound;
+			inclusive = true;
+		}
+	}
+
+	/**
+	 * Returns a spliterator over all the entries of the tree.
+	 * 
+	 * @see #spliterator(Comparable, boolean, Comparable, boolean)
+	 */
+	public TreeSpliterator<K, V> spliterator() {
+		return spliterator(null, false, null, false);
+	}
+	
+	/**
+	 * Returns a spliterator over the entries whose keys are between
+	 * <code>from</code> and <code>to</code>, which splits the range by
+	 * subtrees to read it from several threads.
+	 *
+	 * @param from the lower bound, or <code>null</code> to start at the
+	 *        smallest key
+	 * @param fromInclusive whether an entry equal to <code>from</code> is
+	 *        returned
+	 * @param to the upper bound, or <code>null</code> to stop after the
+	 *        largest key
+	 * @param toInclusive whether an entry equal to <code>to</code> is
+	 *        returned
+	 */
+	public TreeSpliterator<K, V> spliterator(K from, boolean fromInclusive,
+			K to, boolean toInclusive) {
+		enterRoot(READ);
+		try {
+			return new TreeSpliterator<K, V>(root, from, fromInclusive, to,
+					toInclusive, hasLeafLinks());
+		} finally {
+			exit();
+		}
+	}
+
+	/**
+	 * Returns a cursor over the entries whose keys are greater than or equal
+	 * to <code>from</code>.
+	 */
+	public Cursor<K, V> tailScan(K from) {
+		return range(from, true, null, false);
+	}
+
+	/**
+	 * Returns a cursor over the entries whose keys are greater than (or equal
+	 * to if <code>inclusive</code> is set) <code>from</code>.
+	 */
+	public Cursor<K, V> tailScan(K from, boolean inclusive) {
+		return range(from, inclusive, null, false);
+	}
+
+	/**
+	 * Associates <code>value</code> with <code>key</code>, replacing the
+	 * value of <code>key</code> if it is already in the tree.
+	 * 
+	 * @return the previous value of <code>key</code>, or <code>null</code> if
+	 *         it was not in the tree
+	 */
+	public V put(K key, V value) {
+		OperationStatistics statistics = operationStatistics;
+		long start = statistics != null ? System.nanoTime() : 0;
+		Path<K, V> path = getPath();
+		enterRoot(INSERT);
+		try {
+			return insert(key, value, path);
+		} finally {
+			path.clear();
+			exit();
+			
+			if (statistics != null) {
+				statistics.getPutLatencies().record(System.nanoTime() - start);
+			}
+		}
+	}
+	
+	private V insert(K key, V value, Path<K, V> path) {
 		if (root == null) {
-			root = factory.getLeafNode();
+			setRoot(factory.getLeafNode());
 		}
 		
 		/*
@@ -140,11 +682,27 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
            2. The leaf page L that is reached is the node where the new record
               is to be indexed.
 		*/
-		List<Breadcrumb<K, V>> breadcrumbList =
-			new ArrayList<Breadcrumb<K, V>>(10);
-		LeafNode<K, V> leafNode = findLeafNode(key, breadcrumbList);
+		return upsert(findLeafNode(key, path, INSERT), key, value, path);
+	}
+	
+	private V upsert(LeafNode<K, V> leafNode, K key, V value,
+			Path<K, V> path) {
+		int index = leafNode.getKeyIndex(key);
+		
+		if (index >= 0) {
+			V oldValue = leafNode.getValue(index);
+			leafNode.setValue(value, index);
+			return oldValue;
+		} else {
+			insert(leafNode, key, value, path);
+			return null;
+		}
+	}
+	
+	private void insert(LeafNode<K, V> leafNode, K key, V value,
+			Path<K, V> path) {
 		Node<K, V> node = leafNode;
-		int position = breadcrumbList.size() - 1;
+		int position = path.size() - 1;
 
 		/*
            3. If L is not full then an index entry is created that includes the
@@ -168,11 +726,13 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 	        */
 			K newKey = key;
 			LeafNode<K, V> newLeafNode = leafNode.split(newKey, value);
+			leafSplits.increment();
 			
 			InnerNode<K, V> parent = 
-				(InnerNode<K, V>) getParent(breadcrumbList, position--);
+				(InnerNode<K, V>) getParent(path, position--);
 			Node<K, V> newNode = newLeafNode;
-			newKey = node.getKey(node.getSlots() - 1);
+			newKey = getSeparator(node, newNode);
+			split(node, newNode, newKey);
 			
 			/*
             a. If the parent P of L is full, then it is split in turn.
@@ -187,12 +747,16 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
                inserted into the parent node. This splitting of nodes may
                continue upwards on the tree.
 			*/
+			int split = 1;
 			while (parent != null && parent.isFull()) {
 				InnerNode<K, V> newInnerNode = parent.split(newKey, newNode);
+				innerSplits.increment();
+				split++;
 				newKey = parent.getKey(parent.getSlots());
+				split(parent, newInnerNode, newKey);
 				node = parent;
 				newNode = newInnerNode;
-				parent = (InnerNode<K, V>) getParent(breadcrumbList, position--);
+				parent = (InnerNode<K, V>) getParent(path, position--);
 				
 			}
 			
@@ -206,32 +770,349 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 			if (parent == null) {
 				parent = factory.getInnerNode();
 				parent.setChild(node, 0);
-				root = parent;
+				setRoot(parent);
 			}
 			
 			parent.insert(newKey, newNode);
+			
+			OperationStatistics statistics = operationStatistics;
+			if (statistics != null) {
+				statistics.getSplitDepths().record(split);
+			}
 		}
 	}
 
-	private Node<K, V>[] getSiblings(List<Breadcrumb<K, V>> breadcrumbList,
+	/**
+	 * Associates <code>value</code> with <code>key</code> unless
+	 * <code>key</code> is already in the tree.
+	 * 
+	 * @return the current value of <code>key</code>, or <code>null</code> if
+	 *         it was not in the tree
+	 */
+	public V putIfAbsent(K key, V value) {
+		return update(key, value, null, null, PUT_IF_ABSENT);
+	}
+	
+	/**
+	 * Associates <code>value</code> with <code>key</code> only if
+	 * <code>key</code> is already in the tree.
+	 * 
+	 * @return the previous value of <code>key</code>, or <code>null</code> if
+	 *         it was not in the tree
+	 */
+	public V replace(K key, V value) {
+		return update(key, value, null, null, REPLACE);
+	}
+	
+	/**
+	 * Associates <code>key</code> with the value computed from its current
+	 * value, or removes it if the computed value is <code>null</code>.
+	 * 
+	 * @return the new value of <code>key</code>
+	 */
+	public V compute(K key, Remapping<? super K, V> remapping) {
+		return update(key, null, remapping, null, COMPUTE);
+	}
+	
+	/**
+	 * Associates <code>value</code> with <code>key</code> if it is not in the
+	 * tree, otherwise the value merged from its current value and
+	 * <code>value</code>, removing it if the merged value is
+	 * <code>null</code>.
+	 * 
+	 * @return the new value of <code>key</code>
+	 */
+	public V merge(K key, V value, Merging<V> merging) {
+		return update(key, value, null, merging, MERGE);
+	}
+	
+	/*
+	 * Finds the slot of key in a single descent, then updates it in place,
+	 * inserts it or removes it. A removal that would leave the leaf short of
+	 * slots needs the delete descent though: the update starts again in
+	 * that mode and decides again from the value it finds, so that no writer
+	 * can change the key between the decision and the removal. If it then
+	 * finds an insertion to do, it goes back to the insert descent, so the
+	 * remapping or merging may be called more than once.
+	 */
+	private V update(K key, V value, Remapping<? super K, V> remapping,
+			Merging<V> merging, int mode) {
+		Path<K, V> path = getPath();
+		int operation = INSERT;
+		
+		while (true) {
+			enterRoot(operation);
+			try {
+				LeafNode<K, V> leafNode = findLeafNode(key, path, operation);
+				int index = leafNode == null ? -1 : leafNode.getKeyIndex(key);
+				V oldValue = index >= 0 ? leafNode.getValue(index) : null;
+				V newValue;
+				V result;
+				
+				switch (mode) {
+				case PUT_IF_ABSENT:
+					newValue = index >= 0 ? oldValue : value;
+					result = oldValue;
+					break;
+				case REPLACE:
+					newValue = index >= 0 ? value : null;
+					result = oldValue;
+					break;
+				case COMPUTE:
+					newValue = remapping.remap(key, oldValue);
+					result = newValue;
+					break;
+				default:
+					newValue = index >= 0 ?
+							merging.merge(oldValue, value) : value;
+					result = newValue;
+					break;
+				}
+				
+				if (index >= 0) {
+					if (newValue != null) {
+						leafNode.setValue(newValue, index);
+					} else if (operation == DELETE) {
+						delete(leafNode, index, path);
+					} else if (leafNode.getSlots() > 1 &&
+							(leafNode == root || leafNode.canGiveSlots())) {
+						leafNode.remove(index);
+					} else {
+						operation = DELETE;
+						continue;
+					}
+				} else if (newValue != null) {
+					if (operation == DELETE) {
+						operation = INSERT;
+						continue;
+					}
+					
+					if (leafNode == null) {
+						setRoot(factory.getLeafNode());
+						leafNode = findLeafNode(key, path, INSERT);
+					}
+					insert(leafNode, key, newValue, path);
+				}
+				
+				return result;
+			} finally {
+				path.clear();
+				exit();
+			}
+		}
+	}
+	
+	/**
+	 * Puts entries sorted by key, a key repeated in the batch ending up with
+	 * its last value. The tree is descended once for all the keys that go to
+	 * the same leaf, from the lowest ancestor common with the previous leaf,
+	 * and each leaf is filled in a single pass.
+	 * 
+	 * @param keys the keys, sorted in non-decreasing order
+	 * @param values the values of the keys
+	 * @throws IllegalArgumentException if the arrays are not the same length
+	 *         or the keys are not sorted, in which case nothing is inserted
+	 */
+	public void putAll(K keys[], V values[]) {
+		checkBatch(keys, values);
+		insertAll(keys, values, keys.length);
+	}
+	
+	/**
+	 * Inserts entries sorted by key, in batches.
+	 * 
+	 * @param entries the entries, sorted by key in non-decreasing order
+	 * @throws IllegalArgumentException if the entries are not sorted, in
+	 *         which case the batches before the offending entry have been
+	 *         inserted
+	 * @see #putAll(Comparable[], Object[])
+	 */
+	@SuppressWarnings("unchecked")
+	public void putAll(Iterator<? extends Map.Entry<K, V>> entries) {
+		K keys[] = (K[]) new Comparable<?>[BATCH_SIZE];
+		V values[] = (V[]) new Object[BATCH_SIZE];
+		K previousKey = null;
+		
+		while (entries.hasNext()) {
+			int count = 0;
+			
+			while (count < BATCH_SIZE && entries.hasNext()) {
+				Map.Entry<K, V> entry = entries.next();
+				K key = entry.getKey();
+				
+				if (previousKey != null) {
+					checkOrder(previousKey, key);
+				}
+				
+				keys[count] = key;
+				values[count] = entry.getValue();
+				previousKey = key;
+				count++;
+			}
+			
+			insertAll(keys, values, count);
+		}
+	}
+	
+	/**
+	 * Checks a batch as {@link #putAll(Comparable[], Object[])} does, for
+	 * the overrides of the batch operations.
+	 * 
+	 * @throws IllegalArgumentException if the arrays are not the same length
+	 *         or the keys are not sorted
+	 */
+	protected void checkBatch(K keys[], V values[]) {
+		if (keys.length != values.length) {
+			throw new IllegalArgumentException("There are " + keys.length +
+					" keys but " + values.length + " values.");
+		}
+		
+		for (int i = 1; i < keys.length; i++) {
+			checkOrder(keys[i - 1], keys[i]);
+		}
+	}
+	
+	private void checkOrder(K previousKey, K key) {
+		if (previousKey.compareTo(key) > 0) {
+			throw new IllegalArgumentException("Keys are not sorted: " + key +
+					" follows " + previousKey + ".");
+		}
+	}
+	
+	private void insertAll(K keys[], V values[], int count) {
+		Path<K, V> path = getPath();
+		boolean resume = false;
+		int i = 0;
+		
+		try {
+			while (i < count) {
+				enterRoot(INSERT);
+				try {
+					if (root == null) {
+						setRoot(factory.getLeafNode());
+					}
+					
+					LeafNode<K, V> leafNode = resume ?
+							resumeLeafNode(keys[i], path, INSERT) :
+							findLeafNode(keys[i], path, INSERT);
+					
+					if (leafNode.isFull()) {
+						// The path does not hold after a split.
+						upsert(leafNode, keys[i], values[i], path);
+						path.clear();
+						resume = false;
+						i++;
+					} else {
+						K highKey = getHighKey(path);
+						int end = i + Math.min(count - i,
+								leafNode.getMaxSlots() - leafNode.getSlots());
+						int last = i + 1;
+						
+						while (last < end && (highKey == null ||
+								keys[last].compareTo(highKey) <= 0)) {
+							last++;
+						}
+						
+						insertAll(leafNode, keys, values, i, last);
+						resume = canResumeDescent();
+						if (!resume) {
+							path.clear();
+						}
+						i = last;
+					}
+				} finally {
+					exit();
+				}
+			}
+		} finally {
+			path.clear();
+		}
+	}
+	
+	/*
+	 * Merges keys from (inclusive) to (exclusive) into the leaf, which has
+	 * room for them, starting from the end so that each key of the leaf is
+	 * moved only once. A key already in the leaf gets the new value, and so
+	 * does a key repeated in the batch with the last of its values.
+	 */
+	private void insertAll(LeafNode<K, V> leafNode, K keys[], V values[],
+			int from, int to) {
+		int slots = leafNode.getSlots();
+		int newSlots = slots;
+		int i = 0;
+		int j = from;
+		
+		// Counts the new keys first.
+		while (j < to) {
+			int comparison = i < slots ?
+					leafNode.compareKey(i, keys[j]) : 1;
+			
+			if (comparison < 0) {
+				i++;
+			} else {
+				if (comparison > 0) {
+					newSlots++;
+				}
+				do {
+					j++;
+				} while (j < to && keys[j].compareTo(keys[j - 1]) == 0);
+			}
+		}
+		
+		i = slots - 1;
+		j = to - 1;
+		int k = newSlots - 1;
+		
+		leafNode.setSlots(newSlots);
+		
+		while (j >= from) {
+			int comparison = i >= 0 ?
+					leafNode.compareKey(i, keys[j]) : -1;
+			
+			if (comparison > 0) {
+				leafNode.setKey(leafNode.getKey(i), k);
+				leafNode.setValue(leafNode.getValue(i), k);
+				i--;
+			} else {
+				if (comparison == 0) {
+					i--;
+				}
+				leafNode.setKey(keys[j], k);
+				leafNode.setValue(values[j], k);
+				do {
+					j--;
+				} while (j >= from && keys[j].compareTo(keys[j + 1]) == 0);
+			}
+			k--;
+		}
+	}
+
+	private Node<K, V>[] getSiblings(Path<K, V> path,
 			int position) {
 		InnerNode<K, V> parent =
-			(InnerNode<K, V>) getParent(breadcrumbList, position);
+			(InnerNode<K, V>) getParent(path, position);
 		
-		int index = getIndex(breadcrumbList, position);
+		int index = getIndex(path, position);
 		
 		// Should never happen.
 		checkIndex(index);
 		
-		@SuppressWarnings("unchecked")
-		Node<K, V> results[] = new Node[2];
+		Node<K, V> results[] = path.siblings;
 		
 		if (index > 0) {
-			results[0] = parent.getChild(index - 1);
+			results[0] = getWritableNode(parent.getChild(index - 1), parent,
+					index - 1);
+			enterSibling(results[0]);
+		} else {
+			results[0] = null;
 		}
 		
 		if (index < parent.getSlots()) {
-			results[1] = parent.getChild(index + 1);
+			results[1] = getWritableNode(parent.getChild(index + 1), parent,
+					index + 1);
+			enterSibling(results[1]);
+		} else {
+			results[1] = null;
 		}
 
 		return results;
@@ -243,24 +1124,39 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 		}
 	}
 	
-	private void updateLeafParentKey(Node<K, V> node, int nodeIndex,
-			List<Breadcrumb<K, V>> breadcrumbList, int position) {
+	private void updateLeafParentKey(Node<K, V> node, Node<K, V> next,
+			int nodeIndex, Path<K, V> path, int position) {
 		InnerNode<K, V> parent = 
-			(InnerNode<K, V>) getParent(breadcrumbList, position);
+			(InnerNode<K, V>) getParent(path, position);
 		
-		int index = getIndex(breadcrumbList, position) + nodeIndex;
+		int index = getIndex(path, position) + nodeIndex;
 		
 		checkIndex(index);
 		
-		parent.setKey(node.getKey(node.getSlots() - 1), index);
+		parent.setKey(getSeparator(node, next), index);
+		separate(node, parent.getKey(index));
 	}
 	
-	private K getParentKey(boolean left, List<Breadcrumb<K, V>> breadcrumbList,
+	/*
+	 * The key separating a leaf from the next one, which is passed since the
+	 * leaves of a CopyOnWriteBPlusTree are not linked.
+	 */
+	private K getSeparator(Node<K, V> leafNode, Node<K, V> next) {
+		K key = leafNode.getKey(leafNode.getSlots() - 1);
+		
+		if (separator != null) {
+			key = separator.separate(key, next.getKey(0));
+		}
+		
+		return key;
+	}
+	
+	private K getParentKey(boolean left, Path<K, V> path,
 			int position) {
 		InnerNode<K, V> parent = 
-			(InnerNode<K, V>) getParent(breadcrumbList, position - 1);
+			(InnerNode<K, V>) getParent(path, position - 1);
 		
-		int index = getIndex(breadcrumbList, position - 1);
+		int index = getIndex(path, position - 1);
 		
 		checkIndex(index);
 		
@@ -268,11 +1164,11 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 	}
 	
 	private void updateParentKey(int nodeIndex, K key,
-			List<Breadcrumb<K, V>> breadcrumbList, int position) {
+			Path<K, V> path, int position) {
 		InnerNode<K, V> parent = 
-			(InnerNode<K, V>) getParent(breadcrumbList, position - 1);
+			(InnerNode<K, V>) getParent(path, position - 1);
 		
-		int index = getIndex(breadcrumbList, position - 1) + nodeIndex;
+		int index = getIndex(path, position - 1) + nodeIndex;
 		
 		checkIndex(index);
 
@@ -280,7 +1176,7 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 	}
 	
 	private LeafNode<K, V> getPreviousLeafNode(LeafNode<K, V> leafNode,
-			List<Breadcrumb<K, V>> breadcrumbList, int position) {
+			Path<K, V> path, int position) {
 		LeafNode<K, V> result = null;
 		Node<K, V> node = leafNode;
 		
@@ -289,9 +1185,9 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 		int loopPosition = position;
 		
 		do {
-			parent  = (InnerNode<K, V>) getParent(breadcrumbList, loopPosition);
+			parent  = (InnerNode<K, V>) getParent(path, loopPosition);
 			
-			index = getIndex(breadcrumbList, loopPosition);
+			index = getIndex(path, loopPosition);
 			
 			checkIndex(index);
 			
@@ -302,8 +1198,10 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 		if (parent != root || index != 0) {
 			
 			node = ((InnerNode<K, V>) node).getChild(index - 1);
+			enterSibling(node);
 			while (node instanceof InnerNode<?, ?>) {
 				node = ((InnerNode<K, V>) node).getChild(node.getSlots());				
+				enterSibling(node);
 			}
 			result = (LeafNode<K, V>) node;
 		}
@@ -312,15 +1210,19 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 	}
 	
 	/*
+	 * Returns the number of inner nodes merged, by this call and the ones it
+	 * cascades to.
+	 * 
 	 * TODO Complex Method
 	 */
-	private void removeParentKey(List<Breadcrumb<K, V>> breadcrumbList,
+	private int removeParentKey(Path<K, V> path,
 			int position) {
 		InnerNode<K, V> parent =
-			(InnerNode<K, V>) getParent(breadcrumbList, position);
+			(InnerNode<K, V>) getParent(path, position);
+		int merged = 0;
 		
 		if (parent != null) {
-			int index = getIndex(breadcrumbList, position);
+			int index = getIndex(path, position);
 			
 			checkIndex(index);
 			
@@ -329,7 +1231,7 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 			if (parent != root) {
 				if (!parent.hasEnoughSlots()) {
 					Node<K, V> siblings[] =
-						getSiblings(breadcrumbList, position - 1);
+						getSiblings(path, position - 1);
 					int siblingIndex = getSiblingIndex(siblings);
 					
 					if (canGiveSlots(siblings)) {
@@ -337,10 +1239,10 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 								parent.getSlots()) / 2;
 						if (siblingIndex == 0) {
 							parent.rightShift(count);
-							parent.setKey(getParentKey(true, breadcrumbList, position), count - 1);
+							parent.setKey(getParentKey(true, path, position), count - 1);
 							siblings[siblingIndex].copyToRight(parent, count);
 						} else {
-							parent.setKey(getParentKey(false, breadcrumbList, position), parent.getSlots());
+							parent.setKey(getParentKey(false, path, position), parent.getSlots());
 							siblings[siblingIndex].copyToLeft(parent, count);
 							siblings[siblingIndex].leftShift(count);
 						}
@@ -349,14 +1251,18 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 						if (siblingIndex == 0) {
 							updateParentKey(-1,
 									siblings[0].getKey(siblings[0].getSlots()),
-											breadcrumbList,
+											path,
 											position);
+							separate(siblings[0],
+									siblings[0].getKey(siblings[0].getSlots()));
 						} else {
 							updateParentKey(0,
 									parent.getKey(parent.getSlots()),
-											breadcrumbList,
+											path,
 											position);
+							separate(parent, parent.getKey(parent.getSlots()));
 						}
+						borrows.increment();
 					} else {
 				/*
 				         b. If both Lleft and Lright have only the minimum number of
@@ -371,18 +1277,25 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 				*/
 						if(siblingIndex == 0) {
 							siblings[siblingIndex].setKey(
-									getParentKey(true, breadcrumbList, position),
+									getParentKey(true, path, position),
 									siblings[siblingIndex].getSlots());
 							parent.copyToLeft(siblings[siblingIndex], parent.getSlots() + 1);
 						} else {
 							siblings[siblingIndex].rightShift(siblings[siblingIndex].getSlots());
 							siblings[siblingIndex].setKey(
-									getParentKey(false, breadcrumbList, position),
+									getParentKey(false, path, position),
 									parent.getSlots());
 							parent.copyToRight(siblings[siblingIndex], parent.getSlots() + 1);
 						}
 						siblings[siblingIndex].setSlots(siblings[siblingIndex].getSlots() + parent.getSlots() + 1);
-						removeParentKey(breadcrumbList, position - 1);
+						if (siblingIndex == 0) {
+							merge(siblings[0], parent);
+						} else {
+							drop(parent, siblings[0]);
+						}
+						merged = removeParentKey(path, position - 1) + 1;
+						release(parent);
+						merges.increment();
 					}
 	
 				}
@@ -393,25 +1306,77 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 		            the tree loses a level. 
 				 */
 				if(parent.getSlots() == 0) {
-					root = parent.getChild(0);
+					setRoot(parent.getChild(0));
+					drop(parent, null);
+					release(parent);
 				}
 				
 			}
 		}
+		
+		return merged;
+	}
+	
+	/**
+	 * Removes <code>key</code> from the tree.
+	 * 
+	 * @return the value of <code>key</code>, or <code>null</code> if it was
+	 *         not in the tree
+	 */
+	public V remove(K key) {
+		OperationStatistics statistics = operationStatistics;
+		
+		if (statistics == null) {
+			return removeEntry(key);
+		}
+		
+		long start = System.nanoTime();
+		try {
+			return removeEntry(key);
+		} finally {
+			statistics.getRemoveLatencies().record(System.nanoTime() - start);
+		}
+	}
+	
+	private V removeEntry(K key) {
+		Path<K, V> path = getPath();
+		enterRoot(DELETE);
+		try {
+			return delete(key, path);
+		} finally {
+			path.clear();
+			exit();
+		}
 	}
 	
 	/*
 	 * TODO: Complex Method
 	 */
-	public void remove(K key) {
+	private V delete(K key, Path<K, V> path) {
 		/*
 		   1. Perform the search process on the key of the record to be
 		      deleted. This search will end at a leaf L.
 		*/
-		List<Breadcrumb<K, V>> breadcrumbList =
-			new ArrayList<Breadcrumb<K, V>>(10);
-		LeafNode<K, V> leafNode = findLeafNode(key, breadcrumbList);
-		int position = breadcrumbList.size() - 1;
+		LeafNode<K, V> leafNode = findLeafNode(key, path, DELETE);
+		
+		if (leafNode == null) {
+			return null;
+		}
+		
+		int index = leafNode.getKeyIndex(key);
+		V value = index >= 0 ? leafNode.getValue(index) : null;
+		
+		delete(leafNode, index, path);
+		
+		return value;
+	}
+	
+	/*
+	 * Removes the slot at index, if the key was found, from the leaf a
+	 * delete descent led to, then rebalances the tree.
+	 */
+	private void delete(LeafNode<K, V> leafNode, int index, Path<K, V> path) {
+		int position = path.size() - 1;
 
 		/*
 		   2. If the leaf L contains more than the minimum number of elements
@@ -419,8 +1384,6 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 		      removed can be safely deleted from the leaf with no further
 		      action.
 		*/
-		int index = leafNode.getKeyIndex(key);
-		
 		if (index >= 0) {
 			leafNode.remove(index);
 		}
@@ -436,7 +1399,7 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 			      to L -- at most one of these may not exist.
 			*/
 				Node<K, V> siblings[] =
-					getSiblings(breadcrumbList, position);
+					getSiblings(path, position);
 				int siblingIndex = getSiblingIndex(siblings);
 				
 				if (canGiveSlots(siblings)) {
@@ -452,10 +1415,13 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 					leafNode.setSlots(leafNode.getSlots() + count);
 					siblings[siblingIndex].setSlots(siblings[siblingIndex].getSlots() - count);
 					if (siblingIndex == 0) {
-						updateLeafParentKey(siblings[0], -1, breadcrumbList, position);
+						updateLeafParentKey(siblings[0], leafNode, -1, path,
+								position);
 					} else {
-						updateLeafParentKey(leafNode, 0, breadcrumbList, position);
+						updateLeafParentKey(leafNode, siblings[1], 0, path,
+								position);
 					}
+					borrows.increment();
 				} else {
 			/*
 			         b. If both Lleft and Lright have only the minimum number of
@@ -475,9 +1441,11 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 						leafNode.copyToRight(siblings[siblingIndex], leafNode.getSlots());
 					}
 					siblings[siblingIndex].setSlots(siblings[siblingIndex].getSlots() + leafNode.getSlots());
-					if(siblings[0] == null) {
+					if (!hasLeafLinks()) {
+						// The leaf only has to leave its parent.
+					} else if(siblings[0] == null) {
 						LeafNode<K, V> previousLeafNode = 
-							getPreviousLeafNode(leafNode, breadcrumbList,
+							getPreviousLeafNode(leafNode, path,
 									position);
 						if (previousLeafNode != null) {
 							previousLeafNode.setNext(leafNode.getNext());
@@ -485,7 +1453,19 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 					} else {
 						((LeafNode<K, V>) siblings[0]).setNext(leafNode.getNext());
 					}
-					removeParentKey(breadcrumbList, position);
+					if (siblingIndex == 0) {
+						merge(siblings[0], leafNode);
+					} else {
+						drop(leafNode, siblings[0]);
+					}
+					int merged = removeParentKey(path, position) + 1;
+					release(leafNode);
+					merges.increment();
+					
+					OperationStatistics statistics = operationStatistics;
+					if (statistics != null) {
+						statistics.getMergeDepths().record(merged);
+					}
 				}
 			/*
 			         c. If the last two children of the root merge together into
@@ -495,7 +1475,9 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 			}
 		} else {
 			if (leafNode.getSlots() == 0) {
-				root = null;
+				setRoot(null);
+				drop(leafNode, null);
+				release(leafNode);
 			}
 		}
 	}
@@ -536,8 +1518,87 @@ public /*abstract*/ class BPlusTree<K extends Comparable<K>, V> /*implements Map
 		
 	}
 	
+	/**
+	 * Starts recording the latencies and cascade depths of the operations in
+	 * <code>statistics</code>, or stops with <code>null</code>. Recording
+	 * allocates nothing; when stopped, an operation only checks that it is.
+	 */
+	public void setOperationStatistics(OperationStatistics statistics) {
+		operationStatistics = statistics;
+	}
+	
+	/**
+	 * @return the statistics the operations are recorded in,
+	 *         <code>null</code> if they are not
+	 */
+	public OperationStatistics getOperationStatistics() {
+		return operationStatistics;
+	}
+	
+	/**
+	 * Walks the tree to measure it. The counters of structure changes are
+	 * kept by every operation and only summed here. The nodes of a
+	 * {@link ConcurrentBPlusTree} are read without latches, so the figures
+	 * of a tree changed meanwhile are approximate.
+	 */
+	public TreeStatistics getStatistics() {
+		Node<K, V> root = getRoot();
+		int height = 0;
+		
+		for (Node<K, V> node = root; node != null; height++) {
+			node = node instanceof InnerNode<?, ?> ?
+					((InnerNode<K, V>) node).getChild(0) : null;
+		}
+		
+		long nodes[] = new long[height];
+		long slots[] = new long[height];
+		long capacity[] = new long[height];
+		double minimumFill[] = new double[height];
+		
+		if (root != null) {
+			measure(root, 0, nodes, slots, capacity, minimumFill);
+		}
+		
+		double averageFill[] = new double[height];
+		
+		for (int i = 0; i < height; i++) {
+			averageFill[i] = (double) slots[i] / capacity[i];
+		}
+		
+		return new TreeStatistics(nodes, height > 0 ? slots[height - 1] : 0,
+				averageFill, minimumFill, leafSplits.get(), innerSplits.get(),
+				borrows.get(), merges.get());
+	}
+	
+	/*
+	 * Adds node and its subtree to the figures of their levels.
+	 */
+	private void measure(Node<K, V> node, int level, long nodes[],
+			long slots[], long capacity[], double minimumFill[]) {
+		double fill = (double) node.getSlots() / node.getMaxSlots();
+		
+		if (nodes[level] == 0 || fill < minimumFill[level]) {
+			minimumFill[level] = fill;
+		}
+		
+		nodes[level]++;
+		slots[level] += node.getSlots();
+		capacity[level] += node.getMaxSlots();
+		
+		if (node instanceof InnerNode<?, ?> && level + 1 < nodes.length) {
+			for (int i = 0; i <= node.getSlots(); i++) {
+				Node<K, V> child = ((InnerNode<K, V>) node).getChild(i);
+				
+				if (child != null) {
+					measure(child, level + 1, nodes, slots, capacity,
+							minimumFill);
+				}
+			}
+		}
+	}
+	
 	/*
-	 * Used in unit testing only
+	 * Used in unit testing and by the specialized trees of this package.
 	 */
 	Node<K, V> getRoot() {
 		return root;
@@ -0,0 +1,710 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * A {@link NavigableMap} over a {@link BPlusTree}. The map holds nothing but
+ * the tree and the bounds of its range: lookups and updates go to the tree,
+ * iterations follow the leaf chain from a single descent, and sub-maps, key
+ * sets and descending maps are views over the same tree.
+ * <p>
+ * Keys and values cannot be <code>null</code> since the tree returns
+ * <code>null</code> for a missing key. {@link #size()} counts the entries in
+ * range. As with a {@link Cursor}, the tree must not be modified while an
+ * iteration is in progress, except through the iterator itself.
+ */
+public class BPlusTreeMap<K extends Comparable<K>, V> extends AbstractMap<K, V>
+		implements NavigableMap<K, V> {
+
+	private final BPlusTree<K, V> tree;
+	private final K low;
+	private final boolean lowInclusive;
+	private final K high;
+	private final boolean highInclusive;
+	private final boolean descending;
+	
+	/**
+	 * @param tree the tree holding the entries of the map
+	 */
+	public BPlusTreeMap(BPlusTree<K, V> tree) {
+		this(tree, null, false, null, false, false);
+	}
+	
+	/*
+	 * The bounds are in the order of the keys whatever the direction of the
+	 * map is, null meaning there is none.
+	 */
+	private BPlusTreeMap(BPlusTree<K, V> tree, K low, boolean lowInclusive,
+			K high, boolean highInclusive, boolean descending) {
+		this.tree = tree;
+		this.low = low;
+		this.lowInclusive = lowInclusive;
+		this.high = high;
+		this.highInclusive = highInclusive;
+		this.descending = descending;
+	}
+	
+	private static void checkKey(Object key) {
+		if (key == null) {
+			throw new NullPointerException("A B+ tree cannot hold null keys.");
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private K toKey(Object key) {
+		checkKey(key);
+		return (K) key;
+	}
+	
+	private boolean tooLow(K key) {
+		if (low != null) {
+			int result = key.compareTo(low);
+			
+			return result < 0 || (result == 0 && !lowInclusive);
+		}
+		
+		return false;
+	}
+	
+	private boolean tooHigh(K key) {
+		if (high != null) {
+			int result = key.compareTo(high);
+			
+			return result > 0 || (result == 0 && !highInclusive);
+		}
+		
+		return false;
+	}
+	
+	private boolean inRange(K key) {
+		return !tooLow(key) && !tooHigh(key);
+	}
+	
+	/*
+	 * Whether key can bound a view of this map. An exclusive bound may be
+	 * equal to an exclusive bound of the map.
+	 */
+	private boolean inRange(K key, boolean inclusive) {
+		if (inclusive) {
+			return inRange(key);
+		}
+		
+		return (low == null || key.compareTo(low) >= 0) &&
+				(high == null || key.compareTo(high) <= 0);
+	}
+	
+	/*
+	 * The navigation methods in the order of the keys.
+	 */
+	private Map.Entry<K, V> absLowest() {
+		Cursor<K, V> cursor = tree.range(low, lowInclusive, high,
+				highInclusive);
+		
+		return cursor.hasNext() ? cursor.next() : null;
+	}
+	
+	private Map.Entry<K, V> absHighest() {
+		Map.Entry<K, V> entry = tree.lowerEntry(high, highInclusive);
+		
+		return entry == null || tooLow(entry.getKey()) ? null : entry;
+	}
+	
+	private Map.Entry<K, V> absCeiling(K key, boolean inclusive) {
+		if (tooLow(key)) {
+			return absLowest();
+		}
+		
+		Cursor<K, V> cursor = tree.range(key, inclusive, high, highInclusive);
+		
+		return cursor.hasNext() ? cursor.next() : null;
+	}
+	
+	private Map.Entry<K, V> absFloor(K key, boolean inclusive) {
+		if (tooHigh(key)) {
+			return absHighest();
+		}
+		
+		Map.Entry<K, V> entry = tree.lowerEntry(key, inclusive);
+		
+		return entry == null || tooLow(entry.getKey()) ? null : entry;
+	}
+	
+	private static <K> K getKey(Map.Entry<K, ?> entry) {
+		return entry == null ? null : entry.getKey();
+	}
+	
+	private static <K> K getExistingKey(Map.Entry<K, ?> entry) {
+		if (entry == null) {
+			throw new NoSuchElementException();
+		}
+		
+		return entry.getKey();
+	}
+	
+	/*
+	 * Creates a view whose bounds, in the order of the keys, replace those
+	 * of this map unless they are null.
+	 */
+	private BPlusTreeMap<K, V> newView(K fromKey, boolean fromInclusive,
+			K toKey, boolean toInclusive) {
+		if (fromKey != null && toKey != null &&
+				fromKey.compareTo(toKey) > 0) {
+			throw new IllegalArgumentException("Lower bound " + fromKey +
+					" is greater than upper bound " + toKey + ".");
+		}
+		
+		if (fromKey != null && !inRange(fromKey, fromInclusive)) {
+			throw new IllegalArgumentException("Bound " + fromKey +
+					" is out of range.");
+		}
+		
+		if (toKey != null && !inRange(toKey, toInclusive)) {
+			throw new IllegalArgumentException("Bound " + toKey +
+					" is out of range.");
+		}
+		
+		return new BPlusTreeMap<K, V>(tree,
+				fromKey == null ? low : fromKey,
+				fromKey == null ? lowInclusive : fromInclusive,
+				toKey == null ? high : toKey,
+				toKey == null ? highInclusive : toInclusive,
+				descending);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#get(java.lang.Object)
+	 */
+	@Override
+	public V get(Object key) {
+		K k = toKey(key);
+		
+		return inRange(k) ? tree.get(k) : null;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public V put(K key, V value) {
+		checkKey(key);
+		
+		if (value == null) {
+			throw new NullPointerException(
+					"A B+ tree cannot hold null values.");
+		}
+		
+		if (!inRange(key)) {
+			throw new IllegalArgumentException("Key " + key +
+					" is out of range.");
+		}
+		
+		return tree.put(key, value);
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#remove(java.lang.Object)
+	 */
+	@Override
+	public V remove(Object key) {
+		K k = toKey(key);
+		
+		return inRange(k) ? tree.remove(k) : null;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#size()
+	 */
+	@Override
+	public int size() {
+		int size = 0;
+		
+		for (Iterator<Map.Entry<K, V>> i = new EntryIterator(); i.hasNext();
+				i.next()) {
+			size++;
+		}
+		
+		return size;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return absLowest() == null;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#entrySet()
+	 */
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return new EntrySet();
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#keySet()
+	 */
+	@Override
+	public NavigableSet<K> keySet() {
+		return new KeySet();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#navigableKeySet()
+	 */
+	public NavigableSet<K> navigableKeySet() {
+		return new KeySet();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#descendingKeySet()
+	 */
+	public NavigableSet<K> descendingKeySet() {
+		return descendingMap().navigableKeySet();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.SortedMap#comparator()
+	 */
+	public Comparator<? super K> comparator() {
+		return descending ? Collections.<K>reverseOrder() : null;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#firstEntry()
+	 */
+	public Map.Entry<K, V> firstEntry() {
+		return descending ? absHighest() : absLowest();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#lastEntry()
+	 */
+	public Map.Entry<K, V> lastEntry() {
+		return descending ? absLowest() : absHighest();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.SortedMap#firstKey()
+	 */
+	public K firstKey() {
+		return getExistingKey(firstEntry());
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.SortedMap#lastKey()
+	 */
+	public K lastKey() {
+		return getExistingKey(lastEntry());
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#pollFirstEntry()
+	 */
+	public Map.Entry<K, V> pollFirstEntry() {
+		Map.Entry<K, V> entry = firstEntry();
+		
+		if (entry != null) {
+			tree.remove(entry.getKey());
+		}
+		
+		return entry;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#pollLastEntry()
+	 */
+	public Map.Entry<K, V> pollLastEntry() {
+		Map.Entry<K, V> entry = lastEntry();
+		
+		if (entry != null) {
+			tree.remove(entry.getKey());
+		}
+		
+		return entry;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#lowerEntry(java.lang.Object)
+	 */
+	public Map.Entry<K, V> lowerEntry(K key) {
+		checkKey(key);
+		return descending ? absCeiling(key, false) : absFloor(key, false);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#floorEntry(java.lang.Object)
+	 */
+	public Map.Entry<K, V> floorEntry(K key) {
+		checkKey(key);
+		return descending ? absCeiling(key, true) : absFloor(key, true);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#ceilingEntry(java.lang.Object)
+	 */
+	public Map.Entry<K, V> ceilingEntry(K key) {
+		checkKey(key);
+		return descending ? absFloor(key, true) : absCeiling(key, true);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#higherEntry(java.lang.Object)
+	 */
+	public Map.Entry<K, V> higherEntry(K key) {
+		checkKey(key);
+		return descending ? absFloor(key, false) : absCeiling(key, false);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#lowerKey(java.lang.Object)
+	 */
+	public K lowerKey(K key) {
+		return getKey(lowerEntry(key));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#floorKey(java.lang.Object)
+	 */
+	public K floorKey(K key) {
+		return getKey(floorEntry(key));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#ceilingKey(java.lang.Object)
+	 */
+	public K ceilingKey(K key) {
+		return getKey(ceilingEntry(key));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#higherKey(java.lang.Object)
+	 */
+	public K higherKey(K key) {
+		return getKey(higherEntry(key));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#descendingMap()
+	 */
+	public BPlusTreeMap<K, V> descendingMap() {
+		return new BPlusTreeMap<K, V>(tree, low, lowInclusive, high,
+				highInclusive, !descending);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#subMap(java.lang.Object, boolean, java.lang.Object, boolean)
+	 */
+	public BPlusTreeMap<K, V> subMap(K fromKey, boolean fromInclusive,
+			K toKey, boolean toInclusive) {
+		checkKey(fromKey);
+		checkKey(toKey);
+		
+		if (descending) {
+			return newView(toKey, toInclusive, fromKey, fromInclusive);
+		} else {
+			return newView(fromKey, fromInclusive, toKey, toInclusive);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#headMap(java.lang.Object, boolean)
+	 */
+	public BPlusTreeMap<K, V> headMap(K toKey, boolean inclusive) {
+		checkKey(toKey);
+		
+		if (descending) {
+			return newView(toKey, inclusive, null, false);
+		} else {
+			return newView(null, false, toKey, inclusive);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#tailMap(java.lang.Object, boolean)
+	 */
+	public BPlusTreeMap<K, V> tailMap(K fromKey, boolean inclusive) {
+		checkKey(fromKey);
+		
+		if (descending) {
+			return newView(null, false, fromKey, inclusive);
+		} else {
+			return newView(fromKey, inclusive, null, false);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#subMap(java.lang.Object, java.lang.Object)
+	 */
+	public SortedMap<K, V> subMap(K fromKey, K toKey) {
+		return subMap(fromKey, true, toKey, false);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#headMap(java.lang.Object)
+	 */
+	public SortedMap<K, V> headMap(K toKey) {
+		return headMap(toKey, false);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.NavigableMap#tailMap(java.lang.Object)
+	 */
+	public SortedMap<K, V> tailMap(K fromKey) {
+		return tailMap(fromKey, true);
+	}
+	
+	/**
+	 * Iterates along the leaf chain in ascending order. In descending order,
+	 * every step looks the next lower key up since the leaves are only
+	 * linked forward.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+		
+		private Cursor<K, V> cursor;
+		private Map.Entry<K, V> next;
+		private Map.Entry<K, V> last;
+		
+		EntryIterator() {
+			if (descending) {
+				next = absHighest();
+			} else {
+				cursor = tree.range(low, lowInclusive, high, highInclusive);
+				next = cursor.hasNext() ? cursor.next() : null;
+			}
+		}
+		
+		public boolean hasNext() {
+			return next != null;
+		}
+		
+		public Map.Entry<K, V> next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			
+			last = next;
+			
+			if (descending) {
+				next = absFloor(last.getKey(), false);
+			} else {
+				next = cursor.hasNext() ? cursor.next() : null;
+			}
+			
+			return last;
+		}
+		
+		public void remove() {
+			if (last == null) {
+				throw new IllegalStateException();
+			}
+			
+			tree.remove(last.getKey());
+			last = null;
+			
+			// The removal may have moved entries between leaves.
+			if (cursor != null && next != null) {
+				cursor = tree.range(next.getKey(), false, high, highInclusive);
+			}
+		}
+	}
+	
+	private class KeyIterator implements Iterator<K> {
+		
+		private final EntryIterator entries = new EntryIterator();
+		
+		public boolean hasNext() {
+			return entries.hasNext();
+		}
+		
+		public K next() {
+			return entries.next().getKey();
+		}
+		
+		public void remove() {
+			entries.remove();
+		}
+	}
+	
+	private class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+		
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new EntryIterator();
+		}
+		
+		@Override
+		public int size() {
+			return BPlusTreeMap.this.size();
+		}
+		
+		@Override
+		public boolean isEmpty() {
+			return BPlusTreeMap.this.isEmpty();
+		}
+		
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Map.Entry<?, ?>)) {
+				return false;
+			}
+			
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+			V value = get(entry.getKey());
+			
+			return value != null && value.equals(entry.getValue());
+		}
+		
+		@Override
+		public boolean remove(Object o) {
+			if (contains(o)) {
+				BPlusTreeMap.this.remove(((Map.Entry<?, ?>) o).getKey());
+				return true;
+			}
+			
+			return false;
+		}
+	}
+	
+	private class KeySet extends AbstractSet<K> implements NavigableSet<K> {
+		
+		@Override
+		public Iterator<K> iterator() {
+			return new KeyIterator();
+		}
+		
+		@Override
+		public int size() {
+			return BPlusTreeMap.this.size();
+		}
+		
+		@Override
+		public boolean isEmpty() {
+			return BPlusTreeMap.this.isEmpty();
+		}
+		
+		@Override
+		public boolean contains(Object o) {
+			return containsKey(o);
+		}
+		
+		@Override
+		public boolean remove(Object o) {
+			return BPlusTreeMap.this.remove(o) != null;
+		}
+		
+		@Override
+		public void clear() {
+			BPlusTreeMap.this.clear();
+		}
+		
+		public Comparator<? super K> comparator() {
+			return BPlusTreeMap.this.comparator();
+		}
+		
+		public K first() {
+			return firstKey();
+		}
+		
+		public K last() {
+			return lastKey();
+		}
+		
+		public K lower(K e) {
+			return lowerKey(e);
+		}
+		
+		public K floor(K e) {
+			return floorKey(e);
+		}
+		
+		public K ceiling(K e) {
+			return ceilingKey(e);
+		}
+		
+		public K higher(K e) {
+			return higherKey(e);
+		}
+		
+		public K pollFirst() {
+			return getKey(pollFirstEntry());
+		}
+		
+		public K pollLast() {
+			return getKey(pollLastEntry());
+		}
+		
+		public NavigableSet<K> descendingSet() {
+			return descendingKeySet();
+		}
+		
+		public Iterator<K> descendingIterator() {
+			return descendingKeySet().iterator();
+		}
+		
+		public NavigableSet<K> subSet(K fromElement, boolean fromInclusive,
+				K toElement, boolean toInclusive) {
+			return subMap(fromElement, fromInclusive, toElement,
+					toInclusive).navigableKeySet();
+		}
+		
+		public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+			return headMap(toElement, inclusive).navigableKeySet();
+		}
+		
+		public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+			return tailMap(fromElement, inclusive).navigableKeySet();
+		}
+		
+		public SortedSet<K> subSet(K fromElement, K toElement) {
+			return subSet(fromElement, true, toElement, false);
+		}
+		
+		public SortedSet<K> headSet(K toElement) {
+			return headSet(toElement, false);
+		}
+		
+		public SortedSet<K> tailSet(K fromElement) {
+			return tailSet(fromElement, true);
+		}
+	}
+}
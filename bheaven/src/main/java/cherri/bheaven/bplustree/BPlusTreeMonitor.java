@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the {@link TreeStatistics} of a tree over JMX:
+ * <pre>
+ * ManagementFactory.getPlatformMBeanServer().registerMBean(
+ *         new BPlusTreeMonitor(tree),
+ *         new ObjectName("cherri.bheaven:type=BPlusTree,name=index"));
+ * </pre>
+ * Measuring walks the whole tree, so the statistics are kept for a while
+ * and shared by the attributes read meanwhile.
+ */
+public class BPlusTreeMonitor implements BPlusTreeMXBean {
+	
+	private final BPlusTree<?, ?> tree;
+	private final long maxAge;
+	private TreeStatistics statistics;
+	private long measured;
+	
+	/**
+	 * Measures the tree at most once a second.
+	 * 
+	 * @param tree the tree to publish
+	 */
+	public BPlusTreeMonitor(BPlusTree<?, ?> tree) {
+		this(tree, 1, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * @param tree the tree to publish
+	 * @param maxAge how long statistics are kept before the tree is measured
+	 *        again
+	 * @param unit the unit of <code>maxAge</code>
+	 */
+	public BPlusTreeMonitor(BPlusTree<?, ?> tree, long maxAge, TimeUnit unit) {
+		this.tree = tree;
+		this.maxAge = unit.toNanos(maxAge);
+	}
+	
+	/**
+	 * @return the statistics of the tree, measured again if they are too old
+	 */
+	public synchronized TreeStatistics getStatistics() {
+		long now = System.nanoTime();
+		
+		if (statistics == null || now - measured >= maxAge) {
+			statistics = tree.getStatistics();
+			measured = now;
+		}
+		
+		return statistics;
+	}
+
+	public int getHeight() {
+		return getStatistics().getHeight();
+	}
+
+	public long getInnerNodes() {
+		return getStatistics().getInnerNodes();
+	}
+
+	public long getLeafNodes() {
+		return getStatistics().getLeafNodes();
+	}
+
+	public long getEntries() {
+		return getStatistics().getEntries();
+	}
+
+	public double[] getAverageFill() {
+		TreeStatistics statistics = getStatistics();
+		double fill[] = new double[statistics.getHeight()];
+		
+		for (int i = 0; i < fill.length; i++) {
+			fill[i] = statistics.getAverageFill(i);
+		}
+		
+		return fill;
+	}
+
+	public double[] getMinimumFill() {
+		TreeStatistics statistics = getStatistics();
+		double fill[] = new double[statistics.getHeight()];
+		
+		for (int i = 0; i < fill.length; i++) {
+			fill[i] = statistics.getMinimumFill(i);
+		}
+		
+		return fill;
+	}
+
+	public long getLeafSplits() {
+		return getStatistics().getLeafSplits();
+	}
+
+	public long getInnerSplits() {
+		return getStatistics().getInnerSplits();
+	}
+
+	public long getBorrows() {
+		return getStatistics().getBorrows();
+	}
+
+	public long getMerges() {
+		return getStatistics().getMerges();
+	}
+
+}
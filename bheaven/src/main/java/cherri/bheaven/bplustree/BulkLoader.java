@@ -0,0 +1,400 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Builds a B+ tree bottom-up from entries sorted by key. The leaves are
+ * filled in a single pass over the entries and linked together, then every
+ * level of inner nodes is built from the level below it. Nothing is ever
+ * split and the tree is never descended.
+ * <p>
+ * {@link #load(List, ExecutorService, int)} does the same on several
+ * threads, with a factory that can give nodes to several threads at once.
+ */
+public class BulkLoader<K extends Comparable<K>, V> {
+
+	private static final int MIN_PARTITION_SIZE = 1024;
+	private static final int MIN_PARENTS_PER_TASK = 64;
+	
+	private final NodeFactory<K, V> factory;
+	private final double fillFactor;
+	
+	/**
+	 * Creates a loader that fills the nodes completely.
+	 * 
+	 * @param factory the factory providing the nodes of the tree
+	 */
+	public BulkLoader(NodeFactory<K, V> factory) {
+		this(factory, 1.0);
+	}
+
+	/**
+	 * @param factory the factory providing the nodes of the tree
+	 * @param fillFactor the ratio of the slots of each node to fill, between
+	 *        0 (exclusive) and 1 (inclusive). Nodes are never filled below
+	 *        the minimum allowed by the tree, whatever the fill factor is.
+	 *        Leaving room in the nodes makes the following insertions
+	 *        cheaper since they will not split right away.
+	 */
+	public BulkLoader(NodeFactory<K, V> factory, double fillFactor) {
+		if (fillFactor <= 0 || fillFactor > 1) {
+			throw new IllegalArgumentException(
+					"Fill factor must be in ]0, 1]: " + fillFactor);
+		}
+		
+		this.factory = factory;
+		this.fillFactor = fillFactor;
+	}
+	
+	/**
+	 * @param entries the entries to load, sorted by key in non-decreasing
+	 *        order
+	 * @return a new tree holding the entries
+	 * @throws IllegalArgumentException if the entries are not sorted
+	 */
+	public BPlusTree<K, V> load(Iterator<? extends Map.Entry<K, V>> entries) {
+		return loadInnerNodes(loadLeafNodes(entries), null, 1);
+	}
+	
+	/**
+	 * Builds the tree on the threads of <code>executor</code>. The entries
+	 * are cut in contiguous partitions whose leaves are loaded by separate
+	 * tasks, then linked across the partitions; every level of inner nodes
+	 * is then built in contiguous ranges of parents, also by separate tasks.
+	 * 
+	 * @param entries the entries to load, sorted by key in non-decreasing
+	 *        order, read by several threads at once; the list should give
+	 *        fast random access
+	 * @param executor runs the tasks, a ForkJoinPool for example
+	 * @param partitions the maximum number of partitions, usually the number
+	 *        of threads of <code>executor</code>. Partitions hold at least
+	 *        1024 entries.
+	 * @return a new tree holding the entries
+	 * @throws IllegalArgumentException if the entries are not sorted
+	 */
+	public BPlusTree<K, V> load(List<? extends Map.Entry<K, V>> entries,
+			ExecutorService executor, int partitions) {
+		if (partitions < 1) {
+			throw new IllegalArgumentException(
+					"There must be at least one partition: " + partitions);
+		}
+		
+		int size = entries.size();
+		int count = Math.max(1, Math.min(partitions,
+				size / MIN_PARTITION_SIZE));
+		List<Callable<List<Node<K, V>>>> tasks =
+			new ArrayList<Callable<List<Node<K, V>>>>(count);
+		
+		for (int i = 0; i < count; i++) {
+			final List<? extends Map.Entry<K, V>> partition = entries.subList(
+					(int) ((long) size * i / count),
+					(int) ((long) size * (i + 1) / count));
+			
+			tasks.add(new Callable<List<Node<K, V>>>() {
+				public List<Node<K, V>> call() {
+					return loadLeafNodes(partition.iterator());
+				}
+			});
+		}
+		
+		List<Node<K, V>> leafNodes = new ArrayList<Node<K, V>>();
+		
+		for (List<Node<K, V>> partition : invokeAll(executor, tasks)) {
+			appendLeafNodes(leafNodes, partition);
+		}
+		
+		return loadInnerNodes(leafNodes, executor, count);
+	}
+	
+	/*
+	 * Builds the levels of inner nodes above the leaves, each one with up to
+	 * the given number of tasks when there is an executor.
+	 */
+	private BPlusTree<K, V> loadInnerNodes(List<Node<K, V>> leafNodes,
+			ExecutorService executor, int tasks) {
+		List<Node<K, V>> nodes = leafNodes;
+		List<K> lastKeys = new ArrayList<K>(nodes.size());
+		
+		for (Node<K, V> node : nodes) {
+			lastKeys.add(node.getKey(node.getSlots() - 1));
+		}
+		
+		while (nodes.size() > 1) {
+			List<Node<K, V>> parents = new ArrayList<Node<K, V>>();
+			List<K> parentLastKeys = new ArrayList<K>();
+			
+			loadInnerNodes(nodes, lastKeys, parents, parentLastKeys, executor,
+					tasks);
+			
+			nodes = parents;
+			lastKeys = parentLastKeys;
+		}
+		
+		return new BPlusTree<K, V>(factory,
+				nodes.isEmpty() ? null : nodes.get(0));
+	}
+	
+	/*
+	 * Runs the tasks and gives their results in order, throwing again what
+	 * a task threw.
+	 */
+	private static <T> List<T> invokeAll(ExecutorService executor,
+			List<? extends Callable<T>> tasks) {
+		List<T> results = new ArrayList<T>(tasks.size());
+		
+		try {
+			for (Future<T> future : executor.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			
+			throw new IllegalStateException("Cannot load the tree.",
+					e.getCause());
+		}
+		
+		return results;
+	}
+	
+	private int getFill(int maxSlots, int minSlots) {
+		int fill = (int) Math.round(maxSlots * fillFactor);
+		
+		return Math.min(maxSlots, Math.max(minSlots, fill));
+	}
+
+	private List<Node<K, V>> loadLeafNodes(
+			Iterator<? extends Map.Entry<K, V>> entries) {
+		List<Node<K, V>> leafNodes = new ArrayList<Node<K, V>>();
+		LeafNode<K, V> leafNode = null;
+		K previousKey = null;
+		int fill = 0;
+		
+		while (entries.hasNext()) {
+			Map.Entry<K, V> entry = entries.next();
+			K key = entry.getKey();
+			
+			if (previousKey != null && previousKey.compareTo(key) > 0) {
+				throw new IllegalArgumentException(
+						"Entries are not sorted: " + key + " follows " +
+						previousKey + ".");
+			}
+			
+			if (leafNode == null || leafNode.getSlots() == fill) {
+				LeafNode<K, V> newLeafNode = factory.getLeafNode();
+				
+				if (leafNode == null) {
+					fill = getFill(newLeafNode.getMaxSlots(),
+							(newLeafNode.getMaxSlots() + 1) / 2);
+				} else {
+					leafNode.setNext(newLeafNode);
+				}
+				
+				leafNode = newLeafNode;
+				leafNodes.add(leafNode);
+			}
+			
+			int slots = leafNode.getSlots();
+			leafNode.setKey(key, slots);
+			leafNode.setValue(entry.getValue(), slots);
+			leafNode.setSlots(slots + 1);
+			
+			previousKey = key;
+		}
+		
+		if (leafNodes.size() > 1 && !leafNode.hasEnoughSlots()) {
+			balanceLastLeafNode(leafNodes);
+		}
+		
+		return leafNodes;
+	}
+
+	/*
+	 * Links the leaves of a partition after the ones of the previous
+	 * partitions. A partition of a single leaf may leave it with too few
+	 * entries, it is then balanced with the leaf before it.
+	 */
+	private void appendLeafNodes(List<Node<K, V>> leafNodes,
+			List<Node<K, V>> partition) {
+		if (partition.isEmpty()) {
+			return;
+		}
+		
+		if (!leafNodes.isEmpty()) {
+			Node<K, V> last = leafNodes.get(leafNodes.size() - 1);
+			Node<K, V> first = partition.get(0);
+			K lastKey = last.getKey(last.getSlots() - 1);
+			K firstKey = first.getKey(0);
+			
+			if (lastKey.compareTo(firstKey) > 0) {
+				throw new IllegalArgumentException(
+						"Entries are not sorted: " + firstKey + " follows " +
+						lastKey + ".");
+			}
+			
+			last.setNext(first);
+		}
+		
+		leafNodes.addAll(partition);
+		
+		if (leafNodes.size() > 1 &&
+				!leafNodes.get(leafNodes.size() - 1).hasEnoughSlots()) {
+			balanceLastLeafNode(leafNodes);
+		}
+	}
+
+	/*
+	 * The last leaf gets whatever is left of the entries. Either merge it
+	 * into the previous one or move enough entries from the previous one to
+	 * make it at least half full, the same way remove does.
+	 */
+	private void balanceLastLeafNode(List<Node<K, V>> leafNodes) {
+		LeafNode<K, V> last =
+			(LeafNode<K, V>) leafNodes.get(leafNodes.size() - 1);
+		LeafNode<K, V> previous =
+			(LeafNode<K, V>) leafNodes.get(leafNodes.size() - 2);
+		
+		if (previous.getSlots() + last.getSlots() <= previous.getMaxSlots()) {
+			last.copyToLeft(previous, last.getSlots());
+			previous.setSlots(previous.getSlots() + last.getSlots());
+			previous.setNext(null);
+			leafNodes.remove(leafNodes.size() - 1);
+		} else {
+			int count = (previous.getSlots() - last.getSlots()) / 2;
+			last.rightShift(count);
+			previous.copyToRight(last, count);
+			last.setSlots(last.getSlots() + count);
+			previous.setSlots(previous.getSlots() - count);
+		}
+	}
+
+	/*
+	 * Groups the children in as few parents as the fill factor allows, every
+	 * parent getting about the same number of children. The key of a parent
+	 * separating two children is the last key of the left child subtree.
+	 */
+	private void loadInnerNodes(List<Node<K, V>> children, List<K> lastKeys,
+			List<Node<K, V>> parents, List<K> parentLastKeys,
+			ExecutorService executor, int tasks) {
+		InnerNode<K, V> parent = factory.getInnerNode();
+		int maxChildren = parent.getMaxSlots() + 1;
+		int minChildren = (maxChildren + 1) / 2;
+		int fill = Math.max(2, getFill(maxChildren, minChildren));
+		int count = (children.size() + fill - 1) / fill;
+		
+		while (count > 1 && children.size() / count < minChildren) {
+			count--;
+		}
+		
+		int size = children.size() / count;
+		int remainder = children.size() % count;
+		int taskCount = executor == null ? 1 :
+			Math.max(1, Math.min(tasks, count / MIN_PARENTS_PER_TASK));
+		List<Parents> ranges = new ArrayList<Parents>(taskCount);
+		
+		for (int i = 0; i < taskCount; i++) {
+			ranges.add(new Parents(children, lastKeys, i == 0 ? parent : null,
+					(int) ((long) count * i / taskCount),
+					(int) ((long) count * (i + 1) / taskCount), size,
+					remainder));
+		}
+		
+		if (taskCount == 1) {
+			ranges.get(0).call();
+		} else {
+			invokeAll(executor, ranges);
+		}
+		
+		for (Parents range : ranges) {
+			parents.addAll(range.parents);
+			parentLastKeys.addAll(range.parentLastKeys);
+		}
+	}
+	
+	/*
+	 * Builds the parents of a contiguous range. Parent i gets size children,
+	 * one more if i is below remainder.
+	 */
+	private class Parents implements Callable<Parents> {
+		
+		private final List<Node<K, V>> children;
+		private final List<K> lastKeys;
+		private final InnerNode<K, V> first;
+		private final int from;
+		private final int to;
+		private final int size;
+		private final int remainder;
+		private final List<Node<K, V>> parents;
+		private final List<K> parentLastKeys;
+		
+		Parents(List<Node<K, V>> children, List<K> lastKeys,
+				InnerNode<K, V> first, int from, int to, int size,
+				int remainder) {
+			this.children = children;
+			this.lastKeys = lastKeys;
+			this.first = first;
+			this.from = from;
+			this.to = to;
+			this.size = size;
+			this.remainder = remainder;
+			parents = new ArrayList<Node<K, V>>(to - from);
+			parentLastKeys = new ArrayList<K>(to - from);
+		}
+		
+		public Parents call() {
+			int child = from * size + Math.min(from, remainder);
+			
+			for (int i = from; i < to; i++) {
+				InnerNode<K, V> parent = i == from && first != null ? first :
+					factory.getInnerNode();
+				int groupSize = size + (i < remainder ? 1 : 0);
+				
+				for (int j = 0; j < groupSize; j++, child++) {
+					parent.setChild(children.get(child), j);
+					
+					if (j < groupSize - 1) {
+						parent.setKey(lastKeys.get(child), j);
+					}
+				}
+				
+				parent.setSlots(groupSize - 1);
+				parents.add(parent);
+				parentLastKeys.add(lastKeys.get(child - 1));
+			}
+			
+			return this;
+		}
+	}
+}
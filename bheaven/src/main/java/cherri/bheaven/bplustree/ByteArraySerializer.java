@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores byte arrays preceded by their length on 2 bytes. The slot is as
+ * large as the longest array allowed.
+ */
+public class ByteArraySerializer implements VariableSerializer<byte[]> {
+
+	private final int maxBytes;
+	
+	/**
+	 * @param maxBytes the maximum length of an array, at most 65535
+	 */
+	public ByteArraySerializer(int maxBytes) {
+		if (maxBytes < 0 || maxBytes > 0xFFFF) {
+			throw new IllegalArgumentException(
+					"Maximum length must be in [0, 65535]: " + maxBytes);
+		}
+		
+		this.maxBytes = maxBytes;
+	}
+
+	public int getSize() {
+		return 2 + maxBytes;
+	}
+
+	public int getSize(byte[] object) {
+		return 2 + object.length;
+	}
+
+	public int getSize(ByteBuffer buffer, int offset) {
+		return 2 + (buffer.getShort(offset) & 0xFFFF);
+	}
+
+	public void write(ByteBuffer buffer, int offset, byte[] object) {
+		if (object.length > maxBytes) {
+			throw new IllegalArgumentException("Array is longer than " +
+					maxBytes + " bytes: " + object.length);
+		}
+		
+		buffer.putShort(offset, (short) object.length);
+		
+		for (int i = 0; i < object.length; i++) {
+			buffer.put(offset + 2 + i, object[i]);
+		}
+	}
+
+	public byte[] read(ByteBuffer buffer, int offset) {
+		byte bytes[] = new byte[buffer.getShort(offset) & 0xFFFF];
+		
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + 2 + i);
+		}
+		
+		return bytes;
+	}
+
+}
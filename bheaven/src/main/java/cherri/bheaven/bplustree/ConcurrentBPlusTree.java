@@ -0,0 +1,463 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * A {@link BPlusTree} that can be shared between threads. Every node has a
+ * {@link Latch} and writers couple them down the tree: a node is latched
+ * before the latch of its parent is released.
+ * <p>
+ * Writers take exclusive latches and release the latches of the ancestors
+ * as soon as a node is known to be safe, that is when the change cannot
+ * climb past it: a node that is not full for an insert, a node that can give
+ * a slot for a delete. A delete also keeps the parent of the safe node,
+ * unless the node is its first child: merging the first leaf of a parent has
+ * to find the previous leaf through the ancestors. The root pointer has a
+ * latch of its own, taken first, so a writer changing the root keeps it.
+ * Ancestors released this way were not changed and keep their version.
+ * <p>
+ * {@link #get(Comparable)} takes no latch. As in a Lehman and Yao B-link
+ * tree, every node has a high key, the upper bound of its keys, and a link
+ * to its right sibling. A reader reads the version of a node before leaving
+ * its parent and validates it after reading the node. If the version
+ * changed, the node was split or lost keys to a sibling: when the key is
+ * above the high key, it was moved right by a split and the reader follows
+ * the right link, otherwise it starts over from the root, as it does when
+ * it reaches a node removed by a merge. The node is read with plain reads,
+ * so the reader writes a volatile field of its own before validating, which
+ * keeps them before the read of the version. An exception thrown while
+ * reading a node is taken for a torn read if the node fails its validation,
+ * and thrown again otherwise.
+ * <p>
+ * The cursors returned by
+ * {@link #range(Comparable, boolean, Comparable, boolean)} and
+ * {@link #tailScan(Comparable)}, and the spliterators, are positioned under
+ * shared latches, but they read the leaf chain without them: they are only
+ * consistent while no writer changes the tree, and may otherwise miss keys,
+ * return a key twice or fail.
+ * <p>
+ * The factory must be a {@link ConcurrentNodeFactory}: only
+ * {@link ConcurrentNode}s have a latch and a high key.
+ */
+public class ConcurrentBPlusTree<K extends Comparable<K>, V> extends
+		BPlusTree<K, V> {
+	
+	private static final Object RESTART = new Object();
+	
+	private final Latch rootLatch;
+	private final ThreadLocal<Latches> latches;
+	private final ThreadLocal<Path<K, V>> paths;
+	
+	/**
+	 * Latches held by a thread, in the order they were taken.
+	 */
+	private static class Latches {
+		
+		private Latch latches[] = new Latch[16];
+		private boolean exclusive[] = new boolean[16];
+		private int count;
+		
+		/* Written by optimistic readers before they validate a version. */
+		volatile int fence;
+		
+		void acquire(Latch latch, boolean exclusive) {
+			latch.acquire(exclusive);
+			
+			if (count == latches.length) {
+				Latch newLatches[] = new Latch[count * 2];
+				boolean newExclusive[] = new boolean[count * 2];
+				System.arraycopy(latches, 0, newLatches, 0, count);
+				System.arraycopy(this.exclusive, 0, newExclusive, 0, count);
+				latches = newLatches;
+				this.exclusive = newExclusive;
+			}
+			
+			latches[count] = latch;
+			this.exclusive[count] = exclusive;
+			count++;
+		}
+		
+		boolean isHeld(Latch latch) {
+			for (int i = 0; i < count; i++) {
+				if (latches[i] == latch) {
+					return true;
+				}
+			}
+			
+			return false;
+		}
+		
+		/*
+		 * Releases every latch but the last ones.
+		 */
+		void releaseAllBut(int kept, boolean changed) {
+			int released = count - kept;
+			
+			if (released <= 0) {
+				return;
+			}
+			
+			for (int i = 0; i < released; i++) {
+				if (!exclusive[i]) {
+					latches[i].releaseShared();
+				} else if (changed) {
+					latches[i].releaseExclusive();
+				} else {
+					latches[i].releaseExclusiveUnchanged();
+				}
+			}
+			
+			for (int i = 0; i < kept; i++) {
+				latches[i] = latches[released + i];
+				exclusive[i] = exclusive[released + i];
+			}
+			
+			for (int i = kept; i < count; i++) {
+				latches[i] = null;
+			}
+			
+			count = kept;
+		}
+	}
+
+	/**
+	 * @param factory the factory of the nodes
+	 * @throws IllegalArgumentException if the factory is not a
+	 *         {@link ConcurrentNodeFactory}
+	 */
+	public ConcurrentBPlusTree(NodeFactory<K, V> factory) {
+		this(factory, null);
+	}
+	
+	/**
+	 * @param factory the factory of the nodes
+	 * @param separator chooses the keys the inner nodes keep between two
+	 *        leaves, <code>null</code> to keep the last key of the left leaf
+	 * @throws IllegalArgumentException if the factory is not a
+	 *         {@link ConcurrentNodeFactory}
+	 */
+	public ConcurrentBPlusTree(NodeFactory<K, V> factory,
+			Separator<K> separator) {
+		super(factory, separator);
+		
+		if (!(factory instanceof ConcurrentNodeFactory<?, ?>)) {
+			throw new IllegalArgumentException(
+					"The nodes of the factory have no latch.");
+		}
+		
+		rootLatch = new Latch();
+		latches = new ThreadLocal<Latches>() {
+			@Override
+			protected Latches initialValue() {
+				return new Latches();
+			}
+		};
+		paths = new ThreadLocal<Path<K, V>>() {
+			@Override
+			protected Path<K, V> initialValue() {
+				return new Path<K, V>();
+			}
+		};
+	}
+	
+	/*
+	 * The nodes of the factory are concurrent ones.
+	 */
+	private static <K extends Comparable<K>, V> ConcurrentNode<K, V> concurrent(
+			Node<K, V> node) {
+		return (ConcurrentNode<K, V>) node;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#getPath()
+	 */
+	@Override
+	Path<K, V> getPath() {
+		return paths.get();
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#canResumeDescent()
+	 */
+	@Override
+	boolean canResumeDescent() {
+		return false;
+	}
+	
+	/*
+	 * The ancestors of the leaf may have been released, but the leaf knows
+	 * its high key.
+	 */
+	@Override
+	K getHighKey(Path<K, V> path) {
+		return concurrent(path.getNode(path.size() - 1)).getHighKey();
+	}
+	
+	/*
+	 * Walking the leaves of a batch would latch a leaf while holding the one
+	 * on its left, the opposite of what a remove does, so each key is looked
+	 * up on its own without latches instead.
+	 */
+	@Override
+	public void getAll(K keys[], V values[]) {
+		checkBatch(keys, values);
+		
+		for (int i = 0; i < keys.length; i++) {
+			values[i] = read(keys[i]);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#enterRoot(int)
+	 */
+	@Override
+	void enterRoot(int operation) {
+		latches.get().acquire(rootLatch, operation != READ);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#enter(cherri.bheaven.bplustree.Node, int, int)
+	 */
+	@Override
+	void enter(Node<K, V> node, int index, int operation) {
+		Latches held = latches.get();
+		
+		held.acquire(concurrent(node).getLatch(), operation != READ);
+		
+		if (operation == READ) {
+			held.releaseAllBut(1, false);
+		} else if (operation == INSERT) {
+			if (!node.isFull()) {
+				held.releaseAllBut(1, false);
+			}
+		} else if (index < 0) {
+			// The root is safe if it keeps a key, so it is not replaced.
+			if (node.getSlots() > 1) {
+				held.releaseAllBut(1, false);
+			}
+		} else if (index > 0 && node.canGiveSlots()) {
+			held.releaseAllBut(2, false);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#enterSibling(cherri.bheaven.bplustree.Node)
+	 */
+	@Override
+	void enterSibling(Node<K, V> node) {
+		Latches held = latches.get();
+		
+		Latch latch = concurrent(node).getLatch();
+		
+		if (!held.isHeld(latch)) {
+			held.acquire(latch, true);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#exit()
+	 */
+	@Override
+	void exit() {
+		latches.get().releaseAllBut(0, true);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#split(cherri.bheaven.bplustree.Node, cherri.bheaven.bplustree.Node, java.lang.Comparable)
+	 */
+	@Override
+	void split(Node<K, V> node, Node<K, V> newNode, K key) {
+		concurrent(newNode).setHighKey(concurrent(node).getHighKey());
+		concurrent(node).setHighKey(key);
+		
+		// Leaves link their new sibling themselves.
+		if (newNode instanceof InnerNode<?, ?>) {
+			newNode.setNext(node.getNext());
+			node.setNext(newNode);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#separate(cherri.bheaven.bplustree.Node, java.lang.Comparable)
+	 */
+	@Override
+	void separate(Node<K, V> node, K key) {
+		concurrent(node).setHighKey(key);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#merge(cherri.bheaven.bplustree.Node, cherri.bheaven.bplustree.Node)
+	 */
+	@Override
+	void merge(Node<K, V> left, Node<K, V> right) {
+		concurrent(left).setHighKey(concurrent(right).getHighKey());
+		
+		if (left instanceof InnerNode<?, ?>) {
+			left.setNext(right.getNext());
+		}
+		
+		drop(right, left);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#drop(cherri.bheaven.bplustree.Node, cherri.bheaven.bplustree.Node)
+	 */
+	@Override
+	void drop(Node<K, V> node, Node<K, V> previous) {
+		/*
+		 * Leaves are unlinked by the tree. The link to an inner node without
+		 * left sibling under its parent is left as is: readers only follow
+		 * it while a writer is in the way and start over on reaching the
+		 * obsolete node.
+		 */
+		if (previous instanceof InnerNode<?, ?> && previous.getNext() == node) {
+			previous.setNext(node.getNext());
+		}
+		
+		concurrent(node).getLatch().markObsolete();
+	}
+	
+	/*
+	 * Readers without latches may still be on the node, which therefore
+	 * cannot be given again.
+	 */
+	@Override
+	void release(Node<K, V> node) {
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#read(java.lang.Comparable)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	V read(K key) {
+		Latches held = latches.get();
+		
+		while (true) {
+			int rootVersion = rootLatch.awaitVersion();
+			ConcurrentNode<K, V> node = concurrent(getRoot());
+			
+			if (node == null) {
+				if (validate(held, rootLatch, rootVersion)) {
+					return null;
+				}
+				
+				continue;
+			}
+			
+			int version = node.getLatch().awaitVersion();
+			
+			if (validate(held, rootLatch, rootVersion)) {
+				Object value = lookup(held, node, version, key);
+				
+				if (value != RESTART) {
+					return (V) value;
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Validates a version after reading the node without its latch. The
+	 * reads of the node are plain ones, which the volatile read of the
+	 * version alone does not keep before it, so the thread first writes a
+	 * volatile field of its own.
+	 */
+	private static boolean validate(Latches held, Latch latch, int version) {
+		held.fence = 0;
+		return latch.validate(version);
+	}
+	
+	/*
+	 * Goes down from node, whose version was read while its parent was
+	 * valid. Returns the value found or RESTART to start over from the root.
+	 */
+	private Object lookup(Latches held, ConcurrentNode<K, V> node,
+			int version, K key) {
+		while (true) {
+			Latch latch = node.getLatch();
+			int current = latch.awaitVersion();
+			
+			if (latch.isObsolete()) {
+				return RESTART;
+			}
+			
+			try {
+				K highKey = node.getHighKey();
+				
+				if (highKey != null && key.compareTo(highKey) > 0) {
+					ConcurrentNode<K, V> next = concurrent(node.getNext());
+					
+					if (next == null || !validate(held, latch, current)) {
+						return RESTART;
+					}
+					
+					version = next.getLatch().awaitVersion();
+					
+					if (!validate(held, latch, current)) {
+						return RESTART;
+					}
+					
+					node = next;
+					continue;
+				}
+				
+				// Changed since the parent was left: keys may have moved left.
+				if (current != version) {
+					return RESTART;
+				}
+				
+				int index = node.getKeyIndex(key);
+				
+				if (node instanceof LeafNode<?, ?>) {
+					V value = index >= 0 ?
+							((LeafNode<K, V>) node).getValue(index) : null;
+					
+					return validate(held, latch, current) ? value : RESTART;
+				}
+				
+				if (index < 0) {
+					index = -index - 1;
+				}
+				
+				ConcurrentNode<K, V> child =
+						concurrent(((InnerNode<K, V>) node).getChild(index));
+				version = child.getLatch().awaitVersion();
+				
+				if (!validate(held, latch, current)) {
+					return RESTART;
+				}
+				
+				node = child;
+			} catch (RuntimeException e) {
+				/*
+				 * A node read while a writer changed it may be inconsistent
+				 * and fails its validation. The exception of a node that
+				 * did not change is a real one.
+				 */
+				if (!validate(held, latch, current)) {
+					return RESTART;
+				}
+				
+				throw e;
+			}
+		}
+	}
+}
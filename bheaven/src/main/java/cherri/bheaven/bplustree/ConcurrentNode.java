@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * A node that can be shared between threads by a
+ * {@link ConcurrentBPlusTree}.
+ */
+public interface ConcurrentNode<K extends Comparable<K>, V> extends
+		Node<K, V> {
+
+	/**
+	 * @return the upper bound of the keys of the node, <code>null</code> for
+	 *         the last node of a level
+	 */
+	K getHighKey();
+	
+	void setHighKey(K highKey);
+	
+	/**
+	 * @return the latch guarding the node
+	 */
+	Latch getLatch();
+}
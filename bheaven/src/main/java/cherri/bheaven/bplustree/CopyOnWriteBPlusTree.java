@@ -0,0 +1,211 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A {@link BPlusTree} whose versions can be kept as snapshots. A write never
+ * changes a node a snapshot shares: it copies the nodes it changes, from the
+ * root down to the leaf, and links the copies in place of the originals, so
+ * that a snapshot is only a reference to the root of the moment.
+ * {@link #snapshot()} takes constant time, and the memory a snapshot keeps
+ * is that of the nodes changed since it was taken.
+ * <p>
+ * A node created since the last snapshot belongs to the tree alone and is
+ * changed in place like in any {@link BPlusTree}. A node shared with a
+ * snapshot is never given back to a {@link RecyclingNodeFactory}, since the
+ * tree cannot tell when the snapshot is no longer read.
+ * <p>
+ * A leaf shared with a snapshot cannot be linked to the copy of the leaf
+ * next to it, so the leaves of the tree and of its snapshots are not linked
+ * and cursors find the next leaf from its parent. The writes and the
+ * snapshots of the tree must not run concurrently; a snapshot, which cannot
+ * be modified, may be read by any number of threads without coordination.
+ * The nodes of a {@link PersistentNodeFactory}, which are changed where they
+ * are stored, cannot be used.
+ */
+public class CopyOnWriteBPlusTree<K extends Comparable<K>, V> extends
+		BPlusTree<K, V> {
+	
+	private final OwningNodeFactory<K, V> factory;
+	
+	/*
+	 * Remembers the nodes it created since the last snapshot, which the tree
+	 * may change in place.
+	 */
+	private static class OwningNodeFactory<K extends Comparable<K>, V>
+			implements NodeFactory<K, V> {
+		
+		private final NodeFactory<K, V> factory;
+		private Set<Node<K, V>> owned = new HashSet<Node<K, V>>();
+		
+		OwningNodeFactory(NodeFactory<K, V> factory) {
+			if (factory instanceof PersistentNodeFactory<?, ?>) {
+				throw new IllegalArgumentException(
+						"A copy-on-write tree cannot use a persistent factory.");
+			}
+			
+			this.factory = factory;
+		}
+		
+		public InnerNode<K, V> getInnerNode() {
+			InnerNode<K, V> node = factory.getInnerNode();
+			owned.add(node);
+			return node;
+		}
+		
+		public LeafNode<K, V> getLeafNode() {
+			LeafNode<K, V> node = factory.getLeafNode();
+			owned.add(node);
+			return node;
+		}
+	}
+	
+	/*
+	 * A tree sharing the nodes of a version of the copy-on-write tree. Every
+	 * write fails when it enters the root.
+	 */
+	private static class Snapshot<K extends Comparable<K>, V> extends
+			BPlusTree<K, V> {
+		
+		Snapshot(NodeFactory<K, V> factory, Node<K, V> root) {
+			super(factory, root);
+		}
+		
+		@Override
+		void enterRoot(int operation) {
+			if (operation != READ) {
+				throw new UnsupportedOperationException(
+						"A snapshot cannot be modified.");
+			}
+		}
+		
+		@Override
+		boolean hasLeafLinks() {
+			return false;
+		}
+	}
+	
+	/**
+	 * @param factory the factory of the nodes
+	 */
+	public CopyOnWriteBPlusTree(NodeFactory<K, V> factory) {
+		this(factory, null);
+	}
+	
+	/**
+	 * @param factory the factory of the nodes
+	 * @param separator chooses the keys the inner nodes keep between two
+	 *        leaves, <code>null</code> to keep the last key of the left leaf
+	 * @throws IllegalArgumentException if the factory is persistent
+	 */
+	public CopyOnWriteBPlusTree(NodeFactory<K, V> factory,
+			Separator<K> separator) {
+		this(new OwningNodeFactory<K, V>(factory), separator);
+	}
+	
+	private CopyOnWriteBPlusTree(OwningNodeFactory<K, V> factory,
+			Separator<K> separator) {
+		super(factory, separator);
+		
+		this.factory = factory;
+	}
+	
+	/**
+	 * Returns a view of the tree as it is now, which later writes to the
+	 * tree do not change. The nodes of the tree become shared with the
+	 * snapshot, and are copied by the writes that change them.
+	 * 
+	 * @return a tree whose writes throw an
+	 *         {@link UnsupportedOperationException}
+	 */
+	public BPlusTree<K, V> snapshot() {
+		factory.owned = new HashSet<Node<K, V>>();
+		
+		return new Snapshot<K, V>(factory.factory, getRoot());
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#hasLeafLinks()
+	 */
+	@Override
+	boolean hasLeafLinks() {
+		return false;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#copyOnWrite(cherri.bheaven.bplustree.Node)
+	 */
+	@Override
+	Node<K, V> copyOnWrite(Node<K, V> node) {
+		if (factory.owned.contains(node)) {
+			return node;
+		}
+		
+		int slots = node.getSlots();
+		
+		if (node instanceof LeafNode<?, ?>) {
+			LeafNode<K, V> leafNode = (LeafNode<K, V>) node;
+			LeafNode<K, V> copy = factory.getLeafNode();
+			
+			copy.setSlots(slots);
+			for (int i = 0; i < slots; i++) {
+				copy.setKey(leafNode.getKey(i), i);
+				copy.setValue(leafNode.getValue(i), i);
+			}
+			
+			return copy;
+		} else {
+			InnerNode<K, V> innerNode = (InnerNode<K, V>) node;
+			InnerNode<K, V> copy = factory.getInnerNode();
+			
+			copy.setSlots(slots);
+			for (int i = 0; i < slots; i++) {
+				copy.setKey(innerNode.getKey(i), i);
+				copy.setChild(innerNode.getChild(i), i);
+			}
+			copy.setChild(innerNode.getChild(slots), slots);
+			
+			return copy;
+		}
+	}
+	
+	/*
+	 * The nodes split from a node the tree owns are created by the node
+	 * itself rather than by the factory.
+	 */
+	@Override
+	void split(Node<K, V> node, Node<K, V> newNode, K key) {
+		factory.owned.add(newNode);
+	}
+	
+	/*
+	 * Only a node created since the last snapshot can be given again.
+	 */
+	@Override
+	void release(Node<K, V> node) {
+		if (factory.owned.remove(node) &&
+				factory.factory instanceof RecyclingNodeFactory<?, ?>) {
+			((RecyclingNodeFactory<K, V>) factory.factory).release(node);
+		}
+	}
+}
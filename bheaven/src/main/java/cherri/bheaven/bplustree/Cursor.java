@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the entries of a B+ tree by following the <code>next</code>
+ * links of the leaf nodes. A cursor is positioned once by a descent from the
+ * root and then never goes back up the tree, unless the leaves of the tree
+ * are not linked, in which case it keeps the path of its descent to move to
+ * the next leaf.
+ * <p>
+ * The cursor stops as soon as it reaches the upper bound, so the remaining
+ * leaves are never visited. The tree must not be modified while a cursor is
+ * in use.
+ */
+public class Cursor<K extends Comparable<K>, V> implements
+		Iterator<Map.Entry<K, V>> {
+
+	private LeafNode<K, V> leaf;
+	private int index;
+	private final K to;
+	private final boolean toInclusive;
+	private final Path<K, V> path;
+	
+	/**
+	 * @param leaf the leaf holding the first entry, or <code>null</code> for
+	 *        an empty cursor
+	 * @param index the index of the first entry in <code>leaf</code>; it may
+	 *        be equal to the number of slots of the leaf, in which case the
+	 *        cursor starts at the next leaf
+	 * @param to the upper bound, or <code>null</code> if there is none
+	 * @param toInclusive whether an entry equal to <code>to</code> is
+	 *        returned
+	 * @param path the path from the root to <code>leaf</code>, or
+	 *        <code>null</code> to follow the links of the leaves
+	 */
+	Cursor(LeafNode<K, V> leaf, int index, K to, boolean toInclusive,
+			Path<K, V> path) {
+		this.leaf = leaf;
+		this.index = index;
+		this.to = to;
+		this.toInclusive = toInclusive;
+		this.path = path;
+		
+		skipExhaustedLeaves();
+	}
+	
+	private void skipExhaustedLeaves() {
+		while (leaf != null && index >= leaf.getSlots()) {
+			leaf = path == null ?
+					(LeafNode<K, V>) leaf.getNext() : path.nextLeaf();
+			index = 0;
+		}
+	}
+	
+	/**
+	 * Moves past all the entries whose key is equal to <code>key</code>. Used
+	 * to position a cursor with an exclusive lower bound.
+	 */
+	void skip(K key) {
+		while (leaf != null && leaf.compareKey(index, key) == 0) {
+			index++;
+			skipExhaustedLeaves();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Iterator#hasNext()
+	 */
+	public boolean hasNext() {
+		if (leaf != null && to != null) {
+			int result = leaf.compareKey(index, to);
+			
+			if (result > 0 || (result == 0 && !toInclusive)) {
+				leaf = null;
+			}
+		}
+		
+		return leaf != null;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Iterator#next()
+	 */
+	public Map.Entry<K, V> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		
+		Map.Entry<K, V> entry = new AbstractMap.SimpleImmutableEntry<K, V>(
+				leaf.getKey(index), leaf.getValue(index));
+		
+		index++;
+		skipExhaustedLeaves();
+		
+		return entry;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.Iterator#remove()
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException(
+				"Cannot remove through a B+ tree cursor.");
+	}
+}
@@ -20,27 +20,13 @@
 package cherri.bheaven.bplustree;
 
 /**
- *
+ * Receives the entries of a {@link TreeSpliterator}.
  */
-public class Breadcrumb<K extends Comparable<K>, V> {
-	private final Node<K, V> node;
-	private final int index;
+public interface EntryVisitor<K, V> {
 	
-	public Breadcrumb(Node<K, V> node, int index) {
-		this.node = node;
-		this.index = index;
-	}
-	
-	/**
-	 * @return the node
-	 */
-	public Node<K, V> getNode() {
-		return node;
-	}
 	/**
-	 * @return the index
+	 * @param key the key of the entry
+	 * @param value the value of the entry
 	 */
-	public int getIndex() {
-		return index;
-	}
+	void visit(K key, V value);
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores {@link Integer}s as 4 bytes.
+ */
+public class IntegerSerializer implements Serializer<Integer> {
+
+	public int getSize() {
+		return 4;
+	}
+
+	public void write(ByteBuffer buffer, int offset, Integer object) {
+		buffer.putInt(offset, object.intValue());
+	}
+
+	public Integer read(ByteBuffer buffer, int offset) {
+		return Integer.valueOf(buffer.getInt(offset));
+	}
+
+}
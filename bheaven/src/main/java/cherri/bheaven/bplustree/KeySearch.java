@@ -0,0 +1,255 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.util.Arrays;
+
+/**
+ * The ways a node can search its keys. Each returns the index of the key
+ * if it is among the first <code>slots</code> keys, otherwise
+ * <code>-(insertion point) - 1</code> as {@link Arrays#binarySearch} does.
+ * <p>
+ * A node takes the search of its factory, or the one {@link #forSlots(int)}
+ * or {@link #forLongSlots(int)} gives for its size. KeySearchBenchmark
+ * measures them for every size.
+ */
+public enum KeySearch {
+
+	/**
+	 * {@link Arrays#binarySearch}, leaving as soon as it finds the key.
+	 */
+	BINARY {
+		@Override
+		public <K extends Comparable<K>> int search(K keys[], int slots,
+				K key) {
+			return Arrays.binarySearch(keys, 0, slots, key, null);
+		}
+
+		@Override
+		public int search(long keys[], int slots, long key) {
+			return Arrays.binarySearch(keys, 0, slots, key);
+		}
+	},
+
+	/**
+	 * Binary search halving the range a fixed number of times, whatever the
+	 * keys met, and choosing the half with a conditional move rather than a
+	 * branch the processor would mispredict half of the time.
+	 */
+	BRANCHLESS {
+		@Override
+		public <K extends Comparable<K>> int search(K keys[], int slots,
+				K key) {
+			if (slots == 0) {
+				return -1;
+			}
+			
+			int base = 0;
+			int n = slots;
+			
+			while (n > 1) {
+				int half = n >>> 1;
+				base = keys[base + half - 1].compareTo(key) < 0 ?
+						base + half : base;
+				n -= half;
+			}
+			
+			int result = keys[base].compareTo(key);
+			
+			if (result == 0) {
+				return base;
+			}
+			
+			return result < 0 ? -base - 2 : -base - 1;
+		}
+
+		@Override
+		public int search(long keys[], int slots, long key) {
+			if (slots == 0) {
+				return -1;
+			}
+			
+			int base = 0;
+			int n = slots;
+			
+			while (n > 1) {
+				int half = n >>> 1;
+				base = keys[base + half - 1] < key ? base + half : base;
+				n -= half;
+			}
+			
+			long found = keys[base];
+			
+			if (found == key) {
+				return base;
+			}
+			
+			return found < key ? -base - 2 : -base - 1;
+		}
+	},
+
+	/**
+	 * Compares the keys in order, which small nodes do faster than a binary
+	 * search since the branches are predictable.
+	 */
+	LINEAR {
+		@Override
+		public <K extends Comparable<K>> int search(K keys[], int slots,
+				K key) {
+			for (int i = 0; i < slots; i++) {
+				int result = keys[i].compareTo(key);
+				
+				if (result >= 0) {
+					return result == 0 ? i : -i - 1;
+				}
+			}
+			
+			return -slots - 1;
+		}
+
+		@Override
+		public int search(long keys[], int slots, long key) {
+			int i = 0;
+			
+			while (i < slots && keys[i] < key) {
+				i++;
+			}
+			
+			return i < slots && keys[i] == key ? i : -i - 1;
+		}
+	},
+
+	/**
+	 * Guesses where the key is from its value between the lowest and the
+	 * highest keys, which finds uniformly distributed numbers in a couple of
+	 * steps. Keys that are not {@link Number}s are searched with
+	 * {@link #BINARY}.
+	 */
+	INTERPOLATION {
+		@Override
+		public <K extends Comparable<K>> int search(K keys[], int slots,
+				K key) {
+			if (!(key instanceof Number)) {
+				return BINARY.search(keys, slots, key);
+			}
+			
+			double value = ((Number) key).doubleValue();
+			int low = 0;
+			int high = slots - 1;
+			
+			while (low <= high) {
+				int middle = interpolate(low, high,
+						((Number) keys[low]).doubleValue(),
+						((Number) keys[high]).doubleValue(), value);
+				int result = keys[middle].compareTo(key);
+				
+				if (result < 0) {
+					low = middle + 1;
+				} else if (result > 0) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			
+			return -low - 1;
+		}
+
+		@Override
+		public int search(long keys[], int slots, long key) {
+			int low = 0;
+			int high = slots - 1;
+			
+			while (low <= high) {
+				int middle = interpolate(low, high, keys[low], keys[high],
+						key);
+				long found = keys[middle];
+				
+				if (found < key) {
+					low = middle + 1;
+				} else if (found > key) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			
+			return -low - 1;
+		}
+	};
+	
+	/**
+	 * The largest nodes {@link #forLongSlots(int)} searches with
+	 * {@link #LINEAR}. Beyond it, {@link #BRANCHLESS} is faster for
+	 * <code>long</code> keys.
+	 */
+	public static final int LINEAR_SLOTS = 32;
+	
+	/*
+	 * The index in [low, high] where value would be if the keys between
+	 * lowKey and highKey were evenly spread, computed in doubles so that
+	 * the differences of longs cannot overflow.
+	 */
+	private static int interpolate(int low, int high, double lowKey,
+			double highKey, double value) {
+		if (value <= lowKey || highKey <= lowKey) {
+			return low;
+		}
+		
+		if (value >= highKey) {
+			return high;
+		}
+		
+		return low + (int) ((value - lowKey) / (highKey - lowKey) *
+				(high - low));
+	}
+	
+	/**
+	 * @return the index of <code>key</code> among the first
+	 *         <code>slots</code> keys, or <code>-(insertion point) - 1</code>
+	 */
+	public abstract <K extends Comparable<K>> int search(K keys[], int slots,
+			K key);
+	
+	/**
+	 * @see #search(Comparable[], int, Comparable)
+	 */
+	public abstract int search(long keys[], int slots, long key);
+	
+	/**
+	 * Keys compared with {@link Comparable#compareTo} are searched with
+	 * {@link #BINARY} whatever the size of the node: the comparisons cost
+	 * more than the branches, and only {@link Long} keys were measured
+	 * faster with the other searches.
+	 * 
+	 * @return the search of the nodes of <code>maxSlots</code> keys
+	 */
+	public static KeySearch forSlots(int maxSlots) {
+		return BINARY;
+	}
+	
+	/**
+	 * @return the search of the nodes of <code>maxSlots</code>
+	 *         <code>long</code> keys
+	 */
+	public static KeySearch forLongSlots(int maxSlots) {
+		return maxSlots <= LINEAR_SLOTS ? LINEAR : BRANCHLESS;
+	}
+}
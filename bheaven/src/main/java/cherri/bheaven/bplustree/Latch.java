@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Read/write latch of a node. Latches are held for the short time a thread
+ * needs to go through a node, so a waiting thread spins and yields instead
+ * of being parked. Latches are not reentrant.
+ * <p>
+ * A latch also has a version, incremented when a writer releases a node it
+ * changed, so readers can go through a node without taking its latch: they
+ * read the version with {@link #awaitVersion()}, read the node, then check
+ * with {@link #validate(int)} that no writer changed it in between. A node
+ * removed from the tree is marked obsolete, for such readers to start over.
+ */
+public class Latch {
+	
+	private static final int SPINS = 64;
+	private static final AtomicIntegerFieldUpdater<Latch> STATE =
+		AtomicIntegerFieldUpdater.newUpdater(Latch.class, "state");
+	
+	/* The number of readers, or -1 while a writer holds the latch. */
+	private volatile int state;
+	private volatile int version;
+	private volatile boolean obsolete;
+	
+	private static void pause(int attempt) {
+		if (attempt >= SPINS) {
+			Thread.yield();
+		}
+	}
+	
+	public void acquireShared() {
+		for (int attempt = 0; ; attempt++) {
+			int state = this.state;
+			
+			if (state >= 0 && STATE.compareAndSet(this, state, state + 1)) {
+				return;
+			}
+			
+			pause(attempt);
+		}
+	}
+	
+	public void releaseShared() {
+		STATE.decrementAndGet(this);
+	}
+	
+	public void acquireExclusive() {
+		for (int attempt = 0; !STATE.compareAndSet(this, 0, -1); attempt++) {
+			pause(attempt);
+		}
+	}
+	
+	/**
+	 * Releases the latch of a node that may have been changed.
+	 */
+	public void releaseExclusive() {
+		version++;
+		state = 0;
+	}
+	
+	/**
+	 * Releases the latch of a node that has not been changed, so optimistic
+	 * readers do not have to read it again.
+	 */
+	public void releaseExclusiveUnchanged() {
+		state = 0;
+	}
+	
+	public void acquire(boolean exclusive) {
+		if (exclusive) {
+			acquireExclusive();
+		} else {
+			acquireShared();
+		}
+	}
+	
+	public void release(boolean exclusive) {
+		if (exclusive) {
+			releaseExclusive();
+		} else {
+			releaseShared();
+		}
+	}
+	
+	/**
+	 * Waits until no writer holds the latch.
+	 * 
+	 * @return the version to validate after reading the node
+	 */
+	public int awaitVersion() {
+		for (int attempt = 0; ; attempt++) {
+			int version = this.version;
+			
+			if (state != -1) {
+				return version;
+			}
+			
+			pause(attempt);
+		}
+	}
+	
+	/**
+	 * Plain reads of the node made before may still be done after the read
+	 * of the version, so the caller has to order them first, for instance by
+	 * writing a volatile field.
+	 * 
+	 * @param version a version returned by {@link #awaitVersion()}
+	 * @return whether the node was not changed since
+	 */
+	public boolean validate(int version) {
+		return state != -1 && this.version == version;
+	}
+	
+	/**
+	 * Marks the node as removed from the tree; called with the latch held.
+	 */
+	public void markObsolete() {
+		obsolete = true;
+	}
+	
+	public boolean isObsolete() {
+		return obsolete;
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts values, latencies in nanoseconds or cascade depths, in buckets of
+ * logarithmic width: values below 16 have a bucket each, larger ones are
+ * grouped in 8 buckets per power of two, so a value is known within 12.5%.
+ * Recording a value increments one bucket and allocates nothing; it can be
+ * done by several threads at once.
+ */
+public class LatencyHistogram {
+	
+	private static final int EXACT = 16;
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int EXACT_BITS = 4;
+	private static final int BUCKETS = EXACT +
+			(63 - EXACT_BITS) * SUB_BUCKETS;
+	
+	private final AtomicLongArray counts;
+	
+	public LatencyHistogram() {
+		counts = new AtomicLongArray(BUCKETS);
+	}
+	
+	private static int getBucket(long value) {
+		if (value < EXACT) {
+			return value < 0 ? 0 : (int) value;
+		}
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) &
+				(SUB_BUCKETS - 1);
+		
+		return EXACT + (exponent - EXACT_BITS) * SUB_BUCKETS + subBucket;
+	}
+	
+	/*
+	 * The largest value of the bucket.
+	 */
+	private static long getUpperBound(int bucket) {
+		if (bucket < EXACT) {
+			return bucket;
+		}
+		
+		int exponent = (bucket - EXACT) / SUB_BUCKETS + EXACT_BITS;
+		long subBucket = (bucket - EXACT) % SUB_BUCKETS;
+		
+		return ((SUB_BUCKETS + subBucket + 1) <<
+				(exponent - SUB_BUCKET_BITS)) - 1;
+	}
+	
+	/**
+	 * @param value a value, negative ones being counted as 0
+	 */
+	public void record(long value) {
+		counts.getAndIncrement(getBucket(value));
+	}
+	
+	/**
+	 * @return the number of values recorded
+	 */
+	public long getCount() {
+		long count = 0;
+		
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * @param percentile a percentile in [0, 100]
+	 * @return the largest value of the bucket holding the percentile, 0 if
+	 *         no value was recorded
+	 */
+	public long getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException(
+					"Percentile must be in [0, 100]: " + percentile);
+		}
+		
+		long counts[] = new long[BUCKETS];
+		long count = 0;
+		
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = this.counts.get(i);
+			count += counts[i];
+		}
+		
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			
+			if (seen >= rank) {
+				return getUpperBound(i);
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * @return the largest value of the bucket holding the largest value
+	 *         recorded, 0 if no value was recorded
+	 */
+	public long getMaximum() {
+		return getPercentile(100);
+	}
+	
+	/**
+	 * Copies the counts, for example to report an interval.
+	 * 
+	 * @param reset whether the counts copied are taken out of this
+	 *        histogram, a value recorded meanwhile being either in the copy
+	 *        or kept here
+	 * @return a histogram of the values recorded so far or since the last
+	 *         reset
+	 */
+	public LatencyHistogram snapshot(boolean reset) {
+		LatencyHistogram snapshot = new LatencyHistogram();
+		
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot.counts.set(i, reset ? counts.getAndSet(i, 0) :
+					counts.get(i));
+		}
+		
+		return snapshot;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "count: " + getCount() + ", p50: " + getPercentile(50) +
+				", p99: " + getPercentile(99) + ", p99.9: " +
+				getPercentile(99.9) + ", max: " + getMaximum();
+	}
+}
@@ -31,16 +31,6 @@ public interface LeafNode<K extends Comparable<K>, V> extends Node<K, V> {
 	 */
 	void setValue(V value, int index);
 
-	/**
-	 * @return the next
-	 */
-	Node<K, V> getNext();
-
-	/**
-	 * @param next the next to set
-	 */
-	void setNext(Node<K, V> next);
-
 	void insert(K key, V value);
 
 	/*
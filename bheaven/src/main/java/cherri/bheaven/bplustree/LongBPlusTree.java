@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * A B+ tree over <code>long</code> keys. The nodes given by the factory
+ * must implement {@link LongNode}; {@link #get(long)} then goes from the root
+ * to the leaf without boxing the key.
+ */
+public class LongBPlusTree<V> extends BPlusTree<Long, V> {
+
+	/**
+	 * @param factory a factory of {@link LongNode}s, such as
+	 *        {@link cherri.bheaven.bplustree.memory.MemoryLongNodeFactory}
+	 */
+	public LongBPlusTree(NodeFactory<Long, V> factory) {
+		super(factory);
+	}
+	
+	public V get(long key) {
+		OperationStatistics statistics = getOperationStatistics();
+		
+		if (statistics == null) {
+			return read(key);
+		}
+		
+		long start = System.nanoTime();
+		try {
+			return read(key);
+		} finally {
+			statistics.getGetLatencies().record(System.nanoTime() - start);
+		}
+	}
+	
+	private V read(long key) {
+		Node<Long, V> node = getRoot();
+		
+		if (node == null) {
+			return null;
+		}
+		
+		while (!(node instanceof LeafNode<?, ?>)) {
+			int index = ((LongNode<V>) node).getKeyIndex(key);
+			
+			if(index < 0) {
+				index = -index - 1;
+			}
+			
+			node = ((InnerNode<Long, V>) node).getChild(index);
+		}
+		
+		int index = ((LongNode<V>) node).getKeyIndex(key);
+		
+		if(index >= 0) {
+			return ((LeafNode<Long, V>) node).getValue(index);
+		} else {
+			return null;
+		}
+	}
+	
+	public V put(long key, V value) {
+		return put(Long.valueOf(key), value);
+	}
+	
+	public V remove(long key) {
+		return remove(Long.valueOf(key));
+	}
+	
+	public Cursor<Long, V> range(long from, long to) {
+		return range(Long.valueOf(from), Long.valueOf(to));
+	}
+}
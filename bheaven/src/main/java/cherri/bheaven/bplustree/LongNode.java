@@ -0,0 +1,44 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * A node whose keys are stored as primitive <code>long</code>s. The
+ * {@link Node} methods taking or returning a {@link Long} box or unbox the
+ * key, the methods of this interface never do.
+ */
+public interface LongNode<V> extends Node<Long, V> {
+
+	/**
+	 * @return the key
+	 */
+	long getLongKey(int index);
+
+	/**
+	 * @param key the key to set
+	 */
+	void setLongKey(long key, int index);
+	
+	/**
+	 * @see Node#getKeyIndex(Comparable)
+	 */
+	int getKeyIndex(long key);
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores {@link Long}s as 8 bytes.
+ */
+public class LongSerializer implements Serializer<Long> {
+
+	public int getSize() {
+		return 8;
+	}
+
+	public void write(ByteBuffer buffer, int offset, Long object) {
+		buffer.putLong(offset, object.longValue());
+	}
+
+	public Long read(ByteBuffer buffer, int offset) {
+		return Long.valueOf(buffer.getLong(offset));
+	}
+
+}
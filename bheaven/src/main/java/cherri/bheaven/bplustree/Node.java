@@ -51,6 +51,14 @@ public interface Node<K extends Comparable<K>, V> {
 		
 	int getKeyIndex(K key);
 	
+	/**
+	 * Compares the key of a slot to <code>key</code>, without building the
+	 * key of the slot when the node does not keep it whole.
+	 * 
+	 * @return the result of <code>getKey(index).compareTo(key)</code>
+	 */
+	int compareKey(int index, K key);
+	
 	boolean canGiveSlots();
 
 	void leftShift(int count);
@@ -61,5 +69,15 @@ public interface Node<K extends Comparable<K>, V> {
 	
 	void copyToRight(Node<K, V> node, int count);
 	
+	/**
+	 * @return the right sibling of the node, at the same level
+	 */
+	Node<K, V> getNext();
+
+	/**
+	 * @param next the right sibling of the node
+	 */
+	void setNext(Node<K, V> next);
+	
 
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * Histograms a {@link BPlusTree} fills once given to
+ * {@link BPlusTree#setOperationStatistics(OperationStatistics)}: the
+ * latencies in nanoseconds of {@link BPlusTree#get(Comparable)},
+ * {@link BPlusTree#put(Comparable, Object)} and
+ * {@link BPlusTree#remove(Comparable)}, and the depth of the cascades,
+ * that is the number of nodes split by an insert that splits its leaf and
+ * the number of nodes merged by a delete that merges its leaf.
+ */
+public class OperationStatistics {
+	
+	private final LatencyHistogram getLatencies;
+	private final LatencyHistogram putLatencies;
+	private final LatencyHistogram removeLatencies;
+	private final LatencyHistogram splitDepths;
+	private final LatencyHistogram mergeDepths;
+	
+	public OperationStatistics() {
+		this(new LatencyHistogram(), new LatencyHistogram(),
+				new LatencyHistogram(), new LatencyHistogram(),
+				new LatencyHistogram());
+	}
+	
+	private OperationStatistics(LatencyHistogram getLatencies,
+			LatencyHistogram putLatencies, LatencyHistogram removeLatencies,
+			LatencyHistogram splitDepths, LatencyHistogram mergeDepths) {
+		this.getLatencies = getLatencies;
+		this.putLatencies = putLatencies;
+		this.removeLatencies = removeLatencies;
+		this.splitDepths = splitDepths;
+		this.mergeDepths = mergeDepths;
+	}
+	
+	public LatencyHistogram getGetLatencies() {
+		return getLatencies;
+	}
+	
+	public LatencyHistogram getPutLatencies() {
+		return putLatencies;
+	}
+	
+	public LatencyHistogram getRemoveLatencies() {
+		return removeLatencies;
+	}
+	
+	public LatencyHistogram getSplitDepths() {
+		return splitDepths;
+	}
+	
+	public LatencyHistogram getMergeDepths() {
+		return mergeDepths;
+	}
+	
+	/**
+	 * Copies every histogram, see {@link LatencyHistogram#snapshot(boolean)}.
+	 * 
+	 * @param reset whether the counts copied are taken out of these
+	 *        histograms
+	 */
+	public OperationStatistics snapshot(boolean reset) {
+		return new OperationStatistics(getLatencies.snapshot(reset),
+				putLatencies.snapshot(reset), removeLatencies.snapshot(reset),
+				splitDepths.snapshot(reset), mergeDepths.snapshot(reset));
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "get: [" + getLatencies + "], put: [" + putLatencies +
+				"], remove: [" + removeLatencies + "], split depth: [" +
+				splitDepths + "], merge depth: [" + mergeDepths + "]";
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores {@link Long}s as 8 bytes with the sign bit flipped, so that the
+ * slots of negative numbers come first.
+ */
+public class OrderedLongSerializer implements OrderedSerializer<Long> {
+
+	public int getSize() {
+		return 8;
+	}
+
+	public void write(ByteBuffer buffer, int offset, Long object) {
+		buffer.putLong(offset, object.longValue() ^ Long.MIN_VALUE);
+	}
+
+	public Long read(ByteBuffer buffer, int offset) {
+		return Long.valueOf(buffer.getLong(offset) ^ Long.MIN_VALUE);
+	}
+
+	public int compare(ByteBuffer buffer, int offset, ByteBuffer other,
+			int otherOffset) {
+		long value = buffer.getLong(offset) ^ Long.MIN_VALUE;
+		long otherValue = other.getLong(otherOffset) ^ Long.MIN_VALUE;
+		
+		return value < otherValue ? -1 : (value == otherValue ? 0 : 1);
+	}
+
+}
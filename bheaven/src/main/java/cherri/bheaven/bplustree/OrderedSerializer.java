@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Serializer} whose slots compare, as unsigned bytes, in the order
+ * of their objects, so that keys can be compared without being decoded.
+ * The whole slot is written, padding included.
+ */
+public interface OrderedSerializer<T> extends Serializer<T> {
+	
+	/**
+	 * Compares the objects written in two slots.
+	 * 
+	 * @return a negative number, zero or a positive number as the object
+	 *         starting at <code>offset</code> is less than, equal to or
+	 *         greater than the one starting at <code>otherOffset</code>
+	 */
+	int compare(ByteBuffer buffer, int offset, ByteBuffer other,
+			int otherOffset);
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores {@link String}s so that their slots compare as the strings do. As
+ * in UTF-8, a char takes one to three bytes and longer codes start with
+ * larger bytes, but every char is encoded on its own, surrogates included,
+ * so the bytes follow the order of {@link String#compareTo(String)} rather
+ * than the one of the code points. The char 0 is written as the bytes 0
+ * and 1, and the rest of the slot is filled with zeros, which end the
+ * string and sort it before any longer one.
+ */
+public class OrderedStringSerializer implements OrderedSerializer<String> {
+
+	private final int maxBytes;
+	
+	/**
+	 * @param maxBytes the maximum length of an encoded string
+	 */
+	public OrderedStringSerializer(int maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException(
+					"Maximum length must not be negative: " + maxBytes);
+		}
+		
+		this.maxBytes = maxBytes;
+	}
+
+	public int getSize() {
+		return maxBytes;
+	}
+
+	public void write(ByteBuffer buffer, int offset, String object) {
+		int end = offset + maxBytes;
+		int position = offset;
+		
+		for (int i = 0; i < object.length(); i++) {
+			char c = object.charAt(i);
+			int size = c == 0 || c >= 0x80 ? (c < 0x800 ? 2 : 3) : 1;
+			
+			if (position + size > end) {
+				throw new IllegalArgumentException("String is longer than " +
+						maxBytes + " bytes: " + object);
+			}
+			
+			if (c == 0) {
+				buffer.put(position++, (byte) 0);
+				buffer.put(position++, (byte) 1);
+			} else if (c < 0x80) {
+				buffer.put(position++, (byte) c);
+			} else if (c < 0x800) {
+				buffer.put(position++, (byte) (0xC0 | (c >> 6)));
+				buffer.put(position++, (byte) (0x80 | (c & 0x3F)));
+			} else {
+				buffer.put(position++, (byte) (0xE0 | (c >> 12)));
+				buffer.put(position++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put(position++, (byte) (0x80 | (c & 0x3F)));
+			}
+		}
+		
+		while (position < end) {
+			buffer.put(position++, (byte) 0);
+		}
+	}
+
+	public String read(ByteBuffer buffer, int offset) {
+		int end = offset + maxBytes;
+		int position = offset;
+		StringBuilder builder = new StringBuilder();
+		
+		while (position < end) {
+			int b = buffer.get(position) & 0xFF;
+			
+			if (b == 0) {
+				if (position + 1 == end || buffer.get(position + 1) != 1) {
+					break;
+				}
+				
+				builder.append((char) 0);
+				position += 2;
+			} else if (b < 0x80) {
+				builder.append((char) b);
+				position++;
+			} else if (b < 0xE0) {
+				builder.append((char) (((b & 0x1F) << 6) |
+						(buffer.get(position + 1) & 0x3F)));
+				position += 2;
+			} else {
+				builder.append((char) (((b & 0x0F) << 12) |
+						((buffer.get(position + 1) & 0x3F) << 6) |
+						(buffer.get(position + 2) & 0x3F)));
+				position += 3;
+			}
+		}
+		
+		return builder.toString();
+	}
+
+	/*
+	 * Compares 8 bytes at a time while possible: read big-endian, as buffers
+	 * are unless told otherwise, they compare as unsigned longs.
+	 */
+	public int compare(ByteBuffer buffer, int offset, ByteBuffer other,
+			int otherOffset) {
+		int i = 0;
+		
+		for (; i + 8 <= maxBytes; i += 8) {
+			long value = buffer.getLong(offset + i) ^ Long.MIN_VALUE;
+			long otherValue = other.getLong(otherOffset + i) ^ Long.MIN_VALUE;
+			
+			if (value != otherValue) {
+				return value < otherValue ? -1 : 1;
+			}
+		}
+		
+		for (; i < maxBytes; i++) {
+			int b = buffer.get(offset + i) & 0xFF;
+			int otherB = other.get(otherOffset + i) & 0xFF;
+			
+			if (b != otherB) {
+				return b - otherB;
+			}
+		}
+		
+		return 0;
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * The nodes from the root to a leaf, each with its index in its parent, kept
+ * in parallel arrays. A tree reuses the same path from an operation to the
+ * next so that put and remove descend without allocating; the arrays only
+ * grow when the tree gets taller than ever before.
+ */
+class Path<K extends Comparable<K>, V> {
+	private Node<K, V> nodes[];
+	private int indexes[];
+	private int size;
+	
+	/*
+	 * The left and right siblings returned by BPlusTree.getSiblings.
+	 */
+	final Node<K, V> siblings[];
+	
+	@SuppressWarnings("unchecked")
+	Path() {
+		nodes = (Node<K, V>[]) new Node<?, ?>[8];
+		indexes = new int[8];
+		siblings = (Node<K, V>[]) new Node<?, ?>[2];
+	}
+	
+	@SuppressWarnings("unchecked")
+	void add(Node<K, V> node, int index) {
+		if (size == nodes.length) {
+			Node<K, V> newNodes[] = (Node<K, V>[]) new Node<?, ?>[size * 2];
+			int newIndexes[] = new int[size * 2];
+			System.arraycopy(nodes, 0, newNodes, 0, size);
+			System.arraycopy(indexes, 0, newIndexes, 0, size);
+			nodes = newNodes;
+			indexes = newIndexes;
+		}
+		
+		nodes[size] = node;
+		indexes[size] = index;
+		size++;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	Node<K, V> getNode(int position) {
+		return nodes[position];
+	}
+	
+	int getIndex(int position) {
+		return indexes[position];
+	}
+	
+	/*
+	 * Keeps the nodes of the first positions only.
+	 */
+	void truncate(int size) {
+		for (int i = size; i < this.size; i++) {
+			nodes[i] = null;
+		}
+		this.size = size;
+	}
+	
+	/*
+	 * Moves the path to the first leaf on the right of the leaf it ends at,
+	 * going back up to the lowest ancestor with a child on the right of the
+	 * path. Used to walk the leaves of a tree whose leaves are not linked.
+	 * Returns null if the path ends at the last leaf under its first node.
+	 */
+	LeafNode<K, V> nextLeaf() {
+		for (int position = size - 1; position > 0; position--) {
+			InnerNode<K, V> parent = (InnerNode<K, V>) nodes[position - 1];
+			int index = indexes[position] + 1;
+			
+			if (index <= parent.getSlots()) {
+				truncate(position);
+				
+				Node<K, V> node = parent.getChild(index);
+				add(node, index);
+				
+				while (node instanceof InnerNode<?, ?>) {
+					node = ((InnerNode<K, V>) node).getChild(0);
+					add(node, 0);
+				}
+				
+				return (LeafNode<K, V>) node;
+			}
+		}
+		
+		return null;
+	}
+	
+	/*
+	 * Drops the references to the nodes so that a removed node is not kept
+	 * alive until the next operation.
+	 */
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			nodes[i] = null;
+		}
+		siblings[0] = null;
+		siblings[1] = null;
+		size = 0;
+	}
+}
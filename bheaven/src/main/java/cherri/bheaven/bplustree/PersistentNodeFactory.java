@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A factory whose nodes outlive the {@link BPlusTree} using them. The tree
+ * reads its root from the factory when it is created and hands every new
+ * root back to it.
+ */
+public interface PersistentNodeFactory<K extends Comparable<K>, V> extends
+		NodeFactory<K, V>, Closeable {
+
+	/**
+	 * @return the stored root, or <code>null</code> for an empty tree
+	 */
+	Node<K, V> getRoot();
+	
+	/**
+	 * @param root the new root, or <code>null</code> for an empty tree
+	 */
+	void setRoot(Node<K, V> root);
+	
+	/**
+	 * Writes all the changes made so far to the underlying storage.
+	 */
+	void flush() throws IOException;
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * A factory giving again the nodes a {@link BPlusTree} no longer uses. The
+ * tree releases a node once it left the tree and the operation removing it
+ * no longer reads it. A {@link ConcurrentBPlusTree} never does, since
+ * readers without latches may still be on the node.
+ */
+public interface RecyclingNodeFactory<K extends Comparable<K>, V> extends
+		NodeFactory<K, V> {
+
+	/**
+	 * @param node a node out of the tree, that the factory may clear and
+	 *        give again
+	 */
+	void release(Node<K, V> node);
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * Computes the new value of a key for {@link BPlusTree#compute}.
+ */
+public interface Remapping<K, V> {
+	
+	/**
+	 * @param key the key
+	 * @param value the current value of the key, or <code>null</code> if it
+	 *        is not in the tree
+	 * @return the new value of the key, or <code>null</code> to remove it
+	 */
+	V remap(K key, V value);
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * Chooses the key an inner node keeps between two leaves. By default a
+ * {@link BPlusTree} keeps the last key of the left leaf; a shorter key
+ * leaves more room in the inner nodes that store keys by size, and compares
+ * faster.
+ */
+public interface Separator<K> {
+	
+	/**
+	 * @param left the last key of the left leaf
+	 * @param right the first key of the right leaf
+	 * @return a key greater than or equal to <code>left</code> and less than
+	 *         <code>right</code>
+	 */
+	K separate(K left, K right);
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Turns keys or values into bytes for the node factories that do not keep
+ * objects on the heap. Every object takes a slot of {@link #getSize()}
+ * bytes, so slots can be moved around without being decoded.
+ */
+public interface Serializer<T> {
+	
+	/**
+	 * @return the number of bytes of a slot
+	 */
+	int getSize();
+	
+	/**
+	 * Writes <code>object</code> in the slot starting at <code>offset</code>
+	 * without changing the position of <code>buffer</code>.
+	 * 
+	 * @throws IllegalArgumentException if the object does not fit in a slot
+	 */
+	void write(ByteBuffer buffer, int offset, T object);
+	
+	/**
+	 * Reads the object in the slot starting at <code>offset</code> without
+	 * changing the position of <code>buffer</code>.
+	 */
+	T read(ByteBuffer buffer, int offset);
+}
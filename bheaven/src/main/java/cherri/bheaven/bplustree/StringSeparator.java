@@ -0,0 +1,45 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * Separates {@link String}s with the shortest prefix of the right key that
+ * is greater than the left key, unless it is the right key itself or no
+ * shorter than the left key.
+ */
+public class StringSeparator implements Separator<String> {
+
+	public String separate(String left, String right) {
+		int length = Math.min(left.length(), right.length());
+		int i = 0;
+		
+		while (i < length && left.charAt(i) == right.charAt(i)) {
+			i++;
+		}
+		
+		// The prefix ends with the first character above the left key.
+		if (i + 1 < right.length() && i + 1 < left.length()) {
+			return right.substring(0, i + 1);
+		}
+		
+		return left;
+	}
+
+}
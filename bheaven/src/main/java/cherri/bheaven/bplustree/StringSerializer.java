@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Stores {@link String}s in UTF-8 preceded by their length on 2 bytes. The
+ * slot is as large as the longest encoded string allowed.
+ */
+public class StringSerializer implements VariableSerializer<String> {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final int maxBytes;
+	
+	/**
+	 * @param maxBytes the maximum length of an encoded string, at most
+	 *        65535
+	 */
+	public StringSerializer(int maxBytes) {
+		if (maxBytes < 0 || maxBytes > 0xFFFF) {
+			throw new IllegalArgumentException(
+					"Maximum length must be in [0, 65535]: " + maxBytes);
+		}
+		
+		this.maxBytes = maxBytes;
+	}
+
+	public int getSize() {
+		return 2 + maxBytes;
+	}
+
+	public int getSize(String object) {
+		return 2 + object.getBytes(UTF8).length;
+	}
+
+	public int getSize(ByteBuffer buffer, int offset) {
+		return 2 + (buffer.getShort(offset) & 0xFFFF);
+	}
+
+	public void write(ByteBuffer buffer, int offset, String object) {
+		byte bytes[] = object.getBytes(UTF8);
+		
+		if (bytes.length > maxBytes) {
+			throw new IllegalArgumentException("String is longer than " +
+					maxBytes + " bytes in UTF-8: " + object);
+		}
+		
+		buffer.putShort(offset, (short) bytes.length);
+		
+		for (int i = 0; i < bytes.length; i++) {
+			buffer.put(offset + 2 + i, bytes[i]);
+		}
+	}
+
+	public String read(ByteBuffer buffer, int offset) {
+		byte bytes[] = new byte[buffer.getShort(offset) & 0xFFFF];
+		
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + 2 + i);
+		}
+		
+		return new String(bytes, UTF8);
+	}
+
+}
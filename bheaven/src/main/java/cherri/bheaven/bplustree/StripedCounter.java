@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that threads increment in cells of their own, chosen by thread
+ * id and padded so that two cells do not share a cache line, and that is
+ * summed when read. Threads therefore rarely contend on an increment, and
+ * the counter can be left on.
+ */
+final class StripedCounter {
+	
+	private static final int PADDING = 8;
+	private static final int STRIPES;
+	
+	static {
+		int stripes = 1;
+		
+		while (stripes < Runtime.getRuntime().availableProcessors()) {
+			stripes <<= 1;
+		}
+		
+		STRIPES = stripes;
+	}
+	
+	// The first cell is padded from the header of the array as well.
+	private final AtomicLongArray cells =
+		new AtomicLongArray((STRIPES + 1) * PADDING);
+	
+	void increment() {
+		int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+		cells.getAndIncrement((stripe + 1) * PADDING);
+	}
+	
+	long get() {
+		long sum = 0;
+		
+		for (int i = 1; i <= STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		
+		return sum;
+	}
+}
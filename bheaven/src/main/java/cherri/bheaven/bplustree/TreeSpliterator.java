@@ -0,0 +1,374 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * Traverses the entries of a B+ tree, or of a range of its keys, in pieces
+ * that can be read by different threads. It follows the contract of
+ * <code>java.util.Spliterator</code>, which this library cannot use since it
+ * is still built for Java 6, and can be adapted to it in a few lines to make
+ * a parallel stream of the entries.
+ * <p>
+ * A piece is a range of children of an inner node. {@link #trySplit()} gives
+ * away the first half of the children, or descends into the only child left,
+ * so every piece is a set of whole subtrees and the pieces of a split never
+ * share a node. A piece is read along the leaf nodes chain, from the first
+ * leaf of its first subtree to the last leaf of its last one, or from the
+ * parents of the leaves when they are not linked.
+ * <p>
+ * The entries are returned in the order of their keys, which are unique.
+ * The size of a piece is only exact once it is down to a single leaf, it is
+ * estimated from the fan-out of its first subtree otherwise. As with a
+ * {@link Cursor}, the tree must not be modified while it is traversed.
+ */
+public class TreeSpliterator<K extends Comparable<K>, V> {
+	
+	/**
+	 * The entries are in a defined order.
+	 */
+	public static final int ORDERED = 0x00000010;
+	
+	/**
+	 * No two entries have equal keys.
+	 */
+	public static final int DISTINCT = 0x00000001;
+	
+	/**
+	 * The entries are sorted by the natural order of their keys.
+	 */
+	public static final int SORTED = 0x00000004;
+	
+	/**
+	 * {@link #estimateSize()} is the exact number of entries.
+	 */
+	public static final int SIZED = 0x00000040;
+	
+	/**
+	 * No entry is <code>null</code>.
+	 */
+	public static final int NONNULL = 0x00000100;
+	
+	/**
+	 * The pieces split from this one are {@link #SIZED} as well.
+	 */
+	public static final int SUBSIZED = 0x00004000;
+	
+	/*
+	 * The subtrees not read yet are the children from lo (inclusive) to hi
+	 * (exclusive) of node, or node itself when it is a leaf. from and to are
+	 * only kept by the first and last pieces of a range.
+	 */
+	private Node<K, V> node;
+	private int lo;
+	private int hi;
+	private K from;
+	private boolean fromInclusive;
+	private K to;
+	private boolean toInclusive;
+	private long estimate;
+	private final boolean linked;
+	
+	/*
+	 * Set once the traversal started: the next entry, and the end of the
+	 * entries of the piece in the last leaf.
+	 */
+	private LeafNode<K, V> leaf;
+	private int index;
+	private LeafNode<K, V> last;
+	private int lastIndex;
+	private Path<K, V> path;
+	
+	/**
+	 * @param root the root of the tree, or <code>null</code> if it is empty
+	 * @param from the lower bound, or <code>null</code> if there is none
+	 * @param fromInclusive whether an entry equal to <code>from</code> is
+	 *        returned
+	 * @param to the upper bound, or <code>null</code> if there is none
+	 * @param toInclusive whether an entry equal to <code>to</code> is
+	 *        returned
+	 * @param linked whether the leaves are linked
+	 */
+	TreeSpliterator(Node<K, V> root, K from, boolean fromInclusive, K to,
+			boolean toInclusive, boolean linked) {
+		this.linked = linked;
+		this.from = from;
+		this.fromInclusive = fromInclusive;
+		this.to = to;
+		this.toInclusive = toInclusive;
+		
+		if (from != null && to != null) {
+			int result = from.compareTo(to);
+			
+			if (result > 0 || (result == 0 && !(fromInclusive && toInclusive))) {
+				root = null;
+			}
+		}
+		
+		if (root != null) {
+			setNode(root);
+		}
+	}
+	
+	private TreeSpliterator(Node<K, V> node, int lo, int hi, K from,
+			boolean fromInclusive, long estimate, boolean linked) {
+		this.node = node;
+		this.lo = lo;
+		this.hi = hi;
+		this.from = from;
+		this.fromInclusive = fromInclusive;
+		this.estimate = estimate;
+		this.linked = linked;
+	}
+	
+	/*
+	 * Makes node the root of the piece, restricted to the children holding
+	 * the keys between the bounds.
+	 */
+	private void setNode(Node<K, V> node) {
+		this.node = node;
+		
+		if (node instanceof LeafNode<?, ?>) {
+			lo = from == null ? 0 : getFromIndex(node);
+			hi = to == null ? node.getSlots() : getToIndex(node);
+			estimate = Math.max(hi - lo, 0);
+		} else {
+			lo = from == null ? 0 : getChildIndex(node, from);
+			hi = to == null ? node.getSlots() + 1 : getChildIndex(node, to) + 1;
+			estimate = (hi - lo) * estimateChildSize();
+		}
+	}
+	
+	private long estimateChildSize() {
+		long size = 1;
+		Node<K, V> child = node;
+		
+		while (child instanceof InnerNode<?, ?>) {
+			child = ((InnerNode<K, V>) child).getChild(0);
+			size *= child instanceof InnerNode<?, ?> ?
+					child.getSlots() + 1 : child.getSlots();
+		}
+		
+		return size;
+	}
+	
+	private static <K extends Comparable<K>, V> int getChildIndex(
+			Node<K, V> node, K key) {
+		int index = node.getKeyIndex(key);
+		
+		return index < 0 ? -index - 1 : index;
+	}
+	
+	/*
+	 * Returns the index of the first entry of a leaf above the lower bound.
+	 */
+	private int getFromIndex(Node<K, V> leaf) {
+		int index = leaf.getKeyIndex(from);
+		
+		if (index < 0) {
+			return -index - 1;
+		}
+		
+		return fromInclusive ? index : index + 1;
+	}
+	
+	/*
+	 * Returns the index following the last entry of a leaf below the upper
+	 * bound.
+	 */
+	private int getToIndex(Node<K, V> leaf) {
+		int index = leaf.getKeyIndex(to);
+		
+		if (index < 0) {
+			return -index - 1;
+		}
+		
+		return toInclusive ? index + 1 : index;
+	}
+	
+	/**
+	 * Splits off the subtrees of the first half of the piece. A piece down to
+	 * a single leaf, or whose traversal started, is not split.
+	 * 
+	 * @return the piece of the entries before those of this one, or
+	 *         <code>null</code> if it cannot be split
+	 */
+	public TreeSpliterator<K, V> trySplit() {
+		if (node == null || leaf != null) {
+			return null;
+		}
+		
+		while (node instanceof InnerNode<?, ?> && hi - lo == 1) {
+			setNode(((InnerNode<K, V>) node).getChild(lo));
+		}
+		
+		if (!(node instanceof InnerNode<?, ?>) || hi - lo < 2) {
+			return null;
+		}
+		
+		int middle = (lo + hi) >>> 1;
+		long size = estimate * (middle - lo) / (hi - lo);
+		TreeSpliterator<K, V> prefix = new TreeSpliterator<K, V>(node, lo,
+				middle, from, fromInclusive, size, linked);
+		
+		lo = middle;
+		from = null;
+		estimate -= size;
+		
+		return prefix;
+	}
+	
+	/**
+	 * Gives the next entry to <code>visitor</code>.
+	 * 
+	 * @return <code>false</code> if there is no entry left
+	 */
+	public boolean tryAdvance(EntryVisitor<? super K, ? super V> visitor) {
+		if (!hasNext()) {
+			return false;
+		}
+		
+		visitor.visit(leaf.getKey(index), leaf.getValue(index));
+		index++;
+		
+		if (estimate > 0) {
+			estimate--;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Gives every entry left to <code>visitor</code>.
+	 */
+	public void forEachRemaining(EntryVisitor<? super K, ? super V> visitor) {
+		while (hasNext()) {
+			int end = leaf.equals(last) ? lastIndex : leaf.getSlots();
+			
+			for (; index < end; index++) {
+				visitor.visit(leaf.getKey(index), leaf.getValue(index));
+			}
+		}
+	}
+	
+	/*
+	 * Positions the traversal on the next entry, returning false when there
+	 * is none.
+	 */
+	private boolean hasNext() {
+		if (leaf == null) {
+			if (node == null) {
+				return false;
+			}
+			
+			start();
+		}
+		
+		while (true) {
+			if (leaf.equals(last)) {
+				if (index < lastIndex) {
+					return true;
+				}
+				
+				break;
+			}
+			
+			if (index < leaf.getSlots()) {
+				return true;
+			}
+			
+			leaf = linked ? (LeafNode<K, V>) leaf.getNext() : path.nextLeaf();
+			index = 0;
+		}
+		
+		node = null;
+		estimate = 0;
+		
+		return false;
+	}
+	
+	/*
+	 * Finds the first and last entries of the piece.
+	 */
+	private void start() {
+		if (node instanceof LeafNode<?, ?>) {
+			leaf = last = (LeafNode<K, V>) node;
+			index = Math.max(lo, 0);
+			lastIndex = hi;
+			return;
+		}
+		
+		Node<K, V> first = ((InnerNode<K, V>) node).getChild(lo);
+		
+		if (!linked) {
+			path = new Path<K, V>();
+			path.add(node, -1);
+			path.add(first, lo);
+		}
+		
+		while (first instanceof InnerNode<?, ?>) {
+			int childIndex = from == null ? 0 : getChildIndex(first, from);
+			
+			first = ((InnerNode<K, V>) first).getChild(childIndex);
+			
+			if (!linked) {
+				path.add(first, childIndex);
+			}
+		}
+		
+		Node<K, V> end = ((InnerNode<K, V>) node).getChild(hi - 1);
+		
+		while (end instanceof InnerNode<?, ?>) {
+			end = ((InnerNode<K, V>) end).getChild(
+					to == null ? end.getSlots() : getChildIndex(end, to));
+		}
+		
+		leaf = (LeafNode<K, V>) first;
+		index = from == null ? 0 : getFromIndex(first);
+		last = (LeafNode<K, V>) end;
+		lastIndex = to == null ? end.getSlots() : getToIndex(end);
+	}
+	
+	/**
+	 * @return the number of entries left, exact if the piece is
+	 *         {@link #SIZED}
+	 */
+	public long estimateSize() {
+		if (leaf != null && leaf.equals(last)) {
+			return Math.max(lastIndex - index, 0);
+		}
+		
+		return estimate;
+	}
+	
+	/**
+	 * @return the characteristics of the piece: it is {@link #ORDERED},
+	 *         {@link #DISTINCT}, {@link #SORTED} and {@link #NONNULL}, and
+	 *         {@link #SIZED} and {@link #SUBSIZED} once down to a leaf
+	 */
+	public int characteristics() {
+		int characteristics = ORDERED | DISTINCT | SORTED | NONNULL;
+		
+		if (node == null || node instanceof LeafNode<?, ?>) {
+			characteristics |= SIZED | SUBSIZED;
+		}
+		
+		return characteristics;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+/**
+ * The shape of a {@link BPlusTree} when it was measured, along with the
+ * number of structure changes since the tree was created. Levels are
+ * numbered from the root, at level 0, to the leaves, at level
+ * <code>getHeight() - 1</code>. The fill of a node is its number of slots
+ * over its maximum number of slots.
+ */
+public class TreeStatistics {
+	
+	private final int height;
+	private final long innerNodes;
+	private final long leafNodes;
+	private final long entries;
+	private final double averageFill[];
+	private final double minimumFill[];
+	private final long leafSplits;
+	private final long innerSplits;
+	private final long borrows;
+	private final long merges;
+	
+	TreeStatistics(long nodes[], long entries, double averageFill[],
+			double minimumFill[], long leafSplits, long innerSplits,
+			long borrows, long merges) {
+		height = nodes.length;
+		
+		long innerNodes = 0;
+		
+		for (int i = 0; i < height - 1; i++) {
+			innerNodes += nodes[i];
+		}
+		
+		this.innerNodes = innerNodes;
+		leafNodes = height > 0 ? nodes[height - 1] : 0;
+		this.entries = entries;
+		this.averageFill = averageFill;
+		this.minimumFill = minimumFill;
+		this.leafSplits = leafSplits;
+		this.innerSplits = innerSplits;
+		this.borrows = borrows;
+		this.merges = merges;
+	}
+	
+	/**
+	 * @return the number of levels, 0 for an empty tree
+	 */
+	public int getHeight() {
+		return height;
+	}
+	
+	public long getInnerNodes() {
+		return innerNodes;
+	}
+	
+	public long getLeafNodes() {
+		return leafNodes;
+	}
+	
+	public long getEntries() {
+		return entries;
+	}
+	
+	/**
+	 * @return the slots used over the slots available in the nodes of
+	 *         <code>level</code>
+	 */
+	public double getAverageFill(int level) {
+		return averageFill[level];
+	}
+	
+	/**
+	 * @return the fill of the emptiest node of <code>level</code>
+	 */
+	public double getMinimumFill(int level) {
+		return minimumFill[level];
+	}
+	
+	/**
+	 * @return the number of leaves split by an insert
+	 */
+	public long getLeafSplits() {
+		return leafSplits;
+	}
+	
+	/**
+	 * @return the number of inner nodes split by an insert, the root
+	 *         included
+	 */
+	public long getInnerSplits() {
+		return innerSplits;
+	}
+	
+	/**
+	 * @return the number of nodes, leaf or inner, that took slots from a
+	 *         sibling after a delete
+	 */
+	public long getBorrows() {
+		return borrows;
+	}
+	
+	/**
+	 * @return the number of nodes, leaf or inner, merged into a sibling
+	 *         after a delete
+	 */
+	public long getMerges() {
+		return merges;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuffer buffer = new StringBuffer();
+		buffer.append("height: ").append(height);
+		buffer.append(", inner nodes: ").append(innerNodes);
+		buffer.append(", leaf nodes: ").append(leafNodes);
+		buffer.append(", entries: ").append(entries);
+		
+		for (int i = 0; i < height; i++) {
+			buffer.append(", level ").append(i).append(" fill: ");
+			buffer.append(averageFill[i]).append(" (min ");
+			buffer.append(minimumFill[i]).append(')');
+		}
+		
+		buffer.append(", leaf splits: ").append(leafSplits);
+		buffer.append(", inner splits: ").append(innerSplits);
+		buffer.append(", borrows: ").append(borrows);
+		buffer.append(", merges: ").append(merges);
+		
+		return buffer.toString();
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores {@link Integer}s as variable-length integers: the number is zigzag
+ * encoded so that small negative numbers stay short, then written 7 bits
+ * per byte, least significant first, the high bit of a byte telling that
+ * another one follows. The slot takes the 5 bytes of the longest numbers.
+ */
+public class VarIntegerSerializer implements VariableSerializer<Integer> {
+	
+	private static final int MAX_SIZE = 5;
+
+	public int getSize() {
+		return MAX_SIZE;
+	}
+
+	public int getSize(Integer object) {
+		int value = encode(object.intValue());
+		int size = 1;
+		
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		
+		return size;
+	}
+
+	public int getSize(ByteBuffer buffer, int offset) {
+		int size = 1;
+		
+		while (buffer.get(offset + size - 1) < 0) {
+			size++;
+		}
+		
+		return size;
+	}
+
+	public void write(ByteBuffer buffer, int offset, Integer object) {
+		int value = encode(object.intValue());
+		
+		while ((value & ~0x7F) != 0) {
+			buffer.put(offset++, (byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		
+		buffer.put(offset, (byte) value);
+	}
+
+	public Integer read(ByteBuffer buffer, int offset) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		
+		do {
+			b = buffer.get(offset++);
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		
+		return Integer.valueOf((value >>> 1) ^ -(value & 1));
+	}
+	
+	private static int encode(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link Serializer} whose objects do not always fill their slot, so
+ * that the bytes after them can be left out when the slot is copied out of
+ * a node, in the records of a
+ * {@link cherri.bheaven.bplustree.wal.WriteAheadLog} for example. {@link #getSize()} remains the size
+ * of a slot, that is of the largest object.
+ */
+public interface VariableSerializer<T> extends Serializer<T> {
+	
+	/**
+	 * @return the number of bytes {@link #write(ByteBuffer, int, Object)}
+	 *         writes for <code>object</code>
+	 */
+	int getSize(T object);
+	
+	/**
+	 * @return the number of bytes of the object written in the slot starting
+	 *         at <code>offset</code>
+	 */
+	int getSize(ByteBuffer buffer, int offset);
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.disk;
+
+import java.nio.ByteBuffer;
+
+import cherri.bheaven.bplustree.Serializer;
+
+/**
+ * Bounded cache of decoded pages in front of the mapped file of a
+ * {@link DiskNodeFactory}. A page is decoded into a frame the first time it
+ * is needed and written back only when its frame is evicted or the pool is
+ * flushed, so the nodes on the path from the root are read from plain
+ * arrays.
+ * <p>
+ * Frames are evicted with the CLOCK algorithm. Each frame has a usage
+ * count, set when the frame is accessed and decremented as the clock hand
+ * passes over it. Inner nodes are given a higher count than leaves, so the
+ * upper levels of the tree, which every lookup goes through, are the last
+ * to be evicted. A pinned frame is never evicted; the factory keeps the
+ * frame of the root pinned.
+ */
+public class BufferPool<K extends Comparable<K>, V> {
+
+	static final int FREE = 0;
+	static final int LEAF = 1;
+	static final int INNER = 2;
+	
+	static final int TYPE = 0;
+	private static final int SLOTS = 4;
+	static final int NEXT = 8;
+	private static final int KEYS = 12;
+	private static final int LEAF_USAGE = 1;
+	private static final int INNER_USAGE = 3;
+	
+	private final DiskNodeFactory<K, V> factory;
+	private final Serializer<K> keySerializer;
+	private final Serializer<V> valueSerializer;
+	private final int order;
+	private final int records;
+	private final Frame<K, V> frames[];
+	/* Open addressing page table: frame index + 1, 0 for an empty slot. */
+	private final int table[];
+	private final int mask;
+	private int hand;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long writes;
+	
+	/**
+	 * @param factory the factory owning the mapped file
+	 * @param capacity the number of frames
+	 */
+	@SuppressWarnings("unchecked")
+	BufferPool(DiskNodeFactory<K, V> factory, int capacity) {
+		if (capacity < 4) {
+			throw new IllegalArgumentException(
+					"Buffer pool needs at least 4 frames: " + capacity);
+		}
+		
+		this.factory = factory;
+		keySerializer = factory.getKeySerializer();
+		valueSerializer = factory.getValueSerializer();
+		order = factory.getOrder();
+		records = factory.getRecords();
+		
+		frames = (Frame<K, V>[]) new Frame<?, ?>[capacity];
+		for (int i = 0; i < capacity; i++) {
+			frames[i] = new Frame<K, V>(i, Math.max(records, order - 1),
+					records, order);
+		}
+		
+		int size = Integer.highestOneBit(capacity) << 2;
+		table = new int[size];
+		mask = size - 1;
+	}
+	
+	static int getLeafPageSize(int records, int keySize, int valueSize) {
+		return KEYS + records * (keySize + valueSize);
+	}
+	
+	static int getInnerPageSize(int order, int keySize) {
+		return KEYS + (order - 1) * keySize + order * 4;
+	}
+
+	/**
+	 * @return the number of frames
+	 */
+	public int getCapacity() {
+		return frames.length;
+	}
+
+	/**
+	 * @return the number of page requests served from a frame
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of page requests that had to decode the page
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of frames given to another page
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of pages written back to the file
+	 */
+	public long getWrites() {
+		return writes;
+	}
+	
+	/*
+	 * Gives the frame of an existing page, decoding it if it is not in the
+	 * pool.
+	 */
+	Frame<K, V> fix(int page) {
+		int index = find(page);
+		Frame<K, V> frame;
+		
+		if (index >= 0) {
+			hits++;
+			frame = frames[index];
+		} else {
+			misses++;
+			frame = getVictim();
+			read(frame, page);
+			insert(frame);
+		}
+		
+		touch(frame);
+		
+		return frame;
+	}
+	
+	/*
+	 * Gives the frame of a newly allocated page.
+	 */
+	Frame<K, V> create(int page, int type) {
+		Frame<K, V> frame = getVictim();
+		
+		frame.page = page;
+		frame.type = type;
+		frame.slots = 0;
+		frame.next = DiskNodeFactory.NO_PAGE;
+		frame.dirty = true;
+		frame.node = createNode(frame);
+		insert(frame);
+		touch(frame);
+		
+		return frame;
+	}
+	
+	void touch(Frame<K, V> frame) {
+		int usage = frame.type == LEAF ? LEAF_USAGE : INNER_USAGE;
+		
+		if (frame.usage < usage) {
+			frame.usage = usage;
+		}
+	}
+	
+	void pin(Frame<K, V> frame) {
+		frame.pins++;
+	}
+	
+	void unpin(Frame<K, V> frame) {
+		frame.pins--;
+	}
+	
+	/*
+	 * Forgets a page whose node left the tree, without writing it back.
+	 */
+	void discard(int page) {
+		int index = find(page);
+		
+		if (index >= 0) {
+			Frame<K, V> frame = frames[index];
+			
+			delete(frame);
+			frame.page = DiskNodeFactory.NO_PAGE;
+			frame.node = null;
+			frame.dirty = false;
+			frame.usage = 0;
+		}
+	}
+	
+	/*
+	 * Writes back every dirty frame.
+	 */
+	void flush() {
+		for (Frame<K, V> frame : frames) {
+			if (frame.page != DiskNodeFactory.NO_PAGE && frame.dirty) {
+				write(frame);
+			}
+		}
+	}
+	
+	private DiskNode<K, V> createNode(Frame<K, V> frame) {
+		if (frame.type == LEAF) {
+			return new DiskLeafNode<K, V>(this, frame, records);
+		} else {
+			return new DiskInnerNode<K, V>(this, frame, order - 1);
+		}
+	}
+	
+	DiskNodeFactory<K, V> getFactory() {
+		return factory;
+	}
+	
+	private Frame<K, V> getVictim() {
+		for (int i = 0; i < frames.length * (INNER_USAGE + 2); i++) {
+			Frame<K, V> frame = frames[hand];
+			hand = (hand + 1) % frames.length;
+			
+			if (frame.page == DiskNodeFactory.NO_PAGE) {
+				return frame;
+			} else if (frame.pins == 0) {
+				if (frame.usage > 0) {
+					frame.usage--;
+				} else {
+					evict(frame);
+					return frame;
+				}
+			}
+		}
+		
+		throw new IllegalStateException(
+				"All the frames of the buffer pool are pinned.");
+	}
+	
+	private void evict(Frame<K, V> frame) {
+		if (frame.dirty) {
+			write(frame);
+		}
+		
+		delete(frame);
+		frame.page = DiskNodeFactory.NO_PAGE;
+		frame.node = null;
+		evictions++;
+	}
+	
+	private void read(Frame<K, V> frame, int page) {
+		ByteBuffer buffer = factory.getBuffer(page);
+		int offset = factory.getOffset(page);
+		int keySize = keySerializer.getSize();
+		
+		frame.page = page;
+		frame.type = buffer.getInt(offset + TYPE);
+		frame.slots = buffer.getInt(offset + SLOTS);
+		frame.next = buffer.getInt(offset + NEXT);
+		frame.dirty = false;
+		
+		for (int i = 0; i < frame.slots; i++) {
+			frame.keys[i] = keySerializer.read(buffer,
+					offset + KEYS + i * keySize);
+		}
+		
+		if (frame.type == LEAF) {
+			int valueSize = valueSerializer.getSize();
+			int values = offset + KEYS + records * keySize;
+			
+			for (int i = 0; i < frame.slots; i++) {
+				frame.values[i] = valueSerializer.read(buffer,
+						values + i * valueSize);
+			}
+		} else {
+			int children = offset + KEYS + (order - 1) * keySize;
+			
+			for (int i = 0; i < frame.slots + 1; i++) {
+				frame.children[i] = buffer.getInt(children + i * 4);
+			}
+		}
+		
+		frame.node = createNode(frame);
+	}
+	
+	private void write(Frame<K, V> frame) {
+		ByteBuffer buffer = factory.getBuffer(frame.page);
+		int offset = factory.getOffset(frame.page);
+		int keySize = keySerializer.getSize();
+		
+		buffer.putInt(offset + TYPE, frame.type);
+		buffer.putInt(offset + SLOTS, frame.slots);
+		buffer.putInt(offset + NEXT, frame.next);
+		
+		for (int i = 0; i < frame.slots; i++) {
+			keySerializer.write(buffer, offset + KEYS + i * keySize,
+					frame.keys[i]);
+		}
+		
+		if (frame.type == LEAF) {
+			int valueSize = valueSerializer.getSize();
+			int values = offset + KEYS + records * keySize;
+			
+			for (int i = 0; i < frame.slots; i++) {
+				valueSerializer.write(buffer, values + i * valueSize,
+						frame.values[i]);
+			}
+		} else {
+			int children = offset + KEYS + (order - 1) * keySize;
+			
+			for (int i = 0; i < frame.slots + 1; i++) {
+				buffer.putInt(children + i * 4, frame.children[i]);
+			}
+		}
+		
+		frame.dirty = false;
+		writes++;
+	}
+	
+	private int hash(int page) {
+		return (page * 0x9E3779B1) >>> 7 & mask;
+	}
+	
+	private int find(int page) {
+		for (int i = hash(page); ; i = (i + 1) & mask) {
+			int slot = table[i];
+			
+			if (slot == 0) {
+				return -1;
+			} else if (frames[slot - 1].page == page) {
+				return slot - 1;
+			}
+		}
+	}
+	
+	private void insert(Frame<K, V> frame) {
+		int i = hash(frame.page);
+		
+		while (table[i] != 0) {
+			i = (i + 1) & mask;
+		}
+		
+		table[i] = frame.index + 1;
+	}
+	
+	private void delete(Frame<K, V> frame) {
+		int i = hash(frame.page);
+		
+		while (table[i] != frame.index + 1) {
+			i = (i + 1) & mask;
+		}
+		
+		// Move back the following entries that can no longer be reached.
+		for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+			int home = hash(frames[table[j] - 1].page);
+			
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				table[i] = table[j];
+				i = j;
+			}
+		}
+		
+		table[i] = 0;
+	}
+}
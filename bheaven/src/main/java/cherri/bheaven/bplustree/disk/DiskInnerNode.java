@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.disk;
+
+import cherri.bheaven.bplustree.InnerNode;
+import cherri.bheaven.bplustree.Node;
+
+/**
+ * Inner node stored in a page of a {@link DiskNodeFactory}. Children are
+ * stored as page numbers.
+ */
+public class DiskInnerNode<K extends Comparable<K>, V> extends DiskNode<K, V>
+		implements InnerNode<K, V> {
+
+	/**
+	 * @param pool the pool holding the frame
+	 * @param frame the frame of the page
+	 * @param maxSlots
+	 */
+	DiskInnerNode(BufferPool<K, V> pool, Frame<K, V> frame, int maxSlots) {
+		super(pool, frame, maxSlots);
+	}
+	
+	int getChildPage(int index) {
+		return getFrame().children[index];
+	}
+	
+	private void setChildPage(int page, int index) {
+		Frame<K, V> frame = getFrame();
+		frame.children[index] = page;
+		frame.dirty = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#getChild(int)
+	 */
+	public Node<K, V> getChild(int index) {
+		return getFactory().getNode(getChildPage(index));
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#setChild(cherri.bheaven.bplustree.Node, int)
+	 */
+	public void setChild(Node<K, V> child, int index) {
+		setChildPage(getPage(child), index);
+	}
+	
+	/*
+	 * Copies the key slot and the child on its right.
+	 */
+	private void copySlot(int index, DiskInnerNode<K, V> node, int nodeIndex) {
+		copyKey(index, node, nodeIndex);
+		node.setChildPage(getChildPage(index + 1), nodeIndex + 1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#insert(K, cherri.bheaven.bplustree.Node)
+	 */
+	public void insert(K key, Node<K, V> child) {
+		
+		int index = getSlots() - 1;
+		
+		while (index >= 0 && key.compareTo(getKey(index)) < 0) {
+			copySlot(index, this, index + 1);
+
+			index--;
+		}
+		
+		setKey(key, index + 1);
+		setChild(child, index + 2);
+		
+		setSlots(getSlots() + 1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#split(K, cherri.bheaven.bplustree.Node)
+	 */
+	public InnerNode<K, V> split(K key, Node<K, V> newNode) {
+		checkIsFull();
+		
+		DiskInnerNode<K, V> newInnerNode =
+			(DiskInnerNode<K, V>) getFactory().getInnerNode();
+		int count = getSlots() / 2;
+		int right = count - 1;
+		int left = getSlots() - 1;
+		boolean found = false;
+		for (int i = 0; i < count; i++, right--) {
+			if(found || key.compareTo(getKey(left)) < 0) {
+				copySlot(left, newInnerNode, right);
+				left--;
+			} else {
+				newInnerNode.setKey(key, right);
+				newInnerNode.setChild(newNode, right + 1);
+				found = true;
+			}
+		}
+		setSlots(getSlots() - count + (found ? 1 : 0));
+		newInnerNode.setSlots(count);
+		if (!found) {
+			insert(key, newNode);
+		}
+		setSlots(getSlots() - 1);
+		newInnerNode.setChildPage(getChildPage(getSlots() + 1), 0);
+		return newInnerNode;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#remove(int)
+	 */
+	public void remove(int index) {
+		
+		for (int i = index; i < getSlots(); i++) {
+			if (i < getSlots() - 1) {
+				copyKey(i + 1, this, i);
+			}
+			setChildPage(getChildPage(i + 1), i);
+		}
+		
+		setSlots(getSlots() - 1);
+		
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#hasEnoughSlots()
+	 */
+	public boolean hasEnoughSlots() {
+		return getSlots() >= getMaxSlots() / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#canGiveSlots()
+	 */
+	public boolean canGiveSlots() {
+		return getSlots() - 1 >= getMaxSlots() / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#leftShift(int)
+	 */
+	public void leftShift(int count) {
+		for (int i = 0; i < getSlots() - count; i++) {
+			copyKey(i + count, this, i);
+			setChildPage(getChildPage(i + count), i);
+		}
+		
+		setChildPage(getChildPage(getSlots()), getSlots() - count);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#rightShift(int)
+	 */
+	public void rightShift(int count) {
+		for (int i = getSlots() - 1; i >= 0 ; i--) {
+			copySlot(i, this, i + count);
+		}
+		
+		setChildPage(getChildPage(0), count);
+		
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToLeft(cherri.bheaven.bplustree.Node, int)
+	 */
+	public void copyToLeft(Node<K, V> node, int count) {
+		DiskInnerNode<K, V> innerNode = (DiskInnerNode<K, V>) node;
+		
+		for (int i = 0; i < count; i++) {
+			if(i < getSlots()) {
+				copyKey(i, innerNode, node.getSlots() + i + 1);
+			}
+			innerNode.setChildPage(getChildPage(i), node.getSlots() + i + 1);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToRight(cherri.bheaven.bplustree.Node, int)
+	 */
+	public void copyToRight(Node<K, V> node, int count) {
+		DiskInnerNode<K, V> innerNode = (DiskInnerNode<K, V>) node;
+		
+		for (int i = 0; i < count - 1; i++) {
+			copySlot(getSlots() - count + i + 1, innerNode, i);
+		}
+		innerNode.setChildPage(getChildPage(getSlots() - count + 1), 0);
+
+	}
+
+}
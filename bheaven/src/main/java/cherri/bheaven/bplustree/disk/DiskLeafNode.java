@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.disk;
+
+import cherri.bheaven.bplustree.LeafNode;
+import cherri.bheaven.bplustree.Node;
+
+/**
+ * Leaf node stored in a page of a {@link DiskNodeFactory}.
+ */
+public class DiskLeafNode<K extends Comparable<K>, V> extends DiskNode<K, V>
+		implements LeafNode<K, V> {
+
+	/**
+	 * @param pool the pool holding the frame
+	 * @param frame the frame of the page
+	 * @param maxSlots
+	 */
+	DiskLeafNode(BufferPool<K, V> pool, Frame<K, V> frame, int maxSlots) {
+		super(pool, frame, maxSlots);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#getValue(int)
+	 */
+	public V getValue(int index) {
+		return getFrame().values[index];
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#setValue(V, int)
+	 */
+	public void setValue(V value, int index) {
+		Frame<K, V> frame = getFrame();
+		frame.values[index] = value;
+		frame.dirty = true;
+	}
+	
+	/*
+	 * Copies the key and the value to a node, possibly this one.
+	 */
+	private void copySlot(int index, DiskLeafNode<K, V> node, int nodeIndex) {
+		Frame<K, V> source = getFrame();
+		getPool().pin(source);
+		
+		try {
+			Frame<K, V> target = node.getFrame();
+			target.keys[nodeIndex] = source.keys[index];
+			target.values[nodeIndex] = source.values[index];
+			target.dirty = true;
+		} finally {
+			getPool().unpin(source);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#insert(K, V)
+	 */
+	public void insert(K key, V value) {
+		int index = getSlots() - 1;
+		
+		while (index >= 0 && key.compareTo(getKey(index)) < 0) {
+			copySlot(index, this, index + 1);
+
+			index--;
+		}
+		
+		setKey(key, index + 1);
+		setValue(value, index + 1);
+		
+		setSlots(getSlots() + 1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#split(K, V)
+	 */
+	public LeafNode<K, V> split(K key, V value) {
+		checkIsFull();
+		
+		DiskLeafNode<K, V> newLeafNode =
+			(DiskLeafNode<K, V>) getFactory().getLeafNode();
+		newLeafNode.setNextPage(getNextPage());
+		int count = (getSlots() + 1) / 2;
+		int right = count - 1;
+		int left = getSlots() - 1;
+		boolean found = false;
+		for (int i = 0; i < count; i++, right--) {
+			if(found || key.compareTo(getKey(left)) < 0) {
+				copySlot(left, newLeafNode, right);
+				left--;
+			} else {
+				newLeafNode.setKey(key, right);
+				newLeafNode.setValue(value, right);
+				found = true;
+			}
+		}
+		setSlots(getSlots() - count + (found ? 1 : 0));
+		newLeafNode.setSlots(count);
+		if (!found) {
+			insert(key, value);
+		}
+		setNext(newLeafNode);
+		return newLeafNode;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#remove(int)
+	 */
+	public void remove(int index) {
+		
+		for (int i = index; i < getSlots() - 1; i++) {
+			copySlot(i + 1, this, i);
+		}
+		
+		setSlots(getSlots() - 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#hasEnoughSlots()
+	 */
+	public boolean hasEnoughSlots() {
+		return getSlots() >= (getMaxSlots() + 1) / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#canGiveSlots()
+	 */
+	public boolean canGiveSlots() {
+		return getSlots() - 1 >= (getMaxSlots() + 1) / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#leftShift(int)
+	 */
+	public void leftShift(int count) {
+		for (int i = 0; i < getSlots() - count; i++) {
+			copySlot(i + count, this, i);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#rightShift(int)
+	 */
+	public void rightShift(int count) {
+		for (int i = getSlots() - 1; i >= 0 ; i--) {
+			copySlot(i, this, i + count);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToLeft(cherri.bheaven.bplustree.Node, int)
+	 */
+	public void copyToLeft(Node<K, V> node, int count) {
+		for (int i = 0; i < count; i++) {
+			copySlot(i, (DiskLeafNode<K, V>) node, node.getSlots() + i);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToRight(cherri.bheaven.bplustree.Node, int)
+	 */
+	public void copyToRight(Node<K, V> node, int count) {
+		for (int i = 0; i < count; i++) {
+			copySlot(getSlots() - count + i, (DiskLeafNode<K, V>) node, i);
+		}
+	}
+
+}
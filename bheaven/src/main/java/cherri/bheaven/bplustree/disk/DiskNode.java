@@ -0,0 +1,231 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.disk;
+
+import cherri.bheaven.bplustree.KeySearch;
+import cherri.bheaven.bplustree.Node;
+
+/**
+ * A handle over a page of a {@link DiskNodeFactory} file. The content of the
+ * page is read from and written to its frame in the {@link BufferPool}; if
+ * the frame was given to another page in the meantime, the page is fixed in
+ * the pool again.
+ * <p>
+ * Two handles over the same page are equal.
+ */
+public abstract class DiskNode<K extends Comparable<K>, V> implements Node<K, V> {
+
+	private final BufferPool<K, V> pool;
+	private final int page;
+	private final int maxSlots;
+	private final KeySearch search;
+	private Frame<K, V> frame;
+	
+	/**
+	 * @param pool the pool holding the frame
+	 * @param frame the frame of the page
+	 * @param maxSlots
+	 */
+	DiskNode(BufferPool<K, V> pool, Frame<K, V> frame, int maxSlots) {
+		this.pool = pool;
+		this.frame = frame;
+		this.maxSlots = maxSlots;
+		page = frame.page;
+		
+		KeySearch search = pool.getFactory().getSearch();
+		this.search = search != null ? search : KeySearch.forSlots(maxSlots);
+	}
+	
+	static int getPage(Node<?, ?> node) {
+		return node == null ? DiskNodeFactory.NO_PAGE :
+				((DiskNode<?, ?>) node).page;
+	}
+	
+	BufferPool<K, V> getPool() {
+		return pool;
+	}
+	
+	DiskNodeFactory<K, V> getFactory() {
+		return pool.getFactory();
+	}
+	
+	/*
+	 * The frame holding the page, fixing the page again if it was evicted.
+	 */
+	Frame<K, V> getFrame() {
+		Frame<K, V> frame = this.frame;
+		
+		if (frame.page == page) {
+			pool.touch(frame);
+		} else {
+			frame = pool.fix(page);
+			this.frame = frame;
+		}
+		
+		return frame;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getKey(int)
+	 */
+	public K getKey(int index) {
+		return getFrame().keys[index];
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setKey(K, int)
+	 */
+	public void setKey(K key, int index) {
+		Frame<K, V> frame = getFrame();
+		frame.keys[index] = key;
+		frame.dirty = true;
+	}
+	
+	/*
+	 * Copies a key to a node, possibly this one. The frame of this node is
+	 * pinned while the other one is fixed so it cannot be evicted.
+	 */
+	void copyKey(int index, DiskNode<K, V> node, int nodeIndex) {
+		Frame<K, V> source = getFrame();
+		pool.pin(source);
+		
+		try {
+			Frame<K, V> target = node.getFrame();
+			target.keys[nodeIndex] = source.keys[index];
+			target.dirty = true;
+		} finally {
+			pool.unpin(source);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getKeyIndex(K)
+	 */
+	public int getKeyIndex(K key) {
+		Frame<K, V> frame = getFrame();
+		return search.search(frame.keys, frame.slots, key);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#compareKey(int, java.lang.Comparable)
+	 */
+	public int compareKey(int index, K key) {
+		return getKey(index).compareTo(key);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getSlots()
+	 */
+	public int getSlots() {
+		return getFrame().slots;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setSlots(int)
+	 */
+	public void setSlots(int slots) {
+		Frame<K, V> frame = getFrame();
+		frame.slots = slots;
+		frame.dirty = true;
+	}
+
+	int getNextPage() {
+		return getFrame().next;
+	}
+	
+	void setNextPage(int page) {
+		Frame<K, V> frame = getFrame();
+		frame.next = page;
+		frame.dirty = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getNext()
+	 */
+	public Node<K, V> getNext() {
+		return getFactory().getNode(getNextPage());
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setNext(cherri.bheaven.bplustree.Node)
+	 */
+	public void setNext(Node<K, V> next) {
+		setNextPage(getPage(next));
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getMaxSlots()
+	 */
+	public int getMaxSlots() {
+		return maxSlots;
+	}
+
+	public boolean isEmpty() {
+		return getSlots() == 0;
+	}
+
+	public boolean isFull() {
+		return getSlots() == maxSlots;
+	}
+	
+	protected void checkIsFull() {
+		if (!isFull()) {
+			throw new IllegalStateException("Cannot split a non full node.");
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object object) {
+		return object instanceof DiskNode<?, ?> &&
+				((DiskNode<?, ?>) object).pool == pool &&
+				((DiskNode<?, ?>) object).page == page;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return page;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuffer buffer = new StringBuffer();
+		buffer.append(getClass().getName());
+		buffer.append('@');
+		buffer.append(page);
+		buffer.append(" keys:");
+		
+		for (int i = 0; i < getSlots(); i++) {
+			buffer.append(' ');
+			buffer.append(getKey(i));
+		}
+		
+		return buffer.toString();
+	}
+
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.disk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import cherri.bheaven.bplustree.InnerNode;
+import cherri.bheaven.bplustree.KeySearch;
+import cherri.bheaven.bplustree.LeafNode;
+import cherri.bheaven.bplustree.Node;
+import cherri.bheaven.bplustree.PersistentNodeFactory;
+import cherri.bheaven.bplustree.RecyclingNodeFactory;
+import cherri.bheaven.bplustree.Serializer;
+
+/**
+ * Keeps the nodes in fixed-size pages of a memory-mapped file, so a tree can
+ * be larger than the heap and is still there when the file is opened again.
+ * <p>
+ * Page 0 is a header describing the file and holding the root page. Every
+ * other page holds one node. The file is mapped in segments of several
+ * pages, a new segment being mapped whenever the file grows past the last
+ * one.
+ * <p>
+ * The nodes returned are handles over their page: the pages are decoded in
+ * the frames of a {@link BufferPool} and written back to the mapped file
+ * when their frame is evicted or the factory is flushed. The frame of the
+ * root is kept pinned. The pages of the nodes a tree releases are chained
+ * in a free list starting in the header, and given again before the file
+ * grows.
+ * <p>
+ * Pages are written in place whenever their frame is evicted, so the file
+ * only holds a consistent tree once the factory has been flushed or closed.
+ * After a crash, it is the tree of the last flush only if no page was
+ * written since; a {@link cherri.bheaven.bplustree.wal.DurableBPlusTree}
+ * cannot replay its log over pages written after its last checkpoint.
+ */
+public class DiskNodeFactory<K extends Comparable<K>, V> implements
+		PersistentNodeFactory<K, V>, RecyclingNodeFactory<K, V> {
+	
+	static final int NO_PAGE = -1;
+	
+	private static final int MAGIC = 0x42487650;
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_PAGE_SIZE = 4;
+	private static final int HEADER_ORDER = 8;
+	private static final int HEADER_RECORDS = 12;
+	private static final int HEADER_ROOT = 16;
+	private static final int HEADER_PAGES = 20;
+	private static final int HEADER_FREE = 24;
+	private static final int HEADER_SIZE = 28;
+	private static final int SEGMENT_SIZE = 1 << 24;
+	private static final int DEFAULT_CAPACITY = 1024;
+	
+	private final int order;
+	private final int records;
+	private final Serializer<K> keySerializer;
+	private final Serializer<V> valueSerializer;
+	private final KeySearch search;
+	private final int pageSize;
+	private final int pagesPerSegment;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final List<MappedByteBuffer> segments;
+	private final BufferPool<K, V> pool;
+	private Frame<K, V> rootFrame;
+	
+	/**
+	 * Opens <code>file</code>, creating it if it does not exist or is empty,
+	 * with a buffer pool of 1024 frames.
+	 * 
+	 * @param file the file holding the pages
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 * @param keySerializer the serializer of the keys
+	 * @param valueSerializer the serializer of the values
+	 * @throws IOException if the file cannot be mapped or was created with
+	 *         different parameters
+	 */
+	public DiskNodeFactory(File file, int order, int records,
+			Serializer<K> keySerializer, Serializer<V> valueSerializer)
+			throws IOException {
+		this(file, order, records, keySerializer, valueSerializer,
+				DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Opens <code>file</code>, creating it if it does not exist or is empty.
+	 * 
+	 * @param file the file holding the pages
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 * @param keySerializer the serializer of the keys
+	 * @param valueSerializer the serializer of the values
+	 * @param capacity the number of frames of the buffer pool, at least 4
+	 * @throws IOException if the file cannot be mapped or was created with
+	 *         different parameters
+	 */
+	public DiskNodeFactory(File file, int order, int records,
+			Serializer<K> keySerializer, Serializer<V> valueSerializer,
+			int capacity) throws IOException {
+		this(file, order, records, keySerializer, valueSerializer, capacity,
+				null);
+	}
+	
+	/**
+	 * Opens <code>file</code>, creating it if it does not exist or is empty.
+	 * 
+	 * @param file the file holding the pages
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 * @param keySerializer the serializer of the keys
+	 * @param valueSerializer the serializer of the values
+	 * @param capacity the number of frames of the buffer pool, at least 4
+	 * @param search the search of the keys of the nodes, <code>null</code>
+	 *        to choose it from the size of each kind of node
+	 * @throws IOException if the file cannot be mapped or was created with
+	 *         different parameters
+	 */
+	public DiskNodeFactory(File file, int order, int records,
+			Serializer<K> keySerializer, Serializer<V> valueSerializer,
+			int capacity, KeySearch search) throws IOException {
+		this.order = order;
+		this.records = records;
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		this.search = search;
+		
+		int leafSize = BufferPool.getLeafPageSize(records,
+				keySerializer.getSize(), valueSerializer.getSize());
+		int innerSize = BufferPool.getInnerPageSize(order,
+				keySerializer.getSize());
+		pageSize = Math.max(HEADER_SIZE, Math.max(leafSize, innerSize));
+		pagesPerSegment = Math.max(1, SEGMENT_SIZE / pageSize);
+		
+		this.file = new RandomAccessFile(file, "rw");
+		channel = this.file.getChannel();
+		segments = new ArrayList<MappedByteBuffer>();
+		
+		boolean empty = channel.size() == 0;
+		ByteBuffer header = getBuffer(0);
+		
+		if (empty) {
+			header.putInt(HEADER_MAGIC, MAGIC);
+			header.putInt(HEADER_PAGE_SIZE, pageSize);
+			header.putInt(HEADER_ORDER, order);
+			header.putInt(HEADER_RECORDS, records);
+			header.putInt(HEADER_ROOT, NO_PAGE);
+			header.putInt(HEADER_PAGES, 1);
+		} else if (header.getInt(HEADER_MAGIC) != MAGIC ||
+				header.getInt(HEADER_PAGE_SIZE) != pageSize ||
+				header.getInt(HEADER_ORDER) != order ||
+				header.getInt(HEADER_RECORDS) != records) {
+			channel.close();
+			this.file.close();
+			throw new IOException("File " + file +
+					" was not created with the same parameters.");
+		}
+		
+		pool = new BufferPool<K, V>(this, capacity);
+	}
+	
+	/*
+	 * The segment holding the page; the page starts at getOffset(page).
+	 */
+	ByteBuffer getBuffer(int page) {
+		int segment = page / pagesPerSegment;
+		
+		try {
+			while (segments.size() <= segment) {
+				long size = (long) pagesPerSegment * pageSize;
+				segments.add(channel.map(FileChannel.MapMode.READ_WRITE,
+						segments.size() * size, size));
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot map page " + page + ".", e);
+		}
+		
+		return segments.get(segment);
+	}
+	
+	int getOffset(int page) {
+		return (page % pagesPerSegment) * pageSize;
+	}
+	
+	Serializer<K> getKeySerializer() {
+		return keySerializer;
+	}
+	
+	Serializer<V> getValueSerializer() {
+		return valueSerializer;
+	}
+	
+	/*
+	 * The search of the keys of the nodes, null to choose it from their
+	 * size.
+	 */
+	KeySearch getSearch() {
+		return search;
+	}
+	
+	int getOrder() {
+		return order;
+	}
+	
+	int getRecords() {
+		return records;
+	}
+	
+	/**
+	 * @return the buffer pool caching the pages, for its statistics
+	 */
+	public BufferPool<K, V> getBufferPool() {
+		return pool;
+	}
+	
+	/*
+	 * The first page of the free list, whose pages are chained through
+	 * their next page. The header page is never free, so 0 ends the list.
+	 */
+	private int allocatePage() {
+		ByteBuffer header = getBuffer(0);
+		int page = header.getInt(HEADER_FREE);
+		
+		if (page != 0) {
+			header.putInt(HEADER_FREE,
+					getBuffer(page).getInt(getOffset(page) + BufferPool.NEXT));
+		} else {
+			page = header.getInt(HEADER_PAGES);
+			header.putInt(HEADER_PAGES, page + 1);
+		}
+		
+		return page;
+	}
+	
+	/*
+	 * The number of pages of the file, header and free pages included.
+	 */
+	int getPageCount() {
+		return getBuffer(0).getInt(HEADER_PAGES);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.RecyclingNodeFactory#release(cherri.bheaven.bplustree.Node)
+	 */
+	@Override
+	public void release(Node<K, V> node) {
+		int page = DiskNode.getPage(node);
+		ByteBuffer header = getBuffer(0);
+		ByteBuffer buffer = getBuffer(page);
+		int offset = getOffset(page);
+		
+		pool.discard(page);
+		buffer.putInt(offset + BufferPool.TYPE, BufferPool.FREE);
+		buffer.putInt(offset + BufferPool.NEXT, header.getInt(HEADER_FREE));
+		header.putInt(HEADER_FREE, page);
+	}
+	
+	/*
+	 * Gives a handle over an existing page.
+	 */
+	Node<K, V> getNode(int page) {
+		if (page == NO_PAGE) {
+			return null;
+		}
+		
+		return pool.fix(page).node;
+	}
+	
+	/*
+	 * Moves the pin of the root frame to the new root.
+	 */
+	private void pinRoot(Node<K, V> root) {
+		if (rootFrame != null) {
+			pool.unpin(rootFrame);
+		}
+		
+		rootFrame = root == null ? null : ((DiskNode<K, V>) root).getFrame();
+		
+		if (rootFrame != null) {
+			pool.pin(rootFrame);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.NodeFactory#getInnerNode()
+	 */
+	@Override
+	public InnerNode<K, V> getInnerNode() {
+		return (InnerNode<K, V>) pool.create(allocatePage(),
+				BufferPool.INNER).node;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.NodeFactory#getLeafNode()
+	 */
+	@Override
+	public LeafNode<K, V> getLeafNode() {
+		return (LeafNode<K, V>) pool.create(allocatePage(),
+				BufferPool.LEAF).node;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.PersistentNodeFactory#getRoot()
+	 */
+	@Override
+	public Node<K, V> getRoot() {
+		Node<K, V> root = getNode(getBuffer(0).getInt(HEADER_ROOT));
+		pinRoot(root);
+		return root;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.PersistentNodeFactory#setRoot(cherri.bheaven.bplustree.Node)
+	 */
+	@Override
+	public void setRoot(Node<K, V> root) {
+		getBuffer(0).putInt(HEADER_ROOT, DiskNode.getPage(root));
+		pinRoot(root);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.PersistentNodeFactory#flush()
+	 */
+	@Override
+	public void flush() throws IOException {
+		pool.flush();
+		
+		for (MappedByteBuffer segment : segments) {
+			segment.force();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+		segments.clear();
+		channel.close();
+		file.close();
+	}
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.disk;
+
+/**
+ * A slot of a {@link BufferPool} holding the decoded content of a page.
+ */
+class Frame<K extends Comparable<K>, V> {
+	
+	final int index;
+	int page;
+	int type;
+	int slots;
+	int next;
+	final K keys[];
+	final V values[];
+	final int children[];
+	boolean dirty;
+	int pins;
+	int usage;
+	DiskNode<K, V> node;
+	
+	/**
+	 * @param index the index of the frame in the pool
+	 * @param maxKeys the maximum number of keys of a node of any type
+	 * @param maxValues the maximum number of values of a leaf node
+	 * @param maxChildren the maximum number of children of an inner node
+	 */
+	@SuppressWarnings("unchecked")
+	Frame(int index, int maxKeys, int maxValues, int maxChildren) {
+		this.index = index;
+		page = DiskNodeFactory.NO_PAGE;
+		keys = (K[]) new Comparable<?>[maxKeys];
+		values = (V[]) new Object[maxValues];
+		children = new int[maxChildren];
+	}
+}
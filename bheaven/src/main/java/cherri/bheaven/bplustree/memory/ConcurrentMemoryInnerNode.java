@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.memory;
+
+import cherri.bheaven.bplustree.ConcurrentNode;
+import cherri.bheaven.bplustree.KeySearch;
+import cherri.bheaven.bplustree.Latch;
+
+/**
+ * A {@link MemoryInnerNode} with the latch and the high key of a
+ * {@link ConcurrentNode}.
+ */
+public class ConcurrentMemoryInnerNode<K extends Comparable<K>, V> extends
+		MemoryInnerNode<K, V> implements ConcurrentNode<K, V> {
+
+	private K highKey;
+	private final Latch latch = new Latch();
+
+	/**
+	 * @param maxSlots
+	 * @param search the search of the keys, <code>null</code> to choose it
+	 *        from <code>maxSlots</code>
+	 */
+	public ConcurrentMemoryInnerNode(int maxSlots, KeySearch search) {
+		super(maxSlots, search);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.ConcurrentNode#getHighKey()
+	 */
+	public K getHighKey() {
+		return highKey;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.ConcurrentNode#setHighKey(java.lang.Comparable)
+	 */
+	public void setHighKey(K highKey) {
+		this.highKey = highKey;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.ConcurrentNode#getLatch()
+	 */
+	public Latch getLatch() {
+		return latch;
+	}
+	
+	@Override
+	MemoryInnerNode<K, V> newInnerNode() {
+		return new ConcurrentMemoryInnerNode<K, V>(getMaxSlots(), getSearch());
+	}
+	
+	@Override
+	void clear() {
+		super.clear();
+		highKey = null;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.memory;
+
+import cherri.bheaven.bplustree.ConcurrentNode;
+import cherri.bheaven.bplustree.KeySearch;
+import cherri.bheaven.bplustree.Latch;
+import cherri.bheaven.bplustree.Node;
+
+/**
+ * A {@link MemoryLongLeafNode} with the latch and the high key of a
+ * {@link ConcurrentNode}.
+ */
+public class ConcurrentMemoryLongLeafNode<V> extends
+		MemoryLongLeafNode<V> implements ConcurrentNode<Long, V> {
+
+	private Long highKey;
+	private final Latch latch = new Latch();
+
+	/**
+	 * @param maxSlots
+	 * @param next
+	 * @param search the search of the keys, <code>null</code> to choose it
+	 *        from <code>maxSlots</code>
+	 */
+	public ConcurrentMemoryLongLeafNode(int maxSlots, Node<Long, V> next,
+			KeySearch search) {
+		super(maxSlots, next, search);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.ConcurrentNode#getHighKey()
+	 */
+	public Long getHighKey() {
+		return highKey;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.ConcurrentNode#setHighKey(java.lang.Comparable)
+	 */
+	public void setHighKey(Long highKey) {
+		this.highKey = highKey;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.ConcurrentNode#getLatch()
+	 */
+	public Latch getLatch() {
+		return latch;
+	}
+	
+	@Override
+	MemoryLongLeafNode<V> newLeafNode() {
+		return new ConcurrentMemoryLongLeafNode<V>(getMaxSlots(), null,
+				getSearch());
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.memory;
+
+import cherri.bheaven.bplustree.ConcurrentNodeFactory;
+import cherri.bheaven.bplustree.KeySearch;
+
+/**
+ * {@link MemoryNodeFactory} giving nodes a
+ * {@link cherri.bheaven.bplustree.ConcurrentBPlusTree} can share between
+ * threads.
+ */
+public class ConcurrentMemoryNodeFactory<K extends Comparable<K>, V> extends
+		MemoryNodeFactory<K, V> implements ConcurrentNodeFactory<K, V> {
+
+	/**
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 */
+	public ConcurrentMemoryNodeFactory(int order, int records) {
+		super(order, records);
+	}
+	
+	/**
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 * @param search the search of the keys of the nodes, <code>null</code>
+	 *        to choose it from the size of each kind of node
+	 */
+	public ConcurrentMemoryNodeFactory(int order, int records,
+			KeySearch search) {
+		super(order, records, search);
+	}
+	
+	/**
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 * @param search the search of the keys of the nodes, <code>null</code>
+	 *        to choose it from the size of each kind of node
+	 * @param poolSize the maximum number of released leaves, and of released
+	 *        inner nodes, kept to be given again
+	 */
+	public ConcurrentMemoryNodeFactory(int order, int records,
+			KeySearch search, int poolSize) {
+		super(order, records, search, poolSize);
+	}
+	
+	@Override
+	MemoryInnerNode<K, V> newInnerNode(int maxSlots, KeySearch search) {
+		return new ConcurrentMemoryInnerNode<K, V>(maxSlots, search);
+	}
+	
+	@Override
+	MemoryLeafNode<K, V> newLeafNode(int maxSlots, KeySearch search) {
+		return new ConcurrentMemoryLeafNode<K, V>(maxSlots, null, search);
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.memory;
+
+import cherri.bheaven.bplustree.ConcurrentNode;
+import cherri.bheaven.bplustree.Latch;
+
+/**
+ * A {@link MemoryStringInnerNode} with the latch and the high key of a
+ * {@link ConcurrentNode}.
+ */
+public class ConcurrentMemoryStringInnerNode<V> extends
+		MemoryStringInnerNode<V> implements ConcurrentNode<String, V> {
+
+	private String highKey;
+	private final Latch latch = new Latch();
+
+	/**
+	 * @param maxSlots
+	 */
+	public ConcurrentMemoryStringInnerNode(int maxSlots) {
+		super(maxSlots);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.ConcurrentNode#getHighKey()
+	 */
+	public String getHighKey() {
+		return highKey;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.ConcurrentNode#setHighKey(java.lang.Comparable)
+	 */
+	public void setHighKey(String highKey) {
+		this.highKey = highKey;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.ConcurrentNode#getLatch()
+	 */
+	public Latch getLatch() {
+		return latch;
+	}
+	
+	@Override
+	MemoryStringInnerNode<V> newInnerNode() {
+		return new ConcurrentMemoryStringInnerNode<V>(getMaxSlots());
+	}
+}
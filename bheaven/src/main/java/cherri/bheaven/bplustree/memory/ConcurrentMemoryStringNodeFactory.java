@@ -0,0 +1,49 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.memory;
+
+import cherri.bheaven.bplustree.ConcurrentNodeFactory;
+
+/**
+ * {@link MemoryStringNodeFactory} giving nodes a
+ * {@link cherri.bheaven.bplustree.ConcurrentBPlusTree} can share between
+ * threads.
+ */
+public class ConcurrentMemoryStringNodeFactory<V> extends
+		MemoryStringNodeFactory<V> implements ConcurrentNodeFactory<String, V> {
+
+	/**
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 */
+	public ConcurrentMemoryStringNodeFactory(int order, int records) {
+		super(order, records);
+	}
+	
+	@Override
+	MemoryStringInnerNode<V> newInnerNode(int maxSlots) {
+		return new ConcurrentMemoryStringInnerNode<V>(maxSlots);
+	}
+	
+	@Override
+	MemoryStringLeafNode<V> newLeafNode(int maxSlots) {
+		return new ConcurrentMemoryStringLeafNode<V>(maxSlots, null);
+	}
+}
@@ -21,20 +21,37 @@ package cherri.bheaven.bplustree.memory;
 
 import cherri.bheaven.bplustree.AbstractNode;
 import cherri.bheaven.bplustree.InnerNode;
+import cherri.bheaven.bplustree.KeySearch;
 import cherri.bheaven.bplustree.Node;
 
 /**
  *
  */
 public class MemoryInnerNode<K extends Comparable<K>, V> extends AbstractNode<K, V> implements InnerNode<K, V> {
-	private Node<K, V> children[];
+	private final Node<K, V> children[];
+	private Node<K, V> next;
+	
+	/*
+	 * The factory recycling the node, null if it does not.
+	 */
+	MemoryNodeFactory<K, V> factory;
 	
 	/**
 	 * @param maxSlots
 	 */
-	@SuppressWarnings("unchecked")
 	public MemoryInnerNode(int maxSlots) {
-		super(maxSlots);
+		this(maxSlots, null);
+	}
+	
+	/**
+	 * @param maxSlots
+	 * @param search the search of the keys, <code>null</code> to choose it
+	 *        from <code>maxSlots</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public MemoryInnerNode(int maxSlots, KeySearch search) {
+		super(maxSlots, search != null ? search :
+				KeySearch.forSlots(maxSlots));
 		
 		children = new AbstractNode[maxSlots + 1];
 	}
@@ -52,6 +69,20 @@ public class MemoryInnerNode<K extends Comparable<K>, V> extends AbstractNode<K,
 	public void setChild(Node<K, V> child, int index) {
 		children[index] = child;
 	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getNext()
+	 */
+	public Node<K, V> getNext() {
+		return next;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setNext(cherri.bheaven.bplustree.Node)
+	 */
+	public void setNext(Node<K, V> next) {
+		this.next = next;
+	}
 	
 	/* (non-Javadoc)
 	 * @see cherri.bheaven.bplustree.InnerNode#insert(K, cherri.bheaven.bplustree.AbstractNode)
@@ -76,7 +107,35 @@ public class MemoryInnerNode<K extends Comparable<K>, V> extends AbstractNode<K,
 	private InnerNode<K, V> split() {
 		checkIsFull();
 		
-		return new MemoryInnerNode<K, V>(getMaxSlots());
+		if (factory != null) {
+			return factory.getInnerNode();
+		}
+		
+		return newInnerNode();
+	}
+	
+	/*
+	 * Gives an empty node of the same kind and size, the new sibling of a
+	 * split.
+	 */
+	MemoryInnerNode<K, V> newInnerNode() {
+		return new MemoryInnerNode<K, V>(getMaxSlots(), getSearch());
+	}
+	
+	/*
+	 * Empties the node before its factory gives it again.
+	 */
+	void clear() {
+		for (int i = 0; i < getMaxSlots(); i++) {
+			setKey(null, i);
+		}
+		
+		for (int i = 0; i < children.length; i++) {
+			children[i] = null;
+		}
+		
+		setSlots(0);
+		next = null;
 	}
 	
 	/*
@@ -133,7 +192,7 @@ public class MemoryInnerNode<K extends Comparable<K>, V> extends AbstractNode<K,
 	 */
 	@Override
 	public boolean hasEnoughSlots() {
-		return getSlots() >= (getMaxSlots() - 1) / 2;
+		return getSlots() >= getMaxSlots() / 2;
 	}
 
 	/* (non-Javadoc)
@@ -141,7 +200,7 @@ public class MemoryInnerNode<K extends Comparable<K>, V> extends AbstractNode<K,
 	 */
 	@Override
 	public boolean canGiveSlots() {
-		return getSlots() - 1 >= (getMaxSlots() - 1) / 2;
+		return getSlots() - 1 >= getMaxSlots() / 2;
 	}
 
 	/* (non-Javadoc)
@@ -20,23 +20,41 @@
 package cherri.bheaven.bplustree.memory; 
 
 import cherri.bheaven.bplustree.AbstractNode;
+import cherri.bheaven.bplustree.KeySearch;
 import cherri.bheaven.bplustree.LeafNode;
 import cherri.bheaven.bplustree.Node;
 
 
 public class MemoryLeafNode<K extends Comparable<K>, V> extends AbstractNode<K, V> implements LeafNode<K, V> {
-	private V values[];
+	private final V values[];
 	private Node<K, V> next;
 	/*private LeafNode<K, V> previous;*/
 	
+	/*
+	 * The factory recycling the node, null if it does not.
+	 */
+	MemoryNodeFactory<K, V> factory;
+	
 	/**
 	 * @param keys
 	 * @param maxSlots
 	 * @param next
 	 */
-	@SuppressWarnings("unchecked")
 	public MemoryLeafNode(int maxSlots, Node<K, V> next) {
-		super(maxSlots);
+		this(maxSlots, next, null);
+	}
+	
+	/**
+	 * @param maxSlots
+	 * @param next
+	 * @param search the search of the keys, <code>null</code> to choose it
+	 *        from <code>maxSlots</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public MemoryLeafNode(int maxSlots, Node<K, V> next,
+			KeySearch search) {
+		super(maxSlots, search != null ? search :
+				KeySearch.forSlots(maxSlots));
 
 		values = (V[]) new Object[maxSlots];
 		this.next = next;
@@ -57,14 +75,14 @@ public class MemoryLeafNode<K extends Comparable<K>, V> extends AbstractNode<K,
 	}
 
 	/* (non-Javadoc)
-	 * @see cherri.bheaven.bplustree.LeafNode#getNext()
+	 * @see cherri.bheaven.bplustree.Node#getNext()
 	 */
 	public Node<K, V> getNext() {
 		return next;
 	}
 
 	/* (non-Javadoc)
-	 * @see cherri.bheaven.bplustree.LeafNode#setNext(cherri.bheaven.bplustree.Node)
+	 * @see cherri.bheaven.bplustree.Node#setNext(cherri.bheaven.bplustree.Node)
 	 */
 	public void setNext(Node<K, V> next) {
 		this.next = next;
@@ -94,7 +112,36 @@ public class MemoryLeafNode<K extends Comparable<K>, V> extends AbstractNode<K,
 	private LeafNode<K, V> split() {
 		checkIsFull();
 		
-		return new MemoryLeafNode<K, V>(getMaxSlots(), next);
+		if (factory != null) {
+			LeafNode<K, V> newLeafNode = factory.getLeafNode();
+			newLeafNode.setNext(next);
+			return newLeafNode;
+		}
+		
+		MemoryLeafNode<K, V> newLeafNode = newLeafNode();
+		newLeafNode.setNext(next);
+		return newLeafNode;
+	}
+	
+	/*
+	 * Gives an empty node of the same kind and size, the new sibling of a
+	 * split.
+	 */
+	MemoryLeafNode<K, V> newLeafNode() {
+		return new MemoryLeafNode<K, V>(getMaxSlots(), null, getSearch());
+	}
+	
+	/*
+	 * Empties the node before its factory gives it again.
+	 */
+	void clear() {
+		for (int i = 0; i < getMaxSlots(); i++) {
+			setKey(null, i);
+			values[i] = null;
+		}
+		
+		setSlots(0);
+		next = null;
 	}
 	
 	/*
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.memory; 
+
+import cherri.bheaven.bplustree.AbstractLongNode;
+import cherri.bheaven.bplustree.KeySearch;
+import cherri.bheaven.bplustree.LeafNode;
+import cherri.bheaven.bplustree.LongNode;
+import cherri.bheaven.bplustree.Node;
+
+
+/**
+ * {@link MemoryLeafNode} counterpart for <code>long</code> keys.
+ */
+public class MemoryLongLeafNode<V> extends AbstractLongNode<V> implements LeafNode<Long, V> {
+	private final V values[];
+	private Node<Long, V> next;
+	
+	/**
+	 * @param maxSlots
+	 * @param next
+	 */
+	public MemoryLongLeafNode(int maxSlots, Node<Long, V> next) {
+		this(maxSlots, next, null);
+	}
+	
+	/**
+	 * @param maxSlots
+	 * @param next
+	 * @param search the search of the keys, <code>null</code> to choose it
+	 *        from <code>maxSlots</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public MemoryLongLeafNode(int maxSlots, Node<Long, V> next,
+			KeySearch search) {
+		super(maxSlots, search != null ? search :
+				KeySearch.forLongSlots(maxSlots));
+
+		values = (V[]) new Object[maxSlots];
+		this.next = next;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#getValue(int)
+	 */
+	public V getValue(int index) {
+		return values[index];
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#setValue(V, int)
+	 */
+	public void setValue(V value, int index) {
+		values[index] = value;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getNext()
+	 */
+	public Node<Long, V> getNext() {
+		return next;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setNext(cherri.bheaven.bplustree.Node)
+	 */
+	public void setNext(Node<Long, V> next) {
+		this.next = next;
+	}
+	
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#insert(K, V)
+	 */
+	public void insert(Long key, V value) {
+		long longKey = key.longValue();
+		int index = getSlots() - 1;
+		
+		while (index >= 0 && longKey < getLongKey(index)) {
+			setLongKey(getLongKey(index), index + 1);
+			setValue(getValue(index), index + 1);
+
+			index--;
+		}
+		
+		setLongKey(longKey, index + 1);
+		setValue(value, index + 1);
+		
+		setSlots(getSlots() + 1);
+	}
+	
+	private MemoryLongLeafNode<V> split() {
+		checkIsFull();
+		
+		MemoryLongLeafNode<V> newLeafNode = newLeafNode();
+		newLeafNode.setNext(next);
+		return newLeafNode;
+	}
+	
+	/*
+	 * Gives an empty node of the same kind and size, the new sibling of a
+	 * split.
+	 */
+	MemoryLongLeafNode<V> newLeafNode() {
+		return new MemoryLongLeafNode<V>(getMaxSlots(), null, getSearch());
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#split(K, V)
+	 */
+	public LeafNode<Long, V> split(Long key, V value) {
+		MemoryLongLeafNode<V> newLeafNode = split();
+		long longKey = key.longValue();
+		int count = (getSlots() + 1) / 2;
+		int right = count - 1;
+		int left = getSlots() - 1;
+		boolean found = false;
+		for (int i = 0; i < count; i++, right--) {
+			if(found || longKey < getLongKey(left)) {
+				newLeafNode.setLongKey(getLongKey(left), right);
+				newLeafNode.setValue(getValue(left), right);
+				left--;
+			} else {
+				newLeafNode.setLongKey(longKey, right);
+				newLeafNode.setValue(value, right);
+				found = true;
+			}
+		}
+		setSlots(getSlots() - count + (found ? 1 : 0));
+		newLeafNode.setSlots(count);
+		if (!found) {
+			insert(key, value);
+		}
+		setNext(newLeafNode);
+		return newLeafNode;
+	}
+
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#remove(int)
+	 */
+	public void remove(int index) {
+		
+		for (int i = index; i < getSlots() - 1; i++) {
+			setLongKey(getLongKey(i + 1), i);
+			setValue(getValue(i + 1), i);
+		}
+		
+		setSlots(getSlots() - 1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#hasEnoughSlots()
+	 */
+	@Override
+	public boolean hasEnoughSlots() {
+		return getSlots() >= (getMaxSlots() + 1) / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#canGiveSlots()
+	 */
+	@Override
+	public boolean canGiveSlots() {
+		return getSlots() - 1 >= (getMaxSlots() + 1) / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#leftShift(int)
+	 */
+	@Override
+	public void leftShift(int count) {
+		for (int i = 0; i < getSlots() - count; i++) {
+			setLongKey(getLongKey(i + count), i);
+			setValue(getValue(i + count), i);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#rightShift(int)
+	 */
+	@Override
+	public void rightShift(int count) {
+		for (int i = getSlots() - 1; i >= 0 ; i--) {
+			setLongKey(getLongKey(i), i + count);
+			setValue(getValue(i), i + count);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToLeft(cherri.bheaven.bplustree.Node, int)
+	 */
+	@Override
+	public void copyToLeft(Node<Long, V> node, int count) {
+		for (int i = 0; i < count; i++) {
+			((LongNode<V>) node).setLongKey(getLongKey(i), node.getSlots() + i);
+			((LeafNode<Long, V>) node).setValue(getValue(i), node.getSlots() + i);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToRight(cherri.bheaven.bplustree.Node, int)
+	 */
+	@Override
+	public void copyToRight(Node<Long, V> node, int count) {
+		for (int i = 0; i < count; i++) {
+			((LongNode<V>) node).setLongKey(getLongKey(getSlots() - count + i), i);
+			((LeafNode<Long, V>) node).setValue(getValue(getSlots() - count + i), i);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.AbstractLongNode#toString(int)
+	 */
+	@Override
+	public String toString(int level) {
+		StringBuffer buffer = new StringBuffer(super.toString(level));
+		StringBuffer indent = getIndent(level);
+		buffer.append('\n');
+		
+		if (getSlots() > 0) {
+			buffer.append(indent);
+			buffer.append(" values: \n");
+		}
+		
+		for (int i = 0; i < getSlots(); i++) {
+			if(i > 0) {
+				buffer.append('\n');
+			}
+			buffer.append("  ");
+			buffer.append(indent);
+			buffer.append(values[i].toString());
+		}
+		
+		buffer.append('\n');
+		buffer.append(indent);
+		buffer.append(" next: ");
+		buffer.append(next == null ? "null" : next.getKey(0));
+		
+		return buffer.toString();
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.memory;
+
+import cherri.bheaven.bplustree.InnerNode;
+import cherri.bheaven.bplustree.KeySearch;
+import cherri.bheaven.bplustree.LeafNode;
+import cherri.bheaven.bplustree.NodeFactory;
+
+/**
+ * {@link MemoryNodeFactory} counterpart giving nodes that store their keys
+ * as primitive <code>long</code>s. Use it with a
+ * {@link cherri.bheaven.bplustree.LongBPlusTree}.
+ */
+public class MemoryLongNodeFactory<V> implements NodeFactory<Long, V> {
+
+	private final int order;
+	private final int records;
+	private final KeySearch search;
+	
+	/**
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 */
+	public MemoryLongNodeFactory(int order, int records) {
+		this(order, records, null);
+	}
+	
+	/**
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 * @param search the search of the keys of the nodes, <code>null</code>
+	 *        to choose it from the size of each kind of node
+	 */
+	public MemoryLongNodeFactory(int order, int records, KeySearch search) {
+		this.order = order;
+		this.records = records;
+		this.search = search;
+	}
+
+	@Override
+	public InnerNode<Long, V> getInnerNode() {
+		return newInnerNode(order - 1, search);
+	}
+
+	@Override
+	public LeafNode<Long, V> getLeafNode() {
+		return newLeafNode(records, search);
+	}
+	
+	/*
+	 * Creates the inner nodes the factory gives.
+	 */
+	MemoryLongInnerNode<V> newInnerNode(int maxSlots, KeySearch search) {
+		return new MemoryLongInnerNode<V>(maxSlots, search);
+	}
+	
+	/*
+	 * Creates the leaves the factory gives.
+	 */
+	MemoryLongLeafNode<V> newLeafNode(int maxSlots, KeySearch search) {
+		return new MemoryLongLeafNode<V>(maxSlots, null, search);
+	}
+	
+
+}
@@ -20,35 +20,153 @@
 package cherri.bheaven.bplustree.memory;
 
 import cherri.bheaven.bplustree.InnerNode;
+import cherri.bheaven.bplustree.KeySearch;
 import cherri.bheaven.bplustree.LeafNode;
-import cherri.bheaven.bplustree.NodeFactory;
+import cherri.bheaven.bplustree.Node;
+import cherri.bheaven.bplustree.RecyclingNodeFactory;
 
 /**
- *
+ * Gives nodes keeping their keys and values on the heap. With a pool, the
+ * nodes released by a tree are kept, up to the size of the pool for each
+ * kind of node, and given again by the factory and by the splits of its
+ * nodes, so a tree whose size is steady stops allocating nodes. The pool
+ * can be shared by trees in different threads.
  */
-public class MemoryNodeFactory<K extends Comparable<K>, V> implements NodeFactory<K, V> {
+public class MemoryNodeFactory<K extends Comparable<K>, V> implements
+		RecyclingNodeFactory<K, V> {
 
 	private final int order;
 	private final int records;
+	private final KeySearch search;
+	private final MemoryLeafNode<K, V> leafNodes[];
+	private int leafCount;
+	private final MemoryInnerNode<K, V> innerNodes[];
+	private int innerCount;
 	
 	/**
 	 * @param order the order of the B+ Tree
 	 * @param records TODO
 	 */
 	public MemoryNodeFactory(int order, int records) {
+		this(order, records, null);
+	}
+	
+	/**
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 * @param search the search of the keys of the nodes, <code>null</code>
+	 *        to choose it from the size of each kind of node
+	 */
+	public MemoryNodeFactory(int order, int records, KeySearch search) {
+		this(order, records, search, 0);
+	}
+	
+	/**
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 * @param search the search of the keys of the nodes, <code>null</code>
+	 *        to choose it from the size of each kind of node
+	 * @param poolSize the maximum number of released leaves, and of released
+	 *        inner nodes, kept to be given again
+	 */
+	@SuppressWarnings("unchecked")
+	public MemoryNodeFactory(int order, int records, KeySearch search,
+			int poolSize) {
+		if (poolSize < 0) {
+			throw new IllegalArgumentException(
+					"Pool size cannot be negative: " + poolSize);
+		}
+		
 		this.order = order;
 		this.records = records;
+		this.search = search;
+		leafNodes = (MemoryLeafNode<K, V>[]) new MemoryLeafNode<?, ?>[poolSize];
+		innerNodes = (MemoryInnerNode<K, V>[])
+				new MemoryInnerNode<?, ?>[poolSize];
 	}
 
 	@Override
 	public InnerNode<K, V> getInnerNode() {
-		return new MemoryInnerNode<K, V>(order - 1);
+		if (innerNodes.length == 0) {
+			return newInnerNode(order - 1, search);
+		}
+		
+		synchronized (this) {
+			if (innerCount > 0) {
+				MemoryInnerNode<K, V> node = innerNodes[--innerCount];
+				innerNodes[innerCount] = null;
+				return node;
+			}
+		}
+		
+		MemoryInnerNode<K, V> node = newInnerNode(order - 1, search);
+		node.factory = this;
+		return node;
 	}
 
 	@Override
 	public LeafNode<K, V> getLeafNode() {
-		return new MemoryLeafNode<K, V>(records, null);
+		if (leafNodes.length == 0) {
+			return newLeafNode(records, search);
+		}
+		
+		synchronized (this) {
+			if (leafCount > 0) {
+				MemoryLeafNode<K, V> node = leafNodes[--leafCount];
+				leafNodes[leafCount] = null;
+				return node;
+			}
+		}
+		
+		MemoryLeafNode<K, V> node = newLeafNode(records, search);
+		node.factory = this;
+		return node;
 	}
 	
+	/*
+	 * Creates the inner nodes the factory gives.
+	 */
+	MemoryInnerNode<K, V> newInnerNode(int maxSlots, KeySearch search) {
+		return new MemoryInnerNode<K, V>(maxSlots, search);
+	}
+	
+	/*
+	 * Creates the leaves the factory gives.
+	 */
+	MemoryLeafNode<K, V> newLeafNode(int maxSlots, KeySearch search) {
+		return new MemoryLeafNode<K, V>(maxSlots, null, search);
+	}
+	
+	/*
+	 * Keeps the nodes of this factory while the pool has room, the others
+	 * are left to the garbage collector.
+	 */
+	public void release(Node<K, V> node) {
+		if (node instanceof MemoryLeafNode<?, ?>) {
+			MemoryLeafNode<K, V> leafNode = (MemoryLeafNode<K, V>) node;
+			
+			if (leafNode.factory == this) {
+				leafNode.clear();
+				
+				synchronized (this) {
+					if (leafCount < leafNodes.length) {
+						leafNodes[leafCount++] = leafNode;
+					}
+				}
+			}
+		} else if (node instanceof MemoryInnerNode<?, ?>) {
+			MemoryInnerNode<K, V> innerNode = (MemoryInnerNode<K, V>) node;
+			
+			if (innerNode.factory == this) {
+				innerNode.clear();
+				
+				synchronized (this) {
+					if (innerCount < innerNodes.length) {
+						innerNodes[innerCount++] = innerNode;
+					}
+				}
+			}
+		}
+	}
 
 }
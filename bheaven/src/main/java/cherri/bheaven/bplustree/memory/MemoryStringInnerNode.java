@@ -0,0 +1,246 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.memory;
+
+import cherri.bheaven.bplustree.AbstractStringNode;
+import cherri.bheaven.bplustree.InnerNode;
+import cherri.bheaven.bplustree.Node;
+
+/**
+ * {@link MemoryInnerNode} counterpart for prefix compressed
+ * {@link String} keys.
+ */
+public class MemoryStringInnerNode<V> extends AbstractStringNode<V> implements InnerNode<String, V> {
+	private final Node<String, V> children[];
+	private Node<String, V> next;
+	
+	/**
+	 * @param maxSlots
+	 */
+	@SuppressWarnings("unchecked")
+	public MemoryStringInnerNode(int maxSlots) {
+		super(maxSlots);
+		
+		children = (Node<String, V>[]) new Node<?, ?>[maxSlots + 1];
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#getChild(int)
+	 */
+	public Node<String, V> getChild(int index) {
+		return children[index];
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#setChild(cherri.bheaven.bplustree.Node, int)
+	 */
+	public void setChild(Node<String, V> child, int index) {
+		children[index] = child;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getNext()
+	 */
+	public Node<String, V> getNext() {
+		return next;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setNext(cherri.bheaven.bplustree.Node)
+	 */
+	public void setNext(Node<String, V> next) {
+		this.next = next;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#insert(K, cherri.bheaven.bplustree.Node)
+	 */
+	public void insert(String key, Node<String, V> child) {
+		int index = getKeyIndex(key);
+		
+		if (index < 0) {
+			index = -index - 1;
+		}
+		
+		for (int i = getSlots() - 1; i >= index; i--) {
+			moveKey(i, i + 1);
+			setChild(getChild(i + 1), i + 2);
+		}
+		
+		setKey(key, index);
+		setChild(child, index + 1);
+		
+		setSlots(getSlots() + 1);
+	}
+	
+	private InnerNode<String, V> split() {
+		checkIsFull();
+		
+		return newInnerNode();
+	}
+	
+	/*
+	 * Gives an empty node of the same kind and size, the new sibling of a
+	 * split.
+	 */
+	MemoryStringInnerNode<V> newInnerNode() {
+		return new MemoryStringInnerNode<V>(getMaxSlots());
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#split(K, cherri.bheaven.bplustree.Node)
+	 */
+	public InnerNode<String, V> split(String key, Node<String, V> newNode) {
+		InnerNode<String, V> newInnerNode = split();
+		int count = getSlots() / 2;
+		int right = count - 1;
+		int left = getSlots() - 1;
+		boolean found = false;
+		for (int i = 0; i < count; i++, right--) {
+			if(found || compareKey(left, key) > 0) {
+				newInnerNode.setKey(getKey(left), right);
+				newInnerNode.setChild(getChild(left + 1), right + 1);
+				left--;
+			} else {
+				newInnerNode.setKey(key, right);
+				newInnerNode.setChild(newNode, right + 1);
+				found = true;
+			}
+		}
+		setSlots(getSlots() - count + (found ? 1 : 0));
+		newInnerNode.setSlots(count);
+		if (!found) {
+			insert(key, newNode);
+		}
+		setSlots(getSlots() - 1);
+		newInnerNode.setChild(getChild(getSlots() + 1), 0);
+		return newInnerNode;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#remove(int)
+	 */
+	public void remove(int index) {
+		
+		for (int i = index; i < getSlots(); i++) {
+			if (i < getSlots() - 1) {
+				moveKey(i + 1, i);
+			}
+			setChild(getChild(i + 1), i);
+		}
+		
+		setSlots(getSlots() - 1);
+		
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#hasEnoughSlots()
+	 */
+	@Override
+	public boolean hasEnoughSlots() {
+		return getSlots() >= getMaxSlots() / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#canGiveSlots()
+	 */
+	@Override
+	public boolean canGiveSlots() {
+		return getSlots() - 1 >= getMaxSlots() / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#leftShift(int)
+	 */
+	@Override
+	public void leftShift(int count) {
+		for (int i = 0; i < getSlots() - count; i++) {
+			moveKey(i + count, i);
+			setChild(getChild(i + count), i);
+		}
+		
+		setChild(getChild(getSlots()), getSlots() - count);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#rightShift(int)
+	 */
+	@Override
+	public void rightShift(int count) {
+		for (int i = getSlots() - 1; i >= 0 ; i--) {
+			moveKey(i, i + count);
+			setChild(getChild(i + 1), i + count + 1);
+		}
+		
+		setChild(getChild(0), count);
+		
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToLeft(cherri.bheaven.bplustree.Node, int)
+	 */
+	@Override
+	public void copyToLeft(Node<String, V> node, int count) {
+		for (int i = 0; i < count; i++) {
+			if(i < getSlots()) {
+				node.setKey(getKey(i), node.getSlots() + i + 1);
+			}
+			((InnerNode<String, V>) node).setChild(getChild(i), node.getSlots() + i + 1);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToRight(cherri.bheaven.bplustree.Node, int)
+	 */
+	@Override
+	public void copyToRight(Node<String, V> node, int count) {
+		for (int i = 0; i < count - 1; i++) {
+			node.setKey(getKey(getSlots() - count + i + 1), i);
+			((InnerNode<String, V>) node).setChild(getChild(getSlots() - count + i + 2), i + 1);
+		}
+		((InnerNode<String, V>) node).setChild(getChild(getSlots() - count + 1), 0);
+
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.AbstractStringNode#toString(int)
+	 */
+	@Override
+	public String toString(int level) {
+		StringBuffer buffer = new StringBuffer(super.toString(level));
+		StringBuffer indent = getIndent(level);
+		buffer.append('\n');
+		
+		if (getSlots() > 0) {
+			buffer.append(indent);
+			buffer.append(" children: \n");
+		}
+		
+		for (int i = 0; i < getSlots() + 1; i++) {
+			if(i > 0) {
+				buffer.append('\n');
+			}
+			buffer.append(((AbstractStringNode<V>) children[i]).toString(level + 1));
+		}
+
+		return buffer.toString();
+	}
+
+}
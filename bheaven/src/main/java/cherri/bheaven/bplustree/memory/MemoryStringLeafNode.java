@@ -0,0 +1,249 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.memory; 
+
+import cherri.bheaven.bplustree.AbstractStringNode;
+import cherri.bheaven.bplustree.LeafNode;
+import cherri.bheaven.bplustree.Node;
+
+
+/**
+ * {@link MemoryLeafNode} counterpart for prefix compressed
+ * {@link String} keys.
+ */
+public class MemoryStringLeafNode<V> extends AbstractStringNode<V> implements LeafNode<String, V> {
+	private final V values[];
+	private Node<String, V> next;
+	
+	/**
+	 * @param maxSlots
+	 * @param next
+	 */
+	@SuppressWarnings("unchecked")
+	public MemoryStringLeafNode(int maxSlots, Node<String, V> next) {
+		super(maxSlots);
+
+		values = (V[]) new Object[maxSlots];
+		this.next = next;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#getValue(int)
+	 */
+	public V getValue(int index) {
+		return values[index];
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#setValue(V, int)
+	 */
+	public void setValue(V value, int index) {
+		values[index] = value;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getNext()
+	 */
+	public Node<String, V> getNext() {
+		return next;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setNext(cherri.bheaven.bplustree.Node)
+	 */
+	public void setNext(Node<String, V> next) {
+		this.next = next;
+	}
+	
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#insert(K, V)
+	 */
+	public void insert(String key, V value) {
+		int index = getKeyIndex(key);
+		
+		if (index < 0) {
+			index = -index - 1;
+		}
+		
+		for (int i = getSlots() - 1; i >= index; i--) {
+			moveKey(i, i + 1);
+			setValue(getValue(i), i + 1);
+		}
+		
+		setKey(key, index);
+		setValue(value, index);
+		
+		setSlots(getSlots() + 1);
+	}
+	
+	private MemoryStringLeafNode<V> split() {
+		checkIsFull();
+		
+		MemoryStringLeafNode<V> newLeafNode = newLeafNode();
+		newLeafNode.setNext(next);
+		return newLeafNode;
+	}
+	
+	/*
+	 * Gives an empty node of the same kind and size, the new sibling of a
+	 * split.
+	 */
+	MemoryStringLeafNode<V> newLeafNode() {
+		return new MemoryStringLeafNode<V>(getMaxSlots(), null);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#split(K, V)
+	 */
+	public LeafNode<String, V> split(String key, V value) {
+		MemoryStringLeafNode<V> newLeafNode = split();
+		int count = (getSlots() + 1) / 2;
+		int right = count - 1;
+		int left = getSlots() - 1;
+		boolean found = false;
+		for (int i = 0; i < count; i++, right--) {
+			if(found || compareKey(left, key) > 0) {
+				newLeafNode.setKey(getKey(left), right);
+				newLeafNode.setValue(getValue(left), right);
+				left--;
+			} else {
+				newLeafNode.setKey(key, right);
+				newLeafNode.setValue(value, right);
+				found = true;
+			}
+		}
+		setSlots(getSlots() - count + (found ? 1 : 0));
+		newLeafNode.setSlots(count);
+		if (!found) {
+			insert(key, value);
+		}
+		compact();
+		newLeafNode.compact();
+		setNext(newLeafNode);
+		return newLeafNode;
+	}
+
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#remove(int)
+	 */
+	public void remove(int index) {
+		
+		for (int i = index; i < getSlots() - 1; i++) {
+			moveKey(i + 1, i);
+			setValue(getValue(i + 1), i);
+		}
+		
+		setSlots(getSlots() - 1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#hasEnoughSlots()
+	 */
+	@Override
+	public boolean hasEnoughSlots() {
+		return getSlots() >= (getMaxSlots() + 1) / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#canGiveSlots()
+	 */
+	@Override
+	public boolean canGiveSlots() {
+		return getSlots() - 1 >= (getMaxSlots() + 1) / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#leftShift(int)
+	 */
+	@Override
+	public void leftShift(int count) {
+		for (int i = 0; i < getSlots() - count; i++) {
+			moveKey(i + count, i);
+			setValue(getValue(i + count), i);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#rightShift(int)
+	 */
+	@Override
+	public void rightShift(int count) {
+		for (int i = getSlots() - 1; i >= 0 ; i--) {
+			moveKey(i, i + count);
+			setValue(getValue(i), i + count);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToLeft(cherri.bheaven.bplustree.Node, int)
+	 */
+	@Override
+	public void copyToLeft(Node<String, V> node, int count) {
+		for (int i = 0; i < count; i++) {
+			node.setKey(getKey(i), node.getSlots() + i);
+			((LeafNode<String, V>) node).setValue(getValue(i), node.getSlots() + i);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToRight(cherri.bheaven.bplustree.Node, int)
+	 */
+	@Override
+	public void copyToRight(Node<String, V> node, int count) {
+		for (int i = 0; i < count; i++) {
+			node.setKey(getKey(getSlots() - count + i), i);
+			((LeafNode<String, V>) node).setValue(getValue(getSlots() - count + i), i);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.AbstractStringNode#toString(int)
+	 */
+	@Override
+	public String toString(int level) {
+		StringBuffer buffer = new StringBuffer(super.toString(level));
+		StringBuffer indent = getIndent(level);
+		buffer.append('\n');
+		
+		if (getSlots() > 0) {
+			buffer.append(indent);
+			buffer.append(" values: \n");
+		}
+		
+		for (int i = 0; i < getSlots(); i++) {
+			if(i > 0) {
+				buffer.append('\n');
+			}
+			buffer.append("  ");
+			buffer.append(indent);
+			buffer.append(values[i].toString());
+		}
+		
+		buffer.append('\n');
+		buffer.append(indent);
+		buffer.append(" next: ");
+		buffer.append(next == null ? "null" : next.getKey(0));
+		
+		return buffer.toString();
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.memory;
+
+import cherri.bheaven.bplustree.InnerNode;
+import cherri.bheaven.bplustree.LeafNode;
+import cherri.bheaven.bplustree.NodeFactory;
+
+/**
+ * {@link MemoryNodeFactory} counterpart giving nodes that store the prefix
+ * shared by their {@link String} keys once.
+ */
+public class MemoryStringNodeFactory<V> implements NodeFactory<String, V> {
+
+	private final int order;
+	private final int records;
+	
+	/**
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 */
+	public MemoryStringNodeFactory(int order, int records) {
+		this.order = order;
+		this.records = records;
+	}
+
+	@Override
+	public InnerNode<String, V> getInnerNode() {
+		return newInnerNode(order - 1);
+	}
+
+	@Override
+	public LeafNode<String, V> getLeafNode() {
+		return newLeafNode(records);
+	}
+	
+	/*
+	 * Creates the inner nodes the factory gives.
+	 */
+	MemoryStringInnerNode<V> newInnerNode(int maxSlots) {
+		return new MemoryStringInnerNode<V>(maxSlots);
+	}
+	
+	/*
+	 * Creates the leaves the factory gives.
+	 */
+	MemoryStringLeafNode<V> newLeafNode(int maxSlots) {
+		return new MemoryStringLeafNode<V>(maxSlots, null);
+	}
+	
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.offheap;
+
+import cherri.bheaven.bplustree.InnerNode;
+import cherri.bheaven.bplustree.Node;
+
+/**
+ * Inner node stored in a slab of an {@link OffHeapNodeFactory}. The
+ * children follow the keys and are stored as node addresses.
+ */
+public class OffHeapInnerNode<K extends Comparable<K>, V> extends
+		OffHeapNode<K, V> implements InnerNode<K, V> {
+
+	/**
+	 * @param factory the factory holding the slab of the node
+	 * @param address the address of the node
+	 * @param maxSlots
+	 */
+	OffHeapInnerNode(OffHeapNodeFactory<K, V> factory, int address,
+			int maxSlots) {
+		super(factory, address, maxSlots);
+	}
+	
+	int getChildAddress(int index) {
+		return getBuffer().getInt(getKeysEnd() + index * 4);
+	}
+	
+	private void setChildAddress(int address, int index) {
+		getBuffer().putInt(getKeysEnd() + index * 4, address);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#getChild(int)
+	 */
+	public Node<K, V> getChild(int index) {
+		return getFactory().getNode(getChildAddress(index));
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#setChild(cherri.bheaven.bplustree.Node, int)
+	 */
+	public void setChild(Node<K, V> child, int index) {
+		setChildAddress(getAddress(child), index);
+	}
+	
+	/*
+	 * Copies the key slot and the child on its right.
+	 */
+	private void copySlot(int index, OffHeapInnerNode<K, V> node,
+			int nodeIndex) {
+		copyKey(index, node, nodeIndex);
+		node.setChildAddress(getChildAddress(index + 1), nodeIndex + 1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#insert(K, cherri.bheaven.bplustree.Node)
+	 */
+	public void insert(K key, Node<K, V> child) {
+		int index = getKeyIndex(key);
+		
+		// Equal keys go after the existing one, as in the other nodes.
+		index = index < 0 ? -index - 1 : index + 1;
+		
+		for (int i = getSlots() - 1; i >= index; i--) {
+			copySlot(i, this, i + 1);
+		}
+		
+		setKey(key, index);
+		setChild(child, index + 1);
+		
+		setSlots(getSlots() + 1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#split(K, cherri.bheaven.bplustree.Node)
+	 */
+	public InnerNode<K, V> split(K key, Node<K, V> newNode) {
+		checkIsFull();
+		
+		OffHeapInnerNode<K, V> newInnerNode =
+			(OffHeapInnerNode<K, V>) getFactory().getInnerNode();
+		int count = getSlots() / 2;
+		int right = count - 1;
+		int left = getSlots() - 1;
+		boolean found = false;
+		for (int i = 0; i < count; i++, right--) {
+			if(found || key.compareTo(getKey(left)) < 0) {
+				copySlot(left, newInnerNode, right);
+				left--;
+			} else {
+				newInnerNode.setKey(key, right);
+				newInnerNode.setChild(newNode, right + 1);
+				found = true;
+			}
+		}
+		setSlots(getSlots() - count + (found ? 1 : 0));
+		newInnerNode.setSlots(count);
+		if (!found) {
+			insert(key, newNode);
+		}
+		setSlots(getSlots() - 1);
+		newInnerNode.setChildAddress(getChildAddress(getSlots() + 1), 0);
+		return newInnerNode;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.InnerNode#remove(int)
+	 */
+	public void remove(int index) {
+		
+		for (int i = index; i < getSlots(); i++) {
+			if (i < getSlots() - 1) {
+				copyKey(i + 1, this, i);
+			}
+			setChildAddress(getChildAddress(i + 1), i);
+		}
+		
+		setSlots(getSlots() - 1);
+		
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#hasEnoughSlots()
+	 */
+	public boolean hasEnoughSlots() {
+		return getSlots() >= getMaxSlots() / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#canGiveSlots()
+	 */
+	public boolean canGiveSlots() {
+		return getSlots() - 1 >= getMaxSlots() / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#leftShift(int)
+	 */
+	public void leftShift(int count) {
+		for (int i = 0; i < getSlots() - count; i++) {
+			copyKey(i + count, this, i);
+			setChildAddress(getChildAddress(i + count), i);
+		}
+		
+		setChildAddress(getChildAddress(getSlots()), getSlots() - count);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#rightShift(int)
+	 */
+	public void rightShift(int count) {
+		for (int i = getSlots() - 1; i >= 0 ; i--) {
+			copySlot(i, this, i + count);
+		}
+		
+		setChildAddress(getChildAddress(0), count);
+		
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToLeft(cherri.bheaven.bplustree.Node, int)
+	 */
+	public void copyToLeft(Node<K, V> node, int count) {
+		OffHeapInnerNode<K, V> innerNode = (OffHeapInnerNode<K, V>) node;
+		
+		for (int i = 0; i < count; i++) {
+			if(i < getSlots()) {
+				copyKey(i, innerNode, node.getSlots() + i + 1);
+			}
+			innerNode.setChildAddress(getChildAddress(i),
+					node.getSlots() + i + 1);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToRight(cherri.bheaven.bplustree.Node, int)
+	 */
+	public void copyToRight(Node<K, V> node, int count) {
+		OffHeapInnerNode<K, V> innerNode = (OffHeapInnerNode<K, V>) node;
+		
+		for (int i = 0; i < count - 1; i++) {
+			copySlot(getSlots() - count + i + 1, innerNode, i);
+		}
+		innerNode.setChildAddress(getChildAddress(getSlots() - count + 1), 0);
+
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.offheap;
+
+import cherri.bheaven.bplustree.LeafNode;
+import cherri.bheaven.bplustree.Node;
+
+/**
+ * Leaf node stored in a slab of an {@link OffHeapNodeFactory}. The values
+ * follow the keys.
+ */
+public class OffHeapLeafNode<K extends Comparable<K>, V> extends
+		OffHeapNode<K, V> implements LeafNode<K, V> {
+
+	/**
+	 * @param factory the factory holding the slab of the node
+	 * @param address the address of the node
+	 * @param maxSlots
+	 */
+	OffHeapLeafNode(OffHeapNodeFactory<K, V> factory, int address,
+			int maxSlots) {
+		super(factory, address, maxSlots);
+	}
+	
+	private int getValueOffset(int index) {
+		return getKeysEnd() +
+				index * getFactory().getValueSerializer().getSize();
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#getValue(int)
+	 */
+	public V getValue(int index) {
+		return getFactory().getValueSerializer().read(getBuffer(),
+				getValueOffset(index));
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#setValue(V, int)
+	 */
+	public void setValue(V value, int index) {
+		getFactory().getValueSerializer().write(getBuffer(),
+				getValueOffset(index), value);
+	}
+	
+	/*
+	 * Copies the key and the value to a node, possibly this one.
+	 */
+	private void copySlot(int index, OffHeapLeafNode<K, V> node,
+			int nodeIndex) {
+		copyKey(index, node, nodeIndex);
+		copy(getBuffer(), getValueOffset(index), node.getBuffer(),
+				node.getValueOffset(nodeIndex),
+				getFactory().getValueSerializer().getSize());
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#insert(K, V)
+	 */
+	public void insert(K key, V value) {
+		int index = getKeyIndex(key);
+		
+		// Equal keys go after the existing one, as in the other nodes.
+		index = index < 0 ? -index - 1 : index + 1;
+		
+		for (int i = getSlots() - 1; i >= index; i--) {
+			copySlot(i, this, i + 1);
+		}
+		
+		setKey(key, index);
+		setValue(value, index);
+		
+		setSlots(getSlots() + 1);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#split(K, V)
+	 */
+	public LeafNode<K, V> split(K key, V value) {
+		checkIsFull();
+		
+		OffHeapLeafNode<K, V> newLeafNode =
+			(OffHeapLeafNode<K, V>) getFactory().getLeafNode();
+		newLeafNode.setNextAddress(getNextAddress());
+		int count = (getSlots() + 1) / 2;
+		int right = count - 1;
+		int left = getSlots() - 1;
+		boolean found = false;
+		for (int i = 0; i < count; i++, right--) {
+			if(found || key.compareTo(getKey(left)) < 0) {
+				copySlot(left, newLeafNode, right);
+				left--;
+			} else {
+				newLeafNode.setKey(key, right);
+				newLeafNode.setValue(value, right);
+				found = true;
+			}
+		}
+		setSlots(getSlots() - count + (found ? 1 : 0));
+		newLeafNode.setSlots(count);
+		if (!found) {
+			insert(key, value);
+		}
+		setNext(newLeafNode);
+		return newLeafNode;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.LeafNode#remove(int)
+	 */
+	public void remove(int index) {
+		
+		for (int i = index; i < getSlots() - 1; i++) {
+			copySlot(i + 1, this, i);
+		}
+		
+		setSlots(getSlots() - 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#hasEnoughSlots()
+	 */
+	public boolean hasEnoughSlots() {
+		return getSlots() >= (getMaxSlots() + 1) / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#canGiveSlots()
+	 */
+	public boolean canGiveSlots() {
+		return getSlots() - 1 >= (getMaxSlots() + 1) / 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#leftShift(int)
+	 */
+	public void leftShift(int count) {
+		for (int i = 0; i < getSlots() - count; i++) {
+			copySlot(i + count, this, i);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#rightShift(int)
+	 */
+	public void rightShift(int count) {
+		for (int i = getSlots() - 1; i >= 0 ; i--) {
+			copySlot(i, this, i + count);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToLeft(cherri.bheaven.bplustree.Node, int)
+	 */
+	public void copyToLeft(Node<K, V> node, int count) {
+		for (int i = 0; i < count; i++) {
+			copySlot(i, (OffHeapLeafNode<K, V>) node, node.getSlots() + i);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#copyToRight(cherri.bheaven.bplustree.Node, int)
+	 */
+	public void copyToRight(Node<K, V> node, int count) {
+		for (int i = 0; i < count; i++) {
+			copySlot(getSlots() - count + i, (OffHeapLeafNode<K, V>) node, i);
+		}
+	}
+
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.offheap;
+
+import java.nio.ByteBuffer;
+
+import cherri.bheaven.bplustree.Node;
+import cherri.bheaven.bplustree.OrderedSerializer;
+
+/**
+ * A handle over a node stored in a slab of an {@link OffHeapNodeFactory}.
+ * The handle only holds the address of the node: keys, values and children
+ * are decoded from the slab whenever they are read, so handles are cheap to
+ * create and two handles over the same node are equal.
+ * <p>
+ * A node starts with its type, its number of slots and the address of the
+ * next node, followed by its keys and then by its values or children.
+ */
+public abstract class OffHeapNode<K extends Comparable<K>, V> implements
+		Node<K, V> {
+	
+	static final int TYPE = 0;
+	static final int SLOTS = 4;
+	static final int NEXT = 8;
+	static final int KEYS = 12;
+
+	private final OffHeapNodeFactory<K, V> factory;
+	private final int address;
+	private final ByteBuffer buffer;
+	private final int offset;
+	private final int maxSlots;
+	
+	/**
+	 * @param factory the factory holding the slab of the node
+	 * @param address the address of the node
+	 * @param maxSlots
+	 */
+	OffHeapNode(OffHeapNodeFactory<K, V> factory, int address, int maxSlots) {
+		this.factory = factory;
+		this.address = address;
+		this.maxSlots = maxSlots;
+		buffer = factory.getBuffer(address);
+		offset = factory.getOffset(address);
+	}
+	
+	static int getAddress(Node<?, ?> node) {
+		return node == null ? OffHeapNodeFactory.NO_NODE :
+				((OffHeapNode<?, ?>) node).address;
+	}
+	
+	/*
+	 * Copies bytes between two slots, eight at a time when possible. The
+	 * slots must not overlap.
+	 */
+	static void copy(ByteBuffer source, int sourceOffset, ByteBuffer target,
+			int targetOffset, int length) {
+		int i = 0;
+		
+		for (; i + 8 <= length; i += 8) {
+			target.putLong(targetOffset + i, source.getLong(sourceOffset + i));
+		}
+		
+		for (; i < length; i++) {
+			target.put(targetOffset + i, source.get(sourceOffset + i));
+		}
+	}
+	
+	OffHeapNodeFactory<K, V> getFactory() {
+		return factory;
+	}
+	
+	ByteBuffer getBuffer() {
+		return buffer;
+	}
+	
+	/*
+	 * The offset in the slab of the first byte after the keys.
+	 */
+	int getKeysEnd() {
+		return offset + KEYS + maxSlots * factory.getKeySerializer().getSize();
+	}
+	
+	private int getKeyOffset(int index) {
+		return offset + KEYS + index * factory.getKeySerializer().getSize();
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getKey(int)
+	 */
+	public K getKey(int index) {
+		return factory.getKeySerializer().read(buffer, getKeyOffset(index));
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setKey(K, int)
+	 */
+	public void setKey(K key, int index) {
+		factory.getKeySerializer().write(buffer, getKeyOffset(index), key);
+	}
+	
+	/*
+	 * Copies a key to a node, possibly this one, without decoding it.
+	 */
+	void copyKey(int index, OffHeapNode<K, V> node, int nodeIndex) {
+		copy(buffer, getKeyOffset(index), node.buffer,
+				node.getKeyOffset(nodeIndex),
+				factory.getKeySerializer().getSize());
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getKeyIndex(K)
+	 */
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#compareKey(int, java.lang.Comparable)
+	 */
+	public int compareKey(int index, K key) {
+		return getKey(index).compareTo(key);
+	}
+	
+	public int getKeyIndex(K key) {
+		OrderedSerializer<K> serializer = factory.getOrderedKeySerializer();
+		
+		if (serializer != null) {
+			return getKeyIndex(serializer, key);
+		}
+		
+		int low = 0;
+		int high = getSlots() - 1;
+		
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = getKey(middle).compareTo(key);
+			
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		
+		return -(low + 1);
+	}
+	
+	/*
+	 * Writes the key once and compares it with the slots without decoding
+	 * them.
+	 */
+	private int getKeyIndex(OrderedSerializer<K> serializer, K key) {
+		ByteBuffer search = factory.getSearchBuffer();
+		serializer.write(search, 0, key);
+		
+		int low = 0;
+		int high = getSlots() - 1;
+		
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = serializer.compare(buffer, getKeyOffset(middle),
+					search, 0);
+			
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		
+		return -(low + 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getSlots()
+	 */
+	public int getSlots() {
+		return buffer.getInt(offset + SLOTS);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setSlots(int)
+	 */
+	public void setSlots(int slots) {
+		buffer.putInt(offset + SLOTS, slots);
+	}
+	
+	int getNextAddress() {
+		return buffer.getInt(offset + NEXT);
+	}
+	
+	void setNextAddress(int address) {
+		buffer.putInt(offset + NEXT, address);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getNext()
+	 */
+	public Node<K, V> getNext() {
+		return factory.getNode(getNextAddress());
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#setNext(cherri.bheaven.bplustree.Node)
+	 */
+	public void setNext(Node<K, V> next) {
+		setNextAddress(getAddress(next));
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.Node#getMaxSlots()
+	 */
+	public int getMaxSlots() {
+		return maxSlots;
+	}
+
+	public boolean isEmpty() {
+		return getSlots() == 0;
+	}
+
+	public boolean isFull() {
+		return getSlots() == maxSlots;
+	}
+	
+	protected void checkIsFull() {
+		if (!isFull()) {
+			throw new IllegalStateException("Cannot split a non full node.");
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object object) {
+		return object instanceof OffHeapNode<?, ?> &&
+				((OffHeapNode<?, ?>) object).factory == factory &&
+				((OffHeapNode<?, ?>) object).address == address;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return address;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuffer buffer = new StringBuffer();
+		buffer.append(getClass().getName());
+		buffer.append('@');
+		buffer.append(address);
+		buffer.append(" keys:");
+		
+		for (int i = 0; i < getSlots(); i++) {
+			buffer.append(' ');
+			buffer.append(getKey(i));
+		}
+		
+		return buffer.toString();
+	}
+
+}
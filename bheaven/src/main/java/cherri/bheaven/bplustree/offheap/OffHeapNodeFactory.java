@@ -0,0 +1,264 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import cherri.bheaven.bplustree.InnerNode;
+import cherri.bheaven.bplustree.LeafNode;
+import cherri.bheaven.bplustree.Node;
+import cherri.bheaven.bplustree.OrderedSerializer;
+import cherri.bheaven.bplustree.RecyclingNodeFactory;
+import cherri.bheaven.bplustree.Serializer;
+
+/**
+ * Keeps the nodes outside of the heap, in slabs of direct byte buffers, so
+ * the garbage collector sees a few slabs instead of the arrays of millions
+ * of nodes.
+ * <p>
+ * Every node takes a fixed-size slot of a slab, keys and values being
+ * written with their {@link Serializer}. Nodes refer to their children and
+ * to the next node by address, the index of their slot, and the nodes
+ * returned are handles over that address. With an
+ * {@link OrderedSerializer}, keys are searched without being decoded.
+ * <p>
+ * A new slab is allocated whenever the last one is full. Nodes released by
+ * the tree are chained through their next address and given again before
+ * the slabs grow; slabs are never given back and are freed with the
+ * factory.
+ * <p>
+ * The factory and its nodes are not thread-safe, and the nodes cannot be
+ * used by a {@link cherri.bheaven.bplustree.ConcurrentBPlusTree}. Lookups
+ * only read the slabs though, each thread writing the searched key to a
+ * buffer of its own, so they can run in several threads while no thread
+ * changes the tree.
+ */
+public class OffHeapNodeFactory<K extends Comparable<K>, V> implements
+		RecyclingNodeFactory<K, V> {
+	
+	static final int NO_NODE = -1;
+	
+	private static final int FREE = 0;
+	private static final int LEAF = 1;
+	private static final int INNER = 2;
+	private static final int SLAB_SIZE = 1 << 24;
+	
+	private final int order;
+	private final int records;
+	private final Serializer<K> keySerializer;
+	private final Serializer<V> valueSerializer;
+	private final OrderedSerializer<K> orderedKeySerializer;
+	private final ThreadLocal<ByteBuffer> searchBuffers;
+	private final int nodeSize;
+	private final int nodesPerSlab;
+	private final List<ByteBuffer> slabs;
+	private int addresses;
+	private int free;
+	private int nodes;
+	
+	/**
+	 * Creates a factory with slabs of 16 MB.
+	 * 
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 * @param keySerializer the serializer of the keys
+	 * @param valueSerializer the serializer of the values
+	 */
+	public OffHeapNodeFactory(int order, int records,
+			Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+		this(order, records, keySerializer, valueSerializer, SLAB_SIZE);
+	}
+	
+	/**
+	 * @param order the order of the B+ Tree
+	 * @param records the maximum number of records of a leaf node
+	 * @param keySerializer the serializer of the keys
+	 * @param valueSerializer the serializer of the values
+	 * @param slabSize the size in bytes of a slab, rounded down to a number
+	 *        of nodes but holding at least one
+	 */
+	@SuppressWarnings("unchecked")
+	public OffHeapNodeFactory(int order, int records,
+			Serializer<K> keySerializer, Serializer<V> valueSerializer,
+			int slabSize) {
+		this.order = order;
+		this.records = records;
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		orderedKeySerializer = keySerializer instanceof OrderedSerializer<?> ?
+				(OrderedSerializer<K>) keySerializer : null;
+		
+		final int keySize = keySerializer.getSize();
+		searchBuffers = new ThreadLocal<ByteBuffer>() {
+			@Override
+			protected ByteBuffer initialValue() {
+				return ByteBuffer.allocate(keySize);
+			}
+		};
+		
+		int leafSize = OffHeapNode.KEYS +
+				records * (keySize + valueSerializer.getSize());
+		int innerSize = OffHeapNode.KEYS + (order - 1) * keySize + order * 4;
+		nodeSize = Math.max(leafSize, innerSize);
+		nodesPerSlab = Math.max(1, slabSize / nodeSize);
+		
+		slabs = new ArrayList<ByteBuffer>();
+		free = NO_NODE;
+	}
+	
+	/*
+	 * The slab holding the node; the node starts at getOffset(address).
+	 */
+	ByteBuffer getBuffer(int address) {
+		return slabs.get(address / nodesPerSlab);
+	}
+	
+	int getOffset(int address) {
+		return (address % nodesPerSlab) * nodeSize;
+	}
+	
+	Serializer<K> getKeySerializer() {
+		return keySerializer;
+	}
+	
+	Serializer<V> getValueSerializer() {
+		return valueSerializer;
+	}
+	
+	/*
+	 * The key serializer if keys can be compared in the slabs, null
+	 * otherwise.
+	 */
+	OrderedSerializer<K> getOrderedKeySerializer() {
+		return orderedKeySerializer;
+	}
+	
+	/*
+	 * A slot where the searched key is written, one per thread since
+	 * lookups only read the slabs.
+	 */
+	ByteBuffer getSearchBuffer() {
+		return searchBuffers.get();
+	}
+	
+	/**
+	 * @return the number of nodes given and not released
+	 */
+	public int getNodes() {
+		return nodes;
+	}
+	
+	/**
+	 * @return the number of slabs allocated
+	 */
+	public int getSlabs() {
+		return slabs.size();
+	}
+	
+	/*
+	 * Takes a released node or the next slot of the last slab.
+	 */
+	private int allocate(int type) {
+		int address = free;
+		
+		if (address != NO_NODE) {
+			free = getBuffer(address).getInt(getOffset(address) +
+					OffHeapNode.NEXT);
+		} else {
+			address = addresses;
+			
+			if (address == Integer.MAX_VALUE) {
+				throw new IllegalStateException("No address is left.");
+			}
+			
+			if (address % nodesPerSlab == 0) {
+				slabs.add(ByteBuffer.allocateDirect(nodesPerSlab * nodeSize));
+			}
+			
+			addresses++;
+		}
+		
+		ByteBuffer buffer = getBuffer(address);
+		int offset = getOffset(address);
+		buffer.putInt(offset + OffHeapNode.TYPE, type);
+		buffer.putInt(offset + OffHeapNode.SLOTS, 0);
+		buffer.putInt(offset + OffHeapNode.NEXT, NO_NODE);
+		nodes++;
+		
+		return address;
+	}
+	
+	/*
+	 * Gives a handle over an existing node.
+	 */
+	Node<K, V> getNode(int address) {
+		if (address == NO_NODE) {
+			return null;
+		}
+		
+		if (getBuffer(address).getInt(getOffset(address) +
+				OffHeapNode.TYPE) == LEAF) {
+			return new OffHeapLeafNode<K, V>(this, address, records);
+		} else {
+			return new OffHeapInnerNode<K, V>(this, address, order - 1);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.NodeFactory#getInnerNode()
+	 */
+	@Override
+	public InnerNode<K, V> getInnerNode() {
+		return new OffHeapInnerNode<K, V>(this, allocate(INNER), order - 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.NodeFactory#getLeafNode()
+	 */
+	@Override
+	public LeafNode<K, V> getLeafNode() {
+		return new OffHeapLeafNode<K, V>(this, allocate(LEAF), records);
+	}
+
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.RecyclingNodeFactory#release(cherri.bheaven.bplustree.Node)
+	 */
+	@Override
+	public void release(Node<K, V> node) {
+		if (!(node instanceof OffHeapNode<?, ?>) ||
+				((OffHeapNode<K, V>) node).getFactory() != this) {
+			return;
+		}
+		
+		int address = OffHeapNode.getAddress(node);
+		ByteBuffer buffer = getBuffer(address);
+		int offset = getOffset(address);
+		
+		if (buffer.getInt(offset + OffHeapNode.TYPE) != FREE) {
+			buffer.putInt(offset + OffHeapNode.TYPE, FREE);
+			buffer.putInt(offset + OffHeapNode.NEXT, free);
+			free = address;
+			nodes--;
+		}
+	}
+
+}
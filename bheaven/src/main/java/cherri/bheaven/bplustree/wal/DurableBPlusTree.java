@@ -0,0 +1,392 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.wal;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.Cursor;
+import cherri.bheaven.bplustree.Merging;
+import cherri.bheaven.bplustree.NodeFactory;
+import cherri.bheaven.bplustree.PersistentNodeFactory;
+import cherri.bheaven.bplustree.Remapping;
+import cherri.bheaven.bplustree.TreeSpliterator;
+import cherri.bheaven.bplustree.TreeStatistics;
+
+/**
+ * A {@link BPlusTree} logging its mutations to a {@link WriteAheadLog}.
+ * Operations are serialized on the tree, but a writer waits for its record
+ * to be on disk after leaving the tree, so concurrent writers share the
+ * forces of the log.
+ * <p>
+ * The cursors of {@link #range(Comparable, boolean, Comparable, boolean)}
+ * and {@link #tailScan(Comparable)}, and the spliterators, are created
+ * under the lock of the tree but read the nodes without it: they must not
+ * be used while another thread changes the tree.
+ * <p>
+ * The records of the log are replayed when the tree is created. With a
+ * {@link PersistentNodeFactory}, a checkpoint flushes the factory and
+ * empties the log. The log is replayed over the nodes as they were at the
+ * last checkpoint, so the factory must not write nodes in between; a
+ * {@link cherri.bheaven.bplustree.disk.DiskNodeFactory} writes a page back
+ * whenever its frame is evicted.
+ */
+public class DurableBPlusTree<K extends Comparable<K>, V> extends
+		BPlusTree<K, V> {
+
+	private static final int BATCH_SIZE = 1024;
+	
+	private final NodeFactory<K, V> factory;
+	private final WriteAheadLog<K, V> log;
+	private boolean replaying;
+	
+	/**
+	 * @param factory the factory of the nodes
+	 * @param log the log to replay and append to
+	 * @throws IOException if the log cannot be replayed
+	 */
+	public DurableBPlusTree(NodeFactory<K, V> factory, WriteAheadLog<K, V> log)
+			throws IOException {
+		super(factory);
+		
+		this.factory = factory;
+		this.log = log;
+		
+		replaying = true;
+		try {
+			log.replay(this);
+		} finally {
+			replaying = false;
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#get(java.lang.Comparable)
+	 */
+	@Override
+	public synchronized V get(K key) {
+		return super.get(key);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#getAll(K[], V[])
+	 */
+	@Override
+	public synchronized void getAll(K keys[], V values[]) {
+		super.getAll(keys, values);
+	}
+	
+	/*
+	 * Only positions the cursor under the lock of the tree, see the class
+	 * comment.
+	 */
+	@Override
+	public synchronized Cursor<K, V> range(K from, boolean fromInclusive,
+			K to, boolean toInclusive) {
+		return super.range(from, fromInclusive, to, toInclusive);
+	}
+	
+	/*
+	 * Only splits the root under the lock of the tree, see the class
+	 * comment.
+	 */
+	@Override
+	public synchronized TreeSpliterator<K, V> spliterator(K from,
+			boolean fromInclusive, K to, boolean toInclusive) {
+		return super.spliterator(from, fromInclusive, to, toInclusive);
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#getStatistics()
+	 */
+	@Override
+	public synchronized TreeStatistics getStatistics() {
+		return super.getStatistics();
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#put(java.lang.Comparable, java.lang.Object)
+	 */
+	@Override
+	public V put(K key, V value) {
+		long sequence;
+		V result;
+		
+		synchronized (this) {
+			if (replaying) {
+				return super.put(key, value);
+			}
+			
+			sequence = log.appendPut(key, value);
+			result = super.put(key, value);
+		}
+		
+		commit(sequence);
+		
+		return result;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#putIfAbsent(java.lang.Comparable, java.lang.Object)
+	 */
+	@Override
+	public V putIfAbsent(K key, V value) {
+		long sequence;
+		V result;
+		
+		synchronized (this) {
+			result = super.get(key);
+			
+			if (result != null) {
+				return result;
+			}
+			
+			sequence = write(key, value);
+		}
+		
+		commit(sequence);
+		
+		return result;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#replace(java.lang.Comparable, java.lang.Object)
+	 */
+	@Override
+	public V replace(K key, V value) {
+		long sequence;
+		V result;
+		
+		synchronized (this) {
+			result = super.get(key);
+			
+			if (result == null) {
+				return result;
+			}
+			
+			sequence = write(key, value);
+		}
+		
+		commit(sequence);
+		
+		return result;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#compute(java.lang.Comparable, cherri.bheaven.bplustree.Remapping)
+	 */
+	@Override
+	public V compute(K key, Remapping<? super K, V> remapping) {
+		long sequence;
+		V result;
+		
+		synchronized (this) {
+			V oldValue = super.get(key);
+			
+			result = remapping.remap(key, oldValue);
+			if (result == null && oldValue == null) {
+				return result;
+			}
+			
+			sequence = write(key, result);
+		}
+		
+		commit(sequence);
+		
+		return result;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#merge(java.lang.Comparable, java.lang.Object, cherri.bheaven.bplustree.Merging)
+	 */
+	@Override
+	public V merge(K key, V value, Merging<V> merging) {
+		long sequence;
+		V result;
+		
+		synchronized (this) {
+			V oldValue = super.get(key);
+			
+			result = oldValue != null ? merging.merge(oldValue, value) : value;
+			if (result == null && oldValue == null) {
+				return result;
+			}
+			
+			sequence = write(key, result);
+		}
+		
+		commit(sequence);
+		
+		return result;
+	}
+	
+	/*
+	 * Logs the new value of key, null meaning it is removed, then changes
+	 * the tree. The conditional operations read the current value first, so
+	 * as put and remove they log before the tree is changed.
+	 */
+	private long write(K key, V value) {
+		long sequence;
+		
+		if (value == null) {
+			sequence = log.appendRemove(key);
+			super.remove(key);
+		} else {
+			sequence = log.appendPut(key, value);
+			super.put(key, value);
+		}
+		
+		return sequence;
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#putAll(K[], V[])
+	 */
+	@Override
+	public void putAll(K keys[], V values[]) {
+		long sequence = -1;
+		
+		synchronized (this) {
+			if (replaying) {
+				super.putAll(keys, values);
+				return;
+			}
+			
+			// Nothing is logged for a batch the tree would refuse.
+			checkBatch(keys, values);
+			for (int i = 0; i < keys.length; i++) {
+				sequence = log.appendPut(keys[i], values[i]);
+			}
+			super.putAll(keys, values);
+		}
+		
+		if (sequence >= 0) {
+			commit(sequence);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#putAll(java.util.Iterator)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public void putAll(Iterator<? extends Map.Entry<K, V>> entries) {
+		long sequence = -1;
+		
+		synchronized (this) {
+			if (replaying) {
+				super.putAll(entries);
+				return;
+			}
+			
+			K keys[] = (K[]) new Comparable<?>[BATCH_SIZE];
+			V values[] = (V[]) new Object[BATCH_SIZE];
+			K previousKey = null;
+			
+			while (entries.hasNext()) {
+				int count = 0;
+				
+				while (count < BATCH_SIZE && entries.hasNext()) {
+					Map.Entry<K, V> entry = entries.next();
+					keys[count] = entry.getKey();
+					values[count] = entry.getValue();
+					count++;
+				}
+				
+				if (count < BATCH_SIZE) {
+					keys = Arrays.copyOf(keys, count);
+					values = Arrays.copyOf(values, count);
+				}
+				
+				// A batch is logged once checked, then applied as a whole.
+				if (previousKey != null) {
+					checkOrder(previousKey, keys[0]);
+				}
+				checkBatch(keys, values);
+				for (int i = 0; i < count; i++) {
+					sequence = log.appendPut(keys[i], values[i]);
+				}
+				super.putAll(keys, values);
+				previousKey = keys[count - 1];
+			}
+		}
+		
+		if (sequence >= 0) {
+			commit(sequence);
+		}
+	}
+	
+	private void checkOrder(K previousKey, K key) {
+		if (previousKey.compareTo(key) > 0) {
+			throw new IllegalArgumentException("Keys are not sorted: " + key +
+					" follows " + previousKey + ".");
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see cherri.bheaven.bplustree.BPlusTree#remove(java.lang.Comparable)
+	 */
+	@Override
+	public V remove(K key) {
+		long sequence;
+		V result;
+		
+		synchronized (this) {
+			if (replaying) {
+				return super.remove(key);
+			}
+			
+			sequence = log.appendRemove(key);
+			result = super.remove(key);
+		}
+		
+		commit(sequence);
+		
+		return result;
+	}
+	
+	private void commit(long sequence) {
+		try {
+			log.commit(sequence);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot commit the log.", e);
+		}
+	}
+	
+	/**
+	 * Flushes the factory and empties the log.
+	 * 
+	 * @throws UnsupportedOperationException if the factory is not persistent
+	 * @throws IOException if the factory cannot be flushed or the log
+	 *         truncated
+	 */
+	public synchronized void checkpoint() throws IOException {
+		if (!(factory instanceof PersistentNodeFactory<?, ?>)) {
+			throw new UnsupportedOperationException(
+					"Only a tree of a persistent factory can be checkpointed.");
+		}
+		
+		((PersistentNodeFactory<K, V>) factory).flush();
+		log.truncate();
+	}
+}
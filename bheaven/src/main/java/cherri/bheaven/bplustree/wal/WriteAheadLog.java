@@ -0,0 +1,467 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.wal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.Serializer;
+import cherri.bheaven.bplustree.VariableSerializer;
+
+/**
+ * Append-only log of the mutations of a {@link BPlusTree}. A record is
+ * appended to an in-memory buffer before the mutation is applied and
+ * {@link #commit(long)} waits until it is on disk.
+ * <p>
+ * Commits are grouped: the first writer to wait becomes the leader, waits
+ * up to the latency budget for other writers to append their records, then
+ * writes and forces the whole batch at once while the others wait for it.
+ * Writers appending during a force are committed by the next one. If a
+ * force fails, its writers get the exception and the batch is kept in front
+ * of the records appended since, to be written again by the next force: no
+ * commit returns before every record up to its own is on disk.
+ * <p>
+ * A record is a type byte, the key, the value for a put, and a CRC32 of
+ * the preceding bytes, so a record torn by a crash is detected and dropped
+ * on {@link #replay(BPlusTree)}. The key and the value take only the bytes
+ * they need when their serializer is a {@link VariableSerializer}, the
+ * whole slot otherwise.
+ */
+public class WriteAheadLog<K extends Comparable<K>, V> implements Closeable {
+	
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 2;
+	private static final int TYPE_SIZE = 1;
+	private static final int CRC_SIZE = 4;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private final Serializer<K> keySerializer;
+	private final Serializer<V> valueSerializer;
+	private final long maxDelay;
+	private final int maxBatchSize;
+	private final FileChannel channel;
+	private final CRC32 crc;
+	private final ReentrantLock lock;
+	private final Condition batchFull;
+	private final Condition forced;
+	private ByteBuffer buffer;
+	private ByteBuffer spare;
+	private long appended;
+	private long durable;
+	private long size;
+	private boolean forcing;
+	private long syncs;
+	
+	/**
+	 * Opens a log with no latency budget: writers are still grouped while a
+	 * force is in progress.
+	 * 
+	 * @param file the log file
+	 * @param keySerializer the serializer of the keys
+	 * @param valueSerializer the serializer of the values
+	 * @throws IOException if the file cannot be opened
+	 */
+	public WriteAheadLog(File file, Serializer<K> keySerializer,
+			Serializer<V> valueSerializer) throws IOException {
+		this(file, keySerializer, valueSerializer, 0, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * @param file the log file
+	 * @param keySerializer the serializer of the keys
+	 * @param valueSerializer the serializer of the values
+	 * @param maxDelay how long the leader of a group commit waits for other
+	 *        writers before forcing the log
+	 * @param unit the unit of <code>maxDelay</code>
+	 * @throws IOException if the file cannot be opened
+	 */
+	public WriteAheadLog(File file, Serializer<K> keySerializer,
+			Serializer<V> valueSerializer, long maxDelay, TimeUnit unit)
+			throws IOException {
+		this(new RandomAccessFile(file, "rw").getChannel(), keySerializer,
+				valueSerializer, maxDelay, unit);
+	}
+	
+	/*
+	 * Used in unit testing to make the channel fail.
+	 */
+	WriteAheadLog(FileChannel channel, Serializer<K> keySerializer,
+			Serializer<V> valueSerializer, long maxDelay, TimeUnit unit)
+			throws IOException {
+		if (maxDelay < 0) {
+			channel.close();
+			throw new IllegalArgumentException("Negative delay: " + maxDelay);
+		}
+		
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		this.maxDelay = unit.toNanos(maxDelay);
+		maxBatchSize = BUFFER_SIZE / 2;
+		this.channel = channel;
+		size = channel.size();
+		crc = new CRC32();
+		lock = new ReentrantLock();
+		batchFull = lock.newCondition();
+		forced = lock.newCondition();
+		buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		spare = ByteBuffer.allocate(BUFFER_SIZE);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> int getSize(Serializer<T> serializer, T object) {
+		if (serializer instanceof VariableSerializer) {
+			return ((VariableSerializer<T>) serializer).getSize(object);
+		}
+		
+		return serializer.getSize();
+	}
+	
+	private static int getSize(Serializer<?> serializer, ByteBuffer buffer,
+			int offset) {
+		if (serializer instanceof VariableSerializer) {
+			return ((VariableSerializer<?>) serializer).getSize(buffer,
+					offset);
+		}
+		
+		return serializer.getSize();
+	}
+	
+	/*
+	 * Returns 0 if the record read in buffer is torn or not a record.
+	 */
+	private int getRecordSize(ByteBuffer record) {
+		if (record.limit() < TYPE_SIZE) {
+			return 0;
+		}
+		
+		byte type = record.get(0);
+		
+		if (type != PUT && type != REMOVE) {
+			return 0;
+		}
+		
+		try {
+			int keySize = getSize(keySerializer, record, TYPE_SIZE);
+			int size = TYPE_SIZE + keySize + CRC_SIZE;
+			
+			if (keySize > keySerializer.getSize()) {
+				return 0;
+			}
+			
+			if (type == PUT) {
+				int valueSize = getSize(valueSerializer, record,
+						TYPE_SIZE + keySize);
+				
+				if (valueSize > valueSerializer.getSize()) {
+					return 0;
+				}
+				
+				size += valueSize;
+			}
+			
+			return size <= record.limit() ? size : 0;
+		} catch (IndexOutOfBoundsException e) {
+			return 0;
+		}
+	}
+	
+	/**
+	 * Appends a put record.
+	 * 
+	 * @return the sequence number to commit
+	 */
+	public long appendPut(K key, V value) {
+		return append(PUT, key, value);
+	}
+	
+	/**
+	 * Appends a remove record.
+	 * 
+	 * @return the sequence number to commit
+	 */
+	public long appendRemove(K key) {
+		return append(REMOVE, key, null);
+	}
+	
+	private long append(byte type, K key, V value) {
+		int keySize = getSize(keySerializer, key);
+		int size = TYPE_SIZE + keySize +
+				(type == PUT ? getSize(valueSerializer, value) : 0) + CRC_SIZE;
+		
+		lock.lock();
+		try {
+			if (buffer.remaining() < size) {
+				ByteBuffer larger = ByteBuffer.allocate(
+						Math.max(buffer.capacity() * 2, size));
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+			
+			int offset = buffer.position();
+			buffer.put(offset, type);
+			keySerializer.write(buffer, offset + TYPE_SIZE, key);
+			
+			if (type == PUT) {
+				valueSerializer.write(buffer, offset + TYPE_SIZE + keySize,
+						value);
+			}
+			
+			crc.reset();
+			crc.update(buffer.array(), offset, size - CRC_SIZE);
+			buffer.putInt(offset + size - CRC_SIZE, (int) crc.getValue());
+			buffer.position(offset + size);
+			
+			appended += size;
+			
+			if (buffer.position() >= maxBatchSize) {
+				batchFull.signal();
+			}
+			
+			return appended;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Waits until every record up to <code>sequence</code> is on disk.
+	 * 
+	 * @param sequence a sequence number returned by an append
+	 * @throws IOException if the log cannot be written
+	 */
+	public void commit(long sequence) throws IOException {
+		lock.lock();
+		try {
+			while (durable < sequence) {
+				if (forcing) {
+					forced.awaitUninterruptibly();
+				} else {
+					force();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/*
+	 * Run by the leader of a group commit, with the lock held.
+	 */
+	private void force() throws IOException {
+		forcing = true;
+		
+		try {
+			long nanos = maxDelay;
+			
+			while (nanos > 0 && buffer.position() < maxBatchSize) {
+				try {
+					nanos = batchFull.awaitNanos(nanos);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			
+			ByteBuffer batch = buffer;
+			long sequence = appended;
+			buffer = spare;
+			spare = batch;
+			
+			long position = size;
+			boolean written = false;
+			
+			lock.unlock();
+			try {
+				batch.flip();
+				
+				while (batch.hasRemaining()) {
+					channel.write(batch, position + batch.position());
+				}
+				
+				channel.force(false);
+				written = true;
+			} finally {
+				lock.lock();
+				
+				if (!written) {
+					restore(batch);
+				}
+			}
+			
+			size = position + batch.limit();
+			batch.clear();
+			durable = Math.max(durable, sequence);
+			syncs++;
+		} finally {
+			forcing = false;
+			forced.signalAll();
+		}
+	}
+	
+	/*
+	 * Puts a batch that could not be written back in front of the records
+	 * appended since, to be written at the same position by the next force.
+	 */
+	private void restore(ByteBuffer batch) {
+		batch.position(0);
+		buffer.flip();
+		
+		ByteBuffer merged = ByteBuffer.allocate(Math.max(BUFFER_SIZE,
+				batch.remaining() + buffer.remaining()));
+		merged.put(batch);
+		merged.put(buffer);
+		
+		buffer = merged;
+		batch.clear();
+	}
+	
+	/**
+	 * Applies the records of the log to <code>tree</code>, in order. A put
+	 * replaces the value of a key already in the tree, so records already
+	 * applied before a crash can be replayed safely. The log is cut after
+	 * the last complete record.
+	 * 
+	 * @param tree the tree to restore
+	 * @return the number of records applied
+	 * @throws IOException if the log cannot be read
+	 */
+	public int replay(BPlusTree<K, V> tree) throws IOException {
+		lock.lock();
+		try {
+			long position = 0;
+			int count = 0;
+			ByteBuffer record = ByteBuffer.allocate(TYPE_SIZE +
+					keySerializer.getSize() + valueSerializer.getSize() +
+					CRC_SIZE);
+			
+			while (true) {
+				record.clear();
+				
+				/* Reads as much as the largest record, then finds the size. */
+				while (record.hasRemaining()) {
+					if (channel.read(record, position + record.position()) < 0) {
+						break;
+					}
+				}
+				
+				record.flip();
+				
+				int size = getRecordSize(record);
+				
+				if (size == 0) {
+					break;
+				}
+				
+				crc.reset();
+				crc.update(record.array(), 0, size - CRC_SIZE);
+				
+				if (record.getInt(size - CRC_SIZE) != (int) crc.getValue()) {
+					break;
+				}
+				
+				byte type = record.get(0);
+				K key = keySerializer.read(record, TYPE_SIZE);
+				
+				if (type == PUT) {
+					tree.put(key, valueSerializer.read(record, TYPE_SIZE +
+							getSize(keySerializer, record, TYPE_SIZE)));
+				} else {
+					tree.remove(key);
+				}
+				
+				position += size;
+				count++;
+			}
+			
+			channel.truncate(position);
+			size = position;
+			
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Empties the log once the tree has been checkpointed: the records
+	 * appended so far, written or not, are no longer needed. Records must not
+	 * be appended meanwhile.
+	 * 
+	 * @throws IOException if the log cannot be truncated
+	 */
+	public void truncate() throws IOException {
+		lock.lock();
+		try {
+			while (forcing) {
+				forced.awaitUninterruptibly();
+			}
+			
+			buffer.clear();
+			channel.truncate(0);
+			channel.force(true);
+			size = 0;
+			durable = appended;
+			forced.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of forces of the log, each committing a group of
+	 *         records
+	 */
+	public long getSyncs() {
+		lock.lock();
+		try {
+			return syncs;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		long sequence;
+		
+		lock.lock();
+		try {
+			sequence = appended;
+		} finally {
+			lock.unlock();
+		}
+		
+		commit(sequence);
+		channel.close();
+	}
+}
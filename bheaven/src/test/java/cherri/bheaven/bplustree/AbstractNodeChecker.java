@@ -19,9 +19,6 @@
  */
 package cherri.bheaven.bplustree;
 
-import cherri.bheaven.bplustree.memory.MemoryInnerNode;
-import cherri.bheaven.bplustree.memory.MemoryLeafNode;
-
 /**
  *
  */
@@ -38,10 +35,10 @@ public abstract class AbstractNodeChecker<K extends Comparable<K>, V> {
 	
 	public static <K extends Comparable<K>, V> AbstractNodeChecker<K, V> getNodeChecker(
 			Node<K, V> node) {
-		if(node instanceof MemoryInnerNode<?, ?>) {
-			return new InnerNodeChecker<K, V>((MemoryInnerNode<K, V>) node);
+		if(node instanceof InnerNode<?, ?>) {
+			return new InnerNodeChecker<K, V>((InnerNode<K, V>) node);
 		} else {
-			return new LeafNodeChecker<K, V>((MemoryLeafNode<K, V>) node);
+			return new LeafNodeChecker<K, V>((LeafNode<K, V>) node);
 		}
 	}
 
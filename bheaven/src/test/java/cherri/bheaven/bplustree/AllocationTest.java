@@ -0,0 +1,165 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.ConcurrentMemoryNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class AllocationTest {
+	
+	private static final int COUNT = 1000;
+	private static final int ROUNDS = 100;
+	
+	private com.sun.management.ThreadMXBean threadMXBean;
+	private Integer keys[];
+	
+	@Before
+	public void setUp() {
+		java.lang.management.ThreadMXBean bean =
+			ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		threadMXBean = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+		
+		keys = new Integer[COUNT * 2];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = Integer.valueOf(i);
+		}
+	}
+	
+	private long getAllocatedBytes() {
+		return threadMXBean.getThreadAllocatedBytes(
+				Thread.currentThread().getId());
+	}
+	
+	/*
+	 * Fills the tree with the even keys in order, which leaves the leaves
+	 * split along the way half full, so that an odd key of the lower half
+	 * can be put and removed again without changing the shape of the tree.
+	 */
+	private void fill(BPlusTree<Integer, Integer> tree) {
+		for (int i = 0; i < keys.length; i += 2) {
+			tree.put(keys[i], keys[i]);
+		}
+	}
+	
+	private void putAndRemove(BPlusTree<Integer, Integer> tree) {
+		for (int i = 1; i < COUNT; i += 2) {
+			tree.put(keys[i], keys[i]);
+			tree.remove(keys[i]);
+		}
+	}
+	
+	private void get(BPlusTree<Integer, Integer> tree) {
+		for (int i = 0; i < keys.length; i++) {
+			tree.get(keys[i]);
+		}
+	}
+	
+	private void assertThatNothingIsAllocated(BPlusTree<Integer, Integer> tree) {
+		fill(tree);
+		
+		// Warm up, the first operations may set up per thread state.
+		putAndRemove(tree);
+		get(tree);
+		
+		long start = getAllocatedBytes();
+		for (int i = 0; i < ROUNDS; i++) {
+			putAndRemove(tree);
+			get(tree);
+		}
+		long allocated = getAllocatedBytes() - start;
+		
+		/*
+		 * The few bytes the measure itself or the JIT may allocate on this
+		 * thread are spread over the operations, an allocation made by any
+		 * of them is not.
+		 */
+		long operations = (long) ROUNDS * (COUNT + keys.length);
+		assertThat("Bytes allocated per put, remove and get",
+				allocated / operations, is(0L));
+	}
+	
+	@Test
+	public void treeShouldNotAllocateInSteadyState() {
+		assertThatNothingIsAllocated(new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(8, 16)));
+	}
+	
+	@Test
+	public void recordingOperationsShouldNotAllocate() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(8, 16));
+		tree.setOperationStatistics(new OperationStatistics());
+		assertThatNothingIsAllocated(tree);
+	}
+	
+	/*
+	 * Removes the lower half of the keys, which merges their nodes, and puts
+	 * them back, which splits nodes again.
+	 */
+	private void removeAndPut(BPlusTree<Integer, Integer> tree) {
+		for (int i = 0; i < COUNT; i += 2) {
+			tree.remove(keys[i]);
+		}
+		for (int i = 0; i < COUNT; i += 2) {
+			tree.put(keys[i], keys[i]);
+		}
+	}
+	
+	@Test
+	public void treeShouldReuseReleasedNodes() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(8, 16, null, COUNT));
+		fill(tree);
+		removeAndPut(tree);
+		
+		long start = getAllocatedBytes();
+		for (int i = 0; i < ROUNDS; i++) {
+			removeAndPut(tree);
+		}
+		long allocated = getAllocatedBytes() - start;
+		
+		long operations = (long) ROUNDS * COUNT;
+		assertThat("Bytes allocated per remove and put merging and " +
+				"splitting nodes", allocated / operations, is(0L));
+		
+		for (int i = 0; i < keys.length; i += 2) {
+			assertThat("Tree should find " + i + ".", tree.get(keys[i]),
+					is(keys[i]));
+		}
+	}
+	
+	@Test
+	public void concurrentTreeShouldNotAllocateInSteadyState() {
+		assertThatNothingIsAllocated(new ConcurrentBPlusTree<Integer, Integer>(
+				new ConcurrentMemoryNodeFactory<Integer, Integer>(8, 16)));
+	}
+}
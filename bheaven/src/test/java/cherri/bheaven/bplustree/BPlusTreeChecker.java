@@ -19,8 +19,6 @@
  */
 package cherri.bheaven.bplustree;
 
-import cherri.bheaven.bplustree.memory.MemoryInnerNode;
-
 /**
  *
  */
@@ -57,7 +55,7 @@ public class BPlusTreeChecker<K extends Comparable<K>, V> {
 		}
 		
 		boolean result = true;
-		if(root instanceof MemoryInnerNode<?, ?>) {
+		if(root instanceof InnerNode<?, ?>) {
 			for (int i = 0; result && i < root.getSlots() + 1; i++) {
 				AbstractNodeChecker<K, V> nodeChecker =
 					AbstractNodeChecker.getNodeChecker(
@@ -90,7 +88,7 @@ public class BPlusTreeChecker<K extends Comparable<K>, V> {
 		 * of its non-empty children according to our node structure. The
 		 * remaining thing to check it the last node key value.
 		 */  
-		if(root instanceof MemoryInnerNode<?, ?>) {
+		if(root instanceof InnerNode<?, ?>) {
 			return ((InnerNodeChecker<K, V>) AbstractNodeChecker.getNodeChecker(root)).checkLastKey();
 		}
 		return true;
@@ -130,7 +128,7 @@ public class BPlusTreeChecker<K extends Comparable<K>, V> {
 		
 		for (int i = 0; i < nodes.length - 1; i++) {
 			LeafNode<K, V> node = (LeafNode<K, V>) nodes[i]; 
-			if(node.getNext() != nodes[i + 1]) {
+			if(!nodes[i + 1].equals(node.getNext())) {
 				return false;
 			}
 		}
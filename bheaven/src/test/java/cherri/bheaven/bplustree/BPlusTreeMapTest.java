@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class BPlusTreeMapTest {
+
+	private static final int COUNT = 200;
+	
+	/*
+	 * Puts the even keys below COUNT in random order in both maps.
+	 */
+	private void fill(Map<Integer, String> map, Map<Integer, String> model) {
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int i = 0; i < COUNT; i += 2) {
+			keys.add(i);
+		}
+		Collections.shuffle(keys, new Random(COUNT));
+		for (Integer key : keys) {
+			map.put(key, "v" + key);
+			model.put(key, "v" + key);
+		}
+	}
+	
+	/*
+	 * Compares the navigation methods and the iteration of a view with
+	 * those of the model for every key around the range.
+	 */
+	private void navigateAndTest(NavigableMap<Integer, String> map,
+			NavigableMap<Integer, String> model) {
+		assertThat("Entries should match.", new ArrayList<Map.Entry<Integer,
+				String>>(map.entrySet()), is(new ArrayList<Map.Entry<Integer,
+						String>>(model.entrySet())));
+		assertThat("Size should match.", map.size(), is(model.size()));
+		assertThat("First entry should match.", map.firstEntry(),
+				is(model.firstEntry()));
+		assertThat("Last entry should match.", map.lastEntry(),
+				is(model.lastEntry()));
+		assertThat("Descending keys should match.",
+				new ArrayList<Integer>(map.descendingKeySet()),
+				is(new ArrayList<Integer>(model.descendingKeySet())));
+		
+		for (int key = -2; key < COUNT + 2; key++) {
+			assertThat("Get should match for " + key + ".", map.get(key),
+					is(model.get(key)));
+			assertThat("Lower entry should match for " + key + ".",
+					map.lowerEntry(key), is(model.lowerEntry(key)));
+			assertThat("Floor entry should match for " + key + ".",
+					map.floorEntry(key), is(model.floorEntry(key)));
+			assertThat("Ceiling entry should match for " + key + ".",
+					map.ceilingEntry(key), is(model.ceilingEntry(key)));
+			assertThat("Higher entry should match for " + key + ".",
+					map.higherEntry(key), is(model.higherEntry(key)));
+		}
+	}
+	
+	private void viewsAndTest(NavigableMap<Integer, String> map,
+			NavigableMap<Integer, String> model) {
+		navigateAndTest(map, model);
+		navigateAndTest(map.descendingMap(), model.descendingMap());
+		
+		for (int from = -1; from < COUNT + 1; from += 37) {
+			for (int to = from; to < COUNT + 1; to += 41) {
+				navigateAndTest(map.subMap(from, true, to, false),
+						model.subMap(from, true, to, false));
+				navigateAndTest(map.subMap(from, false, to, true),
+						model.subMap(from, false, to, true));
+				navigateAndTest(map.headMap(to, true).descendingMap()
+						.tailMap(from, false), model.headMap(to, true)
+						.descendingMap().tailMap(from, false));
+			}
+			
+			navigateAndTest(map.tailMap(from, true), model.tailMap(from, true));
+			navigateAndTest(map.headMap(from, false),
+					model.headMap(from, false));
+		}
+	}
+	
+	@Test
+	public void mapShouldNavigateLikeTreeMap() {
+		BPlusTreeMap<Integer, String> map = new BPlusTreeMap<Integer, String>(
+				new BPlusTree<Integer, String>(
+						new MemoryNodeFactory<Integer, String>(4, 4)));
+		TreeMap<Integer, String> model = new TreeMap<Integer, String>();
+		
+		viewsAndTest(map, model);
+		fill(map, model);
+		viewsAndTest(map, model);
+	}
+	
+	@Test
+	public void iteratorShouldRemoveEntries() {
+		BPlusTreeMap<Integer, String> map = new BPlusTreeMap<Integer, String>(
+				new BPlusTree<Integer, String>(
+						new MemoryNodeFactory<Integer, String>(4, 4)));
+		TreeMap<Integer, String> model = new TreeMap<Integer, String>();
+		fill(map, model);
+		
+		for (Iterator<Integer> i = map.keySet().iterator(); i.hasNext();) {
+			if (i.next() % 3 != 0) {
+				i.remove();
+			}
+		}
+		for (Iterator<Integer> i = map.descendingKeySet().iterator();
+				i.hasNext();) {
+			if (i.next() % 4 == 0) {
+				i.remove();
+			}
+		}
+		for (Iterator<Integer> i = model.keySet().iterator(); i.hasNext();) {
+			int key = i.next();
+			if (key % 3 != 0 || key % 4 == 0) {
+				i.remove();
+			}
+		}
+		
+		viewsAndTest(map, model);
+		
+		map.subMap(20, 100).clear();
+		model.subMap(20, 100).clear();
+		assertThat("Poll should remove the first entry.",
+				map.pollFirstEntry(), is(model.pollFirstEntry()));
+		assertThat("Poll should remove the last entry.",
+				map.pollLastEntry(), is(model.pollLastEntry()));
+		
+		viewsAndTest(map, model);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void viewShouldRejectKeysOutOfRange() {
+		new BPlusTreeMap<Integer, String>(new BPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4))).headMap(10)
+						.put(10, "v10");
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void mapShouldRejectNullValues() {
+		new BPlusTreeMap<Integer, String>(new BPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4))).put(1, null);
+	}
+}
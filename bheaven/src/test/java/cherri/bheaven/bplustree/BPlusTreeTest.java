@@ -30,7 +30,9 @@ import org.springframework.test.util.ReflectionTestUtils;
 
 import cherri.bheaven.bplustree.memory.MemoryInnerNode;
 import cherri.bheaven.bplustree.memory.MemoryLeafNode;
+import cherri.bheaven.bplustree.memory.MemoryLongInnerNode;
 import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryStringInnerNode;
 
 public class BPlusTreeTest {
 	
@@ -380,4 +382,36 @@ public class BPlusTreeTest {
 		
 		assertThatTreeIsValid(tree);
 	}
+	
+	@Test
+	public void innerNodesOfOddOrderShouldKeepHalfTheirChildren() {
+		// Four keys, five children: two keys are the least, three the least
+		// to give one.
+		Node<?, ?> nodes[] = new Node<?, ?>[] {
+				new MemoryInnerNode<String, String>(4),
+				new MemoryLongInnerNode<String>(4),
+				new MemoryStringInnerNode<String>(4) };
+		
+		for (Node<?, ?> node : nodes) {
+			node.setSlots(1);
+			assertThat(node.hasEnoughSlots(), is(false));
+			node.setSlots(2);
+			assertThat(node.hasEnoughSlots(), is(true));
+			assertThat(node.canGiveSlots(), is(false));
+			node.setSlots(3);
+			assertThat(node.canGiveSlots(), is(true));
+		}
+		
+		BPlusTree<String, String> tree = new BPlusTree<String, String>(
+				new MemoryNodeFactory<String, String>(5, 4));
+		
+		for (int i = 0; i < 200; i++) {
+			tree.put(KEY + (1000 + i), VALUE);
+		}
+		
+		for (int i = 0; i < 200; i++) {
+			tree.remove(KEY + (1000 + i * 7 % 200));
+			assertThatTreeIsValid(tree);
+		}
+	}
 }
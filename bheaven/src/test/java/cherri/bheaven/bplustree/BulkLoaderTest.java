@@ -0,0 +1,184 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class BulkLoaderTest {
+
+	private List<Map.Entry<Integer, String>> getEntries(int count) {
+		List<Map.Entry<Integer, String>> entries =
+			new ArrayList<Map.Entry<Integer, String>>(count);
+		
+		for (int i = 0; i < count; i++) {
+			entries.add(new AbstractMap.SimpleImmutableEntry<Integer, String>(
+					i, "v" + i));
+		}
+		
+		return entries;
+	}
+	
+	private void assertThatTreeIsValid(BPlusTree<Integer, String> tree) {
+		BPlusTreeChecker<Integer, String> checker =
+			new BPlusTreeChecker<Integer, String>(tree);
+		assertThat("B+Tree is not valid:\n" + checker.getInvalidReason(),
+				checker.isValid(), is(true));
+	}
+	
+	private void assertThatTreeHolds(BPlusTree<Integer, String> tree,
+			int count) {
+		Cursor<Integer, String> cursor = tree.range(null, null);
+		
+		for (int i = 0; i < count; i++) {
+			assertThat("Tree should return \"v" + i + "\".", tree.get(i),
+					is("v" + i));
+			assertThat("Leaf chain should hold " + i + ".",
+					cursor.next().getKey(), is(i));
+		}
+		
+		assertThat("Leaf chain should end after the last entry.",
+				cursor.hasNext(), is(false));
+	}
+	
+	private void loadAndTest(int order, int records, double fillFactor) {
+		for (int count = 0; count < 300; count++) {
+			BulkLoader<Integer, String> loader = new BulkLoader<Integer, String>(
+					new MemoryNodeFactory<Integer, String>(order, records),
+					fillFactor);
+			BPlusTree<Integer, String> tree =
+				loader.load(getEntries(count).iterator());
+			
+			assertThatTreeIsValid(tree);
+			assertThatTreeHolds(tree, count);
+		}
+	}
+	
+	@Test
+	public void loadingNothingShouldGiveAnEmptyTree() {
+		BPlusTree<Integer, String> tree = new BulkLoader<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4)).load(
+						getEntries(0).iterator());
+		
+		assertThat("Empty tree should have no root.", tree.getRoot(),
+				is(nullValue()));
+	}
+	
+	@Test
+	public void loadedTreesShouldBeValid() {
+		loadAndTest(4, 4, 1.0);
+		loadAndTest(6, 6, 1.0);
+		loadAndTest(5, 7, 1.0);
+		loadAndTest(6, 6, 0.7);
+		loadAndTest(8, 10, 0.1);
+	}
+	
+	@Test
+	public void loadedTreesShouldAcceptUpdates() {
+		BPlusTree<Integer, String> tree = new BulkLoader<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4), 0.75).load(
+						getEntries(100).iterator());
+		
+		for (int i = 100; i < 150; i++) {
+			tree.put(i, "v" + i);
+			assertThatTreeIsValid(tree);
+		}
+		
+		for (int i = 0; i < 150; i += 2) {
+			tree.remove(i);
+			assertThatTreeIsValid(tree);
+		}
+		
+		for (int i = 1; i < 150; i += 2) {
+			assertThat("Tree should return \"v" + i + "\".", tree.get(i),
+					is("v" + i));
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unsortedEntriesShouldBeRejected() {
+		List<Map.Entry<Integer, String>> entries = getEntries(10);
+		entries.add(new AbstractMap.SimpleImmutableEntry<Integer, String>(
+				5, "v5"));
+		
+		new BulkLoader<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4)).load(
+						entries.iterator());
+	}
+	
+	private BPlusTree<Integer, String> loadInParallel(int order, int records,
+			List<Map.Entry<Integer, String>> entries) {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		
+		try {
+			return new BulkLoader<Integer, String>(
+					new MemoryNodeFactory<Integer, String>(order, records))
+					.load(entries, executor, 4);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void treesLoadedInParallelShouldBeValid() {
+		int counts[][] = {
+			{ 4, 4, 10000 }, { 6, 6, 5000 }, { 5, 7, 4097 }, { 4, 4, 100 },
+			// Partitions of a single leaf too small to stand alone.
+			{ 4, 3000, 4096 }
+		};
+		
+		for (int test[] : counts) {
+			BPlusTree<Integer, String> tree =
+				loadInParallel(test[0], test[1], getEntries(test[2]));
+			
+			assertThatTreeIsValid(tree);
+			assertThatTreeHolds(tree, test[2]);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void unsortedPartitionsShouldBeRejected() {
+		List<Map.Entry<Integer, String>> entries = getEntries(4096);
+		List<Map.Entry<Integer, String>> swapped =
+			new ArrayList<Map.Entry<Integer, String>>(entries.subList(2048,
+					4096));
+		swapped.addAll(entries.subList(0, 2048));
+		
+		loadInParallel(4, 4, swapped);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidFillFactorShouldBeRejected() {
+		new BulkLoader<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4), 0);
+	}
+}
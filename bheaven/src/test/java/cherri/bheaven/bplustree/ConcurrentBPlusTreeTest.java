@@ -0,0 +1,348 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.ConcurrentMemoryNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class ConcurrentBPlusTreeTest {
+	
+	private static final int THREADS = 8;
+	private static final int COUNT = 2000;
+	
+	private final AtomicReference<Throwable> failure =
+		new AtomicReference<Throwable>();
+	
+	private ConcurrentBPlusTree<Integer, Integer> getTree() {
+		return new ConcurrentBPlusTree<Integer, Integer>(
+				new ConcurrentMemoryNodeFactory<Integer, Integer>(4, 4));
+	}
+	
+	private Integer highKey(Node<Integer, Integer> node) {
+		return ((ConcurrentNode<Integer, Integer>) node).getHighKey();
+	}
+	
+	private void assertThatTreeIsValid(BPlusTree<Integer, Integer> tree) {
+		BPlusTreeChecker<Integer, Integer> checker =
+			new BPlusTreeChecker<Integer, Integer>(tree);
+		assertThat("B+Tree is not valid:\n" + checker.getInvalidReason(),
+				checker.isValid(), is(true));
+	}
+	
+	/*
+	 * Checks that the high key of every node is the key separating it from
+	 * its right sibling and, if links is set, that the right links chain
+	 * the nodes of each level.
+	 */
+	private void assertThatHighKeysAreValid(BPlusTree<Integer, Integer> tree,
+			boolean links) {
+		List<Node<Integer, Integer>> level =
+			new ArrayList<Node<Integer, Integer>>();
+		
+		if (tree.getRoot() != null) {
+			level.add(tree.getRoot());
+			assertThat("Root should have no high key.",
+					highKey(tree.getRoot()), is((Integer) null));
+		}
+		
+		while (!level.isEmpty()) {
+			List<Node<Integer, Integer>> children =
+				new ArrayList<Node<Integer, Integer>>();
+			
+			for (int i = 0; i < level.size(); i++) {
+				Node<Integer, Integer> node = level.get(i);
+				
+				if (links || node instanceof LeafNode<?, ?>) {
+					assertThat("Right link should be the next node.",
+							node.getNext(), is(i + 1 < level.size() ?
+									level.get(i + 1) : null));
+				}
+				
+				if (node instanceof InnerNode<?, ?>) {
+					InnerNode<Integer, Integer> inner =
+						(InnerNode<Integer, Integer>) node;
+					
+					for (int j = 0; j <= inner.getSlots(); j++) {
+						assertThat("High key should be the separator.",
+								highKey(inner.getChild(j)),
+								is(j < inner.getSlots() ? inner.getKey(j) :
+									highKey(inner)));
+						children.add(inner.getChild(j));
+					}
+				}
+			}
+			
+			level = children;
+		}
+	}
+	
+	/*
+	 * Keys of a thread, interleaved with the keys of the other threads.
+	 */
+	private int[] getShuffledKeys(int thread) {
+		int keys[] = Keys.getShuffledKeys(COUNT, thread);
+		
+		for (int i = 0; i < COUNT; i++) {
+			keys[i] = keys[i] * THREADS + thread;
+		}
+		
+		return keys;
+	}
+	
+	private void run(Thread threads[]) throws Throwable {
+		for (Thread thread : threads) {
+			thread.setUncaughtExceptionHandler(
+					new Thread.UncaughtExceptionHandler() {
+						@Override
+						public void uncaughtException(Thread t, Throwable e) {
+							failure.compareAndSet(null, e);
+						}
+					});
+			thread.start();
+		}
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+	}
+	
+	private void putAll(final BPlusTree<Integer, Integer> tree)
+			throws Throwable {
+		Thread threads[] = new Thread[THREADS];
+		
+		for (int t = 0; t < THREADS; t++) {
+			final int keys[] = getShuffledKeys(t);
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int key : keys) {
+						tree.put(key, key);
+					}
+				}
+			};
+		}
+		
+		run(threads);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void factoryWithoutLatchesShouldBeRejected() {
+		new ConcurrentBPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(4, 4));
+	}
+	
+	@Test
+	public void concurrentUpdatesShouldNotBeLost() throws Throwable {
+		final ConcurrentBPlusTree<Integer, Integer> tree = getTree();
+		final Merging<Integer> sum = new Merging<Integer>() {
+			public Integer merge(Integer oldValue, Integer value) {
+				int merged = oldValue + value;
+				return merged == 0 ? null : merged;
+			}
+		};
+		final Remapping<Integer, Integer> decrement =
+			new Remapping<Integer, Integer>() {
+				public Integer remap(Integer key, Integer value) {
+					int decremented = (value == null ? 0 : value) - 1;
+					return decremented == 0 ? null : decremented;
+				}
+			};
+		Thread threads[] = new Thread[THREADS];
+		
+		/*
+		 * A few keys in a small tree, so that most removals empty the root
+		 * or merge leaves and need the delete descent.
+		 */
+		for (int t = 0; t < THREADS; t++) {
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int round = 0; round < 10000; round++) {
+						for (int key = 0; key < 4; key++) {
+							tree.merge(key, 1, sum);
+							tree.compute(key, decrement);
+						}
+					}
+				}
+			};
+		}
+		
+		run(threads);
+		assertThatTreeIsValid(tree);
+		
+		for (int key = 0; key < 4; key++) {
+			assertThat("An increment or decrement of " + key + " was lost.",
+					tree.get(key), is((Integer) null));
+		}
+	}
+	
+	@Test
+	public void concurrentPutsShouldAllBeFound() throws Throwable {
+		ConcurrentBPlusTree<Integer, Integer> tree = getTree();
+		
+		putAll(tree);
+		assertThatTreeIsValid(tree);
+		assertThatHighKeysAreValid(tree, true);
+		
+		for (int i = 0; i < THREADS * COUNT; i++) {
+			assertThat("Tree should return " + i + ".", tree.get(i), is(i));
+		}
+	}
+	
+	@Test
+	public void readersShouldFindKeysDuringSplits() throws Throwable {
+		final ConcurrentBPlusTree<Integer, Integer> tree = getTree();
+		Thread threads[] = new Thread[THREADS];
+		final int present = -COUNT;
+		
+		for (int i = present; i < 0; i++) {
+			tree.put(i, i);
+		}
+		
+		for (int t = 0; t < THREADS; t++) {
+			final int keys[] = getShuffledKeys(t);
+			
+			if (t % 2 == 0) {
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						for (int key : keys) {
+							tree.put(key, key);
+						}
+					}
+				};
+			} else {
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						for (int i = 0; i < 20; i++) {
+							for (int key = present; key < 0; key++) {
+								if (tree.get(key) != key) {
+									throw new AssertionError(
+											"Tree should return " + key + ".");
+								}
+							}
+						}
+					}
+				};
+			}
+		}
+		
+		run(threads);
+		assertThatTreeIsValid(tree);
+		assertThatHighKeysAreValid(tree, true);
+	}
+	
+	@Test
+	public void readersShouldSeeKeysNotBeingRemoved() throws Throwable {
+		final ConcurrentBPlusTree<Integer, Integer> tree = getTree();
+		Thread threads[] = new Thread[THREADS];
+		
+		putAll(tree);
+		
+		for (int t = 0; t < THREADS; t++) {
+			final int keys[] = getShuffledKeys(t);
+			
+			if (t % 2 == 0) {
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						for (int key : keys) {
+							tree.remove(key);
+						}
+					}
+				};
+			} else {
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						for (int i = 0; i < 5; i++) {
+							for (int key : keys) {
+								if (tree.get(key) != key) {
+									throw new AssertionError(
+											"Tree should return " + key + ".");
+								}
+							}
+						}
+					}
+				};
+			}
+		}
+		
+		run(threads);
+		assertThatTreeIsValid(tree);
+		assertThatHighKeysAreValid(tree, false);
+		
+		for (int i = 0; i < THREADS * COUNT; i++) {
+			assertThat("Tree returned an unexpected value.", tree.get(i),
+					is(i % THREADS % 2 == 0 ? null : i));
+		}
+	}
+	
+	@Test
+	public void interleavedPutsAndRemovesShouldKeepTheTreeValid()
+			throws Throwable {
+		final ConcurrentBPlusTree<Integer, Integer> tree = getTree();
+		Thread threads[] = new Thread[THREADS];
+		
+		for (int t = 0; t < THREADS; t++) {
+			final int keys[] = getShuffledKeys(t);
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < keys.length; i++) {
+						tree.put(keys[i], keys[i]);
+						
+						if (i % 3 == 2) {
+							tree.remove(keys[i - 1]);
+						}
+					}
+				}
+			};
+		}
+		
+		run(threads);
+		assertThatTreeIsValid(tree);
+		assertThatHighKeysAreValid(tree, false);
+		
+		for (int t = 0; t < THREADS; t++) {
+			int keys[] = getShuffledKeys(t);
+			
+			for (int i = 0; i < keys.length; i++) {
+				assertThat("Tree returned an unexpected value.",
+						tree.get(keys[i]),
+						is(i % 3 == 1 && i + 1 < keys.length ? null : keys[i]));
+			}
+		}
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class CopyOnWriteBPlusTreeTest {
+	
+	private static final int COUNT = 2000;
+	private static final int THREADS = 4;
+	
+	/*
+	 * Counts the nodes created by the tree, copies included.
+	 */
+	private static class CountingNodeFactory implements
+			NodeFactory<Integer, Integer> {
+		
+		private final NodeFactory<Integer, Integer> factory =
+			new MemoryNodeFactory<Integer, Integer>(4, 4);
+		private int count;
+		
+		public InnerNode<Integer, Integer> getInnerNode() {
+			count++;
+			return factory.getInnerNode();
+		}
+		
+		public LeafNode<Integer, Integer> getLeafNode() {
+			count++;
+			return factory.getLeafNode();
+		}
+	}
+	
+	private void assertThatTreeHolds(BPlusTree<Integer, Integer> tree,
+			TreeMap<Integer, Integer> model) {
+		Cursor<Integer, Integer> cursor = tree.range(null, null);
+		
+		for (Map.Entry<Integer, Integer> entry : model.entrySet()) {
+			assertThat("Cursor should have more entries.", cursor.hasNext(),
+					is(true));
+			Map.Entry<Integer, Integer> next = cursor.next();
+			assertThat(next.getKey(), is(entry.getKey()));
+			assertThat(next.getValue(), is(entry.getValue()));
+		}
+		
+		assertThat("Cursor should not have more entries.", cursor.hasNext(),
+				is(false));
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat(tree.get(i), is(model.get(i)));
+		}
+	}
+	
+	@Test
+	public void snapshotsShouldNotSeeLaterWrites() {
+		CopyOnWriteBPlusTree<Integer, Integer> tree =
+			new CopyOnWriteBPlusTree<Integer, Integer>(
+					new MemoryNodeFactory<Integer, Integer>(4, 4));
+		TreeMap<Integer, Integer> model = new TreeMap<Integer, Integer>();
+		List<BPlusTree<Integer, Integer>> snapshots =
+			new ArrayList<BPlusTree<Integer, Integer>>();
+		List<TreeMap<Integer, Integer>> models =
+			new ArrayList<TreeMap<Integer, Integer>>();
+		Random random = new Random(COUNT);
+		
+		for (int i = 0; i < COUNT * 4; i++) {
+			Integer key = random.nextInt(COUNT);
+			
+			if (random.nextInt(3) == 0) {
+				assertThat(tree.remove(key), is(model.remove(key)));
+			} else {
+				assertThat(tree.put(key, i), is(model.put(key, i)));
+			}
+			
+			if (i % 1000 == 0) {
+				snapshots.add(tree.snapshot());
+				models.add(new TreeMap<Integer, Integer>(model));
+			}
+		}
+		
+		assertThatTreeHolds(tree, model);
+		
+		for (int i = 0; i < snapshots.size(); i++) {
+			assertThatTreeHolds(snapshots.get(i), models.get(i));
+		}
+	}
+	
+	@Test
+	public void snapshotsShouldSurviveEmptyingTheTree() {
+		CopyOnWriteBPlusTree<Integer, Integer> tree =
+			new CopyOnWriteBPlusTree<Integer, Integer>(
+					new MemoryNodeFactory<Integer, Integer>(4, 4));
+		TreeMap<Integer, Integer> model = new TreeMap<Integer, Integer>();
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(i, i);
+			model.put(i, i);
+		}
+		
+		BPlusTree<Integer, Integer> snapshot = tree.snapshot();
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.remove(i);
+		}
+		
+		assertThatTreeHolds(tree, new TreeMap<Integer, Integer>());
+		assertThatTreeHolds(snapshot, model);
+	}
+	
+	@Test(expected = UnsupportedOperationException.class)
+	public void snapshotsShouldNotBeModified() {
+		CopyOnWriteBPlusTree<Integer, Integer> tree =
+			new CopyOnWriteBPlusTree<Integer, Integer>(
+					new MemoryNodeFactory<Integer, Integer>(4, 4));
+		
+		tree.put(1, 1);
+		tree.snapshot().put(2, 2);
+	}
+	
+	@Test
+	public void writesShouldOnlyCopyTheNodesOfTheirPath() {
+		CountingNodeFactory factory = new CountingNodeFactory();
+		CopyOnWriteBPlusTree<Integer, Integer> tree =
+			new CopyOnWriteBPlusTree<Integer, Integer>(factory);
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(i, i);
+		}
+		
+		int height = tree.getStatistics().getHeight();
+		
+		// The nodes created since the last snapshot are changed in place.
+		factory.count = 0;
+		tree.put(COUNT / 2, 0);
+		assertThat(factory.count, is(0));
+		
+		tree.snapshot();
+		tree.put(COUNT / 2, 1);
+		assertThat(factory.count, is(height));
+		
+		tree.put(COUNT / 2, 2);
+		tree.put(COUNT / 2 + 1, 2);
+		assertThat(factory.count, is(height));
+	}
+	
+	@Test
+	public void snapshotsShouldBeSplitByTheirSubtrees() {
+		CopyOnWriteBPlusTree<Integer, Integer> tree =
+			new CopyOnWriteBPlusTree<Integer, Integer>(
+					new MemoryNodeFactory<Integer, Integer>(4, 4));
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(i, i);
+		}
+		
+		BPlusTree<Integer, Integer> snapshot = tree.snapshot();
+		
+		for (int i = 0; i < COUNT; i += 2) {
+			tree.remove(i);
+		}
+		
+		final List<Integer> keys = new ArrayList<Integer>();
+		List<TreeSpliterator<Integer, Integer>> pieces =
+			new ArrayList<TreeSpliterator<Integer, Integer>>();
+		TreeSpliterator<Integer, Integer> spliterator =
+			snapshot.spliterator(10, true, COUNT - 10, false);
+		
+		for (TreeSpliterator<Integer, Integer> prefix = spliterator.trySplit();
+				prefix != null; prefix = spliterator.trySplit()) {
+			pieces.add(prefix);
+		}
+		pieces.add(spliterator);
+		
+		for (TreeSpliterator<Integer, Integer> piece : pieces) {
+			piece.forEachRemaining(new EntryVisitor<Integer, Integer>() {
+				public void visit(Integer key, Integer value) {
+					keys.add(key);
+				}
+			});
+		}
+		
+		Iterator<Integer> iterator = keys.iterator();
+		
+		for (int i = 10; i < COUNT - 10; i++) {
+			assertThat(iterator.next(), is(i));
+		}
+		assertThat(iterator.hasNext(), is(false));
+	}
+	
+	@Test
+	public void snapshotsShouldBeReadByBatchesInSeveralThreads()
+			throws Throwable {
+		CopyOnWriteBPlusTree<Integer, Integer> tree =
+			new CopyOnWriteBPlusTree<Integer, Integer>(
+					new MemoryNodeFactory<Integer, Integer>(4, 4));
+		
+		for (int i = 0; i < COUNT; i += 2) {
+			tree.put(i, i);
+		}
+		
+		final BPlusTree<Integer, Integer> snapshot = tree.snapshot();
+		final AtomicReference<Throwable> failure =
+			new AtomicReference<Throwable>();
+		Thread threads[] = new Thread[THREADS];
+		
+		for (int t = 0; t < THREADS; t++) {
+			final int first = t;
+			
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					Integer keys[] = new Integer[COUNT - THREADS];
+					Integer values[] = new Integer[keys.length];
+					
+					for (int i = 0; i < keys.length; i++) {
+						keys[i] = first + i;
+					}
+					
+					for (int round = 0; round < 200; round++) {
+						snapshot.getAll(keys, values);
+						
+						for (int i = 0; i < keys.length; i++) {
+							assertThat(values[i], is(keys[i] % 2 == 0 ?
+									keys[i] : null));
+						}
+					}
+				}
+			};
+			threads[t].setUncaughtExceptionHandler(
+					new Thread.UncaughtExceptionHandler() {
+						public void uncaughtException(Thread t, Throwable e) {
+							failure.compareAndSet(null, e);
+						}
+					});
+		}
+		
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class CursorTest {
+	
+	private static final int COUNT = 200;
+	private BPlusTree<Integer, String> tree;
+	
+	@Before
+	public void setUp() {
+		NodeFactory<Integer, String> factory =
+			new MemoryNodeFactory<Integer, String>(4, 4);
+		tree = new BPlusTree<Integer, String>(factory);
+		
+		// Only even keys so that bounds can fall between two entries.
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(i * 2, "v" + i * 2);
+		}
+	}
+
+	private void assertThatCursorReturns(Cursor<Integer, String> cursor,
+			int from, int to) {
+		for (int i = from; i <= to; i += 2) {
+			assertThat("Cursor should have more entries.", cursor.hasNext(),
+					is(true));
+			Map.Entry<Integer, String> entry = cursor.next();
+			assertThat("Cursor returned an unexpected key.", entry.getKey(),
+					is(i));
+			assertThat("Cursor returned an unexpected value.",
+					entry.getValue(), is("v" + i));
+		}
+		
+		assertThat("Cursor should not have more entries.", cursor.hasNext(),
+				is(false));
+	}
+	
+	@Test
+	public void rangeShouldIncludeLowerBoundAndExcludeUpperBound() {
+		assertThatCursorReturns(tree.range(10, 50), 10, 48);
+	}
+	
+	@Test
+	public void rangeShouldHonourExclusiveAndInclusiveBounds() {
+		assertThatCursorReturns(tree.range(10, false, 50, true), 12, 50);
+		assertThatCursorReturns(tree.range(10, true, 50, true), 10, 50);
+		assertThatCursorReturns(tree.range(10, false, 50, false), 12, 48);
+	}
+	
+	@Test
+	public void rangeBoundsMayFallBetweenKeys() {
+		assertThatCursorReturns(tree.range(11, false, 51, false), 12, 50);
+		assertThatCursorReturns(tree.range(-5, 3), 0, 2);
+	}
+	
+	@Test
+	public void nullBoundsShouldBeUnbounded() {
+		assertThatCursorReturns(tree.range(null, 7), 0, 6);
+		assertThatCursorReturns(tree.range(null, true, null, true), 0,
+				(COUNT - 1) * 2);
+	}
+	
+	@Test
+	public void tailScanShouldReachTheLastLeaf() {
+		assertThatCursorReturns(tree.tailScan(300), 300, (COUNT - 1) * 2);
+		assertThatCursorReturns(tree.tailScan(300, false), 302,
+				(COUNT - 1) * 2);
+		assertThatCursorReturns(tree.tailScan(COUNT * 2), 0, -1);
+	}
+	
+	@Test
+	public void emptyRangesShouldReturnNothing() {
+		assertThatCursorReturns(tree.range(50, 50), 0, -1);
+		assertThatCursorReturns(tree.range(60, 50), 0, -1);
+		assertThatCursorReturns(
+				new BPlusTree<Integer, String>(
+						new MemoryNodeFactory<Integer, String>(4, 4))
+						.range(null, null), 0, -1);
+	}
+	
+	@Test(expected = NoSuchElementException.class)
+	public void exhaustedCursorShouldThrow() {
+		Cursor<Integer, String> cursor = tree.range(10, 12);
+		cursor.next();
+		cursor.next();
+	}
+}
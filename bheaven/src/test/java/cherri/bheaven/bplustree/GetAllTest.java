@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.ConcurrentMemoryNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class GetAllTest {
+
+	private static final int COUNT = 500;
+	
+	/*
+	 * Puts the even keys below COUNT in random order.
+	 */
+	private BPlusTree<Integer, String> fill(BPlusTree<Integer, String> tree) {
+		List<Integer> keys = new ArrayList<Integer>();
+		for (int i = 0; i < COUNT; i += 2) {
+			keys.add(i);
+		}
+		Collections.shuffle(keys, new Random(COUNT));
+		for (Integer key : keys) {
+			tree.put(key, "v" + key);
+		}
+		
+		return tree;
+	}
+	
+	/*
+	 * Looks up sorted batches of keys, missing ones included, with gaps of
+	 * random sizes between them and compares the results with get.
+	 */
+	private void getAllAndTest(BPlusTree<Integer, String> tree) {
+		Random random = new Random(COUNT);
+		
+		for (int gap = 1; gap < 100; gap += 7) {
+			List<Integer> list = new ArrayList<Integer>();
+			for (int key = -1; key < COUNT + 2; key += random.nextInt(gap) + 1) {
+				list.add(key);
+				if (random.nextInt(8) == 0) {
+					list.add(key);
+				}
+			}
+			
+			Integer keys[] = list.toArray(new Integer[list.size()]);
+			String values[] = new String[keys.length];
+			tree.getAll(keys, values);
+			
+			for (int i = 0; i < keys.length; i++) {
+				assertThat("Batch should return what get returns for " +
+						keys[i] + ".", values[i], is(tree.get(keys[i])));
+			}
+		}
+	}
+	
+	@Test
+	public void getAllShouldFindSortedKeys() {
+		getAllAndTest(fill(new BPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4))));
+		getAllAndTest(fill(new BPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(5, 8))));
+	}
+	
+	@Test
+	public void getAllShouldFindSortedKeysInConcurrentTree() {
+		getAllAndTest(fill(new ConcurrentBPlusTree<Integer, String>(
+				new ConcurrentMemoryNodeFactory<Integer, String>(4, 4))));
+	}
+	
+	@Test
+	public void getAllShouldReturnNullsForAnEmptyTree() {
+		BPlusTree<Integer, String> tree = new BPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4));
+		String values[] = {"a", "b"};
+		
+		tree.getAll(new Integer[] {1, 2}, values);
+		
+		assertThat("Empty tree should return null.", values[0],
+				is(nullValue()));
+		assertThat("Empty tree should return null.", values[1],
+				is(nullValue()));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void getAllShouldRejectUnsortedKeys() {
+		fill(new BPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4))).getAll(
+						new Integer[] {4, 2}, new String[2]);
+	}
+}
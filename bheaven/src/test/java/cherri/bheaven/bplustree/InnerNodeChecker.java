@@ -19,15 +19,13 @@
  */
 package cherri.bheaven.bplustree;
 
-import cherri.bheaven.bplustree.memory.MemoryInnerNode;
-
 /**
  *
  */
 public class InnerNodeChecker<K extends Comparable<K>, V> extends
 		AbstractNodeChecker<K, V> {
 
-	InnerNodeChecker(MemoryInnerNode<K, V> node) {
+	InnerNodeChecker(InnerNode<K, V> node) {
 		super(node);
 	}
 
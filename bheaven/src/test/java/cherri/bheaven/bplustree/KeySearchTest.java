@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.MemoryLeafNode;
+import cherri.bheaven.bplustree.memory.MemoryLongLeafNode;
+import cherri.bheaven.bplustree.memory.MemoryLongNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class KeySearchTest {
+
+	private static final int COUNT = 500;
+	
+	/*
+	 * Searches every key around the keys of nodes of every size, some keys
+	 * repeated from one node to the next, and compares the result with the
+	 * one of Arrays.binarySearch.
+	 */
+	private void searchAndTest(KeySearch search) {
+		Random random = new Random(COUNT);
+		
+		for (int slots = 0; slots < 70; slots++) {
+			long longKeys[] = new long[slots + 1];
+			Long keys[] = new Long[slots + 1];
+			
+			for (int i = 0; i < slots; i++) {
+				longKeys[i] = (i == 0 ? -10 : longKeys[i - 1]) +
+						random.nextInt(10) * 2 + 2;
+				keys[i] = longKeys[i];
+			}
+			
+			// A slot past the last one should be ignored.
+			longKeys[slots] = Long.MIN_VALUE;
+			keys[slots] = Long.MIN_VALUE;
+			
+			for (long key = -12; key < slots * 20 + 2; key++) {
+				int expected = Arrays.binarySearch(longKeys, 0, slots, key);
+				
+				assertThat(search + " should find " + key + " like a binary" +
+						" search.", search.search(longKeys, slots, key),
+						is(expected));
+				assertThat(search + " should find " + key + " like a binary" +
+						" search.", search.search(keys, slots,
+								Long.valueOf(key)), is(expected));
+			}
+		}
+	}
+	
+	@Test
+	public void searchesShouldAgreeWithBinarySearch() {
+		for (KeySearch search : KeySearch.values()) {
+			searchAndTest(search);
+		}
+	}
+	
+	@Test
+	public void searchesShouldHandleExtremeLongs() {
+		long keys[] = {Long.MIN_VALUE, -1, 0, Long.MAX_VALUE};
+		
+		for (KeySearch search : KeySearch.values()) {
+			for (int i = 0; i < keys.length; i++) {
+				assertThat(search + " should find " + keys[i] + ".",
+						search.search(keys, keys.length, keys[i]), is(i));
+			}
+			assertThat(search + " should not find 1.",
+					search.search(keys, keys.length, 1), is(-4));
+		}
+	}
+	
+	@Test
+	public void defaultSearchShouldDependOnTheKeys() {
+		assertThat("Comparable keys should be searched with BINARY.",
+				new MemoryLeafNode<Integer, Integer>(8, null).getSearch(),
+				is(KeySearch.BINARY));
+		assertThat("Small long nodes should be searched with LINEAR.",
+				new MemoryLongLeafNode<Integer>(8, null).getSearch(),
+				is(KeySearch.LINEAR));
+		assertThat("Large long nodes should be searched with BRANCHLESS.",
+				KeySearch.forLongSlots(KeySearch.LINEAR_SLOTS + 1),
+				is(KeySearch.BRANCHLESS));
+	}
+	
+	@Test
+	public void treesShouldWorkWithEverySearch() {
+		for (KeySearch search : KeySearch.values()) {
+			BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(
+					new MemoryNodeFactory<Integer, Integer>(5, 8, search));
+			LongBPlusTree<Integer> longTree = new LongBPlusTree<Integer>(
+					new MemoryLongNodeFactory<Integer>(5, 8, search));
+			
+			for (int i = 0; i < COUNT; i++) {
+				int key = (i * 7919) % COUNT;
+				tree.put(key, i);
+				longTree.put(key, i);
+			}
+			
+			for (int i = 0; i < COUNT; i++) {
+				int key = (i * 7919) % COUNT;
+				assertThat("Tree should find " + key + ".", tree.get(key),
+						is(i));
+				assertThat("Tree should find " + key + ".",
+						longTree.get((long) key), is(i));
+			}
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Keys shared by the tests.
+ */
+public final class Keys {
+
+	private Keys() {
+		throw new AssertionError();
+	}
+	
+	/**
+	 * @return the integers from 0 to <code>count - 1</code> in an order that
+	 *         only depends on <code>seed</code>
+	 */
+	public static int[] getShuffledKeys(int count, long seed) {
+		List<Integer> list = new ArrayList<Integer>(count);
+		
+		for (int i = 0; i < count; i++) {
+			list.add(i);
+		}
+		
+		Collections.shuffle(list, new Random(seed));
+		
+		int keys[] = new int[count];
+		
+		for (int i = 0; i < count; i++) {
+			keys[i] = list.get(i);
+		}
+		
+		return keys;
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+	
+	@Test
+	public void emptyHistogramShouldReportZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		assertThat(histogram.getCount(), is(0L));
+		assertThat(histogram.getPercentile(99), is(0L));
+	}
+	
+	@Test
+	public void smallValuesShouldBeExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		for (int i = 0; i < 10; i++) {
+			histogram.record(i);
+		}
+		
+		assertThat(histogram.getPercentile(0), is(0L));
+		assertThat(histogram.getPercentile(50), is(4L));
+		assertThat(histogram.getPercentile(90), is(8L));
+		assertThat(histogram.getMaximum(), is(9L));
+	}
+	
+	@Test
+	public void percentilesShouldBeWithinABucket() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		for (long i = 1; i <= 100000; i++) {
+			histogram.record(i * 1000);
+		}
+		
+		for (int percentile = 1; percentile < 100; percentile++) {
+			double expected = percentile * 1000.0 * 1000;
+			long value = histogram.getPercentile(percentile);
+			
+			assertThat("Percentile " + percentile + " is " + value + ".",
+					value >= expected && value <= expected * 1.125, is(true));
+		}
+		
+		histogram.record(Long.MAX_VALUE);
+		assertThat(histogram.getMaximum(), is(Long.MAX_VALUE));
+	}
+	
+	@Test
+	public void snapshotShouldResetTheInterval() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		histogram.record(100);
+		histogram.record(200);
+		
+		LatencyHistogram snapshot = histogram.snapshot(true);
+		histogram.record(300);
+		
+		assertThat(snapshot.getCount(), is(2L));
+		assertThat(histogram.getCount(), is(1L));
+		assertThat(histogram.snapshot(false).getCount(), is(1L));
+		assertThat(histogram.getCount(), is(1L));
+	}
+}
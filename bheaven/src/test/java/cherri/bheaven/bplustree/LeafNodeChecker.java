@@ -19,8 +19,6 @@
  */
 package cherri.bheaven.bplustree;
 
-import cherri.bheaven.bplustree.memory.MemoryLeafNode;
-
 /**
  *
  */
@@ -30,7 +28,7 @@ public class LeafNodeChecker<K extends Comparable<K>, V> extends
 	/**
 	 * @param node
 	 */
-	LeafNodeChecker(MemoryLeafNode<K, V> node) {
+	LeafNodeChecker(LeafNode<K, V> node) {
 		super(node);
 	}
 
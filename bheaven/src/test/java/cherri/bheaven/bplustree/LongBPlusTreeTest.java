@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.MemoryLongNodeFactory;
+
+public class LongBPlusTreeTest {
+	
+	private static final int COUNT = 500;
+
+	private void assertThatTreeIsValid(BPlusTree<Long, String> tree) {
+		BPlusTreeChecker<Long, String> checker =
+			new BPlusTreeChecker<Long, String>(tree);
+		assertThat("B+Tree is not valid:\n" + checker.getInvalidReason(),
+				checker.isValid(), is(true));
+	}
+	
+	private long[] getShuffledKeys(int count) {
+		int indexes[] = Keys.getShuffledKeys(count, count);
+		long keys[] = new long[count];
+		
+		for (int i = 0; i < count; i++) {
+			keys[i] = (indexes[i] - count / 2) * 1000L;
+		}
+		
+		return keys;
+	}
+	
+	private void fillEmptyAndTest(int order, int records) {
+		LongBPlusTree<String> tree = new LongBPlusTree<String>(
+				new MemoryLongNodeFactory<String>(order, records));
+		long keys[] = getShuffledKeys(COUNT);
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(keys[i], "v" + keys[i]);
+			assertThatTreeIsValid(tree);
+		}
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat("Tree should return \"v" + keys[i] + "\".",
+					tree.get(keys[i]), is("v" + keys[i]));
+			assertThat("Boxed get should agree with primitive get.",
+					tree.get(Long.valueOf(keys[i])), is("v" + keys[i]));
+			assertThat("Tree should not return absent keys.",
+					tree.get(keys[i] + 1), is(nullValue()));
+		}
+		
+		for (int i = 0; i < COUNT; i += 2) {
+			tree.remove(keys[i]);
+			assertThatTreeIsValid(tree);
+		}
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat("Tree returned an unexpected value.", tree.get(keys[i]),
+					is(i % 2 == 0 ? null : "v" + keys[i]));
+		}
+		
+		for (int i = 1; i < COUNT; i += 2) {
+			tree.remove(keys[i]);
+			assertThatTreeIsValid(tree);
+		}
+		
+		assertThat("Emptied tree should have no root.", tree.getRoot(),
+				is(nullValue()));
+	}
+	
+	@Test
+	public void longTreeShouldBehaveLikeTheGenericTree() {
+		fillEmptyAndTest(4, 4);
+		fillEmptyAndTest(6, 6);
+		fillEmptyAndTest(6, 9);
+		fillEmptyAndTest(64, 32);
+	}
+	
+	@Test
+	public void longTreeShouldSupportRangeScans() {
+		LongBPlusTree<String> tree = new LongBPlusTree<String>(
+				new MemoryLongNodeFactory<String>(4, 4));
+		long keys[] = getShuffledKeys(COUNT);
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(keys[i], "v" + keys[i]);
+		}
+		
+		Cursor<Long, String> cursor = tree.range(-5000L, 5001L);
+		
+		for (long key = -5000; key <= 5000; key += 1000) {
+			assertThat("Cursor returned an unexpected key.",
+					cursor.next().getKey(), is(key));
+		}
+		
+		assertThat("Cursor should not have more entries.", cursor.hasNext(),
+				is(false));
+	}
+	
+	@Test
+	public void emptyLongTreeShouldReturnNull() {
+		LongBPlusTree<String> tree = new LongBPlusTree<String>(
+				new MemoryLongNodeFactory<String>(4, 4));
+		
+		assertThat("Empty tree should return null.", tree.get(1L),
+				is(nullValue()));
+	}
+}
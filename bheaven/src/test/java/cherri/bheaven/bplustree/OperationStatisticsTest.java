@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class OperationStatisticsTest {
+	
+	private static final int COUNT = 1000;
+	
+	@Test
+	public void operationsShouldBeRecordedWhileEnabled() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(4, 4));
+		OperationStatistics statistics = new OperationStatistics();
+		
+		tree.put(-1, -1);
+		tree.setOperationStatistics(statistics);
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(i, i);
+			tree.get(i);
+		}
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.remove(i);
+		}
+		
+		tree.setOperationStatistics(null);
+		tree.get(-1);
+		
+		assertThat(tree.getOperationStatistics(), is(nullValue()));
+		assertThat(statistics.getPutLatencies().getCount(), is((long) COUNT));
+		assertThat(statistics.getGetLatencies().getCount(), is((long) COUNT));
+		assertThat(statistics.getRemoveLatencies().getCount(),
+				is((long) COUNT));
+		
+		TreeStatistics treeStatistics = tree.getStatistics();
+		
+		// Every leaf split starts a cascade, the first leaf was not recorded.
+		assertThat(statistics.getSplitDepths().getCount(),
+				is(treeStatistics.getLeafSplits()));
+		assertThat(statistics.getSplitDepths().getMaximum() > 1, is(true));
+		assertThat(statistics.getMergeDepths().getCount() > 0, is(true));
+		assertThat(statistics.getMergeDepths().getCount() <=
+				treeStatistics.getMerges(), is(true));
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.ConcurrentMemoryNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class PutAllTest {
+
+	private void assertThatTreeIsValid(BPlusTree<Integer, String> tree) {
+		BPlusTreeChecker<Integer, String> checker =
+			new BPlusTreeChecker<Integer, String>(tree);
+		assertThat("B+Tree is not valid:\n" + checker.getInvalidReason(),
+				checker.isValid(), is(true));
+	}
+	
+	private void assertThatTreeHolds(BPlusTree<Integer, String> tree,
+			int count) {
+		Cursor<Integer, String> cursor = tree.range(null, null);
+		
+		for (int i = 0; i < count; i++) {
+			assertThat("Tree should return \"v" + i + "\".", tree.get(i),
+					is("v" + i));
+			assertThat("Leaf chain should hold " + i + ".",
+					cursor.next().getKey(), is(i));
+		}
+		
+		assertThat("Leaf chain should end after the last entry.",
+				cursor.hasNext(), is(false));
+	}
+	
+	/*
+	 * Puts the even keys one by one in random order, then the odd keys in
+	 * sorted batches of random sizes.
+	 */
+	private void putAllAndTest(BPlusTree<Integer, String> tree, int count) {
+		List<Integer> evenKeys = new ArrayList<Integer>();
+		for (int i = 0; i < count; i += 2) {
+			evenKeys.add(i);
+		}
+		Collections.shuffle(evenKeys, new Random(count));
+		for (Integer key : evenKeys) {
+			tree.put(key, "v" + key);
+		}
+		
+		Random random = new Random(count);
+		int key = 1;
+		while (key < count) {
+			int size = Math.min(random.nextInt(40) + 1, (count - key + 1) / 2);
+			Integer keys[] = new Integer[size];
+			String values[] = new String[size];
+			
+			for (int i = 0; i < size; i++, key += 2) {
+				keys[i] = key;
+				values[i] = "v" + key;
+			}
+			
+			tree.putAll(keys, values);
+			assertThatTreeIsValid(tree);
+		}
+		
+		assertThatTreeHolds(tree, count);
+	}
+	
+	@Test
+	public void putAllShouldInsertSortedBatches() {
+		for (int count = 0; count < 400; count += 7) {
+			putAllAndTest(new BPlusTree<Integer, String>(
+					new MemoryNodeFactory<Integer, String>(4, 4)), count);
+			putAllAndTest(new BPlusTree<Integer, String>(
+					new MemoryNodeFactory<Integer, String>(5, 8)), count);
+		}
+	}
+	
+	@Test
+	public void putAllShouldInsertSortedBatchesInConcurrentTree() {
+		for (int count = 0; count < 400; count += 7) {
+			putAllAndTest(new ConcurrentBPlusTree<Integer, String>(
+					new ConcurrentMemoryNodeFactory<Integer, String>(4, 4)),
+					count);
+		}
+	}
+	
+	@Test
+	public void putAllShouldInsertEntriesOfAnIterator() {
+		List<Map.Entry<Integer, String>> entries =
+			new ArrayList<Map.Entry<Integer, String>>();
+		for (int i = 0; i < 3000; i++) {
+			entries.add(new AbstractMap.SimpleImmutableEntry<Integer, String>(
+					i, "v" + i));
+		}
+		
+		BPlusTree<Integer, String> tree = new BPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 6));
+		tree.putAll(entries.iterator());
+		
+		assertThatTreeIsValid(tree);
+		assertThatTreeHolds(tree, 3000);
+	}
+	
+	@Test
+	public void putAllShouldReplaceTheValuesOfKnownKeys() {
+		BPlusTree<Integer, String> tree = new BPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4));
+		for (int i = 0; i < 100; i += 2) {
+			tree.put(i, "old");
+		}
+		
+		Integer keys[] = new Integer[150];
+		String values[] = new String[150];
+		for (int i = 0; i < 150; i++) {
+			keys[i] = (i / 3) * 2 + (i / 3) % 2;
+			values[i] = i % 3 == 2 ? "v" + keys[i] : "old";
+		}
+		tree.putAll(keys, values);
+		
+		assertThatTreeIsValid(tree);
+		Cursor<Integer, String> cursor = tree.range(null, null);
+		for (int i = 0; i < 100; i++) {
+			if (i % 4 == 0 || i % 4 == 3) {
+				assertThat("Leaf chain should hold " + i + " once.",
+						cursor.next().getValue(), is("v" + i));
+			} else if (i % 2 == 0) {
+				assertThat("Leaf chain should keep " + i + ".",
+						cursor.next().getValue(), is("old"));
+			}
+		}
+		assertThat("Leaf chain should end after the last entry.",
+				cursor.hasNext(), is(false));
+	}
+	
+	@Test
+	public void putAllShouldRejectUnsortedKeys() {
+		BPlusTree<Integer, String> tree = new BPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4));
+		
+		try {
+			tree.putAll(new Integer[] {1, 3, 2}, new String[] {"v1", "v3", "v2"});
+			throw new AssertionError("Unsorted keys should be rejected.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		
+		assertThat("Nothing should be inserted.", tree.getRoot(),
+				is(nullValue()));
+	}
+}
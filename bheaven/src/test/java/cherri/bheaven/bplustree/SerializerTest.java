@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SerializerTest {
+	
+	private static final int COUNT = 1000;
+	private static final String STRINGS[] = {
+		"", "a", "a\u0000", "a\u0000b", "a\u0001", "ab", "b", "\u007F",
+		"\u0080", "\u07FF", "\u0800", "\uD800\uDC00", "\uE000", "\uFFFF"
+	};
+	
+	private <T> T writeAndRead(Serializer<T> serializer, T object) {
+		ByteBuffer buffer = ByteBuffer.allocate(serializer.getSize() + 3);
+		
+		serializer.write(buffer, 3, object);
+		
+		if (serializer instanceof VariableSerializer<?>) {
+			VariableSerializer<T> variable = (VariableSerializer<T>) serializer;
+			assertThat("Written size should be the size of the object.",
+					variable.getSize(buffer, 3), is(variable.getSize(object)));
+		}
+		
+		return serializer.read(buffer, 3);
+	}
+	
+	/*
+	 * Checks that the slots of every pair of objects compare as the objects.
+	 */
+	private <T extends Comparable<T>> void assertThatOrderIsKept(
+			OrderedSerializer<T> serializer, T objects[]) {
+		int size = serializer.getSize();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(size * objects.length);
+		
+		for (int i = 0; i < objects.length; i++) {
+			serializer.write(buffer, i * size, objects[i]);
+		}
+		
+		for (int i = 0; i < objects.length; i++) {
+			for (int j = 0; j < objects.length; j++) {
+				assertThat("Slots of " + objects[i] + " and " + objects[j] +
+						" should compare as the objects.",
+						Integer.signum(serializer.compare(buffer, i * size,
+								buffer, j * size)),
+						is(Integer.signum(objects[i].compareTo(objects[j]))));
+			}
+		}
+	}
+	
+	private Long[] getLongs() {
+		Random random = new Random(COUNT);
+		Long longs[] = new Long[100];
+		
+		for (int i = 0; i < longs.length; i++) {
+			longs[i] = random.nextLong() >> random.nextInt(64);
+		}
+		
+		longs[0] = Long.MIN_VALUE;
+		longs[1] = Long.MAX_VALUE;
+		longs[2] = 0L;
+		longs[3] = -1L;
+		
+		return longs;
+	}
+	
+	@Test
+	public void objectsShouldBeReadAsWritten() {
+		for (Long value : getLongs()) {
+			assertThat(writeAndRead(new LongSerializer(), value), is(value));
+			assertThat(writeAndRead(new OrderedLongSerializer(), value),
+					is(value));
+			assertThat(writeAndRead(new VarLongSerializer(), value), is(value));
+			
+			Integer integer = Integer.valueOf(value.intValue());
+			assertThat(writeAndRead(new IntegerSerializer(), integer),
+					is(integer));
+			assertThat(writeAndRead(new OrderedIntegerSerializer(), integer),
+					is(integer));
+			assertThat(writeAndRead(new VarIntegerSerializer(), integer),
+					is(integer));
+		}
+		
+		for (String string : STRINGS) {
+			assertThat(writeAndRead(new StringSerializer(8), string),
+					is(string));
+			assertThat(writeAndRead(new OrderedStringSerializer(8), string),
+					is(string));
+		}
+		
+		byte bytes[] = { 0, -1, 127, -128, 1 };
+		assertThat(Arrays.equals(writeAndRead(new ByteArraySerializer(5),
+				bytes), bytes), is(true));
+	}
+	
+	@Test
+	public void varIntegersShouldBeShortForSmallNumbers() {
+		VarLongSerializer serializer = new VarLongSerializer();
+		
+		assertThat(serializer.getSize(0L), is(1));
+		assertThat(serializer.getSize(-64L), is(1));
+		assertThat(serializer.getSize(64L), is(2));
+		assertThat(serializer.getSize(Long.MIN_VALUE), is(10));
+		assertThat(new VarIntegerSerializer().getSize(Integer.MAX_VALUE),
+				is(5));
+	}
+	
+	@Test
+	public void orderedSlotsShouldCompareAsTheirObjects() {
+		Long longs[] = getLongs();
+		Integer integers[] = new Integer[longs.length];
+		
+		for (int i = 0; i < longs.length; i++) {
+			integers[i] = Integer.valueOf(longs[i].intValue());
+		}
+		
+		assertThatOrderIsKept(new OrderedLongSerializer(), longs);
+		assertThatOrderIsKept(new OrderedIntegerSerializer(), integers);
+		assertThatOrderIsKept(new OrderedStringSerializer(8), STRINGS);
+		assertThatOrderIsKept(new OrderedStringSerializer(24), STRINGS);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void tooLongStringShouldBeRejected() {
+		new OrderedStringSerializer(2).write(ByteBuffer.allocate(2), 0, "\u0800");
+	}
+}
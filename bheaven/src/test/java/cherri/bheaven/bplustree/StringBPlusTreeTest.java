@@ -0,0 +1,199 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.ConcurrentMemoryStringNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryStringLeafNode;
+import cherri.bheaven.bplustree.memory.MemoryStringNodeFactory;
+
+public class StringBPlusTreeTest {
+	
+	private static final int COUNT = 500;
+
+	private void assertThatTreeIsValid(BPlusTree<String, String> tree) {
+		BPlusTreeChecker<String, String> checker =
+			new BPlusTreeChecker<String, String>(tree);
+		assertThat("B+Tree is not valid:\n" + checker.getInvalidReason(),
+				checker.isValid(), is(true));
+	}
+	
+	/*
+	 * Paths sharing their first levels, some keys being prefixes of others.
+	 */
+	private List<String> getShuffledKeys(int count) {
+		List<String> keys = new ArrayList<String>();
+		
+		for (int i = 0; i < count; i++) {
+			String key = "tenant-" + (i % 3) + "/namespace-" + (i % 7);
+			keys.add(i % 11 == 0 ? key : key + "/id-" + i);
+		}
+		
+		Collections.shuffle(keys, new Random(count));
+		
+		return keys;
+	}
+	
+	private void fillEmptyAndTest(BPlusTree<String, String> tree) {
+		List<String> keys = getShuffledKeys(COUNT);
+		Map<String, String> model = new TreeMap<String, String>();
+		
+		for (String key : keys) {
+			assertThat("Put should return the previous value.",
+					tree.put(key, "v" + key), is(model.put(key, "v" + key)));
+			assertThatTreeIsValid(tree);
+		}
+		
+		for (String key : keys) {
+			assertThat("Tree should return \"v" + key + "\".", tree.get(key),
+					is("v" + key));
+			assertThat("Tree should not return absent keys.",
+					tree.get(key + "0"), is(model.get(key + "0")));
+			assertThat("Tree should not return absent keys.",
+					tree.get(key.substring(0, key.length() - 1)),
+					is(model.get(key.substring(0, key.length() - 1))));
+		}
+		
+		Cursor<String, String> cursor = tree.range(null, null);
+		for (Map.Entry<String, String> entry : model.entrySet()) {
+			assertThat("Cursor returned an unexpected key.",
+					cursor.next().getKey(), is(entry.getKey()));
+		}
+		
+		for (int i = 0; i < keys.size(); i++) {
+			assertThat("Remove should return the removed value.",
+					tree.remove(keys.get(i)), is(model.remove(keys.get(i))));
+			assertThatTreeIsValid(tree);
+		}
+	}
+	
+	@Test
+	public void stringTreeShouldBehaveLikeTheGenericTree() {
+		fillEmptyAndTest(new BPlusTree<String, String>(
+				new MemoryStringNodeFactory<String>(4, 4)));
+		fillEmptyAndTest(new BPlusTree<String, String>(
+				new MemoryStringNodeFactory<String>(5, 8)));
+		fillEmptyAndTest(new BPlusTree<String, String>(
+				new MemoryStringNodeFactory<String>(64, 32)));
+		fillEmptyAndTest(new ConcurrentBPlusTree<String, String>(
+				new ConcurrentMemoryStringNodeFactory<String>(4, 4)));
+	}
+	
+	@Test
+	public void stringTreeShouldWorkWithShortSeparators() {
+		fillEmptyAndTest(new BPlusTree<String, String>(
+				new MemoryNodeFactory<String, String>(4, 4),
+				new StringSeparator()));
+		fillEmptyAndTest(new BPlusTree<String, String>(
+				new MemoryStringNodeFactory<String>(5, 8),
+				new StringSeparator()));
+		fillEmptyAndTest(new ConcurrentBPlusTree<String, String>(
+				new ConcurrentMemoryStringNodeFactory<String>(4, 4),
+				new StringSeparator()));
+	}
+	
+	@Test
+	public void separatorShouldBeTheShortestKeyBetweenLeaves() {
+		Separator<String> separator = new StringSeparator();
+		
+		assertThat("Separator should end past the common prefix.",
+				separator.separate("tenant/a/123", "tenant/b/001"),
+				is("tenant/b"));
+		assertThat("Separator should be below the right key.",
+				separator.separate("tenant/a", "tenant/ab"), is("tenant/a"));
+		assertThat("Separator should not be longer than the left key.",
+				separator.separate("ab", "b/long"), is("b"));
+		assertThat("Separator should not be longer than the left key.",
+				separator.separate("a", "b/long"), is("a"));
+	}
+	
+	@Test
+	public void leafShouldStoreTheSharedPrefixOnce() {
+		MemoryStringLeafNode<String> leaf =
+				new MemoryStringLeafNode<String>(4, null);
+		
+		leaf.insert("tenant/b/2", "b2");
+		leaf.insert("tenant/b/1", "b1");
+		assertThat("Prefix should be shared by both keys.", leaf.getPrefix(),
+				is("tenant/b/"));
+		
+		leaf.insert("tenant/a", "a");
+		leaf.insert("tenant/c", "c");
+		assertThat("Prefix should shrink to the new keys.", leaf.getPrefix(),
+				is("tenant/"));
+		assertThat("Keys should be rebuilt from the prefix.", leaf.getKey(1),
+				is("tenant/b/1"));
+		assertThat("Key should be found.", leaf.getKeyIndex("tenant/b/2"),
+				is(2));
+		assertThat("Key below the prefix should go first.",
+				leaf.getKeyIndex("tenan"), is(-1));
+		assertThat("Key above the prefix should go last.",
+				leaf.getKeyIndex("tenanu"), is(-5));
+		
+		LeafNode<String, String> right = leaf.split("tenant/b/3", "b3");
+		assertThat("Split should compute the prefix again.", leaf.getPrefix(),
+				is("tenant/"));
+		assertThat("Split should compute the prefix again.",
+				((MemoryStringLeafNode<String>) right).getPrefix(),
+				is("tenant/"));
+		
+		leaf.remove(0);
+		right.remove(1);
+		leaf.insert("tenant/b/0", "b0");
+		assertThat("Key should be inserted in order.", leaf.getKeyIndex(
+				"tenant/b/0"), is(0));
+	}
+	
+	@Test
+	public void comparingToASlotShouldMatchComparingTheKeys() {
+		MemoryStringLeafNode<String> leaf =
+				new MemoryStringLeafNode<String>(4, null);
+		String others[] = { "", "t", "tenant/", "tenant/a", "tenant/b",
+				"tenant/b/1", "tenant/b/10", "tenant/c", "tenanu", "u" };
+		
+		leaf.insert("tenant/b", "b");
+		leaf.insert("tenant/b/1", "b1");
+		leaf.insert("tenant/b/2", "b2");
+		
+		for (int i = 0; i < leaf.getSlots(); i++) {
+			for (String other : others) {
+				assertThat("Slot " + i + " compared to \"" + other + "\".",
+						Integer.signum(leaf.compareKey(i, other)),
+						is(Integer.signum(leaf.getKey(i).compareTo(other))));
+			}
+		}
+		
+		assertThat("Key without suffix should be the prefix.",
+				leaf.getKey(0), is(sameInstance(leaf.getPrefix())));
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class TreeSpliteratorTest {
+	
+	private static final int COUNT = 200;
+	private BPlusTree<Integer, String> tree;
+	
+	@Before
+	public void setUp() {
+		NodeFactory<Integer, String> factory =
+			new MemoryNodeFactory<Integer, String>(4, 4);
+		tree = new BPlusTree<Integer, String>(factory);
+		
+		// Only even keys so that bounds can fall between two entries.
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(i * 2, "v" + i * 2);
+		}
+	}
+	
+	private static class Collector implements EntryVisitor<Integer, String> {
+		
+		private final List<Integer> keys = new ArrayList<Integer>();
+		
+		public void visit(Integer key, String value) {
+			assertThat("Spliterator returned an unexpected value.", value,
+					is("v" + key));
+			keys.add(key);
+		}
+	}
+	
+	/*
+	 * Splits the spliterator down to its leaves and reads the pieces in
+	 * order.
+	 */
+	private void traverse(TreeSpliterator<Integer, String> spliterator,
+			Collector collector) {
+		TreeSpliterator<Integer, String> prefix = spliterator.trySplit();
+		
+		if (prefix != null) {
+			traverse(prefix, collector);
+			traverse(spliterator, collector);
+			return;
+		}
+		
+		int size = collector.keys.size();
+		long estimate = spliterator.estimateSize();
+		boolean sized = (spliterator.characteristics() &
+				TreeSpliterator.SIZED) != 0;
+		
+		spliterator.forEachRemaining(collector);
+		
+		if (sized) {
+			assertThat("A sized piece should know its size.",
+					(long) collector.keys.size() - size, is(estimate));
+		}
+		
+		assertThat(spliterator.tryAdvance(collector), is(false));
+		assertThat(spliterator.estimateSize(), is(0L));
+	}
+	
+	private List<Integer> getKeys(int from, boolean fromInclusive, int to,
+			boolean toInclusive) {
+		List<Integer> keys = new ArrayList<Integer>();
+		
+		for (int i = 0; i < COUNT * 2; i += 2) {
+			if ((i > from || (fromInclusive && i == from)) &&
+					(i < to || (toInclusive && i == to))) {
+				keys.add(i);
+			}
+		}
+		
+		return keys;
+	}
+	
+	@Test
+	public void splitPiecesShouldReturnAllTheEntriesInOrder() {
+		Collector collector = new Collector();
+		
+		traverse(tree.spliterator(), collector);
+		
+		assertThat(collector.keys, is(getKeys(-1, false, COUNT * 2, false)));
+	}
+	
+	@Test
+	public void splitPiecesShouldReturnTheEntriesOfARange() {
+		int bounds[] = { -5, 0, 1, 7, 8, 50, 51, 100, 397, 398, 399, 500 };
+		boolean inclusive[] = { true, false };
+		
+		for (int from : bounds) {
+			for (int to : bounds) {
+				for (boolean fromInclusive : inclusive) {
+					for (boolean toInclusive : inclusive) {
+						Collector collector = new Collector();
+						
+						traverse(tree.spliterator(from, fromInclusive, to,
+								toInclusive), collector);
+						
+						assertThat("Range " + from + ", " + to,
+								collector.keys, is(getKeys(from,
+										fromInclusive, to, toInclusive)));
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void tryAdvanceShouldReturnTheEntriesOneByOne() {
+		TreeSpliterator<Integer, String> spliterator =
+			tree.spliterator(10, true, 30, false);
+		Collector collector = new Collector();
+		
+		while (spliterator.tryAdvance(collector)) {
+		}
+		
+		assertThat(collector.keys, is(getKeys(10, true, 30, false)));
+	}
+	
+	@Test
+	public void splitShouldHalveTheEstimatedSize() {
+		TreeSpliterator<Integer, String> spliterator = tree.spliterator();
+		long estimate = spliterator.estimateSize();
+		TreeSpliterator<Integer, String> prefix = spliterator.trySplit();
+		
+		assertThat(estimate > 0, is(true));
+		assertThat(prefix.estimateSize() + spliterator.estimateSize(),
+				is(estimate));
+		assertThat(prefix.estimateSize() > 0, is(true));
+		assertThat(spliterator.estimateSize() > 0, is(true));
+		assertThat(spliterator.characteristics() & TreeSpliterator.SORTED,
+				is(TreeSpliterator.SORTED));
+	}
+	
+	@Test
+	public void emptyTreeShouldHaveNoEntry() {
+		BPlusTree<Integer, String> empty = new BPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4));
+		TreeSpliterator<Integer, String> spliterator = empty.spliterator();
+		
+		assertThat(spliterator.trySplit() == null, is(true));
+		assertThat(spliterator.estimateSize(), is(0L));
+		assertThat(spliterator.tryAdvance(new Collector()), is(false));
+	}
+}
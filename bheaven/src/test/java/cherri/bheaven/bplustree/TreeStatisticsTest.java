@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class TreeStatisticsTest {
+	
+	private static final int COUNT = 1000;
+	
+	private BPlusTree<Integer, Integer> getTree(int keys[]) {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(4, 4));
+		
+		for (int i = 0; i < keys.length; i++) {
+			tree.put(keys[i], keys[i]);
+		}
+		
+		return tree;
+	}
+	
+	private int countLeaves(BPlusTree<Integer, Integer> tree) {
+		Node<Integer, Integer> node = tree.getRoot();
+		int count = 0;
+		
+		while (node instanceof InnerNode<?, ?>) {
+			node = ((InnerNode<Integer, Integer>) node).getChild(0);
+		}
+		
+		for (; node != null; node = node.getNext()) {
+			count++;
+		}
+		
+		return count;
+	}
+	
+	@Test
+	public void emptyTreeShouldHaveNoLevel() {
+		TreeStatistics statistics = getTree(new int[0]).getStatistics();
+		
+		assertThat(statistics.getHeight(), is(0));
+		assertThat(statistics.getLeafNodes(), is(0L));
+		assertThat(statistics.getEntries(), is(0L));
+	}
+	
+	@Test
+	public void statisticsShouldDescribeTheTree() {
+		int keys[] = Keys.getShuffledKeys(COUNT, COUNT);
+		BPlusTree<Integer, Integer> tree = getTree(keys);
+		TreeStatistics statistics = tree.getStatistics();
+		int height = statistics.getHeight();
+		
+		assertThat(statistics.getEntries(), is((long) COUNT));
+		assertThat(statistics.getLeafNodes(), is((long) countLeaves(tree)));
+		// Every split adds a node, and every new root adds one more.
+		assertThat(statistics.getLeafSplits(),
+				is(statistics.getLeafNodes() - 1));
+		assertThat(statistics.getInnerSplits(),
+				is(statistics.getInnerNodes() - (height - 1)));
+		assertThat(statistics.getBorrows(), is(0L));
+		assertThat(statistics.getMerges(), is(0L));
+		assertThat(statistics.getAverageFill(height - 1),
+				is((double) COUNT / (statistics.getLeafNodes() * 4)));
+		
+		for (int i = 0; i < height; i++) {
+			assertThat("Level " + i + " should have no empty node.",
+					statistics.getMinimumFill(i) > 0, is(true));
+			assertThat("Level " + i + " should be above its minimum fill.",
+					statistics.getMinimumFill(i) <=
+						statistics.getAverageFill(i), is(true));
+		}
+		
+		for (int i = 0; i < COUNT / 2; i++) {
+			tree.remove(keys[i]);
+		}
+		
+		statistics = tree.getStatistics();
+		
+		assertThat(statistics.getEntries(), is((long) COUNT / 2));
+		assertThat(statistics.getLeafNodes(), is((long) countLeaves(tree)));
+		assertThat(statistics.getBorrows() > 0, is(true));
+		assertThat(statistics.getMerges() > 0, is(true));
+	}
+	
+	@Test
+	public void monitorShouldPublishTheStatistics() throws Exception {
+		BPlusTree<Integer, Integer> tree =
+			getTree(Keys.getShuffledKeys(COUNT, COUNT));
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(
+				"cherri.bheaven:type=BPlusTree,name=TreeStatisticsTest");
+		
+		server.registerMBean(new BPlusTreeMonitor(tree), name);
+		try {
+			assertThat((Long) server.getAttribute(name, "Entries"),
+					is((long) COUNT));
+			assertThat(((double[]) server.getAttribute(name,
+					"AverageFill")).length,
+					is(tree.getStatistics().getHeight()));
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+}
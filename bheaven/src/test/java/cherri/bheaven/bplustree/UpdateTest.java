@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.memory.ConcurrentMemoryNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class UpdateTest {
+
+	private static final int KEYS = 300;
+	private static final int OPERATIONS = 20000;
+	
+	private void assertThatTreeIsValid(BPlusTree<Integer, Integer> tree) {
+		BPlusTreeChecker<Integer, Integer> checker =
+			new BPlusTreeChecker<Integer, Integer>(tree);
+		assertThat("B+Tree is not valid:\n" + checker.getInvalidReason(),
+				checker.isValid(), is(true));
+	}
+	
+	private void assertThatTreeHolds(BPlusTree<Integer, Integer> tree,
+			Map<Integer, Integer> map) {
+		Cursor<Integer, Integer> cursor = tree.range(null, null);
+		Iterator<Map.Entry<Integer, Integer>> iterator =
+			map.entrySet().iterator();
+		
+		while (iterator.hasNext()) {
+			Map.Entry<Integer, Integer> expected = iterator.next();
+			Map.Entry<Integer, Integer> entry = cursor.next();
+			
+			assertThat("Leaf chain should hold " + expected.getKey() + ".",
+					entry.getKey(), is(expected.getKey()));
+			assertThat("Tree should return " + expected.getValue() + ".",
+					entry.getValue(), is(expected.getValue()));
+		}
+		
+		assertThat("Leaf chain should end after the last entry.",
+				cursor.hasNext(), is(false));
+	}
+	
+	/*
+	 * A counter decremented by compute and incremented by merge, a key
+	 * being removed when its counter drops to zero.
+	 */
+	private static final Remapping<Integer, Integer> DECREMENT =
+		new Remapping<Integer, Integer>() {
+			public Integer remap(Integer key, Integer value) {
+				return value == null || value == 1 ? null : value - 1;
+			}
+		};
+	
+	private static final Merging<Integer> ADD = new Merging<Integer>() {
+		public Integer merge(Integer oldValue, Integer value) {
+			return oldValue + value;
+		}
+	};
+	
+	/*
+	 * Runs random updates on the tree and on a TreeMap, then compares them.
+	 */
+	private void updateAndTest(BPlusTree<Integer, Integer> tree) {
+		Map<Integer, Integer> map = new TreeMap<Integer, Integer>();
+		Random random = new Random(KEYS);
+		
+		for (int i = 0; i < OPERATIONS; i++) {
+			Integer key = random.nextInt(KEYS);
+			Integer value = random.nextInt(3) + 1;
+			Integer old = map.get(key);
+			
+			switch (random.nextInt(5)) {
+			case 0:
+				tree.put(key, value);
+				map.put(key, value);
+				break;
+			case 1:
+				assertThat("putIfAbsent should return the current value.",
+						tree.putIfAbsent(key, value), is(old));
+				if (old == null) {
+					map.put(key, value);
+				}
+				break;
+			case 2:
+				assertThat("replace should return the previous value.",
+						tree.replace(key, value), is(old));
+				if (old != null) {
+					map.put(key, value);
+				}
+				break;
+			case 3:
+				Integer decremented = DECREMENT.remap(key, old);
+				assertThat("compute should return the new value.",
+						tree.compute(key, DECREMENT), is(decremented));
+				if (decremented == null) {
+					map.remove(key);
+				} else {
+					map.put(key, decremented);
+				}
+				break;
+			default:
+				Integer added = old == null ? value : old + value;
+				assertThat("merge should return the new value.",
+						tree.merge(key, value, ADD), is(added));
+				map.put(key, added);
+				break;
+			}
+			
+			if (i % 1000 == 0) {
+				assertThatTreeIsValid(tree);
+			}
+		}
+		
+		assertThatTreeIsValid(tree);
+		assertThatTreeHolds(tree, map);
+	}
+	
+	@Test
+	public void puttingAKeyAgainShouldReplaceItsValue() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(4, 4));
+		Map<Integer, Integer> map = new TreeMap<Integer, Integer>();
+		
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < KEYS; i++) {
+				tree.put(i, round);
+				map.put(i, round);
+			}
+		}
+		
+		assertThatTreeIsValid(tree);
+		assertThatTreeHolds(tree, map);
+	}
+	
+	@Test
+	public void updatesShouldMatchAMap() {
+		updateAndTest(new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(4, 4)));
+		updateAndTest(new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(5, 8)));
+	}
+	
+	@Test
+	public void updatesShouldMatchAMapInConcurrentTree() {
+		updateAndTest(new ConcurrentBPlusTree<Integer, Integer>(
+				new ConcurrentMemoryNodeFactory<Integer, Integer>(4, 4)));
+	}
+	
+	@Test
+	public void removingTheLastKeyThroughComputeShouldEmptyTheTree() {
+		BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(
+				new MemoryNodeFactory<Integer, Integer>(4, 4));
+		
+		tree.put(1, 1);
+		
+		assertThat("compute should remove the key.",
+				tree.compute(1, DECREMENT), is(nullValue()));
+		assertThat("Empty tree should have no root.", tree.getRoot(),
+				is(nullValue()));
+	}
+}
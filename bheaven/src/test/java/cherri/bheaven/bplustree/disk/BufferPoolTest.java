@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.disk;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.BPlusTreeChecker;
+import cherri.bheaven.bplustree.IntegerSerializer;
+import cherri.bheaven.bplustree.StringSerializer;
+
+public class BufferPoolTest {
+	
+	private static final int COUNT = 1000;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private DiskNodeFactory<Integer, String> getFactory(File file,
+			int capacity) throws IOException {
+		return new DiskNodeFactory<Integer, String>(file, 4, 4,
+				new IntegerSerializer(), new StringSerializer(16), capacity);
+	}
+	
+	private void assertThatTreeIsValid(BPlusTree<Integer, String> tree) {
+		BPlusTreeChecker<Integer, String> checker =
+			new BPlusTreeChecker<Integer, String>(tree);
+		assertThat("B+Tree is not valid:\n" + checker.getInvalidReason(),
+				checker.isValid(), is(true));
+	}
+	
+	private void putShuffledKeys(BPlusTree<Integer, String> tree) {
+		int keys[] = new int[COUNT];
+		Random random = new Random(COUNT);
+		
+		for (int i = 0; i < COUNT; i++) {
+			keys[i] = i;
+		}
+		
+		for (int i = COUNT - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = keys[i];
+			keys[i] = keys[j];
+			keys[j] = swap;
+		}
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(keys[i], "v" + keys[i]);
+		}
+	}
+	
+	@Test
+	public void smallPoolShouldEvictAndStayConsistent() throws IOException {
+		DiskNodeFactory<Integer, String> factory =
+			getFactory(folder.newFile("tree"), 4);
+		BPlusTree<Integer, String> tree =
+			new BPlusTree<Integer, String>(factory);
+		
+		putShuffledKeys(tree);
+		assertThatTreeIsValid(tree);
+		
+		for (int i = 0; i < COUNT; i += 3) {
+			tree.remove(i);
+		}
+		
+		assertThatTreeIsValid(tree);
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat("Tree returned an unexpected value.", tree.get(i),
+					is(i % 3 == 0 ? null : "v" + i));
+		}
+		
+		BufferPool<Integer, String> pool = factory.getBufferPool();
+		assertTrue("A pool of 4 frames should evict.",
+				pool.getEvictions() > 0);
+		assertTrue("Evicted dirty frames should be written back.",
+				pool.getWrites() > 0);
+		
+		factory.close();
+	}
+	
+	@Test
+	public void evictedPagesShouldSurviveReopening() throws IOException {
+		File file = folder.newFile("tree");
+		DiskNodeFactory<Integer, String> factory = getFactory(file, 8);
+		
+		putShuffledKeys(new BPlusTree<Integer, String>(factory));
+		factory.close();
+		
+		factory = getFactory(file, 8);
+		BPlusTree<Integer, String> tree =
+			new BPlusTree<Integer, String>(factory);
+		
+		assertThatTreeIsValid(tree);
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat("Reopened tree should return \"v" + i + "\".",
+					tree.get(i), is("v" + i));
+		}
+		
+		factory.close();
+	}
+	
+	@Test
+	public void residentTreeShouldNotMiss() throws IOException {
+		DiskNodeFactory<Integer, String> factory =
+			getFactory(folder.newFile("tree"), 4096);
+		BPlusTree<Integer, String> tree =
+			new BPlusTree<Integer, String>(factory);
+		
+		putShuffledKeys(tree);
+		
+		BufferPool<Integer, String> pool = factory.getBufferPool();
+		long misses = pool.getMisses();
+		long hits = pool.getHits();
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.get(i);
+		}
+		
+		assertThat("Lookups in a resident tree should not miss.",
+				pool.getMisses(), is(misses));
+		assertTrue("Lookups should hit the pool.", pool.getHits() > hits);
+		assertThat("A resident tree should not evict.", pool.getEvictions(),
+				is(0L));
+		
+		factory.close();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void poolShouldHaveAtLeastFourFrames() throws IOException {
+		getFactory(folder.newFile("tree"), 3);
+	}
+}
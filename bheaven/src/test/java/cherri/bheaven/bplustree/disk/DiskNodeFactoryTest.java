@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.disk;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.BPlusTreeChecker;
+import cherri.bheaven.bplustree.IntegerSerializer;
+import cherri.bheaven.bplustree.Keys;
+import cherri.bheaven.bplustree.KeySearch;
+import cherri.bheaven.bplustree.StringSerializer;
+
+public class DiskNodeFactoryTest {
+	
+	private static final int COUNT = 1000;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private DiskNodeFactory<Integer, String> getFactory(File file, int order,
+			int records) throws IOException {
+		return new DiskNodeFactory<Integer, String>(file, order, records,
+				new IntegerSerializer(), new StringSerializer(16));
+	}
+	
+	private void assertThatTreeIsValid(BPlusTree<Integer, String> tree) {
+		BPlusTreeChecker<Integer, String> checker =
+			new BPlusTreeChecker<Integer, String>(tree);
+		assertThat("B+Tree is not valid:\n" + checker.getInvalidReason(),
+				checker.isValid(), is(true));
+	}
+	
+	@Test
+	public void diskTreeShouldBehaveLikeAMemoryTree() throws IOException {
+		DiskNodeFactory<Integer, String> factory =
+			getFactory(folder.newFile("tree"), 4, 4);
+		BPlusTree<Integer, String> tree =
+			new BPlusTree<Integer, String>(factory);
+		int keys[] = Keys.getShuffledKeys(COUNT, COUNT);
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(keys[i], "v" + keys[i]);
+			assertThatTreeIsValid(tree);
+		}
+		
+		for (int i = 0; i < COUNT; i += 2) {
+			tree.remove(keys[i]);
+			assertThatTreeIsValid(tree);
+		}
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat("Tree returned an unexpected value.", tree.get(keys[i]),
+					is(i % 2 == 0 ? null : "v" + keys[i]));
+		}
+		
+		for (int i = 1; i < COUNT; i += 2) {
+			tree.remove(keys[i]);
+			assertThatTreeIsValid(tree);
+		}
+		
+		assertThat("Emptied tree should have no root.", factory.getRoot(),
+				is(nullValue()));
+		
+		factory.close();
+	}
+	
+	@Test
+	public void diskTreeShouldWorkWithEverySearch() throws IOException {
+		int keys[] = Keys.getShuffledKeys(COUNT, COUNT);
+		
+		for (KeySearch search : KeySearch.values()) {
+			DiskNodeFactory<Integer, String> factory =
+				new DiskNodeFactory<Integer, String>(folder.newFile(
+						"tree-" + search), 5, 8, new IntegerSerializer(),
+						new StringSerializer(16), 16, search);
+			BPlusTree<Integer, String> tree =
+				new BPlusTree<Integer, String>(factory);
+			
+			for (int i = 0; i < COUNT; i++) {
+				tree.put(keys[i], "v" + keys[i]);
+			}
+			
+			for (int i = 0; i < COUNT; i++) {
+				assertThat(search + " should find " + keys[i] + ".",
+						tree.get(keys[i]), is("v" + keys[i]));
+			}
+			
+			assertThatTreeIsValid(tree);
+			factory.close();
+		}
+	}
+	
+	@Test
+	public void diskTreeShouldSurviveReopening() throws IOException {
+		File file = folder.newFile("tree");
+		DiskNodeFactory<Integer, String> factory = getFactory(file, 6, 10);
+		BPlusTree<Integer, String> tree =
+			new BPlusTree<Integer, String>(factory);
+		int keys[] = Keys.getShuffledKeys(COUNT, COUNT);
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(keys[i], "v" + keys[i]);
+		}
+		
+		factory.close();
+		
+		factory = getFactory(file, 6, 10);
+		tree = new BPlusTree<Integer, String>(factory);
+		
+		assertThatTreeIsValid(tree);
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat("Reopened tree should return \"v" + i + "\".",
+					tree.get(i), is("v" + i));
+		}
+		
+		factory.close();
+	}
+	
+	@Test
+	public void pagesOfMergedNodesShouldBeReused() throws IOException {
+		DiskNodeFactory<Integer, String> factory =
+			getFactory(folder.newFile("tree"), 4, 4);
+		BPlusTree<Integer, String> tree =
+			new BPlusTree<Integer, String>(factory);
+		int keys[] = Keys.getShuffledKeys(COUNT, COUNT);
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(keys[i], "v" + keys[i]);
+		}
+		
+		int pages = factory.getPageCount();
+		
+		for (int round = 0; round < 10; round++) {
+			for (int i = 0; i < COUNT; i++) {
+				tree.remove(keys[i]);
+			}
+			
+			for (int i = 0; i < COUNT; i++) {
+				tree.put(keys[i], "v" + keys[i]);
+			}
+		}
+		
+		assertThatTreeIsValid(tree);
+		assertThat("Churn should not grow the file.",
+				factory.getPageCount() <= pages, is(true));
+		
+		factory.close();
+	}
+	
+	@Test(expected = IOException.class)
+	public void reopeningWithOtherParametersShouldFail() throws IOException {
+		File file = folder.newFile("tree");
+		
+		getFactory(file, 6, 10).close();
+		getFactory(file, 4, 10);
+	}
+}
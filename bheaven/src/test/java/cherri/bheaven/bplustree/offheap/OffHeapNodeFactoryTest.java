@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.offheap;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.BPlusTreeChecker;
+import cherri.bheaven.bplustree.IntegerSerializer;
+import cherri.bheaven.bplustree.Keys;
+import cherri.bheaven.bplustree.OrderedIntegerSerializer;
+import cherri.bheaven.bplustree.StringSerializer;
+
+public class OffHeapNodeFactoryTest {
+	
+	private static final int COUNT = 1000;
+	
+	private void assertThatTreeIsValid(BPlusTree<Integer, String> tree) {
+		BPlusTreeChecker<Integer, String> checker =
+			new BPlusTreeChecker<Integer, String>(tree);
+		assertThat("B+Tree is not valid:\n" + checker.getInvalidReason(),
+				checker.isValid(), is(true));
+	}
+	
+	@Test
+	public void offHeapTreeShouldBehaveLikeAMemoryTree() {
+		// Small slabs so the tree spans many of them.
+		OffHeapNodeFactory<Integer, String> factory =
+			new OffHeapNodeFactory<Integer, String>(4, 4,
+					new IntegerSerializer(), new StringSerializer(16), 256);
+		BPlusTree<Integer, String> tree =
+			new BPlusTree<Integer, String>(factory);
+		int keys[] = Keys.getShuffledKeys(COUNT, COUNT);
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(keys[i], "v" + keys[i]);
+			assertThatTreeIsValid(tree);
+		}
+		
+		for (int i = 0; i < COUNT; i += 2) {
+			tree.remove(keys[i]);
+			assertThatTreeIsValid(tree);
+		}
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat("Tree returned an unexpected value.", tree.get(keys[i]),
+					is(i % 2 == 0 ? null : "v" + keys[i]));
+		}
+		
+		for (int i = 1; i < COUNT; i += 2) {
+			tree.remove(keys[i]);
+			assertThatTreeIsValid(tree);
+		}
+		
+		assertThat("Emptied tree should have released every node.",
+				factory.getNodes(), is(0));
+	}
+	
+	@Test
+	public void releasedNodesShouldBeGivenAgain() {
+		OffHeapNodeFactory<Integer, String> factory =
+			new OffHeapNodeFactory<Integer, String>(6, 10,
+					new IntegerSerializer(), new StringSerializer(16), 1024);
+		BPlusTree<Integer, String> tree =
+			new BPlusTree<Integer, String>(factory);
+		int keys[] = Keys.getShuffledKeys(COUNT, COUNT);
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(keys[i], "v" + keys[i]);
+		}
+		
+		int slabs = factory.getSlabs();
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.remove(keys[i]);
+		}
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(keys[i], "w" + keys[i]);
+		}
+		
+		assertThatTreeIsValid(tree);
+		assertThat("Refilled tree should not need new slabs.",
+				factory.getSlabs(), is(slabs));
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat("Tree should return \"w" + i + "\".", tree.get(i),
+					is("w" + i));
+		}
+	}
+	
+	@Test
+	public void orderedKeysShouldBeFoundWithoutDecoding() {
+		OffHeapNodeFactory<Integer, String> factory =
+			new OffHeapNodeFactory<Integer, String>(4, 4,
+					new OrderedIntegerSerializer(), new StringSerializer(16));
+		BPlusTree<Integer, String> tree =
+			new BPlusTree<Integer, String>(factory);
+		int keys[] = Keys.getShuffledKeys(COUNT, COUNT);
+		
+		// Negative keys check that the sign is kept in the order of slots.
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(keys[i] - COUNT / 2, "v" + keys[i]);
+		}
+		
+		assertThatTreeIsValid(tree);
+		
+		for (int i = 0; i < COUNT; i += 2) {
+			tree.remove(keys[i] - COUNT / 2);
+		}
+		
+		assertThatTreeIsValid(tree);
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat("Tree returned an unexpected value.",
+					tree.get(keys[i] - COUNT / 2),
+					is(i % 2 == 0 ? null : "v" + keys[i]));
+		}
+	}
+}
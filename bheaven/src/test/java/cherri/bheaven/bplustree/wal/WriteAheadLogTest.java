@@ -0,0 +1,501 @@
+/*
+ * Copyright 2010 Moustapha Cherri
+ * 
+ * This file is part of bheaven.
+ * 
+ * bheaven is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * bheaven is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with bheaven.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ */
+package cherri.bheaven.bplustree.wal;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cherri.bheaven.bplustree.BPlusTree;
+import cherri.bheaven.bplustree.IntegerSerializer;
+import cherri.bheaven.bplustree.Merging;
+import cherri.bheaven.bplustree.Remapping;
+import cherri.bheaven.bplustree.StringSerializer;
+import cherri.bheaven.bplustree.disk.DiskNodeFactory;
+import cherri.bheaven.bplustree.memory.MemoryNodeFactory;
+
+public class WriteAheadLogTest {
+	
+	private static final int COUNT = 500;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private WriteAheadLog<Integer, String> getLog(File file)
+			throws IOException {
+		return new WriteAheadLog<Integer, String>(file,
+				new IntegerSerializer(), new StringSerializer(16),
+				1, TimeUnit.MILLISECONDS);
+	}
+	
+	/*
+	 * A channel whose first force fails after writing only a part of the
+	 * batch.
+	 */
+	private static class FailingChannel extends FileChannel {
+		
+		private final FileChannel channel;
+		private boolean failed;
+		
+		FailingChannel(FileChannel channel) {
+			this.channel = channel;
+		}
+		
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			return channel.read(dst);
+		}
+		
+		@Override
+		public long read(ByteBuffer[] dsts, int offset, int length)
+				throws IOException {
+			return channel.read(dsts, offset, length);
+		}
+		
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			return channel.write(src);
+		}
+		
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length)
+				throws IOException {
+			return channel.write(srcs, offset, length);
+		}
+		
+		@Override
+		public long position() throws IOException {
+			return channel.position();
+		}
+		
+		@Override
+		public FileChannel position(long newPosition) throws IOException {
+			channel.position(newPosition);
+			return this;
+		}
+		
+		@Override
+		public long size() throws IOException {
+			return channel.size();
+		}
+		
+		@Override
+		public FileChannel truncate(long size) throws IOException {
+			channel.truncate(size);
+			return this;
+		}
+		
+		@Override
+		public void force(boolean metaData) throws IOException {
+			if (!failed) {
+				failed = true;
+				throw new IOException("Disk full.");
+			}
+			
+			channel.force(metaData);
+		}
+		
+		@Override
+		public long transferTo(long position, long count,
+				WritableByteChannel target) throws IOException {
+			return channel.transferTo(position, count, target);
+		}
+		
+		@Override
+		public long transferFrom(ReadableByteChannel src, long position,
+				long count) throws IOException {
+			return channel.transferFrom(src, position, count);
+		}
+		
+		@Override
+		public int read(ByteBuffer dst, long position) throws IOException {
+			return channel.read(dst, position);
+		}
+		
+		@Override
+		public int write(ByteBuffer src, long position) throws IOException {
+			if (!failed && src.remaining() > 1) {
+				// Writes half of the batch only.
+				ByteBuffer half = src.duplicate();
+				half.limit(half.position() + half.remaining() / 2);
+				int written = channel.write(half, position);
+				src.position(src.position() + written);
+				return written;
+			}
+			
+			return channel.write(src, position);
+		}
+		
+		@Override
+		public MappedByteBuffer map(MapMode mode, long position, long size)
+				throws IOException {
+			return channel.map(mode, position, size);
+		}
+		
+		@Override
+		public FileLock lock(long position, long size, boolean shared)
+				throws IOException {
+			return channel.lock(position, size, shared);
+		}
+		
+		@Override
+		public FileLock tryLock(long position, long size, boolean shared)
+				throws IOException {
+			return channel.tryLock(position, size, shared);
+		}
+		
+		@Override
+		protected void implCloseChannel() throws IOException {
+			channel.close();
+		}
+	}
+	
+	private DurableBPlusTree<Integer, String> getTree(
+			WriteAheadLog<Integer, String> log) throws IOException {
+		return new DurableBPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4), log);
+	}
+	
+	@Test
+	public void replayShouldRestoreTheTree() throws IOException {
+		File file = folder.newFile("log");
+		WriteAheadLog<Integer, String> log = getLog(file);
+		DurableBPlusTree<Integer, String> tree = getTree(log);
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(i, "v" + i);
+		}
+		
+		for (int i = 0; i < COUNT; i += 2) {
+			tree.remove(i);
+		}
+		
+		tree.put(1, "w1");
+		log.close();
+		
+		log = getLog(file);
+		tree = getTree(log);
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat("Replayed tree returned an unexpected value.",
+					tree.get(i), is(i % 2 == 0 ? null :
+						i == 1 ? "w1" : "v" + i));
+		}
+		
+		log.close();
+	}
+	
+	@Test
+	public void variableRecordsShouldTakeOnlyTheirBytes() throws IOException {
+		File file = folder.newFile("log");
+		WriteAheadLog<Integer, String> log = getLog(file);
+		
+		log.commit(log.appendPut(1, "v1"));
+		log.commit(log.appendRemove(1));
+		log.close();
+		
+		/* type, key, length and 2 bytes of value, CRC; then type, key, CRC */
+		assertThat("Records did not take their own size.", file.length(),
+				is((long) (1 + 4 + 2 + 2 + 4) + (1 + 4 + 4)));
+		
+		log = getLog(file);
+		DurableBPlusTree<Integer, String> tree = getTree(log);
+		
+		assertThat("Replayed tree returned an unexpected value.", tree.get(1),
+				is(nullValue()));
+		log.close();
+	}
+	
+	@Test
+	public void unsortedEntriesShouldBeReplayedAsApplied() throws IOException {
+		File file = folder.newFile("log");
+		WriteAheadLog<Integer, String> log = getLog(file);
+		DurableBPlusTree<Integer, String> tree = getTree(log);
+		List<Map.Entry<Integer, String>> entries =
+			new ArrayList<Map.Entry<Integer, String>>();
+		
+		for (int i = 0; i < 1500; i++) {
+			int key = i == 1300 ? 0 : i;
+			entries.add(new AbstractMap.SimpleEntry<Integer, String>(key,
+					"v" + key));
+		}
+		
+		boolean refused = false;
+		
+		// The first batch is applied, the second refused.
+		try {
+			tree.putAll(entries.iterator());
+		} catch (IllegalArgumentException e) {
+			refused = true;
+		}
+		assertThat("Unsorted entries were accepted.", refused, is(true));
+		
+		tree.put(1500, "v1500");
+		log.close();
+		
+		DurableBPlusTree<Integer, String> replayed = getTree(getLog(file));
+		
+		for (int i = 0; i <= 1500; i++) {
+			assertThat("Replayed tree differs from the tree.", replayed.get(i),
+					is(tree.get(i)));
+		}
+		assertThat(tree.get(1023), is("v1023"));
+		assertThat(tree.get(1024), is(nullValue()));
+	}
+	
+	@Test
+	public void replayShouldRestoreUpdates() throws IOException {
+		File file = folder.newFile("log");
+		WriteAheadLog<Integer, String> log = getLog(file);
+		DurableBPlusTree<Integer, String> tree = getTree(log);
+		Merging<String> concat = new Merging<String>() {
+			public String merge(String oldValue, String value) {
+				return value.length() == 0 ? null : oldValue + value;
+			}
+		};
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.putIfAbsent(i, "v");
+			tree.putIfAbsent(i, "w");
+			tree.merge(i, "" + i, concat);
+		}
+		
+		for (int i = 0; i < COUNT; i += 2) {
+			tree.merge(i, "", concat);
+			tree.replace(i, "x");
+		}
+		log.close();
+		
+		log = getLog(file);
+		tree = getTree(log);
+		
+		for (int i = 0; i < COUNT; i++) {
+			assertThat("Replayed tree returned an unexpected value.",
+					tree.get(i), is(i % 2 == 0 ? null : "v" + i));
+		}
+		
+		log.close();
+	}
+	
+	/*
+	 * The value is too long for the serializer of the log.
+	 */
+	private static final String REFUSED = "a value longer than sixteen";
+	
+	@Test
+	public void refusedRecordShouldLeaveTheTreeUnchanged() throws IOException {
+		File file = folder.newFile("log");
+		WriteAheadLog<Integer, String> log = getLog(file);
+		DurableBPlusTree<Integer, String> tree = getTree(log);
+		Merging<String> replace = new Merging<String>() {
+			public String merge(String oldValue, String value) {
+				return value;
+			}
+		};
+		Remapping<Integer, String> refuse = new Remapping<Integer, String>() {
+			public String remap(Integer key, String value) {
+				return REFUSED;
+			}
+		};
+		int refused = 0;
+		
+		tree.put(1, "v1");
+		
+		try {
+			tree.putIfAbsent(2, REFUSED);
+		} catch (IllegalArgumentException e) {
+			refused++;
+		}
+		
+		try {
+			tree.replace(1, REFUSED);
+		} catch (IllegalArgumentException e) {
+			refused++;
+		}
+		
+		try {
+			tree.compute(1, refuse);
+		} catch (IllegalArgumentException e) {
+			refused++;
+		}
+		
+		try {
+			tree.merge(1, REFUSED, replace);
+		} catch (IllegalArgumentException e) {
+			refused++;
+		}
+		
+		try {
+			tree.putAll(new Integer[] { 3, 4 }, new String[] { "v3", REFUSED });
+		} catch (IllegalArgumentException e) {
+			refused++;
+		}
+		
+		assertThat("Every operation should be refused.", refused, is(5));
+		assertThat(tree.get(1), is("v1"));
+		assertThat(tree.get(2), is(nullValue()));
+		assertThat(tree.get(3), is(nullValue()));
+		assertThat(tree.get(4), is(nullValue()));
+		log.close();
+	}
+	
+	@Test
+	public void tornRecordShouldBeDropped() throws IOException {
+		File file = folder.newFile("log");
+		WriteAheadLog<Integer, String> log = getLog(file);
+		DurableBPlusTree<Integer, String> tree = getTree(log);
+		
+		tree.put(1, "v1");
+		tree.put(2, "v2");
+		log.close();
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		long length = raf.length();
+		raf.setLength(length - 3);
+		raf.close();
+		
+		log = getLog(file);
+		tree = getTree(log);
+		
+		assertThat("Complete record should be replayed.", tree.get(1),
+				is("v1"));
+		assertThat("Torn record should be dropped.", tree.get(2),
+				is(nullValue()));
+		assertThat("Log should be cut after the last complete record.",
+				file.length(), is(length / 2));
+		
+		log.close();
+	}
+	
+	@Test
+	public void failedForceShouldBeWrittenAgain() throws IOException {
+		File file = folder.newFile("log");
+		WriteAheadLog<Integer, String> log = new WriteAheadLog<Integer, String>(
+				new FailingChannel(new RandomAccessFile(file, "rw").getChannel()),
+				new IntegerSerializer(), new StringSerializer(16), 0,
+				TimeUnit.MILLISECONDS);
+		long first = log.appendPut(1, "v1");
+		
+		try {
+			log.commit(first);
+			throw new AssertionError("First commit should fail.");
+		} catch (IOException e) {
+			// Expected.
+		}
+		
+		log.commit(log.appendPut(2, "v2"));
+		log.close();
+		
+		log = getLog(file);
+		BPlusTree<Integer, String> tree = new BPlusTree<Integer, String>(
+				new MemoryNodeFactory<Integer, String>(4, 4));
+		
+		assertThat("Both records should be replayed.", log.replay(tree),
+				is(2));
+		assertThat(tree.get(1), is("v1"));
+		assertThat(tree.get(2), is("v2"));
+		assertThat("The failed batch should be written over its first part.",
+				file.length(), is(2 * first));
+		
+		log.close();
+	}
+	
+	@Test
+	public void checkpointShouldTruncateTheLog() throws IOException {
+		File file = folder.newFile("log");
+		DiskNodeFactory<Integer, String> factory =
+			new DiskNodeFactory<Integer, String>(folder.newFile("tree"), 4, 4,
+					new IntegerSerializer(), new StringSerializer(16));
+		WriteAheadLog<Integer, String> log = getLog(file);
+		DurableBPlusTree<Integer, String> tree =
+			new DurableBPlusTree<Integer, String>(factory, log);
+		
+		for (int i = 0; i < COUNT; i++) {
+			tree.put(i, "v" + i);
+		}
+		
+		tree.checkpoint();
+		
+		assertThat("Checkpoint should empty the log.", file.length(), is(0L));
+		
+		tree.put(COUNT, "v" + COUNT);
+		log.close();
+		factory.close();
+		
+		assertTrue("Put after the checkpoint should be logged.",
+				file.length() > 0);
+	}
+	
+	@Test
+	public void concurrentWritersShouldShareForces() throws Exception {
+		final WriteAheadLog<Integer, String> log =
+			getLog(folder.newFile("log"));
+		final DurableBPlusTree<Integer, String> tree = getTree(log);
+		Thread threads[] = new Thread[8];
+		
+		for (int t = 0; t < threads.length; t++) {
+			final int offset = t * COUNT;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < COUNT; i++) {
+						tree.put(offset + i, "v" + i);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		for (int i = 0; i < threads.length * COUNT; i++) {
+			assertThat("Tree returned an unexpected value.", tree.get(i),
+					is("v" + i % COUNT));
+		}
+		
+		assertTrue("Commits should be grouped, " + log.getSyncs() +
+				" forces for " + threads.length * COUNT + " puts.",
+				log.getSyncs() < threads.length * COUNT);
+		
+		log.close();
+	}
+}